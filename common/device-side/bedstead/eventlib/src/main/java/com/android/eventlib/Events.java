@@ -19,31 +19,48 @@ package com.android.eventlib;
 import android.content.Context;
 import android.util.Log;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Deque;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
 
-/** Event store for the current package. */
+/**
+ * Event store for the current package.
+ *
+ * <p>Events are written to a series of segment files, each covering up to
+ * {@link #SEGMENT_DURATION} of logging. Each segment is a single Java serialization stream so the
+ * description of each event class is only written the first time the class appears in the
+ * segment rather than with every event. Segments which only contain events older than
+ * {@link #MAX_LOG_AGE} are deleted when a new segment is started.
+ */
 final class Events {
 
     private static final String TAG = "EventLibEvents";
-    private static final String EVENT_LOG_FILE_NAME = "Events";
+    // Single file used by earlier versions, which is deleted when loading the history
+    private static final String LEGACY_EVENT_LOG_FILE_NAME = "Events";
+    private static final String SEGMENT_FILE_NAME_PREFIX = "Events-";
     private static final Duration MAX_LOG_AGE = Duration.ofMinutes(5);
-    private static final int BYTES_PER_INT = 4;
+    private static final Duration SEGMENT_DURATION = Duration.ofMinutes(1);
 
     private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
     private AtomicBoolean mLoadedHistory = new AtomicBoolean(false);
@@ -72,7 +89,7 @@ final class Events {
     }
 
     private final Context mContext; // ApplicationContext
-    private FileOutputStream mOutputStream;
+    private Segment mSegment;
 
     private Events(Context context) {
         this.mContext = context;
@@ -87,54 +104,58 @@ final class Events {
     }
 
     private void loadEventsFromFile() {
-        synchronized (mEventList) {
-            mEventList.clear();
+        synchronized (mEventIndex) {
+            mEventIndex.clear();
+            mContext.deleteFile(LEGACY_EVENT_LOG_FILE_NAME);
+
             Instant now = Instant.now();
-            Deque<Event> eventQueue = new ArrayDeque<>();
-            try (FileInputStream fileInputStream = mContext.openFileInput(EVENT_LOG_FILE_NAME)) {
-                Event event = readEvent(fileInputStream);
-
-                while (event != null) {
-                    // I'm not sure if we need this
-                    if (event.mTimestamp.plus(MAX_LOG_AGE).isAfter(now)) {
-                        eventQueue.addFirst(event);
+            boolean foundSegment = false;
+            for (String segmentFileName : getSegmentFileNames()) {
+                foundSegment = true;
+                try (ObjectInputStream in = new ObjectInputStream(
+                        new BufferedInputStream(mContext.openFileInput(segmentFileName)))) {
+                    Event event = readEvent(in);
+                    while (event != null) {
+                        // I'm not sure if we need this
+                        if (event.mTimestamp.plus(MAX_LOG_AGE).isAfter(now)) {
+                            addEvent(event);
+                        }
+                        event = readEvent(in);
                     }
-                    event = readEvent(fileInputStream);
+                } catch (FileNotFoundException | EOFException e) {
+                    // The segment was deleted or is empty, there's nothing to load
+                } catch (IOException e) {
+                    Log.e(TAG, "Error when loading events from file " + segmentFileName, e);
                 }
-
-                for (Event e : eventQueue) {
-                    mEventList.addFirst(e);
-                }
-            } catch (FileNotFoundException e) {
-                // Ignore this exception as if there's no file there's nothing to load
+            }
+            if (!foundSegment) {
                 Log.i(TAG, "No existing event file");
-            } catch (IOException e) {
-                Log.e(TAG, "Error when loading events from file", e);
             }
         }
     }
 
-    private Event readEvent(FileInputStream fileInputStream) throws IOException {
-        if (fileInputStream.available() < BYTES_PER_INT) {
+    /**
+     * Reads the next event from a segment, or returns null at the end of the segment.
+     *
+     * <p>If the process died while writing the last event of the segment then reading stops
+     * before that event.
+     */
+    private Event readEvent(ObjectInputStream in) throws IOException {
+        try {
+            return (Event) in.readObject();
+        } catch (EOFException e) {
             return null;
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Trying to read Event which is not on classpath", e);
         }
-        byte[] sizeBytes = new byte[BYTES_PER_INT];
-        fileInputStream.read(sizeBytes);
-
-        int size = ByteBuffer.wrap(sizeBytes).getInt();
-
-        byte[] eventBytes = new byte[size];
-        fileInputStream.read(eventBytes);
-
-        return Event.fromBytes(eventBytes);
     }
 
     /** Saves the event so it can be queried. */
     void log(Event event) {
         sExecutor.execute(() -> {
             Log.d(TAG, event.toString());
-            synchronized (mEventList) {
-                mEventList.add(event); // TODO: This should be made immutable before adding
+            synchronized (mEventIndex) {
+                addEvent(event); // TODO: This should be made immutable before adding
                 writeEventToFile(event);
             }
             triggerEventListeners(event);
@@ -143,19 +164,24 @@ final class Events {
 
     private void writeEventToFile(Event event) {
         try {
-            if (mOutputStream == null) {
-                mOutputStream = mContext.openFileOutput(
-                        EVENT_LOG_FILE_NAME, Context.MODE_PRIVATE | Context.MODE_APPEND);
+            if (mSegment != null
+                    && mSegment.mStartTime.plus(SEGMENT_DURATION).isBefore(event.mTimestamp)) {
+                mSegment.close();
+                mSegment = null;
+            }
+            if (mSegment == null) {
+                mSegment = startSegment();
             }
 
             Log.e(TAG, "writing event to file: " + event);
             try {
-                byte[] eventBytes = event.toBytes();
-                mOutputStream.write(
-                        ByteBuffer.allocate(BYTES_PER_INT).putInt(eventBytes.length).array());
-                mOutputStream.write(eventBytes);
+                mSegment.write(event);
             } catch (Throwable e) {
-                // This will happen if the event contains a Binder - can't be written to disk
+                // This will happen if the event contains a Binder - can't be written to disk.
+                // The serialization stream can't be continued after a failure so start a new
+                // segment for the next event.
+                mSegment.close();
+                mSegment = null;
                 Log.e(TAG, "We can't write this event to disk because it contains a Binder "
                         + "(this may cause errors in tests after this point - particularly related"
                         + " to EventLib)", e);
@@ -165,23 +191,120 @@ final class Events {
         }
     }
 
-    private final Deque<Event> mEventList = new ConcurrentLinkedDeque<>();
+    /** Starts a new segment and deletes the segments which only contain expired events. */
+    private Segment startSegment() throws IOException {
+        Instant now = Instant.now();
+        List<String> segmentFileNames = getSegmentFileNames();
+        // Every event in a segment is older than the start of the next segment.
+        for (int i = 0; i < segmentFileNames.size() - 1; i++) {
+            Instant nextSegmentStart = getSegmentStartTime(segmentFileNames.get(i + 1));
+            if (nextSegmentStart.plus(MAX_LOG_AGE).isBefore(now)) {
+                mContext.deleteFile(segmentFileNames.get(i));
+            }
+        }
+
+        long startMillis = now.toEpochMilli();
+        if (!segmentFileNames.isEmpty()) {
+            // Keep names unique and in order even if the clock went backwards.
+            startMillis = Math.max(startMillis, getSegmentStartTime(
+                    segmentFileNames.get(segmentFileNames.size() - 1)).toEpochMilli() + 1);
+        }
+        return new Segment(Instant.ofEpochMilli(startMillis), mContext.openFileOutput(
+                SEGMENT_FILE_NAME_PREFIX + startMillis, Context.MODE_PRIVATE));
+    }
+
+    /** Returns the names of the segment files, oldest first. */
+    private List<String> getSegmentFileNames() {
+        List<String> segmentFileNames = new ArrayList<>();
+        for (String fileName : mContext.fileList()) {
+            if (fileName.startsWith(SEGMENT_FILE_NAME_PREFIX)) {
+                segmentFileNames.add(fileName);
+            }
+        }
+        segmentFileNames.sort((a, b) -> getSegmentStartTime(a).compareTo(getSegmentStartTime(b)));
+        return segmentFileNames;
+    }
+
+    private static Instant getSegmentStartTime(String segmentFileName) {
+        return Instant.ofEpochMilli(
+                Long.parseLong(segmentFileName.substring(SEGMENT_FILE_NAME_PREFIX.length())));
+    }
+
+    /**
+     * A segment file being written.
+     *
+     * <p>Each event is first serialized into memory and only written to the file once it has been
+     * serialized successfully, so the file never contains part of an event which failed.
+     */
+    private static final class Segment {
+        private final Instant mStartTime;
+        private final FileOutputStream mFileOutputStream;
+        private final ByteArrayOutputStream mBuffer = new ByteArrayOutputStream();
+        private final ObjectOutputStream mObjectOutputStream;
+
+        Segment(Instant startTime, FileOutputStream fileOutputStream) throws IOException {
+            mStartTime = startTime;
+            mFileOutputStream = fileOutputStream;
+            mObjectOutputStream = new ObjectOutputStream(mBuffer);
+            flush();
+        }
+
+        void write(Event event) throws IOException {
+            mObjectOutputStream.writeObject(event);
+            flush();
+        }
+
+        private void flush() throws IOException {
+            mObjectOutputStream.flush();
+            mBuffer.writeTo(mFileOutputStream);
+            mBuffer.reset();
+        }
+
+        void close() {
+            try {
+                mFileOutputStream.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Error closing event log segment", e);
+            }
+        }
+    }
+
+    // Events by class and package name, see indexKey. Also guards logging events and registering
+    // listeners.
+    private final Map<String, Deque<Event>> mEventIndex = new ConcurrentHashMap<>();
     // This is a weak set so we don't retain listeners from old tests
     private final Set<EventListener> mEventListeners
             = Collections.newSetFromMap(new WeakHashMap<>());
 
-    /** Get all logged events. */
-    public Queue<Event> getEvents() {
-        return mEventList;
+    private void addEvent(Event event) {
+        mEventIndex.computeIfAbsent(indexKey(event.getClass(), event.mPackageName),
+                k -> new ConcurrentLinkedDeque<>()).add(event);
+    }
+
+    private static String indexKey(Class<?> eventClass, String packageName) {
+        return eventClass.getName() + "/" + packageName;
+    }
+
+    /** Get the logged events of the given class logged by the given package. */
+    public Queue<Event> getEvents(Class<? extends Event> eventClass, String packageName) {
+        Deque<Event> events = mEventIndex.get(indexKey(eventClass, packageName));
+        return events == null ? new ConcurrentLinkedDeque<>() : events;
     }
 
-    /** Register an {@link EventListener} to be called when a new {@link Event} is logged. */
-    public Queue<Event> registerEventListener(EventListener listener) {
-        synchronized (mEventList) {
+    /**
+     * Register an {@link EventListener} to be called when a new {@link Event} is logged.
+     *
+     * <p>Returns the events of the given class already logged by the given package. No event
+     * can be logged between getting these and registering the listener, so each event is either
+     * returned or passed to the listener.
+     */
+    public Queue<Event> registerEventListener(
+            EventListener listener, Class<? extends Event> eventClass, String packageName) {
+        synchronized (mEventIndex) {
             synchronized (mEventListeners) {
                 mEventListeners.add(listener);
 
-                return getEvents();
+                return getEvents(eventClass, packageName);
             }
         }
     }
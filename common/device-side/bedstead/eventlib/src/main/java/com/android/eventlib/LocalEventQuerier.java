@@ -36,7 +36,8 @@ public class LocalEventQuerier<E extends Event, F extends EventLogsQuery> implem
     LocalEventQuerier(Context context, EventLogsQuery<E, F> eventLogsQuery) {
         mEventLogsQuery = eventLogsQuery;
         mEvents = Events.getInstance(context, /* needsHistory= */ true);
-        mFetchedEvents = new LinkedBlockingDeque<>(mEvents.registerEventListener(this));
+        mFetchedEvents = new LinkedBlockingDeque<>(mEvents.registerEventListener(
+                this, eventLogsQuery.eventClass(), eventLogsQuery.getPackageName()));
     }
 
     @Override
@@ -85,6 +86,10 @@ public class LocalEventQuerier<E extends Event, F extends EventLogsQuery> implem
 
     @Override
     public void onNewEvent(Event event) {
-        mFetchedEvents.addLast(event);
+        // Only keep the events which could match, like the ones from the index in Events
+        if (event.getClass() == mEventLogsQuery.eventClass()
+                && mEventLogsQuery.getPackageName().equals(event.packageName())) {
+            mFetchedEvents.addLast(event);
+        }
     }
 }
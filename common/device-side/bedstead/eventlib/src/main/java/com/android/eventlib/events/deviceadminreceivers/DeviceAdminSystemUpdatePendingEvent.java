@@ -35,7 +35,7 @@ import com.android.queryable.queries.LongQueryHelper;
 import com.android.queryable.util.SerializableParcelWrapper;
 
 /** Event logged when {@link DeviceAdminReceiver#onSystemUpdatePending} is called. */
-public class DeviceAdminSystemUpdatePendingEvent extends Event {
+public final class DeviceAdminSystemUpdatePendingEvent extends Event {
 
     private static final long serialVersionUID = 1;
 
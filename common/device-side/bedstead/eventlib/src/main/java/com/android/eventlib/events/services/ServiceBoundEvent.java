@@ -34,7 +34,7 @@ import com.android.queryable.util.SerializableParcelWrapper;
 /**
  * Event logged when {@link Service#onBind(Intent)}
  */
-public class ServiceBoundEvent extends Event {
+public final class ServiceBoundEvent extends Event {
 
     private static final long serialVersionUID = 1;
 
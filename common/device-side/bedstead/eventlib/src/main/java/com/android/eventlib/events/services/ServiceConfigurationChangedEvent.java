@@ -31,7 +31,7 @@ import com.android.queryable.queries.ServiceQueryHelper;
 /**
  * Event logged when {@link Service#onConfigurationChanged(Configuration)}
  */
-public class ServiceConfigurationChangedEvent extends Event {
+public final class ServiceConfigurationChangedEvent extends Event {
 
     private static final long serialVersionUID = 1;
 
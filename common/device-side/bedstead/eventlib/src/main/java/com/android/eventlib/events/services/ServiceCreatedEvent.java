@@ -30,7 +30,7 @@ import com.android.queryable.queries.ServiceQueryHelper;
 /**
  * Event logged when {@link Service#onCreate()}
  */
-public class ServiceCreatedEvent extends Event {
+public final class ServiceCreatedEvent extends Event {
 
     private static final long serialVersionUID = 1;
 
@@ -30,7 +30,7 @@ import com.android.queryable.queries.ServiceQueryHelper;
 /**
  * Event logged when {@link Service#onDestroy()}
  */
-public class ServiceDestroyedEvent extends Event {
+public final class ServiceDestroyedEvent extends Event {
 
     private static final long serialVersionUID = 1;
 
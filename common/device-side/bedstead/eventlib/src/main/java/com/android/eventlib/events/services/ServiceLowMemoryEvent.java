@@ -30,7 +30,7 @@ import com.android.queryable.queries.ServiceQueryHelper;
 /**
  * Event logged when {@link Service#onLowMemory()}
  */
-public class ServiceLowMemoryEvent extends Event {
+public final class ServiceLowMemoryEvent extends Event {
 
     private static final long serialVersionUID = 1;
 
@@ -31,7 +31,7 @@ import com.android.queryable.queries.ServiceQueryHelper;
 /**
  * Event logged when {@link Service#onTrimMemory(int)}
  */
-public class ServiceMemoryTrimmedEvent extends Event {
+public final class ServiceMemoryTrimmedEvent extends Event {
 
     private static final long serialVersionUID = 1;
 
@@ -34,7 +34,7 @@ import com.android.queryable.util.SerializableParcelWrapper;
 /**
  * Event logged when {@link Service#onRebind(Intent)}
  */
-public class ServiceReboundEvent extends Event {
+public final class ServiceReboundEvent extends Event {
 
     private static final long serialVersionUID = 1;
 
@@ -35,7 +35,7 @@ import com.android.queryable.util.SerializableParcelWrapper;
 /**
  * Event logged when {@link Service#onStartCommand(Intent, int, int)}
  */
-public class ServiceStartedEvent extends Event {
+public final class ServiceStartedEvent extends Event {
 
     private static final long serialVersionUID = 1;
 
@@ -34,7 +34,7 @@ import com.android.queryable.util.SerializableParcelWrapper;
 /**
  * Event logged when {@link Service#onTaskRemoved(Intent)}
  */
-public class ServiceTaskRemovedEvent extends Event {
+public final class ServiceTaskRemovedEvent extends Event {
 
     private static final long serialVersionUID = 1;
 
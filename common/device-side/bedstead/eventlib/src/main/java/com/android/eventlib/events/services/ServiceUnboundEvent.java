@@ -34,7 +34,7 @@ import com.android.queryable.util.SerializableParcelWrapper;
 /**
  * Event logged when {@link Service#onUnbind(Intent)}
  */
-public class ServiceUnboundEvent extends Event {
+public final class ServiceUnboundEvent extends Event {
 
     private static final long serialVersionUID = 1;
 
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.eventlib;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+
+import com.android.bedstead.harrier.BedsteadJUnit4;
+import com.android.bedstead.harrier.DeviceState;
+import com.android.bedstead.nene.TestApis;
+
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(BedsteadJUnit4.class)
+public class EventsTest {
+
+    @ClassRule @Rule
+    public static final DeviceState sDeviceState = new DeviceState();
+
+    private static final Context sContext = TestApis.context().instrumentedContext();
+
+    // Packages which do not log events themselves, so only the events of these tests match
+    private static final String PACKAGE_NAME = "com.android.eventlib.tests.eventstest";
+    private static final String OTHER_PACKAGE_NAME = "com.android.eventlib.tests.eventstest.other";
+
+    private static final long LOG_TIMEOUT_SECONDS = 10;
+
+    private final Events mEvents = Events.getInstance(sContext, /* needsHistory= */ true);
+    // Events only keeps weak references to its listeners
+    private final List<Events.EventListener> mListeners = new ArrayList<>();
+
+    /** An event class which is only logged by these tests. */
+    private static final class TestEvent extends Event {
+        private static final long serialVersionUID = 1;
+    }
+
+    /** Another event class which is only logged by these tests. */
+    private static final class OtherTestEvent extends Event {
+        private static final long serialVersionUID = 1;
+    }
+
+    @Test
+    public void getEvents_onlyReturnsEventsOfClassAndPackage() throws Exception {
+        Event event = newEvent(new TestEvent(), PACKAGE_NAME);
+        Event otherPackageEvent = newEvent(new TestEvent(), OTHER_PACKAGE_NAME);
+        Event otherClassEvent = newEvent(new OtherTestEvent(), PACKAGE_NAME);
+
+        logAndWait(event, otherPackageEvent, otherClassEvent);
+
+        assertThat(mEvents.getEvents(TestEvent.class, PACKAGE_NAME)).contains(event);
+        assertThat(mEvents.getEvents(TestEvent.class, PACKAGE_NAME))
+                .containsNoneOf(otherPackageEvent, otherClassEvent);
+        assertThat(mEvents.getEvents(TestEvent.class, OTHER_PACKAGE_NAME))
+                .contains(otherPackageEvent);
+        assertThat(mEvents.getEvents(OtherTestEvent.class, PACKAGE_NAME))
+                .contains(otherClassEvent);
+    }
+
+    @Test
+    public void getEvents_noEventLogged_returnsEmptyQueue() {
+        assertThat(mEvents.getEvents(TestEvent.class, "com.android.eventlib.tests.nothing"))
+                .isEmpty();
+    }
+
+    @Test
+    public void registerEventListener_returnsLoggedEventsAndNotifiesNewEvents()
+            throws Exception {
+        Event loggedEvent = newEvent(new OtherTestEvent(), OTHER_PACKAGE_NAME);
+        logAndWait(loggedEvent);
+
+        BlockingQueue<Event> newEvents = new LinkedBlockingQueue<>();
+        Events.EventListener listener = newEvents::add;
+        mListeners.add(listener);
+        assertThat(mEvents.registerEventListener(
+                listener, OtherTestEvent.class, OTHER_PACKAGE_NAME)).contains(loggedEvent);
+
+        Event newEvent = newEvent(new OtherTestEvent(), OTHER_PACKAGE_NAME);
+        mEvents.log(newEvent);
+
+        Event received = newEvents.poll(LOG_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        while (received != null && received != newEvent) {
+            received = newEvents.poll(LOG_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+        assertThat(received).isSameInstanceAs(newEvent);
+    }
+
+    private static Event newEvent(Event event, String packageName) {
+        event.mPackageName = packageName;
+        event.mTimestamp = Instant.now();
+        return event;
+    }
+
+    /** Logs the events, and waits until the last one is indexed. */
+    private void logAndWait(Event... events) throws InterruptedException {
+        BlockingQueue<Event> logged = new LinkedBlockingQueue<>();
+        Events.EventListener listener = logged::add;
+        mListeners.add(listener);
+        mEvents.registerEventListener(listener, TestEvent.class, PACKAGE_NAME);
+        for (Event event : events) {
+            mEvents.log(event);
+        }
+
+        Event last = events[events.length - 1];
+        Event received = logged.poll(LOG_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        while (received != null && received != last) {
+            received = logged.poll(LOG_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+        assertThat(received).isSameInstanceAs(last);
+    }
+}
@@ -273,6 +273,11 @@ public final class BedsteadJUnit4 extends BlockJUnit4ClassRunner {
         return false;
     }
 
+    // Set from computeTestMethods, which is called by the superclass constructor, so these must
+    // not have initializers
+    private long mEstimatedUnscheduledSetupMs;
+    private long mEstimatedScheduledSetupMs;
+
     public BedsteadJUnit4(Class<?> testClass) throws InitializationError {
         super(testClass);
     }
@@ -327,7 +332,7 @@ public final class BedsteadJUnit4 extends BlockJUnit4ClassRunner {
 
         sortMethodsByBedsteadAnnotations(modifiedTests);
 
-        return modifiedTests;
+        return scheduleMethodsByStateChangeCost(modifiedTests);
     }
 
     private static List<FrameworkMethod> generateGeneralParameterisationMethods(
@@ -444,6 +449,24 @@ public final class BedsteadJUnit4 extends BlockJUnit4ClassRunner {
         });
     }
 
+    /**
+     * Reorder methods so that expensive state changes (e.g. creating users) happen as rarely as
+     * possible.
+     *
+     * <p>The order from {@link #sortMethodsByBedsteadAnnotations(List)} is used to break ties, so
+     * tests which are not annotated for bedstead still run first.
+     */
+    private List<FrameworkMethod> scheduleMethodsByStateChangeCost(
+            List<FrameworkMethod> modifiedTests) {
+        TestScheduler scheduler = new TestScheduler(BEDSTEAD_PACKAGE_NAME);
+        List<FrameworkMethod> scheduledTests = scheduler.schedule(modifiedTests);
+
+        mEstimatedUnscheduledSetupMs = scheduler.originalCostMs();
+        mEstimatedScheduledSetupMs = scheduler.scheduledCostMs();
+
+        return scheduledTests;
+    }
+
     private List<Annotation> bedsteadAnnotationsSortedByMostCommon(List<FrameworkMethod> methods) {
         Map<Annotation, Integer> annotationCounts = countAnnotations(methods);
         List<Annotation> annotations = new ArrayList<>(annotationCounts.keySet());
@@ -721,6 +744,8 @@ public final class BedsteadJUnit4 extends BlockJUnit4ClassRunner {
 
                 harrierRule.setSkipTestTeardown(true);
                 harrierRule.setUsingBedsteadJUnit4(true);
+                harrierRule.setEstimatedSetupCosts(
+                        mEstimatedUnscheduledSetupMs, mEstimatedScheduledSetupMs);
 
                 break;
             }
@@ -24,4 +24,9 @@ public abstract class HarrierRule implements TestRule {
     abstract void setSkipTestTeardown(boolean skipTestTeardown);
     /** Set that we are using the BedsteadJUnit4 test runner. */
     abstract void setUsingBedsteadJUnit4(boolean usingBedsteadJUnit4);
+    /**
+     * Set the estimated time spent changing state between tests, without and with ordering the
+     * tests to reduce state changes.
+     */
+    abstract void setEstimatedSetupCosts(long unscheduledMs, long scheduledMs);
 }
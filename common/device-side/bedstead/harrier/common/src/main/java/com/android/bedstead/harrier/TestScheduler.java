@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.bedstead.harrier;
+
+import com.android.bedstead.harrier.annotations.EnsureHasNoSecondaryUser;
+import com.android.bedstead.harrier.annotations.EnsureHasNoTvProfile;
+import com.android.bedstead.harrier.annotations.EnsureHasNoWorkProfile;
+import com.android.bedstead.harrier.annotations.EnsureHasSecondaryUser;
+import com.android.bedstead.harrier.annotations.EnsureHasTvProfile;
+import com.android.bedstead.harrier.annotations.EnsureHasWorkProfile;
+import com.android.bedstead.harrier.annotations.EnsurePackageNotInstalled;
+import com.android.bedstead.harrier.annotations.EnsureTestAppInstalled;
+import com.android.bedstead.harrier.annotations.enterprise.EnsureHasDelegate;
+import com.android.bedstead.harrier.annotations.enterprise.EnsureHasDeviceOwner;
+import com.android.bedstead.harrier.annotations.enterprise.EnsureHasNoDelegate;
+import com.android.bedstead.harrier.annotations.enterprise.EnsureHasNoDeviceOwner;
+import com.android.bedstead.harrier.annotations.enterprise.EnsureHasNoDpc;
+import com.android.bedstead.harrier.annotations.enterprise.EnsureHasNoProfileOwner;
+import com.android.bedstead.harrier.annotations.enterprise.EnsureHasProfileOwner;
+
+import org.junit.runners.model.FrameworkMethod;
+
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Orders test methods to reduce the time spent changing device state between tests.
+ *
+ * <p>The state required by a test is described by its bedstead annotations. Each annotation sets
+ * one dimension of the device state, e.g. {@link EnsureHasWorkProfile} and
+ * {@link EnsureHasNoWorkProfile} both set whether there is a work profile. When tests are run
+ * with {@link BedsteadJUnit4} the state is kept between tests, so a test only pays for the
+ * dimensions which differ from the state left by the previous tests.
+ *
+ * <p>Changing some dimensions is much more expensive than others, e.g. creating a work profile
+ * takes seconds while granting a permission takes milliseconds. Tests are ordered greedily: the
+ * next test is always the one which is cheapest to reach from the current state, with ties
+ * broken by the original order.
+ */
+final class TestScheduler {
+
+    // Rough cost of changing each kind of state, only used to compare orders
+    private static final long USER_COST_MS = 10_000;
+    private static final long DPC_COST_MS = 5_000;
+    private static final long PACKAGE_COST_MS = 1_000;
+    private static final long DEFAULT_COST_MS = 50;
+
+    /** Dimensions which are shared by several annotation types. */
+    private static final Map<Class<? extends Annotation>, String> sSharedDimensions =
+            new HashMap<>();
+    private static final Map<Class<? extends Annotation>, Long> sCosts = new HashMap<>();
+
+    static {
+        addDimension("workProfile", USER_COST_MS,
+                EnsureHasWorkProfile.class, EnsureHasNoWorkProfile.class);
+        addDimension("secondaryUser", USER_COST_MS,
+                EnsureHasSecondaryUser.class, EnsureHasNoSecondaryUser.class);
+        addDimension("tvProfile", USER_COST_MS,
+                EnsureHasTvProfile.class, EnsureHasNoTvProfile.class);
+        addDimension("deviceOwner", DPC_COST_MS,
+                EnsureHasDeviceOwner.class, EnsureHasNoDeviceOwner.class, EnsureHasNoDpc.class);
+        addDimension("profileOwner", DPC_COST_MS,
+                EnsureHasProfileOwner.class, EnsureHasNoProfileOwner.class);
+        addDimension("delegate", PACKAGE_COST_MS,
+                EnsureHasDelegate.class, EnsureHasNoDelegate.class);
+        sCosts.put(EnsureTestAppInstalled.class, PACKAGE_COST_MS);
+        sCosts.put(EnsurePackageNotInstalled.class, PACKAGE_COST_MS);
+    }
+
+    @SafeVarargs
+    private static void addDimension(
+            String dimension, long cost, Class<? extends Annotation>... annotationTypes) {
+        for (Class<? extends Annotation> annotationType : annotationTypes) {
+            sSharedDimensions.put(annotationType, dimension);
+            sCosts.put(annotationType, cost);
+        }
+    }
+
+    private final String mBedsteadPackageName;
+    private long mOriginalCostMs;
+    private long mScheduledCostMs;
+
+    TestScheduler(String bedsteadPackageName) {
+        mBedsteadPackageName = bedsteadPackageName;
+    }
+
+    /** Estimated cost of state changes when running the tests in the order passed in. */
+    long originalCostMs() {
+        return mOriginalCostMs;
+    }
+
+    /** Estimated cost of state changes when running the tests in the order returned. */
+    long scheduledCostMs() {
+        return mScheduledCostMs;
+    }
+
+    /** Returns the tests in the order which should be run. */
+    List<FrameworkMethod> schedule(List<FrameworkMethod> methods) {
+        // Tests requiring the same state are always run together, in the original order.
+        Map<Map<Object, Annotation>, List<FrameworkMethod>> groups = new LinkedHashMap<>();
+        for (FrameworkMethod method : methods) {
+            groups.computeIfAbsent(requiredState(method), k -> new ArrayList<>()).add(method);
+        }
+
+        List<Map<Object, Annotation>> remaining = new ArrayList<>(groups.keySet());
+        Map<Object, Annotation> state = new HashMap<>();
+        List<FrameworkMethod> scheduled = new ArrayList<>(methods.size());
+        mScheduledCostMs = 0;
+        while (!remaining.isEmpty()) {
+            int next = 0;
+            long nextCost = Long.MAX_VALUE;
+            for (int i = 0; i < remaining.size() && nextCost > 0; i++) {
+                long cost = transitionCost(state, remaining.get(i));
+                if (cost < nextCost) {
+                    next = i;
+                    nextCost = cost;
+                }
+            }
+            Map<Object, Annotation> requiredState = remaining.remove(next);
+            mScheduledCostMs += nextCost;
+            state.putAll(requiredState);
+            scheduled.addAll(groups.get(requiredState));
+        }
+
+        mOriginalCostMs = 0;
+        state.clear();
+        for (FrameworkMethod method : methods) {
+            Map<Object, Annotation> requiredState = requiredState(method);
+            mOriginalCostMs += transitionCost(state, requiredState);
+            state.putAll(requiredState);
+        }
+
+        return scheduled;
+    }
+
+    /** Map from dimension to the annotation setting it. */
+    private Map<Object, Annotation> requiredState(FrameworkMethod method) {
+        Map<Object, Annotation> state = new HashMap<>();
+        for (Annotation annotation : method.getAnnotations()) {
+            if (annotation instanceof DynamicParameterizedAnnotation
+                    || !annotation.annotationType().getName().startsWith(mBedsteadPackageName)) {
+                continue;
+            }
+            // Annotations which are not shared only conflict with themselves, and may be repeated
+            // with different values, e.g. to require several permissions.
+            Object dimension = sSharedDimensions.get(annotation.annotationType());
+            state.put(dimension == null ? annotation : dimension, annotation);
+        }
+        return state;
+    }
+
+    private static long transitionCost(
+            Map<Object, Annotation> state, Map<Object, Annotation> requiredState) {
+        long cost = 0;
+        for (Map.Entry<Object, Annotation> entry : requiredState.entrySet()) {
+            if (!entry.getValue().equals(state.get(entry.getKey()))) {
+                cost += sCosts.getOrDefault(entry.getValue().annotationType(), DEFAULT_COST_MS);
+            }
+        }
+        return cost;
+    }
+}
@@ -38,6 +38,7 @@ import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Build;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.Nullable;
@@ -100,6 +101,7 @@ import com.android.bedstead.nene.permissions.PermissionContext;
 import com.android.bedstead.nene.permissions.PermissionContextImpl;
 import com.android.bedstead.nene.users.UserBuilder;
 import com.android.bedstead.nene.users.UserReference;
+import com.android.bedstead.nene.utils.Poll;
 import com.android.bedstead.nene.utils.ShellCommand;
 import com.android.bedstead.nene.utils.Tags;
 import com.android.bedstead.nene.utils.Versions;
@@ -183,6 +185,10 @@ public final class DeviceState extends HarrierRule {
     private boolean mSkipTests;
     private boolean mFailTests;
     private boolean mUsingBedsteadJUnit4 = false;
+    // Estimated by BedsteadJUnit4, compared against the actual time spent applying annotations
+    private long mEstimatedUnscheduledSetupMs = -1;
+    private long mEstimatedScheduledSetupMs = -1;
+    private long mTestSetupMs;
     private String mSkipTestsReason;
     private String mFailTestsReason;
     // The minimum version supported by tests, defaults to current version
@@ -246,6 +252,12 @@ public final class DeviceState extends HarrierRule {
         mUsingBedsteadJUnit4 = usingBedsteadJUnit4;
     }
 
+    @Override
+    void setEstimatedSetupCosts(long unscheduledMs, long scheduledMs) {
+        mEstimatedUnscheduledSetupMs = unscheduledMs;
+        mEstimatedScheduledSetupMs = scheduledMs;
+    }
+
     @Override
     public Statement apply(Statement base, Description description) {
         if (description.isTest()) {
@@ -305,7 +317,12 @@ public final class DeviceState extends HarrierRule {
 
             mMinSdkVersionCurrentTest = mMinSdkVersion;
             List<Annotation> annotations = getAnnotations(description);
-            applyAnnotations(annotations, /* isTest= */ true);
+            long setupStartMs = SystemClock.elapsedRealtime();
+            try {
+                applyAnnotations(annotations, /* isTest= */ true);
+            } finally {
+                mTestSetupMs += SystemClock.elapsedRealtime() - setupStartMs;
+            }
 
             Log.d(LOG_TAG, "Finished preparing state for test " + testName);
 
@@ -320,6 +337,22 @@ public final class DeviceState extends HarrierRule {
         }
     }
 
+    private void logSetupCosts(Description description) {
+        if (mEstimatedScheduledSetupMs < 0) {
+            return;
+        }
+        Log.i(LOG_TAG, "Test setup for suite " + description.getClassName() + " took "
+                + mTestSetupMs + "ms. Estimated " + mEstimatedScheduledSetupMs
+                + "ms in scheduled order, " + mEstimatedUnscheduledSetupMs
+                + "ms in unscheduled order");
+    }
+
+    private static void logPollStats(Description description) {
+        Log.i(LOG_TAG, "Time spent polling in suite " + description.getClassName()
+                + " by call site:\n" + Poll.stats());
+        Poll.resetStats();
+    }
+
     private void applyAnnotations(List<Annotation> annotations, boolean isTest)
             throws Throwable {
         Log.i(LOG_TAG, "Applying annotations: " + annotations);
@@ -855,6 +888,7 @@ public final class DeviceState extends HarrierRule {
                 }
 
                 Log.d(LOG_TAG, "Preparing state for suite " + description.getClassName());
+                mTestSetupMs = 0;
 
                 Tags.clearTags();
                 Tags.addTag(Tags.USES_DEVICESTATE);
@@ -895,6 +929,8 @@ public final class DeviceState extends HarrierRule {
 
                     base.evaluate();
                 } finally {
+                    logSetupCosts(description);
+                    logPollStats(description);
                     runAnnotatedMethods(testClass, AfterClass.class);
 
                     if (permissionContext != null) {
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.bedstead.harrier;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.bedstead.harrier.annotations.EnsureHasNoWorkProfile;
+import com.android.bedstead.harrier.annotations.EnsureHasPermission;
+import com.android.bedstead.harrier.annotations.EnsureHasSecondaryUser;
+import com.android.bedstead.harrier.annotations.EnsureHasWorkProfile;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.junit.runners.model.FrameworkMethod;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(JUnit4.class)
+public class TestSchedulerTest {
+
+    private static final String BEDSTEAD_PACKAGE_NAME = "com.android.bedstead";
+
+    /** Methods which are only used for their annotations. */
+    public static final class Methods {
+        public void unannotated1() {
+        }
+
+        public void unannotated2() {
+        }
+
+        @EnsureHasWorkProfile
+        public void workProfile1() {
+        }
+
+        @EnsureHasWorkProfile
+        public void workProfile2() {
+        }
+
+        @EnsureHasNoWorkProfile
+        public void noWorkProfile1() {
+        }
+
+        @EnsureHasNoWorkProfile
+        public void noWorkProfile2() {
+        }
+
+        @EnsureHasSecondaryUser
+        public void secondaryUser() {
+        }
+
+        @EnsureHasWorkProfile
+        @EnsureHasPermission("permission")
+        public void workProfileWithPermission() {
+        }
+    }
+
+    private static FrameworkMethod method(String name) {
+        try {
+            return new FrameworkMethod(Methods.class.getMethod(name));
+        } catch (NoSuchMethodException e) {
+            throw new AssertionError("Missing test method " + name, e);
+        }
+    }
+
+    private static List<FrameworkMethod> methods(String... names) {
+        List<FrameworkMethod> methods = new ArrayList<>();
+        for (String name : names) {
+            methods.add(method(name));
+        }
+        return methods;
+    }
+
+    @Test
+    public void schedule_keepsEveryMethod() {
+        List<FrameworkMethod> methods = methods("secondaryUser", "workProfile1",
+                "unannotated1", "noWorkProfile1", "workProfileWithPermission", "workProfile2",
+                "unannotated2", "noWorkProfile2");
+
+        List<FrameworkMethod> scheduled =
+                new TestScheduler(BEDSTEAD_PACKAGE_NAME).schedule(methods);
+
+        assertThat(scheduled).containsExactlyElementsIn(methods);
+    }
+
+    @Test
+    public void schedule_groupsMethodsRequiringTheSameState() {
+        TestScheduler scheduler = new TestScheduler(BEDSTEAD_PACKAGE_NAME);
+
+        List<FrameworkMethod> scheduled = scheduler.schedule(methods(
+                "workProfile1", "noWorkProfile1", "workProfile2", "noWorkProfile2"));
+
+        assertThat(scheduled).containsExactlyElementsIn(methods(
+                "workProfile1", "workProfile2", "noWorkProfile1", "noWorkProfile2")).inOrder();
+        assertThat(scheduler.scheduledCostMs()).isLessThan(scheduler.originalCostMs());
+    }
+
+    @Test
+    public void schedule_runsUnannotatedMethodsFirstInOriginalOrder() {
+        List<FrameworkMethod> scheduled = new TestScheduler(BEDSTEAD_PACKAGE_NAME).schedule(
+                methods("workProfile1", "unannotated2", "unannotated1"));
+
+        assertThat(scheduled).containsExactlyElementsIn(
+                methods("unannotated2", "unannotated1", "workProfile1")).inOrder();
+    }
+
+    @Test
+    public void schedule_prefersCheapestStateChange() {
+        // After the work profile is created, granting a permission is cheaper than creating a
+        // secondary user
+        List<FrameworkMethod> scheduled = new TestScheduler(BEDSTEAD_PACKAGE_NAME).schedule(
+                methods("workProfile1", "secondaryUser", "workProfileWithPermission"));
+
+        assertThat(scheduled).containsExactlyElementsIn(methods(
+                "workProfile1", "workProfileWithPermission", "secondaryUser")).inOrder();
+    }
+
+    @Test
+    public void schedule_tiesKeepOriginalOrder() {
+        List<FrameworkMethod> scheduled = new TestScheduler(BEDSTEAD_PACKAGE_NAME).schedule(
+                methods("secondaryUser", "workProfile1"));
+
+        assertThat(scheduled).containsExactlyElementsIn(
+                methods("secondaryUser", "workProfile1")).inOrder();
+    }
+
+    @Test
+    public void schedule_isDeterministic() {
+        List<FrameworkMethod> methods = methods("noWorkProfile1", "secondaryUser",
+                "workProfileWithPermission", "unannotated1", "workProfile1", "noWorkProfile2",
+                "workProfile2", "unannotated2");
+        TestScheduler scheduler = new TestScheduler(BEDSTEAD_PACKAGE_NAME);
+
+        List<FrameworkMethod> first = scheduler.schedule(methods);
+        long firstCostMs = scheduler.scheduledCostMs();
+        List<FrameworkMethod> second =
+                new TestScheduler(BEDSTEAD_PACKAGE_NAME).schedule(new ArrayList<>(methods));
+
+        assertThat(second).containsExactlyElementsIn(first).inOrder();
+        assertThat(scheduler.schedule(methods)).containsExactlyElementsIn(first).inOrder();
+        assertThat(scheduler.scheduledCostMs()).isEqualTo(firstCostMs);
+    }
+}
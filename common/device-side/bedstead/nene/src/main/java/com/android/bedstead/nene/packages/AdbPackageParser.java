@@ -21,6 +21,8 @@ import android.os.Build;
 
 import com.android.bedstead.nene.exceptions.AdbParseException;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.util.Map;
 import java.util.Set;
 
@@ -42,5 +44,6 @@ interface AdbPackageParser {
         Set<String> mFeatures;
     }
 
-    ParseResult parse(String dumpsysPackageOutput) throws AdbParseException;
+    /** Parse the output as it is read, the reader may be left before the end of the output. */
+    ParseResult parse(BufferedReader dumpsysPackageOutput) throws IOException, AdbParseException;
 }
@@ -16,8 +16,6 @@
 
 package com.android.bedstead.nene.packages;
 
-import static com.android.bedstead.nene.utils.ParserUtils.extractIndentedSections;
-
 import android.os.Build;
 
 import androidx.annotation.RequiresApi;
@@ -26,16 +24,20 @@ import com.android.bedstead.nene.TestApis;
 import com.android.bedstead.nene.exceptions.AdbParseException;
 import com.android.bedstead.nene.users.UserReference;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Parser for `adb dumpsys package` on Android O+.
  *
+ * <p>The output is several megabytes so it is parsed line by line as it is read from the shell,
+ * without collecting it or sections of it. Only the values which are kept (feature, package and
+ * permission names) are extracted as new strings, and reading stops after the package list.
+ *
  * <p>This class is structured so that future changes in ADB output can be dealt with by extending
  * this class and overriding the appropriate section parsers.
  */
@@ -43,144 +45,249 @@ import java.util.regex.Pattern;
 public class AdbPackageParser26 implements AdbPackageParser {
 
     private static final int PACKAGE_LIST_BASE_INDENTATION = 2;
+    private static final int PACKAGE_SECTION_INDENTATION = 4;
+    private static final int USER_SECTION_INDENTATION = 6;
+
+    private static final String FEATURES_HEADER = "Features:";
+    private static final String PACKAGES_HEADER = "Packages:";
+
+    /** The package section the lines being read are in. */
+    private enum Section {
+        OTHER, INSTALL_PERMISSIONS, USER, RUNTIME_PERMISSIONS
+    }
 
     AdbPackageParser26() {
     }
 
     @Override
-    public ParseResult parse(String dumpsysPackageOutput) throws AdbParseException {
+    public ParseResult parse(BufferedReader dumpsysPackageOutput)
+            throws IOException, AdbParseException {
         ParseResult parseResult = new ParseResult();
-        parseResult.mFeatures = parseFeatures(dumpsysPackageOutput);
-        parseResult.mPackages = parsePackages(dumpsysPackageOutput);
+        LineReader lines = new LineReader(dumpsysPackageOutput);
+        while ((parseResult.mFeatures == null || parseResult.mPackages == null) && lines.next()) {
+            if (lines.line().equals(FEATURES_HEADER)) {
+                parseResult.mFeatures = parseFeatures(lines);
+            } else if (lines.line().equals(PACKAGES_HEADER)) {
+                parseResult.mPackages = parsePackages(lines);
+            }
+        }
+
+        if (parseResult.mFeatures == null) {
+            throw new AdbParseException("Error extracting features list", FEATURES_HEADER);
+        }
+        if (parseResult.mPackages == null) {
+            throw new AdbParseException("Error extracting packages list", PACKAGES_HEADER);
+        }
         return parseResult;
     }
 
-    Set<String> parseFeatures(String dumpsysPackageOutput) throws AdbParseException {
-        String featuresList = extractFeaturesList(dumpsysPackageOutput);
+    /** Parse the lines after {@link #FEATURES_HEADER}, up to the first empty line. */
+    Set<String> parseFeatures(LineReader lines) throws IOException {
         Set<String> features = new HashSet<>();
-        for (String featureLine : featuresList.split("\n")) {
-            features.add(featureLine.trim());
+        while (lines.next() && !lines.isEmpty()) {
+            features.add(lines.trimmed());
         }
         return features;
     }
 
-    String extractFeaturesList(String dumpsysPackageOutput) throws AdbParseException {
-        try {
-            return dumpsysPackageOutput.split("Features:\n", 2)[1].split("\n\n", 2)[0];
-        } catch (IndexOutOfBoundsException e) {
-            throw new AdbParseException("Error extracting features list", dumpsysPackageOutput, e);
-        }
-    }
-
-    Map<String, AdbPackage> parsePackages(String dumpsysUsersOutput) throws AdbParseException {
-        String packagesList = extractPackagesList(dumpsysUsersOutput);
-
-        Set<String> packageStrings = extractPackageStrings(packagesList);
+    /** Parse the lines after {@link #PACKAGES_HEADER}, up to the first empty line. */
+    Map<String, AdbPackage> parsePackages(LineReader lines)
+            throws IOException, AdbParseException {
         Map<String, AdbPackage> packages = new HashMap<>();
-        for (String packageString : packageStrings) {
-            AdbPackage pkg = new AdbPackage(parsePackage(packageString));
-            packages.put(pkg.packageName(), pkg);
+        AdbPackage.MutablePackage pkg = null;
+        AdbPackage.MutableUserPackage userPackage = null;
+        Section section = Section.OTHER;
+
+        while (lines.next() && !lines.isEmpty()) {
+            int indentation = lines.indentation();
+            if (indentation == PACKAGE_LIST_BASE_INDENTATION) {
+                if (pkg != null) {
+                    packages.put(pkg.mPackageName, new AdbPackage(pkg));
+                }
+                pkg = parsePackageHeader(lines);
+                section = Section.OTHER;
+            } else if (pkg == null) {
+                throw new AdbParseException("Error extracting packages list", lines.line());
+            } else if (indentation == PACKAGE_SECTION_INDENTATION) {
+                if (lines.startsWith("install permissions")) {
+                    section = Section.INSTALL_PERMISSIONS;
+                } else if (lines.startsWith("User ")) {
+                    userPackage = parseUser(lines, pkg);
+                    // Sections of users the package is not installed on are skipped
+                    section = userPackage == null ? Section.OTHER : Section.USER;
+                } else {
+                    section = Section.OTHER;
+                }
+            } else if (indentation > PACKAGE_SECTION_INDENTATION) {
+                switch (section) {
+                    case INSTALL_PERMISSIONS:
+                        parsePermission(lines, pkg.mInstallPermissions);
+                        break;
+                    case USER:
+                    case RUNTIME_PERMISSIONS:
+                        if (indentation == USER_SECTION_INDENTATION) {
+                            section = lines.startsWith("runtime permissions:")
+                                    ? Section.RUNTIME_PERMISSIONS : Section.USER;
+                        } else if (section == Section.RUNTIME_PERMISSIONS) {
+                            parsePermission(lines, userPackage.mGrantedPermissions);
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        if (pkg != null) {
+            packages.put(pkg.mPackageName, new AdbPackage(pkg));
         }
         return packages;
     }
 
-    String extractPackagesList(String dumpsysPackageOutput) throws AdbParseException {
-        try {
-            return dumpsysPackageOutput.split("\nPackages:\n", 2)[1].split("\n\n", 2)[0];
-        } catch (IndexOutOfBoundsException e) {
-            throw new AdbParseException("Error extracting packages list", dumpsysPackageOutput, e);
+    /** Parse a line such as "  Package [com.android.example] (5b6b2a8):". */
+    AdbPackage.MutablePackage parsePackageHeader(LineReader lines) throws AdbParseException {
+        int nameStart = lines.indexOf('[', lines.contentStart()) + 1;
+        int nameEnd = lines.indexOf(']', nameStart);
+        if (nameStart == 0 || nameEnd == -1) {
+            throw new AdbParseException("Error parsing package", lines.line());
         }
-    }
 
-    Set<String> extractPackageStrings(String packagesList) throws AdbParseException {
-        return extractIndentedSections(packagesList, PACKAGE_LIST_BASE_INDENTATION);
+        AdbPackage.MutablePackage pkg = new AdbPackage.MutablePackage();
+        pkg.mPackageName = lines.substring(nameStart, nameEnd);
+        pkg.mInstalledOnUsers = new HashMap<>();
+        pkg.mInstallPermissions = new HashSet<>();
+        return pkg;
     }
 
-    private static final Pattern USER_INSTALLED_PATTERN =
-            Pattern.compile("User (\\d+):.*?installed=(\\w+)");
-
-    AdbPackage.MutablePackage parsePackage(String packageString) throws AdbParseException {
-        try {
-            String packageName = packageString.split("\\[", 2)[1].split("]", 2)[0];
-            AdbPackage.MutablePackage pkg = new AdbPackage.MutablePackage();
-            pkg.mPackageName = packageName;
-            pkg.mInstalledOnUsers = new HashMap<>();
-            pkg.mInstallPermissions = new HashSet<>();
-
-            Set<String> sections = extractIndentedSections(
-                    packageString.split("\n", 2)[1], // Remove first line (package name)
-                    /* baseIndentation= */ 4);
-
-            for (String section : sections) {
-                if (section.startsWith("install permissions")) {
-                    parseInstallPermissions(section, pkg);
-                } else if (section.startsWith("User ")) {
-                    parseUser(section, pkg);
-                }
-            }
-
-            return pkg;
-        } catch (IndexOutOfBoundsException | NumberFormatException e) {
-            throw new AdbParseException("Error parsing package", packageString, e);
+    /**
+     * Parse a line such as "      android.permission.INTERNET: granted=true" and add the
+     * permission to {@code grantedPermissions} if it is granted.
+     */
+    void parsePermission(LineReader lines, Set<String> grantedPermissions)
+            throws AdbParseException {
+        int nameEnd = lines.indexOf(':', lines.contentStart());
+        if (nameEnd == -1) {
+            throw new AdbParseException("Error parsing permission", lines.line());
         }
-    }
-
-    void parseInstallPermissions(String section, AdbPackage.MutablePackage pkg) {
-        String list = section.split("\n", 2)[1]; // remove header
-        for (String item : list.split("\n")) {
-            String[] trimmed = item.trim().split(":", 2);
-            String permissionName = trimmed[0];
 
-            if (trimmed[1].contains("granted=true")) {
-                pkg.mInstallPermissions.add(permissionName);
-            }
+        if (lines.contains("granted=true", nameEnd)) {
+            grantedPermissions.add(lines.substring(lines.contentStart(), nameEnd).trim());
         }
     }
 
-    void parseUser(String section, AdbPackage.MutablePackage pkg) throws AdbParseException {
-        Matcher userInstalledMatcher = USER_INSTALLED_PATTERN.matcher(section);
-        if (!userInstalledMatcher.find()) {
-            throw new AdbParseException("Error parsing user section in package", section);
+    /**
+     * Parse a line such as "    User 0: ceDataInode=1234 installed=true hidden=false ...".
+     *
+     * @return the user package which permissions should be added to, or {@code null} if the
+     * package is not installed for the user.
+     */
+    AdbPackage.MutableUserPackage parseUser(LineReader lines, AdbPackage.MutablePackage pkg)
+            throws AdbParseException {
+        int idStart = lines.contentStart() + "User ".length();
+        int idEnd = idStart;
+        while (idEnd < lines.end() && Character.isDigit(lines.charAt(idEnd))) {
+            idEnd++;
+        }
+        int installedStart = lines.indexOf("installed=", idEnd);
+        if (idEnd == idStart || lines.charAt(idEnd) != ':' || installedStart == -1) {
+            throw new AdbParseException("Error parsing user section in package", lines.line());
         }
-        int userId = Integer.parseInt(userInstalledMatcher.group(1));
-        boolean isInstalled = Boolean.parseBoolean(userInstalledMatcher.group(2));
+        installedStart += "installed=".length();
 
-        if (!isInstalled) {
-            return;
+        if (!lines.regionMatches(installedStart, "true")) {
+            return null;
         }
 
+        int userId = Integer.parseInt(lines.substring(idStart, idEnd));
         UserReference user = TestApis.users().find(userId);
         AdbPackage.MutableUserPackage userPackage = new AdbPackage.MutableUserPackage();
         userPackage.mGrantedPermissions = new HashSet<>();
         pkg.mInstalledOnUsers.put(user, userPackage);
+        return userPackage;
+    }
 
+    /**
+     * Reads lines one at a time, giving access to the current line without copying it.
+     *
+     * <p>Positions passed to and returned from this class are indexes into the current line.
+     */
+    static final class LineReader {
+        private final BufferedReader mReader;
+        private String mLine;
+        private int mContentStart;
+
+        LineReader(BufferedReader reader) {
+            mReader = reader;
+        }
 
-        try {
-            String[] sectionParts = section.split("\n", 2); // remove header
+        /** Move to the next line, returns {@code false} if there are no more lines. */
+        boolean next() throws IOException {
+            mLine = mReader.readLine();
+            if (mLine == null) {
+                return false;
+            }
 
-            if (sectionParts.length < 2) {
-                return; // No content - just the header
+            mContentStart = 0;
+            while (mContentStart < mLine.length() && mLine.charAt(mContentStart) <= ' ') {
+                mContentStart++;
             }
+            return true;
+        }
 
-            Set<String> userSections = extractIndentedSections(
-                    sectionParts[1], // Remove first line (user name)
-                    /* baseIndentation= */ 6);
+        boolean isEmpty() {
+            return mLine.isEmpty();
+        }
 
-            for (String userSection : userSections) {
-                if (userSection.startsWith("runtime permissions:")) {
-                    String list = userSection.split("\n", 2)[1]; // remove header
-                    for (String item : list.split("\n")) {
-                        String[] trimmed = item.trim().split(":", 2);
-                        String permissionName = trimmed[0];
+        /** The number of whitespace characters before the content of the line. */
+        int indentation() {
+            return mContentStart;
+        }
 
-                        if (trimmed[1].contains("granted=true")) {
-                            userPackage.mGrantedPermissions.add(permissionName);
-                        }
-                    }
-                }
-            }
-        } catch (IndexOutOfBoundsException e) {
-            throw new AdbParseException("Error parsing user section", section, e);
+        int contentStart() {
+            return mContentStart;
+        }
+
+        int end() {
+            return mLine.length();
+        }
+
+        char charAt(int index) {
+            return index < mLine.length() ? mLine.charAt(index) : '\n';
+        }
+
+        /** {@code true} if the content of the line starts with {@code prefix}. */
+        boolean startsWith(String prefix) {
+            return mLine.startsWith(prefix, mContentStart);
+        }
+
+        boolean regionMatches(int from, String other) {
+            return mLine.startsWith(other, from);
+        }
+
+        /** The index of {@code c} in the line at or after {@code from}, or -1. */
+        int indexOf(char c, int from) {
+            return mLine.indexOf(c, from);
+        }
+
+        /** The index of {@code s} in the line at or after {@code from}, or -1. */
+        int indexOf(String s, int from) {
+            return mLine.indexOf(s, from);
+        }
+
+        boolean contains(String s, int from) {
+            return indexOf(s, from) != -1;
+        }
+
+        /** The content of the line without surrounding whitespace. */
+        String trimmed() {
+            return mLine.substring(mContentStart).trim();
+        }
+
+        String substring(int start, int end) {
+            return mLine.substring(start, end);
+        }
+
+        String line() {
+            return mLine;
         }
     }
 }
@@ -52,7 +52,6 @@ import com.android.bedstead.nene.appops.AppOps;
 import com.android.bedstead.nene.devicepolicy.DeviceOwner;
 import com.android.bedstead.nene.devicepolicy.ProfileOwner;
 import com.android.bedstead.nene.exceptions.AdbException;
-import com.android.bedstead.nene.exceptions.AdbParseException;
 import com.android.bedstead.nene.exceptions.NeneException;
 import com.android.bedstead.nene.permissions.PermissionContext;
 import com.android.bedstead.nene.permissions.Permissions;
@@ -649,24 +648,17 @@ public final class Package {
     }
 
     private ApplicationInfo applicationInfoForUserPreQ(UserReference user, int flags) {
-        try {
-            String dumpsysOutput = ShellCommand.builder("dumpsys package").execute();
-
-            AdbPackageParser.ParseResult r = Packages.sParser.parse(dumpsysOutput);
-            AdbPackage pkg = r.mPackages.get(mPackageName);
+        AdbPackage pkg = Packages.parseDumpsys().mPackages.get(mPackageName);
 
-            if (pkg == null) {
-                return null;
-            }
+        if (pkg == null) {
+            return null;
+        }
 
-            ApplicationInfo applicationInfo = new ApplicationInfo();
-            applicationInfo.packageName = mPackageName;
-            applicationInfo.uid = -1; // TODO: Get the actual uid...
+        ApplicationInfo applicationInfo = new ApplicationInfo();
+        applicationInfo.packageName = mPackageName;
+        applicationInfo.uid = -1; // TODO: Get the actual uid...
 
-            return applicationInfo;
-        } catch (AdbException | AdbParseException e) {
-            throw new NeneException("Error getting package info pre Q", e);
-        }
+        return applicationInfo;
     }
 
     /**
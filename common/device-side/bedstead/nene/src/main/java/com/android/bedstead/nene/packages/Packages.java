@@ -46,13 +46,13 @@ import androidx.annotation.RequiresApi;
 import com.android.bedstead.nene.TestApis;
 import com.android.bedstead.nene.annotations.Experimental;
 import com.android.bedstead.nene.exceptions.AdbException;
-import com.android.bedstead.nene.exceptions.AdbParseException;
 import com.android.bedstead.nene.exceptions.NeneException;
 import com.android.bedstead.nene.permissions.PermissionContext;
 import com.android.bedstead.nene.users.UserReference;
 import com.android.bedstead.nene.utils.BlockingIntentSender;
 import com.android.bedstead.nene.utils.ShellCommand;
 import com.android.bedstead.nene.utils.ShellCommandUtils;
+import com.android.bedstead.nene.utils.Snapshot;
 import com.android.bedstead.nene.utils.Versions;
 import com.android.compatibility.common.util.BlockingBroadcastReceiver;
 
@@ -160,6 +160,12 @@ public final class Packages {
 
     static final AdbPackageParser sParser = AdbPackageParser.get(SDK_INT);
 
+    private static final Snapshot<AdbPackageParser.ParseResult> sCachedDumpsys = new Snapshot<>(
+            "packages", Packages::readDumpsys,
+            packageIntentFilter(Intent.ACTION_PACKAGE_ADDED),
+            packageIntentFilter(Intent.ACTION_PACKAGE_REMOVED),
+            packageIntentFilter(Intent.ACTION_PACKAGE_CHANGED));
+
 
     public Packages() {
         mPackageAddedIntentFilter.addDataScheme("package");
@@ -288,11 +294,14 @@ public final class Packages {
             } catch (InterruptedException e) {
                 Log.e(LOG_TAG, "Interrupted waiting for package installation", e);
             }
+            // Installs through PackageInstaller do not run a shell command
+            sCachedDumpsys.invalidate();
 
             return null;
         }
 
         Intent intent = broadcastReceiver.awaitForBroadcast();
+        sCachedDumpsys.invalidate();
         if (intent == null) {
             throw new NeneException(
                     "Did not receive ACTION_PACKAGE_ADDED broadcast after installing package.");
@@ -556,12 +565,26 @@ public final class Packages {
         return find(TestApis.context().instrumentedContext().getPackageName());
     }
 
+    /**
+     * Get the parsed output of `dumpsys package`.
+     *
+     * <p>This is memoized until packages may have changed, see {@link Snapshot}.
+     */
     static AdbPackageParser.ParseResult parseDumpsys() {
+        return sCachedDumpsys.get();
+    }
+
+    private static AdbPackageParser.ParseResult readDumpsys() {
         try {
-            String dumpsysOutput = ShellCommand.builder("dumpsys package").execute();
-            return Packages.sParser.parse(dumpsysOutput);
-        } catch (AdbException | AdbParseException e) {
+            return ShellCommand.builder("dumpsys package").executeAndParseStream(sParser::parse);
+        } catch (AdbException e) {
             throw new NeneException("Error parsing package dumpsys", e);
         }
     }
+
+    private static IntentFilter packageIntentFilter(String action) {
+        IntentFilter intentFilter = new IntentFilter(action);
+        intentFilter.addDataScheme("package");
+        return intentFilter;
+    }
 }
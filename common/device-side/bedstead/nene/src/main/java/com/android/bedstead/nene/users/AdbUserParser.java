@@ -23,6 +23,8 @@ import androidx.annotation.Nullable;
 
 import com.android.bedstead.nene.exceptions.AdbParseException;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.util.Map;
 
 /**
@@ -51,5 +53,6 @@ interface AdbUserParser {
         @Nullable Map<String, UserType> mUserTypes;
     }
 
-    ParseResult parse(String dumpsysUsersOutput) throws AdbParseException;
+    /** Parse the output as it is read. */
+    ParseResult parse(BufferedReader dumpsysUsersOutput) throws IOException, AdbParseException;
 }
\ No newline at end of file
@@ -16,7 +16,7 @@
 
 package com.android.bedstead.nene.users;
 
-import static com.android.bedstead.nene.utils.ParserUtils.extractIndentedSections;
+import static com.android.bedstead.nene.utils.ParserUtils.readIndentedSections;
 
 import android.os.Build;
 
@@ -24,6 +24,8 @@ import androidx.annotation.RequiresApi;
 
 import com.android.bedstead.nene.exceptions.AdbParseException;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -87,20 +89,41 @@ import java.util.Set;
 @RequiresApi(Build.VERSION_CODES.O)
 public class AdbUserParser26 implements AdbUserParser {
     static final int USER_LIST_BASE_INDENTATION = 2;
+    private static final String USERS_HEADER = "Users:";
 
     AdbUserParser26() {
     }
 
     @Override
-    public ParseResult parse(String dumpsysUsersOutput) throws AdbParseException {
+    public ParseResult parse(BufferedReader dumpsysUsersOutput)
+            throws IOException, AdbParseException {
+        Set<String> userStrings = null;
+        String line;
+        while ((line = dumpsysUsersOutput.readLine()) != null) {
+            if (userStrings == null && line.endsWith(USERS_HEADER)) {
+                userStrings = extractUserStrings(dumpsysUsersOutput);
+            } else {
+                parseSection(line, dumpsysUsersOutput);
+            }
+        }
+        if (userStrings == null) {
+            throw new AdbParseException("Error extracting user list", USERS_HEADER);
+        }
+
         ParseResult parseResult = new ParseResult();
-        parseResult.mUsers = parseUsers(dumpsysUsersOutput);
+        parseResult.mUsers = parseUsers(userStrings);
         return parseResult;
     }
 
-    Map<Integer, AdbUser> parseUsers(String dumpsysUsersOutput) throws AdbParseException {
-        String usersList = extractUsersList(dumpsysUsersOutput);
-        Set<String> userStrings = extractUserStrings(usersList);
+    /**
+     * Called with each line outside of the user list, so that other sections can be read from
+     * {@code dumpsysUsersOutput} when {@code line} is their header.
+     */
+    void parseSection(String line, BufferedReader dumpsysUsersOutput)
+            throws IOException, AdbParseException {
+    }
+
+    Map<Integer, AdbUser> parseUsers(Set<String> userStrings) throws AdbParseException {
         Map<Integer, AdbUser> users = new HashMap<>();
         for (String userString : userStrings) {
             AdbUser user = new AdbUser(parseUser(userString));
@@ -109,16 +132,10 @@ public class AdbUserParser26 implements AdbUserParser {
         return users;
     }
 
-    String extractUsersList(String dumpsysUsersOutput) throws AdbParseException {
-        try {
-            return dumpsysUsersOutput.split("Users:\n", 2)[1].split("\n\n", 2)[0];
-        } catch (IndexOutOfBoundsException e) {
-            throw new AdbParseException("Error extracting user list", dumpsysUsersOutput, e);
-        }
-    }
-
-    Set<String> extractUserStrings(String usersList) throws AdbParseException {
-        return extractIndentedSections(usersList, USER_LIST_BASE_INDENTATION);
+    /** Read the user list, which follows {@link #USERS_HEADER} and ends with an empty line. */
+    Set<String> extractUserStrings(BufferedReader dumpsysUsersOutput)
+            throws IOException, AdbParseException {
+        return readIndentedSections(dumpsysUsersOutput, USER_LIST_BASE_INDENTATION);
     }
 
     AdbUser.MutableUser parseUser(String userString) throws AdbParseException {
@@ -16,7 +16,7 @@
 
 package com.android.bedstead.nene.users;
 
-import static com.android.bedstead.nene.utils.ParserUtils.extractIndentedSections;
+import static com.android.bedstead.nene.utils.ParserUtils.readIndentedSections;
 
 import android.os.Build;
 
@@ -24,10 +24,13 @@ import androidx.annotation.RequiresApi;
 
 import com.android.bedstead.nene.exceptions.AdbParseException;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 /**
  * Parser for "adb dumpsys user" on Android 30+
@@ -253,6 +256,8 @@ import java.util.Set;
 public class AdbUserParser30 extends AdbUserParser26 {
 
     static int USER_TYPES_LIST_BASE_INDENTATION = 4;
+    private static final Pattern USER_TYPES_HEADER =
+            Pattern.compile("User types \\(\\d+ types\\):$");
 
     private Map<String, UserType> mUserTypes;
 
@@ -261,8 +266,9 @@ public class AdbUserParser30 extends AdbUserParser26 {
     }
 
     @Override
-    public ParseResult parse(String dumpsysUsersOutput) throws AdbParseException {
-        mUserTypes = parseUserTypes(dumpsysUsersOutput);
+    public ParseResult parse(BufferedReader dumpsysUsersOutput)
+            throws IOException, AdbParseException {
+        mUserTypes = null;
 
         ParseResult parseResult = super.parse(dumpsysUsersOutput);
         parseResult.mUserTypes = mUserTypes;
@@ -270,6 +276,26 @@ public class AdbUserParser30 extends AdbUserParser26 {
         return parseResult;
     }
 
+    @Override
+    void parseSection(String line, BufferedReader dumpsysUsersOutput)
+            throws IOException, AdbParseException {
+        if (mUserTypes == null && USER_TYPES_HEADER.matcher(line).find()) {
+            mUserTypes = parseUserTypes(dumpsysUsersOutput);
+        } else {
+            super.parseSection(line, dumpsysUsersOutput);
+        }
+    }
+
+    @Override
+    Map<Integer, AdbUser> parseUsers(Set<String> userStrings) throws AdbParseException {
+        // Users are parsed after all of the output is read as the user types are listed after them
+        if (mUserTypes == null) {
+            throw new AdbParseException(
+                    "Error extracting user types list", USER_TYPES_HEADER.pattern());
+        }
+        return super.parseUsers(userStrings);
+    }
+
     @Override
     AdbUser.MutableUser parseUser(String userString) throws AdbParseException {
         // This will be called after parseUserTypes, so the user types are already accessible
@@ -286,9 +312,9 @@ public class AdbUserParser30 extends AdbUserParser26 {
         return user;
     }
 
-    Map<String, UserType> parseUserTypes(String dumpsysUsersOutput) throws AdbParseException {
-        String userTypesList = extractUserTypesList(dumpsysUsersOutput);
-        Set<String> userTypeStrings = extractUserTypesStrings(userTypesList);
+    Map<String, UserType> parseUserTypes(BufferedReader dumpsysUsersOutput)
+            throws IOException, AdbParseException {
+        Set<String> userTypeStrings = extractUserTypesStrings(dumpsysUsersOutput);
 
         Map<String, UserType> userTypes = new HashMap<>();
         for (String userTypeString : userTypeStrings) {
@@ -299,17 +325,10 @@ public class AdbUserParser30 extends AdbUserParser26 {
         return userTypes;
     }
 
-    String extractUserTypesList(String dumpsysUsersOutput) throws AdbParseException {
-        try {
-            return dumpsysUsersOutput.split(
-                    "User types \\(\\d+ types\\):\n", 2)[1].split("\n\n", 2)[0];
-        } catch (IndexOutOfBoundsException e) {
-            throw new AdbParseException("Error extracting user types list", dumpsysUsersOutput, e);
-        }
-    }
-
-    Set<String> extractUserTypesStrings(String userTypesList) throws AdbParseException {
-        return extractIndentedSections(userTypesList, USER_TYPES_LIST_BASE_INDENTATION);
+    /** Read the user types list, which ends with an empty line. */
+    Set<String> extractUserTypesStrings(BufferedReader dumpsysUsersOutput)
+            throws IOException, AdbParseException {
+        return readIndentedSections(dumpsysUsersOutput, USER_TYPES_LIST_BASE_INDENTATION);
     }
 
     UserType.MutableUserType parseUserType(String userTypeString) throws AdbParseException {
@@ -33,6 +33,7 @@ import android.annotation.TargetApi;
 import android.app.KeyguardManager;
 import android.app.admin.DevicePolicyManager;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.pm.UserInfo;
 import android.os.UserHandle;
 import android.os.UserManager;
@@ -152,6 +153,7 @@ public class UserReference implements AutoCloseable {
 
             Poll.forValue("User running unlocked", () -> isRunning() && isUnlocked())
                     .toBeEqualTo(true)
+                    .wakeOnBroadcast(new IntentFilter(Intent.ACTION_USER_UNLOCKED))
                     .errorOnFail()
                     .timeout(Duration.ofMinutes(1))
                     .await();
@@ -30,6 +30,8 @@ import static com.android.bedstead.nene.users.UserType.SYSTEM_USER_TYPE_NAME;
 
 import android.app.ActivityManager;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.pm.UserInfo;
 import android.os.Build;
 import android.os.UserHandle;
@@ -41,12 +43,12 @@ import androidx.annotation.Nullable;
 
 import com.android.bedstead.nene.TestApis;
 import com.android.bedstead.nene.exceptions.AdbException;
-import com.android.bedstead.nene.exceptions.AdbParseException;
 import com.android.bedstead.nene.exceptions.NeneException;
 import com.android.bedstead.nene.permissions.PermissionContext;
 import com.android.bedstead.nene.permissions.Permissions;
 import com.android.bedstead.nene.utils.Poll;
 import com.android.bedstead.nene.utils.ShellCommand;
+import com.android.bedstead.nene.utils.Snapshot;
 import com.android.bedstead.nene.utils.Versions;
 
 import java.time.Duration;
@@ -71,7 +73,10 @@ public final class Users {
     static final int SYSTEM_USER_ID = 0;
     private static final Duration WAIT_FOR_USER_TIMEOUT = Duration.ofMinutes(4);
 
-    private Map<Integer, AdbUser> mCachedUsers = null;
+    private final Snapshot<Map<Integer, AdbUser>> mCachedUsers = new Snapshot<>(
+            "users", this::parseDumpsys,
+            new IntentFilter(Intent.ACTION_USER_ADDED),
+            new IntentFilter(Intent.ACTION_USER_REMOVED));
     private Map<String, UserType> mCachedUserTypes = null;
     private Set<UserType> mCachedUserTypeValues = null;
     private final AdbUserParser mParser;
@@ -88,8 +93,7 @@ public final class Users {
     /** Get all {@link UserReference}s on the device. */
     public Collection<UserReference> all() {
         if (!Versions.meetsMinimumSdkVersionRequirement(S)) {
-            fillCache();
-            return mCachedUsers.keySet().stream().map(UserReference::new)
+            return mCachedUsers.get().keySet().stream().map(UserReference::new)
                     .collect(Collectors.toSet());
         }
 
@@ -292,7 +296,7 @@ public final class Users {
             return;
         }
 
-        fillCache();
+        mCachedUsers.get();
     }
 
     private UserType managedProfileUserType() {
@@ -342,8 +346,7 @@ public final class Users {
         if (Versions.meetsMinimumSdkVersionRequirement(S)) {
             userIds = users().map(ui -> ui.id).collect(Collectors.toSet());
         } else {
-            fillCache();
-            userIds = mCachedUsers.keySet();
+            userIds = mCachedUsers.get().keySet();
         }
 
         int id = 0;
@@ -355,20 +358,20 @@ public final class Users {
         return find(id);
     }
 
-    private void fillCache() {
+    private Map<Integer, AdbUser> parseDumpsys() {
         try {
             // TODO: Replace use of adb on supported versions of Android
-            String userDumpsysOutput = ShellCommand.builder("dumpsys user").execute();
-            AdbUserParser.ParseResult result = mParser.parse(userDumpsysOutput);
+            AdbUserParser.ParseResult result =
+                    ShellCommand.builder("dumpsys user").executeAndParseStream(mParser::parse);
 
-            mCachedUsers = result.mUsers;
+            Map<Integer, AdbUser> users = result.mUsers;
             if (result.mUserTypes != null) {
                 mCachedUserTypes = result.mUserTypes;
             } else {
                 ensureSupportedTypesCacheFilled();
             }
 
-            Iterator<Map.Entry<Integer, AdbUser>> iterator = mCachedUsers.entrySet().iterator();
+            Iterator<Map.Entry<Integer, AdbUser>> iterator = users.entrySet().iterator();
 
             while (iterator.hasNext()) {
                 Map.Entry<Integer, AdbUser> entry = iterator.next();
@@ -408,7 +411,8 @@ public final class Users {
             mCachedUserTypeValues = new HashSet<>();
             mCachedUserTypeValues.addAll(mCachedUserTypes.values());
 
-        } catch (AdbException | AdbParseException e) {
+            return users;
+        } catch (AdbException e) {
             throw new RuntimeException("Error filling cache", e);
         }
     }
@@ -481,8 +485,7 @@ public final class Users {
 
     @Nullable
     AdbUser fetchUser(int id) {
-        fillCache();
-        return mCachedUsers.get(id);
+        return mCachedUsers.get().get(id);
     }
 
     static Stream<UserInfo> users() {
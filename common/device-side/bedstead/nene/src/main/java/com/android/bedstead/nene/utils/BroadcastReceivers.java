@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.bedstead.nene.utils;
+
+import static android.Manifest.permission.INTERACT_ACROSS_USERS_FULL;
+import static android.os.Build.VERSION_CODES.R;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.IntentFilter;
+
+import com.android.bedstead.nene.TestApis;
+import com.android.bedstead.nene.permissions.PermissionContext;
+
+/** Registration of {@link BroadcastReceiver}s used internally by nene utilities. */
+final class BroadcastReceivers {
+
+    private BroadcastReceivers() {
+
+    }
+
+    /**
+     * Register {@code receiver} for broadcasts matching {@code filter} sent to any user.
+     *
+     * <p>Before R broadcasts are only received from the instrumented user.
+     */
+    static void registerForAllUsers(BroadcastReceiver receiver, IntentFilter filter) {
+        Context context = TestApis.context().instrumentedContext();
+        if (Versions.meetsMinimumSdkVersionRequirement(R)) {
+            try (PermissionContext p =
+                         TestApis.permissions().withPermission(INTERACT_ACROSS_USERS_FULL)) {
+                context.registerReceiverForAllUsers(
+                        receiver, filter, /* broadcastPermission= */ null, /* scheduler= */ null);
+            }
+        } else {
+            context.registerReceiver(receiver, filter);
+        }
+    }
+
+    /** Unregister a receiver registered with {@link #registerForAllUsers}. */
+    static void unregister(BroadcastReceiver receiver) {
+        TestApis.context().instrumentedContext().unregisterReceiver(receiver);
+    }
+}
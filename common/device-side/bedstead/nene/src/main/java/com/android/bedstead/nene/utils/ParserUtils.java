@@ -18,6 +18,8 @@ package com.android.bedstead.nene.utils;
 
 import com.android.bedstead.nene.exceptions.AdbParseException;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -83,6 +85,40 @@ public final class ParserUtils {
         }
     }
 
+    /**
+     * Version of {@link #extractIndentedSections(String, int)} which reads the list from
+     * {@code reader}, up to the first empty line or the end of the output.
+     *
+     * <p>The output is read line by line, without first buffering the whole of it.
+     */
+    public static Set<String> readIndentedSections(BufferedReader reader, int baseIndentation)
+            throws IOException, AdbParseException {
+        Set<String> sections = new HashSet<>();
+        StringBuilder sectionBuilder = null;
+        String line;
+        while ((line = reader.readLine()) != null && !line.isEmpty()) {
+            if (countIndentation(line) == baseIndentation) {
+                // New item
+                if (sectionBuilder != null) {
+                    sections.add(sectionBuilder.toString().trim());
+                }
+                sectionBuilder = new StringBuilder(line).append("\n");
+            } else if (sectionBuilder == null) {
+                throw new AdbParseException(
+                        "Error reading indented sections with baseIndentation: "
+                                + baseIndentation, line);
+            } else {
+                sectionBuilder.append(line).append("\n");
+            }
+        }
+        if (sectionBuilder == null) {
+            throw new AdbParseException(
+                    "No indented sections with baseIndentation: " + baseIndentation, "");
+        }
+        sections.add(sectionBuilder.toString().trim());
+        return sections;
+    }
+
     private static int countIndentation(String s) {
         String trimmed = s.trim();
         if (trimmed.isEmpty()) {
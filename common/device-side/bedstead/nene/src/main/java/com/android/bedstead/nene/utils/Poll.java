@@ -16,6 +16,10 @@
 
 package com.android.bedstead.nene.utils;
 
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.util.Log;
 
 import com.android.bedstead.nene.exceptions.NeneException;
@@ -23,7 +27,12 @@ import com.android.bedstead.nene.exceptions.PollValueFailedException;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
@@ -52,6 +61,14 @@ import java.util.function.Supplier;
  * failing and a retry happening. If this is the final iteration the exception will be thrown
  * wrapped in a {@link NeneException}.
  *
+ * <p>The value is checked immediately, then again after waits which start short and back off
+ * exponentially, see {@link #interval(Duration, Duration)}. If the state change is signalled, e.g.
+ * by a broadcast, use {@link #wakeOnBroadcast(IntentFilter)} or {@link #wakeUp()} to check the
+ * value again as soon as it may have changed.
+ *
+ * <p>The number of checks and time spent waiting are recorded for each call site, see
+ * {@link #stats()}.
+ *
  * <p>You should not use this class to retry some state changing logic until it succeeds - it should
  * only be used for polling a value until it reaches the value you want.
  */
@@ -60,7 +77,33 @@ public final class Poll<E> {
     private static final String LOG_TAG = Poll.class.getName();
 
     private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
-    private static final long SLEEP_MILLIS = 200; // TODO(b/223768343): Allow configuring
+    private static final Duration DEFAULT_INITIAL_INTERVAL = Duration.ofMillis(5);
+    private static final Duration DEFAULT_MAX_INTERVAL = Duration.ofSeconds(1);
+    private static final Map<String, CallSiteStats> sStats = new ConcurrentHashMap<>();
+
+    /** The time source used to wait between checks, replaced by tests. */
+    interface Ticker {
+        /** See {@link System#nanoTime()}. */
+        long nanoTime();
+
+        /**
+         * Wait on {@code lock}, which is held, for up to {@code nanos} or until it is notified.
+         */
+        void timedWait(Object lock, long nanos) throws InterruptedException;
+    }
+
+    private static final Ticker SYSTEM_TICKER = new Ticker() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public void timedWait(Object lock, long nanos) throws InterruptedException {
+            TimeUnit.NANOSECONDS.timedWait(lock, nanos);
+        }
+    };
+
     private final String mValueName;
     private final ValueSupplier<E> mSupplier;
     private ValueChecker<E> mChecker = (v) -> true;
@@ -71,6 +114,14 @@ public final class Poll<E> {
                     + valueName + " to meet checker function. Was " + value;
     private Duration mTimeout = DEFAULT_TIMEOUT;
     private boolean mErrorOnFail = false;
+    private Duration mInitialInterval = DEFAULT_INITIAL_INTERVAL;
+    private Duration mMaxInterval = DEFAULT_MAX_INTERVAL;
+    private final List<IntentFilter> mWakeOnBroadcasts = new ArrayList<>();
+    private final Object mWakeUpLock = new Object();
+    private boolean mWokenUp = false;
+    private Ticker mTicker = SYSTEM_TICKER;
+    private long mIntervalMillis;
+    private int mTries;
 
     private Poll(String valueName, ValueSupplier<E> supplier) {
         mValueName = valueName;
@@ -181,6 +232,56 @@ public final class Poll<E> {
         return this;
     }
 
+    /**
+     * Change how long to wait between checks.
+     *
+     * <p>The first wait is {@code initialInterval}, and each following wait is double the previous
+     * one, up to {@code maxInterval} (defaulting to 5 milliseconds and 1 second). Use the same
+     * duration for both to check at a fixed interval.
+     */
+    public Poll<E> interval(Duration initialInterval, Duration maxInterval) {
+        if (initialInterval.isNegative() || initialInterval.isZero()
+                || maxInterval.compareTo(initialInterval) < 0) {
+            throw new IllegalArgumentException("Invalid interval " + initialInterval
+                    + " to " + maxInterval);
+        }
+        mInitialInterval = initialInterval;
+        mMaxInterval = maxInterval;
+        return this;
+    }
+
+    /**
+     * Check the value again as soon as a broadcast matching {@code filter} is received, instead
+     * of waiting for the next scheduled check.
+     *
+     * <p>Broadcasts sent to any user are received. The receiver is only registered while awaiting
+     * and if it cannot be registered the value is still polled.
+     */
+    public Poll<E> wakeOnBroadcast(IntentFilter filter) {
+        mWakeOnBroadcasts.add(filter);
+        return this;
+    }
+
+    /** Use {@code ticker} instead of the system time, for tests. */
+    Poll<E> ticker(Ticker ticker) {
+        mTicker = ticker;
+        return this;
+    }
+
+    /**
+     * Check the value again now instead of waiting for the next scheduled check.
+     *
+     * <p>This can be called from any thread while another is in {@link #await()}, e.g. from an
+     * EventLib listener. As the state is likely to be changing, the waits after this start again
+     * from the initial interval.
+     */
+    public void wakeUp() {
+        synchronized (mWakeUpLock) {
+            mWokenUp = true;
+            mWakeUpLock.notifyAll();
+        }
+    }
+
     /**
      * Await the value meeting the requirements.
      *
@@ -192,14 +293,32 @@ public final class Poll<E> {
      */
     public E await() {
         Instant startTime = Instant.now();
-        Instant endTime = startTime.plus(mTimeout);
+        String callSite = callSite();
+        BroadcastReceiver receiver = registerWakeUpReceiver();
+        try {
+            return await(startTime);
+        } finally {
+            if (receiver != null) {
+                BroadcastReceivers.unregister(receiver);
+            }
+            sStats.merge(callSite,
+                    new CallSiteStats(mTries, Duration.between(startTime, Instant.now())),
+                    CallSiteStats::plus);
+        }
+    }
+
+    private E await(Instant startTime) {
+        long endNanos = mTicker.nanoTime() + mTimeout.toNanos();
 
         E value = null;
-        int tries = 0;
+        mTries = 0;
+        mIntervalMillis = mInitialInterval.toMillis();
 
-        while (!Duration.between(Instant.now(), endTime).isNegative()) {
-            tries++;
+        while (endNanos - mTicker.nanoTime() > 0) {
+            mTries++;
             try {
+                // Polling waits for state to change so must not see a memoized copy of it
+                Snapshot.invalidateAll();
                 value = mSupplier.get();
                 if (mChecker.apply(value)) {
                     return value;
@@ -216,7 +335,7 @@ public final class Poll<E> {
             }
 
             try {
-                Thread.sleep(SLEEP_MILLIS);
+                waitForNextCheck(endNanos);
             } catch (InterruptedException e) {
                 throw new PollValueFailedException("Interrupted while awaiting", e);
             }
@@ -228,11 +347,12 @@ public final class Poll<E> {
 
         // We call again to allow exceptions to be thrown - if it passes here we can still return
         try {
+            Snapshot.invalidateAll();
             value = mSupplier.get();
         } catch (Throwable e) {
             long seconds = Duration.between(startTime, Instant.now()).toMillis() / 1000;
             throw new PollValueFailedException(mErrorSupplier.apply(mValueName, value)
-                    + " - Exception when getting value (checked " + tries + " times in "
+                    + " - Exception when getting value (checked " + mTries + " times in "
                     + seconds + " seconds)", e);
         }
 
@@ -243,17 +363,128 @@ public final class Poll<E> {
 
             long seconds = Duration.between(startTime, Instant.now()).toMillis() / 1000;
             throw new PollValueFailedException(
-                    mErrorSupplier.apply(mValueName, value) + " (checked " + tries + " times in "
+                    mErrorSupplier.apply(mValueName, value) + " (checked " + mTries + " times in "
                             + seconds + " seconds)");
         } catch (Throwable e) {
             long seconds = Duration.between(startTime, Instant.now()).toMillis() / 1000;
             throw new PollValueFailedException(
-                    mErrorSupplier.apply(mValueName, value) + " (checked " + tries + " times in "
+                    mErrorSupplier.apply(mValueName, value) + " (checked " + mTries + " times in "
                             + seconds + " seconds)", e);
 
         }
     }
 
+    /** Wait until the next check is due, the timeout expires, or {@link #wakeUp()} is called. */
+    private void waitForNextCheck(long endNanos) throws InterruptedException {
+        long nowNanos = mTicker.nanoTime();
+        long waitUntilNanos = nowNanos + Math.min(
+                TimeUnit.MILLISECONDS.toNanos(mIntervalMillis), endNanos - nowNanos);
+        synchronized (mWakeUpLock) {
+            long remainingNanos;
+            while (!mWokenUp && (remainingNanos = waitUntilNanos - mTicker.nanoTime()) > 0) {
+                mTicker.timedWait(mWakeUpLock, remainingNanos);
+            }
+            if (mWokenUp) {
+                mWokenUp = false;
+                mIntervalMillis = mInitialInterval.toMillis();
+            } else {
+                mIntervalMillis = Math.min(mIntervalMillis * 2, mMaxInterval.toMillis());
+            }
+        }
+    }
+
+    private BroadcastReceiver registerWakeUpReceiver() {
+        if (mWakeOnBroadcasts.isEmpty()) {
+            return null;
+        }
+        BroadcastReceiver receiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                wakeUp();
+            }
+        };
+        boolean registered = false;
+        try {
+            for (IntentFilter filter : mWakeOnBroadcasts) {
+                BroadcastReceivers.registerForAllUsers(receiver, filter);
+                registered = true;
+            }
+        } catch (RuntimeException e) {
+            // Polling still works without the broadcasts, it is only slower
+            Log.w(LOG_TAG, "Could not listen for broadcasts while polling " + mValueName, e);
+            if (registered) {
+                // The caller only unregisters receivers which are returned
+                BroadcastReceivers.unregister(receiver);
+            }
+            return null;
+        }
+        return receiver;
+    }
+
+    /** The value name and the first caller outside of the polling utilities. */
+    private String callSite() {
+        for (StackTraceElement element : new Throwable().getStackTrace()) {
+            String className = element.getClassName();
+            if (!className.startsWith(Poll.class.getName())
+                    && !className.startsWith(Retry.class.getName())
+                    && !className.startsWith(VoidRetry.class.getName())) {
+                return mValueName + " at " + element;
+            }
+        }
+        return mValueName;
+    }
+
+    /**
+     * Get the number of checks and time spent in {@link #await()} for each call site since the
+     * process started or {@link #resetStats()} was called, slowest first.
+     */
+    public static String stats() {
+        List<Map.Entry<String, CallSiteStats>> entries = new ArrayList<>(sStats.entrySet());
+        entries.sort((a, b) -> Long.compare(
+                b.getValue().mTotalWaitMillis, a.getValue().mTotalWaitMillis));
+
+        StringBuilder stats = new StringBuilder();
+        for (Map.Entry<String, CallSiteStats> entry : entries) {
+            stats.append(entry.getValue()).append(": ").append(entry.getKey()).append("\n");
+        }
+        return stats.toString();
+    }
+
+    /** Clear the statistics returned by {@link #stats()}. */
+    public static void resetStats() {
+        sStats.clear();
+    }
+
+    private static final class CallSiteStats {
+        private final long mAwaits;
+        private final long mTries;
+        private final long mTotalWaitMillis;
+        private final long mMaxWaitMillis;
+
+        CallSiteStats(int tries, Duration wait) {
+            this(1, tries, wait.toMillis(), wait.toMillis());
+        }
+
+        private CallSiteStats(long awaits, long tries, long totalWaitMillis, long maxWaitMillis) {
+            mAwaits = awaits;
+            mTries = tries;
+            mTotalWaitMillis = totalWaitMillis;
+            mMaxWaitMillis = maxWaitMillis;
+        }
+
+        CallSiteStats plus(CallSiteStats other) {
+            return new CallSiteStats(mAwaits + other.mAwaits, mTries + other.mTries,
+                    mTotalWaitMillis + other.mTotalWaitMillis,
+                    Math.max(mMaxWaitMillis, other.mMaxWaitMillis));
+        }
+
+        @Override
+        public String toString() {
+            return mTotalWaitMillis + "ms total, " + mMaxWaitMillis + "ms max, " + mAwaits
+                    + " awaits, " + mTries + " checks";
+        }
+    }
+
     /**
      * Set a method which, after a value fails the check, can tell if the failure is terminal.
      *
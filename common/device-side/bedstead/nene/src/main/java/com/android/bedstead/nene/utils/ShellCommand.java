@@ -20,9 +20,12 @@ import androidx.annotation.CheckResult;
 import androidx.annotation.Nullable;
 
 import com.android.bedstead.nene.exceptions.AdbException;
+import com.android.bedstead.nene.exceptions.AdbParseException;
 import com.android.bedstead.nene.exceptions.NeneException;
 import com.android.bedstead.nene.users.UserReference;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.util.function.Function;
 
 /**
@@ -177,6 +180,27 @@ public final class ShellCommand {
             }
         }
 
+        /**
+         * See {@link #execute} except that the output is passed to {@code outputParser} as it is
+         * read, instead of being collected into a {@link String} first.
+         *
+         * <p>This should be used for commands with large output, such as dumpsys. If any
+         * {@link Exception} is thrown by {@code outputParser}, an {@link AdbException} will be
+         * thrown.
+         */
+        public <E> E executeAndParseStream(StreamParser<E> outputParser) throws AdbException {
+            if (mOutputSuccessChecker != null) {
+                throw new IllegalStateException(
+                        "Cannot call .executeAndParseStream after .validate");
+            }
+
+            return ShellCommandUtils.executeCommandAndParseStream(
+                    build(),
+                    /* allowEmptyOutput= */ mAllowEmptyOutput,
+                    mStdInBytes,
+                    outputParser);
+        }
+
         /**
          * Execute the command and check that the output meets a given criteria. Run the
          * command repeatedly until the output meets the criteria.
@@ -211,6 +235,15 @@ public final class ShellCommand {
         }
     }
 
+    /**
+     * Parser for the output of a shell command, see {@link Builder#executeAndParseStream}.
+     *
+     * <p>The parser does not need to read all of the output, the rest is discarded.
+     */
+    public interface StreamParser<E> {
+        E parse(BufferedReader output) throws IOException, AdbParseException;
+    }
+
     public static final class BytesBuilder {
 
         private final Builder mBuilder;
@@ -27,11 +27,17 @@ import androidx.test.platform.app.InstrumentationRegistry;
 
 import com.android.bedstead.nene.TestApis;
 import com.android.bedstead.nene.exceptions.AdbException;
+import com.android.bedstead.nene.exceptions.AdbParseException;
 import com.android.compatibility.common.util.FileUtils;
 
+import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.function.Function;
 
 /**
@@ -81,7 +87,17 @@ public final class ShellCommandUtils {
     static String executeCommand(String command, boolean allowEmptyOutput, byte[] stdInBytes)
             throws AdbException {
         logCommand(command, allowEmptyOutput, stdInBytes);
+        Snapshot.onShellCommand(command);
+        try {
+            return runCommand(command, allowEmptyOutput, stdInBytes);
+        } finally {
+            // Values read while the command was running may predate its changes
+            Snapshot.onShellCommand(command);
+        }
+    }
 
+    private static String runCommand(String command, boolean allowEmptyOutput, byte[] stdInBytes)
+            throws AdbException {
         if (!Versions.meetsMinimumSdkVersionRequirement(S)) {
             return executeCommandPreS(command, allowEmptyOutput, stdInBytes);
         }
@@ -119,7 +135,17 @@ public final class ShellCommandUtils {
 
     static byte[] executeCommandForBytes(String command, byte[] stdInBytes) throws AdbException {
         logCommand(command, /* allowEmptyOutput= */ false, stdInBytes);
+        Snapshot.onShellCommand(command);
+        try {
+            return runCommandForBytes(command, stdInBytes);
+        } finally {
+            // Values read while the command was running may predate its changes
+            Snapshot.onShellCommand(command);
+        }
+    }
 
+    private static byte[] runCommandForBytes(String command, byte[] stdInBytes)
+            throws AdbException {
         if (!Versions.meetsMinimumSdkVersionRequirement(S)) {
             return executeCommandForBytesPreS(command, stdInBytes);
         }
@@ -147,6 +173,131 @@ public final class ShellCommandUtils {
         }
     }
 
+    /**
+     * Execute an adb shell command, passing its output to {@code outputParser} as it is read.
+     *
+     * <p>Failures are reported as by {@link #executeCommand(String)}. On S and above standard error
+     * is read concurrently, so that the command cannot block writing to it, and any output on it
+     * results in an {@link AdbException} even if the output was parsed.
+     */
+    static <E> E executeCommandAndParseStream(String command, boolean allowEmptyOutput,
+            byte[] stdInBytes, ShellCommand.StreamParser<E> outputParser) throws AdbException {
+        logCommand(command, allowEmptyOutput, stdInBytes);
+        Snapshot.onShellCommand(command);
+        try {
+            return runCommandAndParseStream(command, allowEmptyOutput, stdInBytes, outputParser);
+        } finally {
+            // Values read while the command was running may predate its changes
+            Snapshot.onShellCommand(command);
+        }
+    }
+
+    private static <E> E runCommandAndParseStream(String command, boolean allowEmptyOutput,
+            byte[] stdInBytes, ShellCommand.StreamParser<E> outputParser) throws AdbException {
+        if (!Versions.meetsMinimumSdkVersionRequirement(S)) {
+            return executeCommandAndParseStreamPreS(
+                    command, allowEmptyOutput, stdInBytes, outputParser);
+        }
+
+        ParcelFileDescriptor[] fds = uiAutomation().executeShellCommandRwe(command);
+        ParcelFileDescriptor fdOut = fds[OUT_DESCRIPTOR_INDEX];
+        ParcelFileDescriptor fdIn = fds[IN_DESCRIPTOR_INDEX];
+        ParcelFileDescriptor fdErr = fds[ERR_DESCRIPTOR_INDEX];
+
+        FutureTask<byte[]> errReader = new FutureTask<>(() -> readStreamAndClose(fdErr));
+        new Thread(errReader, "ShellCommandUtils stderr").start();
+
+        try {
+            writeStdInAndClose(fdIn, stdInBytes);
+
+            E result = null;
+            AdbException parseException = null;
+            try (BufferedReader out = newReader(fdOut)) {
+                try {
+                    result = parseOutput(
+                            command, out, /* allowEmptyOutput= */ true, outputParser);
+                } catch (AdbException e) {
+                    parseException = e;
+                }
+                skipRemaining(out);
+            }
+
+            // An error is more useful than the parse failure it probably caused
+            String err = new String(getStdErr(command, errReader));
+            if (!err.isEmpty()) {
+                throw new AdbException(
+                        "Error executing command", command, /* output= */ null, err);
+            }
+            if (parseException != null) {
+                throw parseException;
+            }
+
+            return result;
+        } catch (IOException e) {
+            throw new AdbException("Error executing command", command, e);
+        }
+    }
+
+    private static <E> E executeCommandAndParseStreamPreS(String command,
+            boolean allowEmptyOutput, byte[] stdInBytes, ShellCommand.StreamParser<E> outputParser)
+            throws AdbException {
+        ParcelFileDescriptor[] fds = uiAutomation().executeShellCommandRw(command);
+        ParcelFileDescriptor fdOut = fds[OUT_DESCRIPTOR_INDEX];
+        ParcelFileDescriptor fdIn = fds[IN_DESCRIPTOR_INDEX];
+
+        try {
+            writeStdInAndClose(fdIn, stdInBytes);
+
+            try (BufferedReader out = newReader(fdOut)) {
+                E result = parseOutput(command, out, allowEmptyOutput, outputParser);
+                skipRemaining(out);
+                return result;
+            }
+        } catch (IOException e) {
+            throw new AdbException(
+                    "Error reading command output", command, e);
+        }
+    }
+
+    private static <E> E parseOutput(String command, BufferedReader out,
+            boolean allowEmptyOutput, ShellCommand.StreamParser<E> outputParser)
+            throws AdbException, IOException {
+        if (!allowEmptyOutput) {
+            out.mark(/* readAheadLimit= */ 1);
+            if (out.read() == -1) {
+                throw new AdbException(
+                        "No output from command. There's likely an error on stderr",
+                        command, /* output= */ "");
+            }
+            out.reset();
+        }
+
+        try {
+            return outputParser.parse(out);
+        } catch (AdbParseException | RuntimeException e) {
+            throw new AdbException("Could not parse output", command, e);
+        }
+    }
+
+    /** Read the output the parser did not need, so that the command can complete. */
+    private static void skipRemaining(BufferedReader out) throws IOException {
+        while (out.skip(Long.MAX_VALUE) > 0) {
+            // Skipped a buffer of output
+        }
+    }
+
+    private static byte[] getStdErr(String command, FutureTask<byte[]> errReader)
+            throws AdbException {
+        try {
+            return errReader.get();
+        } catch (ExecutionException e) {
+            throw new AdbException("Error reading command error", command, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AdbException("Interrupted reading command error", command, e);
+        }
+    }
+
     private static void logCommand(String command, boolean allowEmptyOutput, byte[] stdInBytes) {
         if (!SHOULD_LOG) {
             return;
@@ -270,6 +421,11 @@ public final class ShellCommandUtils {
         }
     }
 
+    private static BufferedReader newReader(ParcelFileDescriptor fd) {
+        return new BufferedReader(new InputStreamReader(
+                new ParcelFileDescriptor.AutoCloseInputStream(fd), StandardCharsets.UTF_8));
+    }
+
     private static byte[] readStreamAndClose(ParcelFileDescriptor fd) throws IOException {
         try (FileInputStream fis = new ParcelFileDescriptor.AutoCloseInputStream(fd)) {
             return FileUtils.readInputStreamFully(fis);
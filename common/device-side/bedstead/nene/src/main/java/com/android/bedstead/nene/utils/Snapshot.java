@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.bedstead.nene.utils;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.util.Log;
+
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Supplier;
+
+/**
+ * A memoized copy of some device state which is expensive to read, e.g. by parsing dumpsys.
+ *
+ * <p>The copy is read on first use and kept until it may have become stale, which is when:
+ * <ul>
+ *     <li>a shell command which may change device state is run through {@link ShellCommand}
+ *     (everything except {@link #isReadOnlyCommand(String) read only commands}),</li>
+ *     <li>a {@link Poll} checks its value, as polling means waiting for state to change,</li>
+ *     <li>one of the broadcasts passed to {@link #Snapshot(String, Supplier, IntentFilter...)} is
+ *     received,</li>
+ *     <li>or {@link #invalidate()} is called, e.g. after changing state through an API.</li>
+ * </ul>
+ *
+ * <p>Broadcasts are only a backstop for changes made outside of nene, as they are received
+ * asynchronously and some of them are only delivered to apps holding privileged permissions.
+ */
+public final class Snapshot<E> {
+
+    private static final String LOG_TAG = "Snapshot";
+
+    private static final String[] READ_ONLY_COMMAND_PREFIXES = {
+            "dumpsys ", "pm list ", "cmd package list ", "getprop ", "settings get ", "ps ",
+            "am get-", "cmd car_service get-"
+    };
+
+    private static final Set<Snapshot<?>> sSnapshots = new CopyOnWriteArraySet<>();
+
+    private final String mName;
+    private final Supplier<E> mSupplier;
+    private final IntentFilter[] mInvalidatingBroadcasts;
+    private BroadcastReceiver mReceiver;
+
+    private E mValue;
+    /** Incremented on each invalidation, so that a value read during one is not kept. */
+    private long mGeneration;
+
+    /**
+     * Create a snapshot of the value returned by {@code supplier}.
+     *
+     * <p>The {@code name} is used in logs.
+     */
+    public Snapshot(String name, Supplier<E> supplier, IntentFilter... invalidatingBroadcasts) {
+        mName = name;
+        mSupplier = supplier;
+        mInvalidatingBroadcasts = invalidatingBroadcasts;
+        sSnapshots.add(this);
+    }
+
+    /** Get the value, reading it again if it may have changed since it was last read. */
+    public E get() {
+        // Register first as getting the permission to do so may run shell commands, which would
+        // otherwise drop the value read below.
+        registerReceiverIfNeeded();
+        long generation;
+        synchronized (this) {
+            if (mValue != null) {
+                return mValue;
+            }
+            generation = mGeneration;
+        }
+
+        E value = mSupplier.get();
+        synchronized (this) {
+            if (generation == mGeneration) {
+                mValue = value;
+            }
+        }
+        return value;
+    }
+
+    /** Drop the value so that it is read again when next needed. */
+    public synchronized void invalidate() {
+        mGeneration++;
+        mValue = null;
+    }
+
+    /** {@link #invalidate()} all snapshots. */
+    public static void invalidateAll() {
+        for (Snapshot<?> snapshot : sSnapshots) {
+            snapshot.invalidate();
+        }
+    }
+
+    /**
+     * Stop invalidating this snapshot, and stop listening for its broadcasts. The snapshot must not
+     * be used afterwards.
+     *
+     * <p>Snapshots used by nene live as long as the process, this is for snapshots made by tests.
+     */
+    void unregister() {
+        sSnapshots.remove(this);
+        BroadcastReceiver receiver;
+        synchronized (this) {
+            receiver = mReceiver;
+        }
+        if (receiver != null) {
+            try {
+                BroadcastReceivers.unregister(receiver);
+            } catch (IllegalArgumentException e) {
+                // The receiver could not be registered
+            }
+        }
+    }
+
+    /**
+     * Called before and after running {@code command}, invalidates all snapshots unless it is read
+     * only.
+     *
+     * <p>Invalidating after the command as well drops values read while it was running, e.g. by
+     * another thread, which may not include its changes.
+     */
+    static void onShellCommand(String command) {
+        if (!isReadOnlyCommand(command)) {
+            invalidateAll();
+        }
+    }
+
+    /**
+     * {@code true} if {@code command} only reads state. This is a list of the read only commands
+     * used by nene, unknown commands are assumed to change state.
+     */
+    static boolean isReadOnlyCommand(String command) {
+        for (String prefix : READ_ONLY_COMMAND_PREFIXES) {
+            if (command.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return command.equals("dumpsys") || command.equals("ps");
+    }
+
+    private void registerReceiverIfNeeded() {
+        synchronized (this) {
+            if (mReceiver != null || mInvalidatingBroadcasts.length == 0) {
+                return;
+            }
+            mReceiver = new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    invalidate();
+                }
+            };
+        }
+
+        try {
+            for (IntentFilter filter : mInvalidatingBroadcasts) {
+                BroadcastReceivers.registerForAllUsers(mReceiver, filter);
+            }
+        } catch (RuntimeException e) {
+            // Invalidation through nene still works without the broadcasts
+            Log.w(LOG_TAG, "Could not listen for changes to " + mName, e);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.bedstead.nene.packages;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.testng.Assert.assertThrows;
+
+import com.android.bedstead.harrier.BedsteadJUnit4;
+import com.android.bedstead.harrier.DeviceState;
+import com.android.bedstead.nene.TestApis;
+import com.android.bedstead.nene.exceptions.AdbParseException;
+import com.android.bedstead.nene.users.UserReference;
+
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tests for {@link AdbPackageParser26}.
+ *
+ * <p>The expected values are the ones the previous, regular expression based, parser extracted
+ * from the same output.
+ */
+@RunWith(BedsteadJUnit4.class)
+public class AdbPackageParser26Test {
+
+    @ClassRule
+    @Rule
+    public static final DeviceState sDeviceState = new DeviceState();
+
+    // "dumpsys package" output in the format of Android 12
+    private static final String DUMPSYS_PACKAGE_FIXTURE = "/dumpsys_package_31.txt";
+
+    private static final String EXAMPLE_PACKAGE = "com.android.bedstead.example";
+    private static final String OTHER_PACKAGE = "com.android.bedstead.other";
+    private static final String NO_PERMISSIONS_PACKAGE = "com.android.bedstead.nopermissions";
+
+    private static final UserReference USER_0 = TestApis.users().find(0);
+    private static final UserReference USER_10 = TestApis.users().find(10);
+
+    private final AdbPackageParser26 mParser = new AdbPackageParser26();
+
+    private AdbPackageParser.ParseResult parseFixture() throws Exception {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                AdbPackageParser26Test.class.getResourceAsStream(DUMPSYS_PACKAGE_FIXTURE),
+                StandardCharsets.UTF_8))) {
+            return mParser.parse(reader);
+        }
+    }
+
+    @Test
+    public void parse_features() throws Exception {
+        assertThat(parseFixture().mFeatures).containsExactly(
+                "reqGlEsVersion=0x30000",
+                "feature:android.hardware.audio.output",
+                "feature:android.hardware.camera",
+                "feature:android.hardware.camera.any",
+                "feature:android.software.device_admin",
+                "feature:android.software.managed_users",
+                "feature:android.software.webview");
+    }
+
+    @Test
+    public void parse_onlyIncludesPackagesList() throws Exception {
+        // Hidden system packages are listed in a later section
+        assertThat(parseFixture().mPackages.keySet()).containsExactly(
+                EXAMPLE_PACKAGE, OTHER_PACKAGE, NO_PERMISSIONS_PACKAGE);
+    }
+
+    @Test
+    public void parse_installedOnUsers_excludesUsersNotInstalledOn() throws Exception {
+        AdbPackageParser.ParseResult result = parseFixture();
+
+        assertThat(result.mPackages.get(EXAMPLE_PACKAGE).installedOnUsers())
+                .containsExactly(USER_0);
+        assertThat(result.mPackages.get(OTHER_PACKAGE).installedOnUsers())
+                .containsExactly(USER_0, USER_10);
+        assertThat(result.mPackages.get(NO_PERMISSIONS_PACKAGE).installedOnUsers())
+                .containsExactly(USER_0);
+    }
+
+    @Test
+    public void parse_grantedPermissions_includesGrantedInstallAndRuntimePermissions()
+            throws Exception {
+        AdbPackageParser.ParseResult result = parseFixture();
+
+        assertThat(result.mPackages.get(EXAMPLE_PACKAGE).grantedPermissions(USER_0))
+                .containsExactly("android.permission.INTERNET",
+                        "android.permission.ACCESS_NETWORK_STATE",
+                        "android.permission.CAMERA");
+        assertThat(result.mPackages.get(OTHER_PACKAGE).grantedPermissions(USER_0))
+                .containsExactly("android.permission.FOREGROUND_SERVICE",
+                        "android.permission.RECORD_AUDIO");
+        assertThat(result.mPackages.get(OTHER_PACKAGE).grantedPermissions(USER_10))
+                .containsExactly("android.permission.FOREGROUND_SERVICE",
+                        "android.permission.ACCESS_FINE_LOCATION");
+        assertThat(result.mPackages.get(NO_PERMISSIONS_PACKAGE).grantedPermissions(USER_0))
+                .isEmpty();
+    }
+
+    @Test
+    public void parse_grantedPermissions_userNotInstalledOn_isEmpty() throws Exception {
+        assertThat(parseFixture().mPackages.get(EXAMPLE_PACKAGE).grantedPermissions(USER_10))
+                .isEmpty();
+    }
+
+    @Test
+    public void parse_missingPackagesList_throwsException() {
+        assertThrows(AdbParseException.class, () -> mParser.parse(new BufferedReader(
+                new StringReader("Features:\n  feature:android.hardware.camera\n\n"))));
+    }
+
+    @Test
+    public void parse_invalidPackageHeader_throwsException() {
+        assertThrows(AdbParseException.class, () -> mParser.parse(new BufferedReader(
+                new StringReader("Features:\n  feature:android.hardware.camera\n\n"
+                        + "Packages:\n  Package com.android.bedstead.example\n\n"))));
+    }
+}
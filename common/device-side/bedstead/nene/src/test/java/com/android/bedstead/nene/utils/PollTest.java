@@ -21,6 +21,8 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.testng.Assert.assertThrows;
 import static org.testng.Assert.expectThrows;
 
+import android.os.SystemClock;
+
 import com.android.bedstead.harrier.BedsteadJUnit4;
 import com.android.bedstead.harrier.DeviceState;
 import com.android.bedstead.nene.exceptions.NeneException;
@@ -31,7 +33,11 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
 
 @RunWith(BedsteadJUnit4.class)
 public class PollTest {
@@ -507,6 +513,117 @@ public class PollTest {
                         .await());
     }
 
+    @Test
+    public void await_defaultInterval_becomesEqual_returnsQuickly() {
+        ValueTester<String> valueTester = new ValueTester<>(VALUE_2, VALUE_1, 5);
+        Instant startTime = Instant.now();
+
+        Poll.forValue("tester value", valueTester::get)
+                .toBeEqualTo(VALUE_1)
+                .await();
+
+        assertThat(Duration.between(startTime, Instant.now())).isLessThan(SHORT_TIMEOUT);
+    }
+
+    @Test
+    public void await_defaultInterval_backsOffExponentiallyUpToOneSecond() {
+        ValueTester<String> valueTester = new ValueTester<>(VALUE_2);
+        FakeTicker ticker = new FakeTicker();
+
+        Poll.forValue("tester value", valueTester::get)
+                .toBeEqualTo(VALUE_1)
+                .timeout(Duration.ofSeconds(10))
+                .ticker(ticker)
+                .await();
+
+        // Doubles from 5ms up to 1s, and the last wait is cut short by the timeout
+        assertThat(ticker.mWaits).containsExactly(
+                Duration.ofMillis(5), Duration.ofMillis(10), Duration.ofMillis(20),
+                Duration.ofMillis(40), Duration.ofMillis(80), Duration.ofMillis(160),
+                Duration.ofMillis(320), Duration.ofMillis(640),
+                Duration.ofSeconds(1), Duration.ofSeconds(1), Duration.ofSeconds(1),
+                Duration.ofSeconds(1), Duration.ofSeconds(1), Duration.ofSeconds(1),
+                Duration.ofSeconds(1), Duration.ofSeconds(1),
+                Duration.ofMillis(725)).inOrder();
+        // The value is checked before each wait, and not after the last as the timeout has expired
+        assertThat(valueTester.mNumberOfTimesGetCalled).isEqualTo(ticker.mWaits.size());
+    }
+
+    @Test
+    public void await_fixedInterval_checksAtInterval() {
+        ValueTester<String> valueTester = new ValueTester<>(VALUE_2);
+        Duration interval = Duration.ofMillis(400);
+        Instant startTime = Instant.now();
+
+        Poll.forValue("tester value", valueTester::get)
+                .toBeEqualTo(VALUE_1)
+                .interval(interval, interval)
+                .timeout(SHORT_TIMEOUT)
+                .await();
+
+        // Bounded by the time actually taken so a slow device can't make this fail. Every check
+        // but the first waits a full interval, except the last which may be cut short by the
+        // timeout.
+        long elapsedMillis = Duration.between(startTime, Instant.now()).toMillis();
+        assertThat(valueTester.mNumberOfTimesGetCalled)
+                .isAtMost((int) (elapsedMillis / interval.toMillis()) + 2);
+    }
+
+    @Test
+    public void interval_maxLessThanInitial_throwsException() {
+        assertThrows(IllegalArgumentException.class,
+                () -> Poll.forValue("tester value", () -> VALUE_1)
+                        .interval(Duration.ofSeconds(1), Duration.ofMillis(1)));
+    }
+
+    @Test
+    public void wakeUp_checksAgainWithoutWaitingForInterval() throws Exception {
+        AtomicReference<String> value = new AtomicReference<>(VALUE_2);
+        Poll<String> poll = Poll.forValue("tester value", value::get)
+                .toBeEqualTo(VALUE_1)
+                .interval(Duration.ofMinutes(1), Duration.ofMinutes(1))
+                .timeout(Duration.ofMinutes(1));
+        Thread thread = new Thread(() -> {
+            SystemClock.sleep(100);
+            value.set(VALUE_1);
+            poll.wakeUp();
+        });
+        Instant startTime = Instant.now();
+
+        thread.start();
+        assertThat(poll.await()).isEqualTo(VALUE_1);
+
+        assertThat(Duration.between(startTime, Instant.now())).isLessThan(SHORT_TIMEOUT);
+        thread.join();
+    }
+
+    @Test
+    public void stats_containsCallSite() {
+        Poll.resetStats();
+
+        Poll.forValue("tester value", () -> VALUE_1).await();
+
+        assertThat(Poll.stats()).contains("1 awaits, 1 checks: tester value at "
+                + PollTest.class.getName() + ".stats_containsCallSite");
+    }
+
+    /** A {@link Poll.Ticker} whose time only passes when waiting, and which records the waits. */
+    private static final class FakeTicker implements Poll.Ticker {
+        private long mNanos = 0;
+        final List<Duration> mWaits = new ArrayList<>();
+
+        @Override
+        public long nanoTime() {
+            return mNanos;
+        }
+
+        @Override
+        public void timedWait(Object lock, long nanos) {
+            mWaits.add(Duration.ofNanos(nanos));
+            mNanos += nanos;
+        }
+    }
+
     private static final class ValueTester<E> {
         private final Throwable mOriginalThrowable;
         private final E mOriginalValue;
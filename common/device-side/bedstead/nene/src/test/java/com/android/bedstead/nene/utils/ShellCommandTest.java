@@ -26,12 +26,14 @@ import static org.testng.Assert.assertThrows;
 import android.os.Build;
 
 import com.android.bedstead.nene.exceptions.AdbException;
+import com.android.bedstead.nene.exceptions.AdbParseException;
 
 import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.io.BufferedReader;
 import java.util.function.Function;
 
 @RunWith(JUnit4.class)
@@ -195,4 +197,28 @@ public class ShellCommandTest {
                     throw new IllegalStateException();
                 }));
     }
+
+    @Test
+    public void executeAndParseStream_returnsParsedValue() throws Exception {
+        assertThat(ShellCommand.builder(LIST_USERS_COMMAND)
+                .executeAndParseStream(BufferedReader::readLine))
+                .startsWith(LIST_USERS_EXPECTED_OUTPUT);
+    }
+
+    @Test
+    public void executeAndParseStream_parseFails_throwsException() {
+        assertThrows(AdbException.class, () ->
+                ShellCommand.builder(LIST_USERS_COMMAND)
+                .executeAndParseStream((output) -> {
+                    throw new AdbParseException("Test", output.readLine());
+                }));
+    }
+
+    @Test
+    public void executeAndParseStream_afterValidate_throwsException() {
+        assertThrows(IllegalStateException.class, () ->
+                ShellCommand.builder(LIST_USERS_COMMAND)
+                .validate(ALWAYS_PASS_OUTPUT_FILTER)
+                .executeAndParseStream(BufferedReader::readLine));
+    }
 }
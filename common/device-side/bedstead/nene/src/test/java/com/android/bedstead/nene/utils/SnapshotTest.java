@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.bedstead.nene.utils;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.bedstead.harrier.BedsteadJUnit4;
+import com.android.bedstead.harrier.DeviceState;
+
+import org.junit.After;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(BedsteadJUnit4.class)
+public class SnapshotTest {
+
+    @ClassRule
+    @Rule
+    public static final DeviceState sDeviceState = new DeviceState();
+
+    // Has no side effect, but is not known to be read only so it invalidates snapshots
+    private static final String MUTATING_COMMAND = "echo hello";
+    private static final String READ_ONLY_COMMAND = "dumpsys package";
+
+    private final AtomicInteger mReads = new AtomicInteger();
+    private final Snapshot<Integer> mSnapshot =
+            new Snapshot<>("test", mReads::incrementAndGet);
+    private Snapshot<Integer> mOtherSnapshot;
+
+    @After
+    public void unregisterSnapshots() {
+        mSnapshot.unregister();
+        if (mOtherSnapshot != null) {
+            mOtherSnapshot.unregister();
+        }
+    }
+
+    @Test
+    public void isReadOnlyCommand_readOnlyCommands_returnsTrue() {
+        assertThat(Snapshot.isReadOnlyCommand("dumpsys")).isTrue();
+        assertThat(Snapshot.isReadOnlyCommand("dumpsys user")).isTrue();
+        assertThat(Snapshot.isReadOnlyCommand("pm list packages")).isTrue();
+        assertThat(Snapshot.isReadOnlyCommand("cmd package list users")).isTrue();
+        assertThat(Snapshot.isReadOnlyCommand("getprop ro.build.type")).isTrue();
+        assertThat(Snapshot.isReadOnlyCommand("settings get global nene_log")).isTrue();
+        assertThat(Snapshot.isReadOnlyCommand("ps")).isTrue();
+        assertThat(Snapshot.isReadOnlyCommand("ps -A")).isTrue();
+        assertThat(Snapshot.isReadOnlyCommand("am get-current-user")).isTrue();
+        assertThat(Snapshot.isReadOnlyCommand("cmd car_service get-do-activities")).isTrue();
+    }
+
+    @Test
+    public void isReadOnlyCommand_mutatingCommands_returnsFalse() {
+        assertThat(Snapshot.isReadOnlyCommand("pm install /data/local/tmp/app.apk")).isFalse();
+        assertThat(Snapshot.isReadOnlyCommand("pm create-user user")).isFalse();
+        assertThat(Snapshot.isReadOnlyCommand("am start-user 10")).isFalse();
+        assertThat(Snapshot.isReadOnlyCommand("settings put global nene_log 1")).isFalse();
+        assertThat(Snapshot.isReadOnlyCommand("cmd package install-existing pkg")).isFalse();
+    }
+
+    @Test
+    public void isReadOnlyCommand_unknownCommands_returnsFalse() {
+        assertThat(Snapshot.isReadOnlyCommand("echo hello")).isFalse();
+        // Only matches whole words
+        assertThat(Snapshot.isReadOnlyCommand("dumpsysx")).isFalse();
+        assertThat(Snapshot.isReadOnlyCommand("psx")).isFalse();
+    }
+
+    @Test
+    public void get_calledTwice_readsOnce() {
+        assertThat(mSnapshot.get()).isEqualTo(1);
+        assertThat(mSnapshot.get()).isEqualTo(1);
+        assertThat(mReads.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void get_afterInvalidate_readsAgain() {
+        mSnapshot.get();
+
+        mSnapshot.invalidate();
+
+        assertThat(mSnapshot.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void get_afterMutatingShellCommand_readsAgain() {
+        mSnapshot.get();
+
+        Snapshot.onShellCommand(MUTATING_COMMAND);
+
+        assertThat(mSnapshot.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void get_afterReadOnlyShellCommand_doesNotReadAgain() {
+        mSnapshot.get();
+
+        Snapshot.onShellCommand(READ_ONLY_COMMAND);
+
+        assertThat(mSnapshot.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void get_invalidatedWhileReading_valueIsNotKept() {
+        mOtherSnapshot = new Snapshot<>("test", () -> {
+            int value = mReads.incrementAndGet();
+            if (value == 1) {
+                Snapshot.onShellCommand(MUTATING_COMMAND);
+            }
+            return value;
+        });
+
+        assertThat(mOtherSnapshot.get()).isEqualTo(1);
+        assertThat(mOtherSnapshot.get()).isEqualTo(2);
+        assertThat(mOtherSnapshot.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void get_afterExecutingMutatingShellCommand_readsAgain() throws Exception {
+        mSnapshot.get();
+
+        ShellCommand.builder(MUTATING_COMMAND).execute();
+
+        assertThat(mSnapshot.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void get_duringMutatingShellCommand_valueIsNotKeptAfterCommand() throws Exception {
+        // The value is read while the command is running, as another thread could do
+        int valueDuringCommand = ShellCommand.builder(MUTATING_COMMAND)
+                .executeAndParseStream(output -> mSnapshot.get());
+
+        assertThat(valueDuringCommand).isEqualTo(1);
+        assertThat(mSnapshot.get()).isEqualTo(2);
+    }
+}
@@ -30,13 +30,100 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
 
 public class BitmapUtils {
     private static final String TAG = "BitmapUtils";
 
+    // Bitmaps are compared in bands of rows, which are compared in parallel
+    private static final int ROWS_PER_BAND = 32;
+
+    // Maximum number of mismatched pixels logged by compareBitmaps(Bitmap, Bitmap, double)
+    private static final int MAX_LOGGED_MISMATCHES = 10;
+
+    // Per thread buffers for the pixels of a band of each bitmap, grown as needed
+    private static final ThreadLocal<int[][]> sBandPixels =
+            ThreadLocal.withInitial(() -> new int[2][0]);
+
     private BitmapUtils() {}
 
+    /** Compares the pixels of a band of rows of two bitmaps. */
+    private interface BandComparator {
+        /**
+         * @param pixels1 the pixels of the band in the first bitmap, row by row
+         * @param pixels2 the pixels of the band in the second bitmap, row by row
+         * @param firstRow the index of the first row of the band
+         * @param rows the number of rows in the band
+         * @return false to skip the bands which haven't been compared yet
+         */
+        boolean compare(int[] pixels1, int[] pixels2, int firstRow, int rows);
+    }
+
+    /**
+     * Reads the two bitmaps, which must have the same size, a band of rows at a time with
+     * {@link Bitmap#getPixels} and passes each band to the comparator. Bands are compared in
+     * parallel, in no particular order.
+     */
+    private static void compareBands(Bitmap bmp1, Bitmap bmp2, BandComparator comparator) {
+        final int width = bmp1.getWidth();
+        final int height = bmp1.getHeight();
+        final int bands = (height + ROWS_PER_BAND - 1) / ROWS_PER_BAND;
+        final AtomicBoolean stop = new AtomicBoolean(false);
+
+        IntStream.range(0, bands).parallel().forEach(band -> {
+            if (stop.get()) {
+                return;
+            }
+            final int firstRow = band * ROWS_PER_BAND;
+            final int rows = Math.min(ROWS_PER_BAND, height - firstRow);
+            int[][] pixels = sBandPixels.get();
+            if (pixels[0].length < width * rows) {
+                pixels[0] = new int[width * ROWS_PER_BAND];
+                pixels[1] = new int[width * ROWS_PER_BAND];
+            }
+            bmp1.getPixels(pixels[0], 0, width, 0, firstRow, width, rows);
+            bmp2.getPixels(pixels[1], 0, width, 0, firstRow, width, rows);
+            if (!comparator.compare(pixels[0], pixels[1], firstRow, rows)) {
+                stop.set(true);
+            }
+        });
+    }
+
+    /**
+     * The first mismatched pixels in column-major order, which is the order in which pixels used
+     * to be compared one at a time. Each pixel is stored as {@code x * height + y}.
+     */
+    private static final class FirstMismatches {
+        private final long[] mPixels = new long[MAX_LOGGED_MISMATCHES];
+        private int mSize = 0;
+
+        void add(long pixel) {
+            if (mSize == mPixels.length && pixel >= mPixels[mSize - 1]) {
+                return;
+            }
+            int i = mSize < mPixels.length ? mSize++ : mSize - 1;
+            while (i > 0 && mPixels[i - 1] > pixel) {
+                mPixels[i] = mPixels[i - 1];
+                i--;
+            }
+            mPixels[i] = pixel;
+        }
+
+        synchronized void addAll(FirstMismatches other) {
+            for (int i = 0; i < other.mSize; i++) {
+                add(other.mPixels[i]);
+            }
+        }
+
+        long[] get() {
+            return Arrays.copyOf(mPixels, mSize);
+        }
+    }
+
     private static Boolean compareBasicBitmapsInfo(Bitmap bmp1, Bitmap bmp2) {
         if (bmp1 == bmp2) {
             return Boolean.TRUE;
@@ -76,13 +163,23 @@ public class BitmapUtils {
         final Boolean basicComparison = compareBasicBitmapsInfo(bmp1, bmp2);
         if (basicComparison != null) return basicComparison.booleanValue();
 
-        for (int i = 0; i < bmp1.getWidth(); i++) {
-            for (int j = 0; j < bmp1.getHeight(); j++) {
-                if (bmp1.getPixel(i, j) != bmp2.getPixel(i, j)) {
-                    Log.d(TAG, "compareBitmaps(): pixels (" + i + ", " + j + ") don't match");
+        final int width = bmp1.getWidth();
+        final AtomicLong mismatch = new AtomicLong(-1);
+        compareBands(bmp1, bmp2, (pixels1, pixels2, firstRow, rows) -> {
+            for (int k = 0; k < width * rows; k++) {
+                if (pixels1[k] != pixels2[k]) {
+                    mismatch.compareAndSet(-1, (long) (firstRow + k / width) * width + k % width);
                     return false;
                 }
             }
+            return true;
+        });
+
+        if (mismatch.get() != -1) {
+            final long i = mismatch.get() % width;
+            final long j = mismatch.get() / width;
+            Log.d(TAG, "compareBitmaps(): pixels (" + i + ", " + j + ") don't match");
+            return false;
         }
         return true;
     }
@@ -101,18 +198,28 @@ public class BitmapUtils {
         final int height = bmp1.getHeight();
 
         final long numberPixels = width * height;
-        long numberMismatches = 0;
-
-        for (int i = 0; i < width; i++) {
-            for (int j = 0; j < height; j++) {
-                if (bmp1.getPixel(i, j) != bmp2.getPixel(i, j)) {
-                    numberMismatches++;
-                    if (numberMismatches <= 10) {
-                        // Let's not spam logcat...
-                        Log.w(TAG, "compareBitmaps(): pixels (" + i + ", " + j + ") don't match");
-                    }
+        final AtomicLong mismatches = new AtomicLong(0);
+        final FirstMismatches firstMismatches = new FirstMismatches();
+
+        compareBands(bmp1, bmp2, (pixels1, pixels2, firstRow, rows) -> {
+            long bandMismatches = 0;
+            FirstMismatches bandFirstMismatches = new FirstMismatches();
+            for (int k = 0; k < width * rows; k++) {
+                if (pixels1[k] != pixels2[k]) {
+                    bandMismatches++;
+                    bandFirstMismatches.add((long) (k % width) * height + firstRow + k / width);
                 }
             }
+            mismatches.addAndGet(bandMismatches);
+            firstMismatches.addAll(bandFirstMismatches);
+            return true;
+        });
+
+        final long numberMismatches = mismatches.get();
+        // Let's not spam logcat...
+        for (long pixel : firstMismatches.get()) {
+            Log.w(TAG, "compareBitmaps(): pixels (" + pixel / height + ", " + pixel % height
+                    + ") don't match");
         }
         final double actualPrecision = ((double) numberPixels - numberMismatches) / (numberPixels);
         Log.v(TAG, "compareBitmaps(): numberPixels=" + numberPixels
@@ -196,23 +303,21 @@ public class BitmapUtils {
         final Boolean basicComparison = compareBasicBitmapsInfo(expected, actual);
         if (basicComparison != null) return basicComparison.booleanValue();
 
-        double mse = 0;
         int width = expected.getWidth();
         int height = expected.getHeight();
 
         // Bitmap.getPixels() returns colors with non-premultiplied ARGB values.
-        int[] expColors = new int [width * height];
-        expected.getPixels(expColors, 0, width, 0, 0, width, height);
-
-        int[] actualColors = new int [width * height];
-        actual.getPixels(actualColors, 0, width, 0, 0, width, height);
-
-        for (int row = 0; row < height; ++row) {
-            for (int col = 0; col < width; ++col) {
-                int idx = row * width + col;
-                mse += distance(expColors[idx], actualColors[idx], isPremultiplied);
+        // Distances are integers so their sum is the same whichever order bands are added in.
+        final AtomicLong sum = new AtomicLong(0);
+        compareBands(expected, actual, (expColors, actualColors, firstRow, rows) -> {
+            long bandSum = 0;
+            for (int idx = 0; idx < width * rows; ++idx) {
+                bandSum += distance(expColors[idx], actualColors[idx], isPremultiplied);
             }
-        }
+            sum.addAndGet(bandSum);
+            return true;
+        });
+        double mse = sum.get();
         mse /= width * height;
 
         Log.i(TAG, "MSE: " + mse);
@@ -243,7 +348,7 @@ public class BitmapUtils {
 
     // For the Bitmap with Alpha, multiply the Alpha values to get the effective
     // RGB colors and then compute the color-distance.
-    private static double distance(int expect, int actual, boolean isPremultiplied) {
+    private static int distance(int expect, int actual, boolean isPremultiplied) {
         if (isPremultiplied) {
             final int a1 = Color.alpha(actual);
             final int a2 = Color.alpha(expect);
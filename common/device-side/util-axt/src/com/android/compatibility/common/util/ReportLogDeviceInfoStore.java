@@ -17,15 +17,18 @@ package com.android.compatibility.common.util;
 
 import android.util.JsonWriter;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
 
 public class ReportLogDeviceInfoStore extends DeviceInfoStore {
 
+    private static final int COPY_BUFFER_SIZE = 8 * 1024;
+
     private final String mStreamName;
     private File tempJsonFile;
 
@@ -40,31 +43,8 @@ public class ReportLogDeviceInfoStore extends DeviceInfoStore {
     @Override
     public void open() throws IOException {
         // Write new metrics to a temp file to avoid invalid JSON files due to failed tests.
-        BufferedWriter formatWriter;
         tempJsonFile = File.createTempFile(mStreamName, "-temp-report-log");
-        formatWriter = new BufferedWriter(new FileWriter(tempJsonFile));
-        if (mJsonFile.exists()) {
-            BufferedReader jsonReader = new BufferedReader(new FileReader(mJsonFile));
-            String currentLine;
-            String nextLine = jsonReader.readLine();
-            while ((currentLine = nextLine) != null) {
-                nextLine = jsonReader.readLine();
-                if (nextLine == null && currentLine.charAt(currentLine.length() - 1) == '}') {
-                    // Reopen overall JSON object to write new metrics.
-                    currentLine = currentLine.substring(0, currentLine.length() - 1) + ",";
-                }
-                // Copy to temp file directly to avoid large metrics string in memory.
-                formatWriter.write(currentLine, 0, currentLine.length());
-            }
-            jsonReader.close();
-        } else {
-            formatWriter.write("{", 0 , 1);
-        }
-        // Start new JSON object for new metrics.
-        formatWriter.write("\"" + mStreamName + "\":", 0, mStreamName.length() + 3);
-        formatWriter.flush();
-        formatWriter.close();
-        mJsonWriter = new JsonWriter(new FileWriter(tempJsonFile, true));
+        mJsonWriter = new JsonWriter(new FileWriter(tempJsonFile));
         mJsonWriter.beginObject();
     }
 
@@ -76,21 +56,54 @@ public class ReportLogDeviceInfoStore extends DeviceInfoStore {
         // Close JSON Writer.
         mJsonWriter.endObject();
         mJsonWriter.close();
-        // Close overall JSON Object.
-        try (BufferedWriter formatWriter = new BufferedWriter(new FileWriter(tempJsonFile, true))) {
-            formatWriter.write("}", 0, 1);
-        }
-        // Copy metrics from temp file and delete temp file.
-        mJsonFile.createNewFile();
+        // Append the metrics to the report log in place rather than rewriting the whole file, so
+        // that the cost of adding a stream does not depend on the number of earlier streams.
         try (
-                BufferedReader jsonReader = new BufferedReader(new FileReader(tempJsonFile));
-                BufferedWriter metricsWriter = new BufferedWriter(new FileWriter(mJsonFile))
+                RandomAccessFile reportLog = new RandomAccessFile(mJsonFile, "rw");
+                InputStream metrics = new FileInputStream(tempJsonFile)
         ) {
-            String line;
-            while ((line = jsonReader.readLine()) != null) {
-                // Copy from temp file directly to avoid large metrics string in memory.
-                metricsWriter.write(line, 0, line.length());
+            long last = findLastNonWhitespace(reportLog, reportLog.length());
+            if (last < 0) {
+                reportLog.seek(0);
+                reportLog.write('{');
+            } else if (readByteAt(reportLog, last) == '}') {
+                // Reopen overall JSON object to write new metrics.
+                reportLog.seek(last);
+                reportLog.write(',');
+            } else {
+                reportLog.seek(last + 1);
             }
+            reportLog.write(("\"" + mStreamName + "\":").getBytes(StandardCharsets.UTF_8));
+            // Copy from temp file directly to avoid large metrics string in memory.
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            int length;
+            while ((length = metrics.read(buffer)) != -1) {
+                reportLog.write(buffer, 0, length);
+            }
+            // Close overall JSON Object.
+            reportLog.write('}');
+            reportLog.setLength(reportLog.getFilePointer());
+        } finally {
+            tempJsonFile.delete();
         }
     }
+
+    /**
+     * Returns the offset of the last byte before {@code end} that is not whitespace, or -1 if
+     * there is none.
+     */
+    private static long findLastNonWhitespace(RandomAccessFile file, long end)
+            throws IOException {
+        for (long offset = end - 1; offset >= 0; offset--) {
+            if (!Character.isWhitespace(readByteAt(file, offset))) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    private static int readByteAt(RandomAccessFile file, long offset) throws IOException {
+        file.seek(offset);
+        return file.read();
+    }
 }
@@ -24,6 +24,7 @@ import android.util.Base64;
 import android.util.Log;
 import android.webkit.MimeTypeMap;
 
+import org.apache.http.ConnectionClosedException;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpEntityEnclosingRequest;
@@ -36,9 +37,9 @@ import org.apache.http.NameValuePair;
 import org.apache.http.RequestLine;
 import org.apache.http.StatusLine;
 import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.entity.BufferedHttpEntity;
 import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.FileEntity;
-import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.DefaultHttpServerConnection;
 import org.apache.http.impl.cookie.DateUtils;
@@ -58,6 +59,7 @@ import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.security.Key;
@@ -121,6 +123,8 @@ public class CtsTestServer {
     private static final String AUTH_PREFIX = "/auth";
     public static final String NOLENGTH_POSTFIX = "nolength";
     private static final int DELAY_MILLIS = 2000;
+    // How long a kept-alive connection waits for the next request before it is closed.
+    private static final int KEEP_ALIVE_TIMEOUT_MILLIS = 10000;
 
     public static final String AUTH_REALM = "Android CTS";
     public static final String AUTH_USER = "cts";
@@ -155,6 +159,12 @@ public class CtsTestServer {
     private long mDocValidity;
     private long mDocAge;
     private X509TrustManager mTrustManager;
+    // Content of the assets and raw resources served so far, keyed by their path.
+    private final Map<String, byte[]> mResourceCache = new HashMap<String, byte[]>();
+    private int mConnectionCount;
+    private int mResponseCount;
+    private long mTotalResponseTimeNanos;
+    private long mMaxResponseTimeNanos;
 
     /**
      * Create and start a local HTTP server instance.
@@ -534,6 +544,49 @@ public class CtsTestServer {
         return mQueries.size();
     }
 
+    /**
+     * Returns the number of connections accepted since the server was started or the last call
+     * to resetRequestState(). Requests sent on a kept-alive connection share the same connection.
+     */
+    public synchronized int getConnectionCount() {
+        return mConnectionCount;
+    }
+
+    /**
+     * Returns the number of responses sent since the server was started or the last call to
+     * resetRequestState().
+     */
+    public synchronized int getResponseCount() {
+        return mResponseCount;
+    }
+
+    /**
+     * Returns the total time spent handling the requests whose response was sent since the server
+     * was started or the last call to resetRequestState(), from the reception of the request
+     * header to the response being sent, including any artificial delay.
+     */
+    public synchronized long getTotalResponseTimeNanos() {
+        return mTotalResponseTimeNanos;
+    }
+
+    /**
+     * Returns the longest time spent handling a single request, see
+     * {@link #getTotalResponseTimeNanos()}.
+     */
+    public synchronized long getMaxResponseTimeNanos() {
+        return mMaxResponseTimeNanos;
+    }
+
+    private synchronized void onConnectionAccepted() {
+        mConnectionCount++;
+    }
+
+    private synchronized void onResponseSent(long responseTimeNanos) {
+        mResponseCount++;
+        mTotalResponseTimeNanos += responseTimeNanos;
+        mMaxResponseTimeNanos = Math.max(mMaxResponseTimeNanos, responseTimeNanos);
+    }
+
     /**
      * Set the validity of any future responses in milliseconds. If this is set to a non-zero
      * value, the server will include a "Expires" header.
@@ -559,6 +612,10 @@ public class CtsTestServer {
 
         mQueries.clear();
         mRequestEntities = new ArrayList<HttpEntity>();
+        mConnectionCount = 0;
+        mResponseCount = 0;
+        mTotalResponseTimeNanos = 0;
+        mMaxResponseTimeNanos = 0;
     }
 
     /**
@@ -678,23 +735,16 @@ public class CtsTestServer {
             path = path.substring(ASSET_PREFIX.length());
             // request for an asset file
             try {
-                InputStream in;
-                if (path.startsWith(RAW_PREFIX)) {
-                  String resourceName = path.substring(RAW_PREFIX.length());
-                  int id = mResources.getIdentifier(resourceName, "raw", mContext.getPackageName());
-                  if (id == 0) {
-                    Log.w(TAG, "Can't find raw resource " + resourceName);
-                    throw new IOException();
-                  }
-                  in = mResources.openRawResource(id);
-                } else if (path.startsWith(
+                byte[] content;
+                if (!path.startsWith(RAW_PREFIX) && path.startsWith(
                           Environment.getExternalStorageDirectory().getAbsolutePath())) {
-                    in = new FileInputStream(path);
+                    // Tests may write these files at any time, so they are not cached.
+                    content = readFully(new FileInputStream(path));
                 } else {
-                  in = mAssets.open(path);
+                    content = getResourceContent(path);
                 }
                 response = createResponse(HttpStatus.SC_OK);
-                InputStreamEntity entity = new InputStreamEntity(in, in.available());
+                ByteArrayEntity entity = new ByteArrayEntity(content);
                 String mimeType =
                     mMap.getMimeTypeFromExtension(MimeTypeMap.getFileExtensionFromUrl(path));
                 if (mimeType == null) {
@@ -704,6 +754,9 @@ public class CtsTestServer {
                 response.setEntity(entity);
                 if (query == null || !query.contains(NOLENGTH_POSTFIX)) {
                     response.setHeader("Content-Length", "" + entity.getContentLength());
+                } else {
+                    // The end of the content is only signalled by closing the connection.
+                    response.setHeader("Connection", "close");
                 }
             } catch (IOException e) {
                 response = null;
@@ -820,6 +873,121 @@ public class CtsTestServer {
         return response;
     }
 
+    /**
+     * Return the content of an asset, or of a raw resource if the path starts with
+     * {@link #RAW_PREFIX}. The content is read once and then kept in memory.
+     */
+    private byte[] getResourceContent(String path) throws IOException {
+        synchronized (mResourceCache) {
+            byte[] content = mResourceCache.get(path);
+            if (content != null) {
+                return content;
+            }
+        }
+        InputStream in;
+        if (path.startsWith(RAW_PREFIX)) {
+            String resourceName = path.substring(RAW_PREFIX.length());
+            int id = mResources.getIdentifier(resourceName, "raw", mContext.getPackageName());
+            if (id == 0) {
+                Log.w(TAG, "Can't find raw resource " + resourceName);
+                throw new IOException();
+            }
+            in = mResources.openRawResource(id);
+        } else {
+            in = mAssets.open(path);
+        }
+        byte[] content = readFully(in);
+        synchronized (mResourceCache) {
+            mResourceCache.put(path, content);
+        }
+        return content;
+    }
+
+    /**
+     * Read a stream to its end, and close it.
+     */
+    private static byte[] readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer, 0, buffer.length)) != -1) {
+                os.write(buffer, 0, n);
+            }
+            return os.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns whether the client asked to keep the connection open after the response to the
+     * given request, which is the default from HTTP/1.1.
+     */
+    private static boolean isKeepAliveRequested(HttpRequest request) {
+        boolean keepAlive = request.getRequestLine().getProtocolVersion()
+                .greaterEquals(HttpVersion.HTTP_1_1);
+        for (Header header : request.getHeaders("Connection")) {
+            for (String token : header.getValue().split(",")) {
+                token = token.trim();
+                if (token.equalsIgnoreCase("close")) {
+                    return false;
+                } else if (token.equalsIgnoreCase("keep-alive")) {
+                    keepAlive = true;
+                }
+            }
+        }
+        return keepAlive;
+    }
+
+    /**
+     * Set the headers telling the client whether the connection is kept open after the response,
+     * and return whether it is. It is kept open if the client asked for it and the end of the
+     * response can be found without closing the connection, in which case a Content-Length header
+     * is added if needed.
+     */
+    private static boolean prepareKeepAlive(HttpRequest request, HttpResponse response) {
+        boolean keepAlive = isKeepAliveRequested(request);
+        Header connection = response.getFirstHeader("Connection");
+        if (connection != null && connection.getValue().equalsIgnoreCase("close")) {
+            keepAlive = false;
+        }
+        int status = response.getStatusLine().getStatusCode();
+        boolean hasContent = status >= HttpStatus.SC_OK && status != HttpStatus.SC_NO_CONTENT
+                && status != HttpStatus.SC_NOT_MODIFIED;
+        if (keepAlive && hasContent && !response.containsHeader("Content-Length")
+                && !response.containsHeader("Transfer-Encoding")) {
+            HttpEntity entity = response.getEntity();
+            if (entity == null) {
+                response.setHeader("Content-Length", "0");
+            } else if (entity.getContentLength() >= 0) {
+                response.setHeader("Content-Length", "" + entity.getContentLength());
+            } else {
+                keepAlive = false;
+            }
+        }
+        if (!keepAlive) {
+            response.setHeader("Connection", "close");
+        } else if (!response.getProtocolVersion().greaterEquals(HttpVersion.HTTP_1_1)) {
+            // HTTP/1.0 connections are closed after the response unless told otherwise.
+            response.setHeader("Connection", "Keep-Alive");
+        }
+        return keepAlive;
+    }
+
+    /**
+     * Returns whether the response to the given request has a body. A body sent when it must not
+     * would be read by the client as the start of the next response on a kept-alive connection.
+     */
+    private static boolean hasResponseBody(HttpRequest request, HttpResponse response) {
+        if (request.getRequestLine().getMethod().equalsIgnoreCase("HEAD")) {
+            return false;
+        }
+        int status = response.getStatusLine().getStatusCode();
+        return status >= HttpStatus.SC_OK && status != HttpStatus.SC_NO_CONTENT
+                && status != HttpStatus.SC_NOT_MODIFIED;
+    }
+
     private void setDateHeaders(HttpResponse response) {
         long time = System.currentTimeMillis();
         synchronized (this) {
@@ -841,7 +1009,7 @@ public class CtsTestServer {
      * Create an empty response with the given status.
      */
     private static HttpResponse createResponse(int status) {
-        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_0, status, null);
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, status, null);
 
         // Fill in error reason. Avoid use of the ReasonPhraseCatalog, which is Locale-dependent.
         String reason = getReasonString(status);
@@ -919,12 +1087,16 @@ public class CtsTestServer {
         private CtsTestServer mServer;
         private ServerSocket mSocket;
         private SslMode mSsl;
-        private boolean mWillShutDown = false;
+        private volatile boolean mWillShutDown = false;
         private SSLContext mSslContext;
-        private ExecutorService mExecutorService = Executors.newFixedThreadPool(20);
+        // Kept-alive connections hold their thread while they wait for the next request, so the
+        // number of threads follows the number of open connections.
+        private ExecutorService mExecutorService = Executors.newCachedThreadPool();
         private Object mLock = new Object();
         // All the sockets bound to an open connection.
         private Set<Socket> mSockets = new HashSet<Socket>();
+        // The sockets of the connections waiting for a request.
+        private Set<Socket> mIdleSockets = new HashSet<Socket>();
 
         /**
          * Defines the keystore contents for the server, BKS version. Holds just a
@@ -1053,39 +1225,25 @@ public class CtsTestServer {
 
         public void run() {
             while (!mWillShutDown) {
+                Socket socket = null;
                 try {
-                    Socket socket = mSocket.accept();
+                    socket = mSocket.accept();
 
                     synchronized(mLock) {
                         mSockets.add(socket);
                     }
+                    mServer.onConnectionAccepted();
 
-                    DefaultHttpServerConnection conn = mServer.createHttpServerConnection();
-                    HttpParams params = new BasicHttpParams();
-                    params.setParameter(CoreProtocolPNames.PROTOCOL_VERSION, HttpVersion.HTTP_1_0);
-                    conn.bind(socket, params);
-
-                    // Determine whether we need to shutdown early before
-                    // parsing the response since conn.close() will crash
-                    // for SSL requests due to UnsupportedOperationException.
-                    HttpRequest request = conn.receiveRequestHeader();
-                    if (request instanceof HttpEntityEnclosingRequest) {
-                        conn.receiveRequestEntity( (HttpEntityEnclosingRequest) request);
-                    }
-
-                    mExecutorService.execute(new HandleResponseTask(conn, request, socket));
+                    // The requests are parsed by the connection task, so that a slow client or
+                    // TLS handshake does not hold up accepting other connections.
+                    mExecutorService.execute(new HandleConnectionTask(socket));
                 } catch (IOException e) {
                     // normal during shutdown, ignore
                     Log.w(TAG, e);
                 } catch (RejectedExecutionException e) {
                     // normal during shutdown, ignore
                     Log.w(TAG, e);
-                } catch (HttpException e) {
-                    Log.w(TAG, e);
-                } catch (UnsupportedOperationException e) {
-                    // DefaultHttpServerConnection's close() throws an
-                    // UnsupportedOperationException.
-                    Log.w(TAG, e);
+                    closeSocket(socket);
                 }
             }
         }
@@ -1098,11 +1256,17 @@ public class CtsTestServer {
             try {
                 mWillShutDown = true;
                 mExecutorService.shutdown();
-                mExecutorService.awaitTermination(1L, TimeUnit.MINUTES);
                 mSocket.close();
-                // To prevent the server thread from being blocked on read from socket,
-                // which is called when the server tries to receiveRequestHeader,
-                // close all the sockets here.
+                // Connections waiting for a request would block their thread on a read until
+                // the client closes them, close them here. The others are closed by their thread
+                // once their current response is sent.
+                synchronized(mLock) {
+                    for (Socket socket : mIdleSockets) {
+                        socket.close();
+                    }
+                }
+                mExecutorService.awaitTermination(1L, TimeUnit.MINUTES);
+                // Close the connections still open, e.g. still sending a response.
                 synchronized(mLock) {
                     for (Socket socket : mSockets) {
                         socket.close();
@@ -1115,34 +1279,120 @@ public class CtsTestServer {
             }
         }
 
-        private class HandleResponseTask implements Runnable {
-
-            private DefaultHttpServerConnection mConnection;
+        private void closeSocket(Socket socket) {
+            if (socket == null) {
+                return;
+            }
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // safe to ignore
+            }
+            synchronized(mLock) {
+                mSockets.remove(socket);
+            }
+        }
 
-            private HttpRequest mRequest;
+        /**
+         * Handles the requests of a connection, one after another, until either side closes it.
+         * Pipelined requests are read once the response to the previous one is sent.
+         */
+        private class HandleConnectionTask implements Runnable {
 
             private Socket mSocket;
 
-            public HandleResponseTask(DefaultHttpServerConnection connection,
-                    HttpRequest request, Socket socket)  {
-                this.mConnection = connection;
-                this.mRequest = request;
+            public HandleConnectionTask(Socket socket)  {
                 this.mSocket = socket;
             }
 
             @Override
             public void run() {
+                DefaultHttpServerConnection connection = null;
                 try {
-                    HttpResponse response = mServer.getResponse(mRequest);
-                    mConnection.sendResponseHeader(response);
-                    mConnection.sendResponseEntity(response);
-                    mConnection.close();
+                    connection = mServer.createHttpServerConnection();
+                    HttpParams params = new BasicHttpParams();
+                    params.setParameter(CoreProtocolPNames.PROTOCOL_VERSION, HttpVersion.HTTP_1_1);
+                    connection.bind(mSocket, params);
+
+                    boolean keepAlive = true;
+                    boolean firstRequest = true;
+                    while (keepAlive) {
+                        HttpRequest request = receiveRequestHeader(connection, firstRequest);
+                        if (request == null) {
+                            break;
+                        }
+                        long startNanos = System.nanoTime();
+                        if (request instanceof HttpEntityEnclosingRequest) {
+                            HttpEntityEnclosingRequest entityRequest =
+                                    (HttpEntityEnclosingRequest) request;
+                            connection.receiveRequestEntity(entityRequest);
+                            // Read the entity now, as the next request follows it on the
+                            // connection. It is also kept by getRequestEntities().
+                            if (entityRequest.getEntity() != null) {
+                                entityRequest.setEntity(
+                                        new BufferedHttpEntity(entityRequest.getEntity()));
+                            }
+                        }
 
-                    synchronized(mLock) {
-                        ServerThread.this.mSockets.remove(mSocket);
+                        HttpResponse response = mServer.getResponse(request);
+                        keepAlive = prepareKeepAlive(request, response) && !mWillShutDown;
+                        if (!keepAlive) {
+                            response.setHeader("Connection", "close");
+                        }
+                        connection.sendResponseHeader(response);
+                        if (hasResponseBody(request, response)) {
+                            connection.sendResponseEntity(response);
+                        }
+                        connection.flush();
+                        mServer.onResponseSent(System.nanoTime() - startNanos);
+                        firstRequest = false;
                     }
+                } catch (ConnectionClosedException e) {
+                    // the client closed the connection, ignore
+                } catch (SocketTimeoutException e) {
+                    // the connection was idle for too long, ignore
                 } catch (Exception e) {
-                    Log.e(TAG, "Error handling request:", e);
+                    if (!mWillShutDown) {
+                        Log.e(TAG, "Error handling request:", e);
+                    }
+                } finally {
+                    if (connection != null) {
+                        try {
+                            connection.close();
+                        } catch (IOException ignored) {
+                            // safe to ignore
+                        } catch (UnsupportedOperationException ignored) {
+                            // DefaultHttpServerConnection's close() throws an
+                            // UnsupportedOperationException for SSL sockets.
+                        }
+                    }
+                    closeSocket(mSocket);
+                }
+            }
+
+            /**
+             * Wait for the next request on the connection, or return null if the server is
+             * shutting down. The connection is closed by the server if it shuts down while
+             * waiting, or if no request is received within
+             * {@link CtsTestServer#KEEP_ALIVE_TIMEOUT_MILLIS} of the previous response.
+             */
+            private HttpRequest receiveRequestHeader(DefaultHttpServerConnection connection,
+                    boolean firstRequest) throws IOException, HttpException {
+                synchronized(mLock) {
+                    if (mWillShutDown) {
+                        return null;
+                    }
+                    mIdleSockets.add(mSocket);
+                }
+                try {
+                    connection.setSocketTimeout(firstRequest ? 0 : KEEP_ALIVE_TIMEOUT_MILLIS);
+                    HttpRequest request = connection.receiveRequestHeader();
+                    connection.setSocketTimeout(0);
+                    return request;
+                } finally {
+                    synchronized(mLock) {
+                        mIdleSockets.remove(mSocket);
+                    }
                 }
             }
         }
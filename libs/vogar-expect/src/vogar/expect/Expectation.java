@@ -45,6 +45,12 @@ public final class Expectation {
     /** The pattern the expected output will match. */
     private final Pattern pattern;
 
+    /**
+     * The text the expected output contains, if that is all the pattern checks, or null. Such
+     * expectations are matched together by {@link ExpectationStore}.
+     */
+    private final String substring;
+
     /** Attributes of this test. */
     private final Set<String> tags;
 
@@ -55,6 +61,15 @@ public final class Expectation {
     private boolean bugIsOpen = false;
 
     public Expectation(Result result, Pattern pattern, Set<String> tags, String description, long bug) {
+        this(result, pattern, null, tags, description, bug);
+    }
+
+    /**
+     * @param substring the text the output must contain, if {@code pattern} matches exactly the
+     *     outputs containing it, or null.
+     */
+    Expectation(Result result, Pattern pattern, String substring, Set<String> tags,
+            String description, long bug) {
         if (result == null || description == null || pattern == null) {
             throw new IllegalArgumentException(
                     "result=" + result + " description=" + description + " pattern=" + pattern);
@@ -63,6 +78,7 @@ public final class Expectation {
         this.description = description;
         this.result = result;
         this.pattern = pattern;
+        this.substring = substring;
         this.tags = new LinkedHashSet<String>(tags);
         this.bug = bug;
     }
@@ -95,7 +111,19 @@ public final class Expectation {
      * Returns true if {@code outcome} matches this expectation.
      */
     public boolean matches(Outcome outcome) {
-        return patternMatches(outcome) && (bugIsOpen || result == outcome.getResult());
+        return patternMatches(outcome) && resultMatches(outcome);
+    }
+
+    /**
+     * Returns true if the result of {@code outcome} is permitted by this expectation, regardless
+     * of its output.
+     */
+    boolean resultMatches(Outcome outcome) {
+        return bugIsOpen || result == outcome.getResult();
+    }
+
+    String getSubstring() {
+        return substring;
     }
 
     private boolean patternMatches(Outcome outcome) {
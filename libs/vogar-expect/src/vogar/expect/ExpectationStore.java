@@ -26,11 +26,15 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 import vogar.expect.util.Log;
 
@@ -60,9 +64,20 @@ public final class ExpectationStore {
 
     private static final int PATTERN_FLAGS = Pattern.MULTILINE | Pattern.DOTALL;
 
+    /**
+     * The expectations read from each file or resource, keyed by path or URL, so that stores
+     * loading the same expectations in a process, e.g. one per module run, only parse them once.
+     */
+    private static final Map<String, ParsedSource> PARSED_SOURCES =
+            new ConcurrentHashMap<String, ParsedSource>();
+
     private final Map<String, Expectation> outcomes = new LinkedHashMap<String, Expectation>();
     private final Map<String, Expectation> failures = new LinkedHashMap<String, Expectation>();
 
+    // Built from the maps above when first needed, and dropped when expectations are added.
+    private NameTrie nameTrie;
+    private FailureMatcher failureMatcher;
+
     private ExpectationStore() {}
 
     /**
@@ -89,30 +104,35 @@ public final class ExpectationStore {
             return exactNameMatch;
         }
 
-        for (Map.Entry<String, Expectation> entry : failures.entrySet()) {
-            if (entry.getValue().matches(outcome)) {
-                return entry.getValue();
-            }
+        Expectation failure = getFailureMatcher().get(outcome);
+        if (failure != null) {
+            return failure;
         }
 
         Expectation byName = getByNameOrPackage(outcome.getName());
         return byName != null ? byName : SUCCESS;
     }
 
+    /**
+     * Returns the expectation of the name, or of the closest class or package enclosing it, i.e.
+     * of the longest prefix followed by a '.' or a '#'.
+     */
     private Expectation getByNameOrPackage(String name) {
-        while (true) {
-            Expectation expectation = outcomes.get(name);
-            if (expectation != null) {
-                return expectation;
-            }
+        return getNameTrie().get(name);
+    }
 
-            int dotOrHash = Math.max(name.lastIndexOf('.'), name.lastIndexOf('#'));
-            if (dotOrHash == -1) {
-                return null;
-            }
+    private synchronized NameTrie getNameTrie() {
+        if (nameTrie == null) {
+            nameTrie = new NameTrie(outcomes);
+        }
+        return nameTrie;
+    }
 
-            name = name.substring(0, dotOrHash);
+    private synchronized FailureMatcher getFailureMatcher() {
+        if (failureMatcher == null) {
+            failureMatcher = new FailureMatcher(failures.values());
         }
+        return failureMatcher;
     }
 
     public static ExpectationStore parse(Set<File> expectationFiles, ModeId mode) throws IOException {
@@ -151,42 +171,93 @@ public final class ExpectationStore {
     }
 
     private void parse(URL url, ModeId mode) throws IOException {
-        Log.verbose("loading expectations from " + url);
+        URLConnection connection = url.openConnection();
+        String source = url.toString();
+        long lastModified = connection.getLastModified();
+        long length = connection.getContentLength();
+        ParsedSource parsed = getParsedSource(source, lastModified, length);
+        if (parsed == null) {
+            Log.verbose("loading expectations from " + url);
 
-        try (InputStream is = url.openStream();
-             Reader reader = new InputStreamReader(is)) {
-            parse(reader, url.toString(), mode);
+            try (InputStream is = connection.getInputStream();
+                 Reader reader = new InputStreamReader(is)) {
+                parsed = parse(reader, source, lastModified, length);
+            }
+            cacheParsedSource(source, parsed);
+        } else {
+            // Getting the last modification time connects, which opens the stream of some URLs,
+            // e.g. file: URLs, so it must be closed even though it is not read.
+            connection.getInputStream().close();
         }
+        addAll(parsed, mode);
     }
 
     public void parse(File expectationsFile, ModeId mode) throws IOException {
-        Log.verbose("loading expectations file " + expectationsFile);
+        String key = expectationsFile.getAbsolutePath();
+        long lastModified = expectationsFile.lastModified();
+        long length = expectationsFile.length();
+        ParsedSource parsed = getParsedSource(key, lastModified, length);
+        if (parsed == null) {
+            Log.verbose("loading expectations file " + expectationsFile);
+
+            try (Reader fileReader = new FileReader(expectationsFile)) {
+                String source = expectationsFile.toString();
+                parsed = parse(fileReader, source, lastModified, length);
+            }
+            cacheParsedSource(key, parsed);
+        }
+        addAll(parsed, mode);
+    }
+
+    /**
+     * Returns the expectations cached for {@code key}, if they were read from the same version
+     * of the file or resource.
+     */
+    private static ParsedSource getParsedSource(String key, long lastModified, long length) {
+        ParsedSource parsed = PARSED_SOURCES.get(key);
+        if (parsed == null || lastModified == 0
+                || parsed.lastModified != lastModified || parsed.length != length) {
+            return null;
+        }
+        Log.verbose("using " + parsed.expectations.size() + " cached expectations from " + key);
+        return parsed;
+    }
 
-        try (Reader fileReader = new FileReader(expectationsFile)) {
-            String source = expectationsFile.toString();
-            parse(fileReader, source, mode);
+    private static void cacheParsedSource(String key, ParsedSource parsed) {
+        // The version is unknown if the last modification time is 0.
+        if (parsed.lastModified != 0) {
+            PARSED_SOURCES.put(key, parsed);
         }
     }
 
-    private void parse(Reader reader, String source, ModeId mode) throws IOException {
-        int count = 0;
+    private static ParsedSource parse(Reader reader, String source, long lastModified,
+            long length) throws IOException {
+        List<ParsedExpectation> expectations = new ArrayList<ParsedExpectation>();
         try (JsonReader jsonReader = new JsonReader(reader)) {
             jsonReader.setLenient(true);
             jsonReader.beginArray();
             while (jsonReader.hasNext()) {
-                readExpectation(jsonReader, mode);
-                count++;
+                expectations.add(readExpectation(jsonReader));
             }
             jsonReader.endArray();
 
-            Log.verbose("loaded " + count + " expectations from " + source);
+            Log.verbose("loaded " + expectations.size() + " expectations from " + source);
         }
+        return new ParsedSource(lastModified, length, expectations);
     }
 
-    private void readExpectation(JsonReader reader, ModeId mode) throws IOException {
+    private void addAll(ParsedSource parsed, ModeId mode) {
+        for (ParsedExpectation expectation : parsed.expectations) {
+            add(expectation, mode);
+        }
+    }
+
+    private static ParsedExpectation readExpectation(JsonReader reader) throws IOException {
         boolean isFailure = false;
         Result result = Result.EXEC_FAILED;
         Pattern pattern = MATCH_ALL_PATTERN;
+        // the substring the pattern checks for, or null if it is a regular expression
+        String substring = "";
         Set<String> names = new LinkedHashSet<String>();
         Set<String> tags = new LinkedHashSet<String>();
         Set<ModeId> modes = null;
@@ -213,8 +284,10 @@ public final class ExpectationStore {
                 names.add(reader.nextString());
             } else if (name.equals("pattern")) {
                 pattern = Pattern.compile(reader.nextString(), PATTERN_FLAGS);
+                substring = null;
             } else if (name.equals("substring")) {
-                pattern = Pattern.compile(".*" + Pattern.quote(reader.nextString()) + ".*", PATTERN_FLAGS);
+                substring = reader.nextString();
+                pattern = Pattern.compile(".*" + Pattern.quote(substring) + ".*", PATTERN_FLAGS);
             } else if (name.equals("tags")) {
                 readStrings(reader, tags);
             } else if (name.equals("description")) {
@@ -234,20 +307,31 @@ public final class ExpectationStore {
         if (names.isEmpty()) {
             throw new IllegalArgumentException("Missing 'name' or 'failure' key in " + reader);
         }
-        if (modes != null && !modes.contains(mode)) {
+        return new ParsedExpectation(isFailure, result, pattern, substring, names, tags, modes,
+                description, buganizerBug);
+    }
+
+    private void add(ParsedExpectation parsed, ModeId mode) {
+        if (parsed.modes != null && !parsed.modes.contains(mode)) {
             return;
         }
 
-        Expectation expectation = new Expectation(result, pattern, tags, description, buganizerBug);
-        Map<String, Expectation> map = isFailure ? failures : outcomes;
-        for (String name : names) {
+        // Each store gets its own expectation, as the state of its bug is set per store.
+        Expectation expectation = new Expectation(parsed.result, parsed.pattern,
+                parsed.substring, parsed.tags, parsed.description, parsed.bug);
+        Map<String, Expectation> map = parsed.isFailure ? failures : outcomes;
+        for (String name : parsed.names) {
             if (map.put(name, expectation) != null) {
                 throw new IllegalArgumentException("Duplicate expectations for " + name);
             }
         }
+        synchronized (this) {
+            nameTrie = null;
+            failureMatcher = null;
+        }
     }
 
-    private void readStrings(JsonReader reader, Set<String> output) throws IOException {
+    private static void readStrings(JsonReader reader, Set<String> output) throws IOException {
         reader.beginArray();
         while (reader.hasNext()) {
             output.add(reader.nextString());
@@ -255,7 +339,7 @@ public final class ExpectationStore {
         reader.endArray();
     }
 
-    private Set<ModeId> readModes(JsonReader reader) throws IOException {
+    private static Set<ModeId> readModes(JsonReader reader) throws IOException {
         Set<ModeId> result = new LinkedHashSet<ModeId>();
         reader.beginArray();
         while (reader.hasNext()) {
@@ -272,4 +356,44 @@ public final class ExpectationStore {
     public Map<String, Expectation> getAllFailures() {
         return failures;
     }
+
+    /** The expectations read from a file or resource, and the version they were read from. */
+    private static final class ParsedSource {
+        final long lastModified;
+        final long length;
+        final List<ParsedExpectation> expectations;
+
+        ParsedSource(long lastModified, long length, List<ParsedExpectation> expectations) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.expectations = expectations;
+        }
+    }
+
+    /** An expectation as read from an expectations file, before it is filtered by mode. */
+    private static final class ParsedExpectation {
+        final boolean isFailure;
+        final Result result;
+        final Pattern pattern;
+        final String substring;
+        final Set<String> names;
+        final Set<String> tags;
+        final Set<ModeId> modes;
+        final String description;
+        final long bug;
+
+        ParsedExpectation(boolean isFailure, Result result, Pattern pattern, String substring,
+                Set<String> names, Set<String> tags, Set<ModeId> modes, String description,
+                long bug) {
+            this.isFailure = isFailure;
+            this.result = result;
+            this.pattern = pattern;
+            this.substring = substring;
+            this.names = names;
+            this.tags = tags;
+            this.modes = modes;
+            this.description = description;
+            this.bug = bug;
+        }
+    }
 }
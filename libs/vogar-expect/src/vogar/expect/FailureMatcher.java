@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package vogar.expect;
+
+import com.google.common.primitives.Ints;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import vogar.expect.util.SubstringMatcher;
+
+/**
+ * Finds the first of a list of failure expectations which matches an outcome.
+ *
+ * <p>The expectations whose pattern only checks that the output contains a substring are matched
+ * together by a {@link SubstringMatcher}, so that the output is only scanned once for all of
+ * them. Only the other patterns are matched one after another, and only those before the first
+ * matching substring expectation.
+ */
+final class FailureMatcher {
+
+    private final List<Expectation> failures;
+
+    private final SubstringMatcher substringMatcher;
+    /** For each substring, the ascending indices of the failures checking for it. */
+    private final int[][] substringFailures;
+    /** The ascending indices of the failures with any other pattern. */
+    private final int[] regexFailures;
+
+    FailureMatcher(Collection<Expectation> failures) {
+        this.failures = new ArrayList<Expectation>(failures);
+
+        Map<String, List<Integer>> bySubstring = new LinkedHashMap<String, List<Integer>>();
+        List<Integer> regexIndices = new ArrayList<Integer>();
+        for (int i = 0; i < this.failures.size(); i++) {
+            String substring = this.failures.get(i).getSubstring();
+            if (substring == null) {
+                regexIndices.add(i);
+                continue;
+            }
+            List<Integer> indices = bySubstring.get(substring);
+            if (indices == null) {
+                indices = new ArrayList<Integer>();
+                bySubstring.put(substring, indices);
+            }
+            indices.add(i);
+        }
+
+        this.substringMatcher = new SubstringMatcher(new ArrayList<String>(bySubstring.keySet()));
+        this.substringFailures = new int[bySubstring.size()][];
+        int substringIndex = 0;
+        for (List<Integer> indices : bySubstring.values()) {
+            substringFailures[substringIndex++] = Ints.toArray(indices);
+        }
+        this.regexFailures = Ints.toArray(regexIndices);
+    }
+
+    /**
+     * Returns the first failure expectation matching {@code outcome}, or null if none does.
+     */
+    Expectation get(Outcome outcome) {
+        int first = failures.size();
+        if (substringMatcher.size() > 0) {
+            BitSet found = substringMatcher.findAll(outcome.getOutput());
+            for (int i = found.nextSetBit(0); i >= 0; i = found.nextSetBit(i + 1)) {
+                for (int index : substringFailures[i]) {
+                    if (index >= first) {
+                        break;
+                    }
+                    if (failures.get(index).resultMatches(outcome)) {
+                        first = index;
+                        break;
+                    }
+                }
+            }
+        }
+
+        for (int index : regexFailures) {
+            if (index >= first) {
+                break;
+            }
+            if (failures.get(index).matches(outcome)) {
+                return failures.get(index);
+            }
+        }
+        return first < failures.size() ? failures.get(first) : null;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package vogar.expect;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Finds the expectation of an outcome name or of its closest enclosing class or package, in a
+ * single pass over the name.
+ */
+final class NameTrie {
+
+    private static final char[] NO_LABELS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private static final class Node {
+        /** The labels of the children, sorted. */
+        char[] labels = NO_LABELS;
+        Node[] children = NO_CHILDREN;
+        Expectation expectation;
+    }
+
+    private final Node root = new Node();
+
+    NameTrie(Map<String, Expectation> expectations) {
+        for (Map.Entry<String, Expectation> entry : expectations.entrySet()) {
+            String name = entry.getKey();
+            Node node = root;
+            for (int i = 0; i < name.length(); i++) {
+                char c = name.charAt(i);
+                int position = Arrays.binarySearch(node.labels, c);
+                if (position < 0) {
+                    position = -position - 1;
+                    Node child = new Node();
+                    node.labels = insert(node.labels, position, c);
+                    node.children = insert(node.children, position, child);
+                }
+                node = node.children[position];
+            }
+            node.expectation = entry.getValue();
+        }
+    }
+
+    /**
+     * Returns the expectation of the longest of {@code name} and of its prefixes followed by a
+     * '.' or a '#' in {@code name}, or null if there is none.
+     */
+    Expectation get(String name) {
+        Expectation result = null;
+        Node node = root;
+        for (int i = 0; ; i++) {
+            if (i == name.length()) {
+                return node.expectation != null ? node.expectation : result;
+            }
+            char c = name.charAt(i);
+            if ((c == '.' || c == '#') && node.expectation != null) {
+                result = node.expectation;
+            }
+            int position = Arrays.binarySearch(node.labels, c);
+            if (position < 0) {
+                return result;
+            }
+            node = node.children[position];
+        }
+    }
+
+    private static char[] insert(char[] array, int position, char value) {
+        char[] result = new char[array.length + 1];
+        System.arraycopy(array, 0, result, 0, position);
+        result[position] = value;
+        System.arraycopy(array, position, result, position + 1, array.length - position);
+        return result;
+    }
+
+    private static Node[] insert(Node[] array, int position, Node value) {
+        Node[] result = new Node[array.length + 1];
+        System.arraycopy(array, 0, result, 0, position);
+        result[position] = value;
+        System.arraycopy(array, position, result, position + 1, array.length - position);
+        return result;
+    }
+}
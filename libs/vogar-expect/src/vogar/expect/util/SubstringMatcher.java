@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package vogar.expect.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Finds which of a set of substrings a text contains, in a single pass over the text, using an
+ * Aho-Corasick automaton.
+ *
+ * <p>Instances are immutable and can be shared between threads.
+ */
+public final class SubstringMatcher {
+
+    private static final char[] NO_LABELS = new char[0];
+    private static final int[] NO_INTS = new int[0];
+
+    private final int substringCount;
+
+    // The automaton: node 0 is the root, and the children of each node are sorted by label.
+    private final char[][] labels;
+    private final int[][] children;
+    /** The node of the longest proper suffix of each node, -1 for the root. */
+    private final int[] fail;
+    /** The nearest node in the fail chain of each node which ends a substring, or -1. */
+    private final int[] outputLink;
+    /** The indices of the substrings ending at each node. */
+    private final int[][] substrings;
+
+    /**
+     * @param substrings the substrings to find, identified by their index. Substrings may be
+     *     empty and may appear several times.
+     */
+    public SubstringMatcher(List<String> substrings) {
+        this.substringCount = substrings.size();
+
+        List<char[]> labelList = new ArrayList<char[]>();
+        List<int[]> childList = new ArrayList<int[]>();
+        List<int[]> substringList = new ArrayList<int[]>();
+        labelList.add(NO_LABELS);
+        childList.add(NO_INTS);
+        substringList.add(NO_INTS);
+        for (int index = 0; index < substrings.size(); index++) {
+            String substring = substrings.get(index);
+            int node = 0;
+            for (int i = 0; i < substring.length(); i++) {
+                char c = substring.charAt(i);
+                char[] nodeLabels = labelList.get(node);
+                int position = Arrays.binarySearch(nodeLabels, c);
+                if (position >= 0) {
+                    node = childList.get(node)[position];
+                    continue;
+                }
+                int child = labelList.size();
+                labelList.add(NO_LABELS);
+                childList.add(NO_INTS);
+                substringList.add(NO_INTS);
+                labelList.set(node, insert(nodeLabels, -position - 1, c));
+                childList.set(node, insert(childList.get(node), -position - 1, child));
+                node = child;
+            }
+            int[] nodeSubstrings = substringList.get(node);
+            substringList.set(node, insert(nodeSubstrings, nodeSubstrings.length, index));
+        }
+
+        int nodeCount = labelList.size();
+        this.labels = labelList.toArray(new char[nodeCount][]);
+        this.children = childList.toArray(new int[nodeCount][]);
+        this.substrings = substringList.toArray(new int[nodeCount][]);
+        this.fail = new int[nodeCount];
+        this.outputLink = new int[nodeCount];
+
+        // Breadth first, so that the fail node of each node is known before its children.
+        fail[0] = -1;
+        outputLink[0] = -1;
+        int[] queue = new int[nodeCount];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = 0;
+        while (head < tail) {
+            int node = queue[head++];
+            for (int i = 0; i < labels[node].length; i++) {
+                int child = children[node][i];
+                int childFail = node == 0 ? 0 : next(fail[node], labels[node][i]);
+                fail[child] = childFail;
+                outputLink[child] = this.substrings[childFail].length > 0
+                        ? childFail : outputLink[childFail];
+                queue[tail++] = child;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of substrings.
+     */
+    public int size() {
+        return substringCount;
+    }
+
+    /**
+     * Returns the indices of the substrings which {@code text} contains.
+     */
+    public BitSet findAll(CharSequence text) {
+        BitSet found = new BitSet(substringCount);
+        int node = 0;
+        addSubstrings(node, found);
+        for (int i = 0; i < text.length(); i++) {
+            node = next(node, text.charAt(i));
+            addSubstrings(node, found);
+        }
+        return found;
+    }
+
+    /**
+     * Returns the node reached from {@code node} on {@code c}, following the fail nodes as
+     * needed.
+     */
+    private int next(int node, char c) {
+        while (true) {
+            int position = Arrays.binarySearch(labels[node], c);
+            if (position >= 0) {
+                return children[node][position];
+            }
+            if (node == 0) {
+                return 0;
+            }
+            node = fail[node];
+        }
+    }
+
+    /**
+     * Adds the substrings ending at {@code node} and at the nodes of its output chain.
+     */
+    private void addSubstrings(int node, BitSet found) {
+        if (substrings[node].length == 0) {
+            node = outputLink[node];
+        }
+        while (node >= 0) {
+            int[] nodeSubstrings = substrings[node];
+            if (found.get(nodeSubstrings[0])) {
+                // Found before, so were the substrings of the rest of the chain, which are all
+                // suffixes of this one.
+                return;
+            }
+            for (int index : nodeSubstrings) {
+                found.set(index);
+            }
+            node = outputLink[node];
+        }
+    }
+
+    private static char[] insert(char[] array, int position, char value) {
+        char[] result = new char[array.length + 1];
+        System.arraycopy(array, 0, result, 0, position);
+        result[position] = value;
+        System.arraycopy(array, position, result, position + 1, array.length - position);
+        return result;
+    }
+
+    private static int[] insert(int[] array, int position, int value) {
+        int[] result = new int[array.length + 1];
+        System.arraycopy(array, 0, result, 0, position);
+        result[position] = value;
+        System.arraycopy(array, position, result, position + 1, array.length - position);
+        return result;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package vogar.expect;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import junit.framework.TestCase;
+
+/** Unit tests for {@link ExpectationStore}. */
+public class ExpectationStoreTest extends TestCase {
+
+    private File mFile;
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (mFile != null) {
+            mFile.delete();
+        }
+        super.tearDown();
+    }
+
+    public void testGetOutcome_interleavedFailures_returnsFirstInFileOrder() throws IOException {
+        ExpectationStore store = parse("["
+                + "{ failure: 'regex1', pattern: '.*timed out.*', description: 'regex1' },"
+                + "{ failure: 'substring1', substring: 'Exception', description: 'substring1' },"
+                + "{ failure: 'regex2', pattern: '.*IOException.*', description: 'regex2' },"
+                + "{ failure: 'substring2', substring: 'IOException', description: 'substring2' }"
+                + "]");
+
+        assertEquals("substring1", getFailure(store, "java.io.IOException").getDescription());
+        assertEquals("regex1",
+                getFailure(store, "java.io.IOException: timed out").getDescription());
+        assertEquals(Result.SUCCESS, getFailure(store, "no error").getResult());
+    }
+
+    public void testGetOutcome_substringBeforeRegex_returnsSubstring() throws IOException {
+        ExpectationStore store = parse("["
+                + "{ failure: 'substring', substring: 'timed out', description: 'substring' },"
+                + "{ failure: 'regex', pattern: '.*timed.*', description: 'regex' }"
+                + "]");
+
+        assertEquals("substring", getFailure(store, "test timed out").getDescription());
+        assertEquals("regex", getFailure(store, "test timed").getDescription());
+    }
+
+    public void testGetOutcome_substringWithOtherResult_isSkipped() throws IOException {
+        ExpectationStore store = parse("["
+                + "{ failure: 'first', substring: 'error', result: 'ERROR',"
+                + " description: 'first' },"
+                + "{ failure: 'second', substring: 'error', description: 'second' }"
+                + "]");
+
+        assertEquals("second", getFailure(store, "an error").getDescription());
+    }
+
+    public void testGetOutcome_emptySubstring_matchesAnyOutput() throws IOException {
+        ExpectationStore store = parse("["
+                + "{ failure: 'regex', pattern: '.*first.*', description: 'regex' },"
+                + "{ failure: 'empty', substring: '', description: 'empty' }"
+                + "]");
+
+        assertEquals("regex", getFailure(store, "first").getDescription());
+        assertEquals("empty", getFailure(store, "anything").getDescription());
+        assertEquals("empty", getFailure(store, "").getDescription());
+    }
+
+    public void testGetName_packageAndClassFallback() throws IOException {
+        ExpectationStore store = parse("["
+                + "{ name: 'android.foo', description: 'package' },"
+                + "{ name: 'android.foo.BarTest', description: 'class' },"
+                + "{ name: 'android.foo.BarTest#testExact', description: 'method' }"
+                + "]");
+
+        assertEquals("method", store.get("android.foo.BarTest#testExact").getDescription());
+        assertEquals("class", store.get("android.foo.BarTest#testOther").getDescription());
+        assertEquals("package", store.get("android.foo.BazTest#test").getDescription());
+        assertEquals("package", store.get("android.foo.sub.BazTest").getDescription());
+        // Only whole package and class names match
+        assertEquals(Result.SUCCESS, store.get("android.foobar.BazTest").getResult());
+        assertEquals("package", store.get("android.foo.BarTestOther#test").getDescription());
+        assertEquals(Result.SUCCESS, store.get("android").getResult());
+    }
+
+    public void testGetOutcome_exactNameBeforeFailureBeforePackage() throws IOException {
+        ExpectationStore store = parse("["
+                + "{ name: 'android.foo', description: 'package' },"
+                + "{ name: 'android.foo.BarTest#testExact', description: 'method' },"
+                + "{ failure: 'failure', substring: 'crash', description: 'failure' }"
+                + "]");
+
+        assertEquals("method", store.get(new Outcome("android.foo.BarTest#testExact",
+                Result.EXEC_FAILED, "crash")).getDescription());
+        assertEquals("failure", store.get(new Outcome("android.foo.BarTest#testOther",
+                Result.EXEC_FAILED, "crash")).getDescription());
+        assertEquals("package", store.get(new Outcome("android.foo.BarTest#testOther",
+                Result.EXEC_FAILED, "other")).getDescription());
+    }
+
+    private static Expectation getFailure(ExpectationStore store, String output) {
+        return store.get(new Outcome("some.Test#test", Result.EXEC_FAILED, output));
+    }
+
+    private ExpectationStore parse(String json) throws IOException {
+        mFile = File.createTempFile("expectations", ".txt");
+        try (Writer writer = new FileWriter(mFile)) {
+            writer.write(json);
+        }
+        return ExpectationStore.parse(Collections.singleton(mFile), ModeId.DEVICE);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package vogar.expect.util;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import junit.framework.TestCase;
+
+/** Unit tests for {@link SubstringMatcher}. */
+public class SubstringMatcherTest extends TestCase {
+
+    public void testFindAll_noSubstrings() {
+        SubstringMatcher matcher = new SubstringMatcher(Collections.<String>emptyList());
+
+        assertEquals(0, matcher.size());
+        assertTrue(matcher.findAll("anything").isEmpty());
+    }
+
+    public void testFindAll_emptySubstring_matchesAnyText() {
+        SubstringMatcher matcher = new SubstringMatcher(Arrays.asList("", "abc"));
+
+        assertEquals(bits(0), matcher.findAll(""));
+        assertEquals(bits(0), matcher.findAll("xyz"));
+        assertEquals(bits(0, 1), matcher.findAll("xabcx"));
+    }
+
+    public void testFindAll_overlappingSubstrings() {
+        SubstringMatcher matcher = new SubstringMatcher(Arrays.asList("he", "she", "his", "hers"));
+
+        assertEquals(bits(0, 1, 3), matcher.findAll("ushers"));
+        assertEquals(bits(2), matcher.findAll("this"));
+        assertEquals(bits(), matcher.findAll("h e r s"));
+    }
+
+    public void testFindAll_substringIsSuffixOfAnother() {
+        SubstringMatcher matcher = new SubstringMatcher(Arrays.asList("Exception", "IOException"));
+
+        assertEquals(bits(0, 1), matcher.findAll("java.io.IOException: closed"));
+        assertEquals(bits(0), matcher.findAll("java.lang.RuntimeException"));
+    }
+
+    public void testFindAll_duplicateSubstrings() {
+        SubstringMatcher matcher = new SubstringMatcher(Arrays.asList("abc", "x", "abc"));
+
+        assertEquals(bits(0, 2), matcher.findAll("zabcz"));
+    }
+
+    public void testFindAll_textShorterThanSubstring() {
+        SubstringMatcher matcher = new SubstringMatcher(Arrays.asList("abcdef"));
+
+        assertEquals(bits(), matcher.findAll("abc"));
+    }
+
+    private static BitSet bits(int... indices) {
+        BitSet result = new BitSet();
+        for (int index : indices) {
+            result.set(index);
+        }
+        return result;
+    }
+}
@@ -83,6 +83,7 @@ import java.nio.ByteBuffer;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -91,6 +92,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
@@ -1592,6 +1594,17 @@ public class CameraTestUtils extends Assert {
      * by the interleaved U(Cb)/V(Cr) plane.</p>
      */
     public static byte[] getDataFromImage(Image image) {
+        return getDataFromImage(image, null /* pool */);
+    }
+
+    /**
+     * <p>Same as {@link #getDataFromImage(Image)}, but the array is taken from the given pool
+     * when the size of the data only depends on the format and size of the image. The caller
+     * should give the array back with {@link ImageDataPool#release} once it is done with it.</p>
+     *
+     * @param pool The pool to take the array from, or null to allocate a new array.
+     */
+    public static byte[] getDataFromImage(Image image, ImageDataPool pool) {
         assertNotNull("Invalid image:", image);
         int format = image.getFormat();
         int width = image.getWidth();
@@ -1609,9 +1622,7 @@ public class CameraTestUtils extends Assert {
         ByteBuffer buffer = null;
         // JPEG doesn't have pixelstride and rowstride, treat it as 1D buffer.
         // Same goes for DEPTH_POINT_CLOUD, RAW_PRIVATE, DEPTH_JPEG, and HEIC
-        if (format == ImageFormat.JPEG || format == ImageFormat.DEPTH_POINT_CLOUD ||
-                format == ImageFormat.RAW_PRIVATE || format == ImageFormat.DEPTH_JPEG ||
-                format == ImageFormat.HEIC) {
+        if (isCompressedOrOpaqueFormat(format)) {
             buffer = planes[0].getBuffer();
             assertNotNull("Fail to get jpeg/depth/heic ByteBuffer", buffer);
             data = new byte[buffer.remaining()];
@@ -1622,7 +1633,8 @@ public class CameraTestUtils extends Assert {
             // P010 samples are stored within 16 bit values
             int offset = 0;
             int bytesPerPixelRounded = (ImageFormat.getBitsPerPixel(format) + 7) / 8;
-            data = new byte[width * height * bytesPerPixelRounded];
+            data = allocateImageData(pool, format, width, height,
+                    width * height * bytesPerPixelRounded);
             assertTrue("Unexpected number of planes, expected " + 3 + " actual " + planes.length,
                     planes.length == 3);
             for (int i = 0; i < 2; i++) {
@@ -1636,13 +1648,19 @@ public class CameraTestUtils extends Assert {
                     Log.v(TAG, "height " + height);
                 }
                 int h = (i == 0) ? height : height / 2;
-                for (int row = 0; row < h; row++) {
-                    // Each 10-bit pixel occupies 2 bytes
-                    int length = 2 * width;
-                    buffer.get(data, offset, length);
-                    offset += length;
-                    if (row < h - 1) {
-                        buffer.position(buffer.position() + rowStride - length);
+                // Each 10-bit pixel occupies 2 bytes
+                int length = 2 * width;
+                if (rowStride == length) {
+                    // Special case: no row padding, read the whole plane at once
+                    buffer.get(data, offset, length * h);
+                    offset += length * h;
+                } else {
+                    for (int row = 0; row < h; row++) {
+                        buffer.get(data, offset, length);
+                        offset += length;
+                        if (row < h - 1) {
+                            buffer.position(buffer.position() + rowStride - length);
+                        }
                     }
                 }
                 if (VERBOSE) Log.v(TAG, "Finished reading data from plane " + i);
@@ -1652,14 +1670,16 @@ public class CameraTestUtils extends Assert {
         }
 
         int offset = 0;
-        data = new byte[width * height * ImageFormat.getBitsPerPixel(format) / 8];
+        int bytesPerPixel = ImageFormat.getBitsPerPixel(format) / 8;
+        data = allocateImageData(pool, format, width, height,
+                width * height * ImageFormat.getBitsPerPixel(format) / 8);
         int maxRowSize = planes[0].getRowStride();
         for (int i = 0; i < planes.length; i++) {
             if (maxRowSize < planes[i].getRowStride()) {
                 maxRowSize = planes[i].getRowStride();
             }
         }
-        byte[] rowData = new byte[maxRowSize];
+        byte[] rowData = null;
         if(VERBOSE) Log.v(TAG, "get data from " + planes.length + " planes");
         for (int i = 0; i < planes.length; i++) {
             buffer = planes[i].getBuffer();
@@ -1678,8 +1698,15 @@ public class CameraTestUtils extends Assert {
             int w = (i == 0) ? width : width / 2;
             int h = (i == 0) ? height : height / 2;
             assertTrue("rowStride " + rowStride + " should be >= width " + w , rowStride >= w);
+            if (pixelStride == bytesPerPixel && rowStride == w * bytesPerPixel) {
+                // Special case: neither pixel nor row padding, read the whole plane at once
+                buffer.get(data, offset, rowStride * h);
+                offset += rowStride * h;
+                if (VERBOSE) Log.v(TAG, "Finished reading data from plane " + i);
+                buffer.rewind();
+                continue;
+            }
             for (int row = 0; row < h; row++) {
-                int bytesPerPixel = ImageFormat.getBitsPerPixel(format) / 8;
                 int length;
                 if (pixelStride == bytesPerPixel) {
                     // Special case: optimized read of the entire row
@@ -1691,6 +1718,9 @@ public class CameraTestUtils extends Assert {
                     // Use intermediate buffer to avoid read byte-by-byte from
                     // DirectByteBuffer, which is very bad for performance
                     length = (w - 1) * pixelStride + bytesPerPixel;
+                    if (rowData == null) {
+                        rowData = getRowData(maxRowSize);
+                    }
                     buffer.get(rowData, 0, length);
                     for (int col = 0; col < w; col++) {
                         data[offset++] = rowData[col * pixelStride];
@@ -1707,6 +1737,186 @@ public class CameraTestUtils extends Assert {
         return data;
     }
 
+    /**
+     * <p>Check the planes of an image the same way as {@link #getDataFromImage(Image)} does, but
+     * without copying them.</p>
+     *
+     * @return The length of the array {@link #getDataFromImage(Image)} would return.
+     */
+    private static int getDataLengthFromImage(Image image) {
+        assertNotNull("Invalid image:", image);
+        int format = image.getFormat();
+        int width = image.getWidth();
+        int height = image.getHeight();
+        Plane[] planes = image.getPlanes();
+        assertTrue("Fail to get image planes", planes != null && planes.length > 0);
+        checkAndroidImageFormat(image);
+        assertFalse("Format " + format + " is not planar", isCompressedOrOpaqueFormat(format));
+
+        int dataLength = 0;
+        int numPlanes = planes.length;
+        int bytesPerPixel = ImageFormat.getBitsPerPixel(format) / 8;
+        if (format == ImageFormat.YCBCR_P010) {
+            assertTrue("Unexpected number of planes, expected " + 3 + " actual " + planes.length,
+                    planes.length == 3);
+            // The V plane is interleaved with the U plane and is not read
+            numPlanes = 2;
+            bytesPerPixel = 2;
+        }
+        for (int i = 0; i < numPlanes; i++) {
+            ByteBuffer buffer = planes[i].getBuffer();
+            assertNotNull("Fail to get bytebuffer from plane", buffer);
+            int rowStride = planes[i].getRowStride();
+            int pixelStride = planes[i].getPixelStride();
+            int w = (i == 0) ? width : width / 2;
+            int h = (i == 0) ? height : height / 2;
+            int rowLength;
+            if (format == ImageFormat.YCBCR_P010) {
+                // U and V samples are interleaved, so chroma rows are as wide as luma rows
+                w = width;
+                rowLength = w * bytesPerPixel;
+            } else {
+                assertTrue("pixel stride " + pixelStride + " is invalid", pixelStride > 0);
+                assertTrue("rowStride " + rowStride + " should be >= width " + w ,
+                        rowStride >= w);
+                rowLength = (pixelStride == bytesPerPixel) ? w * bytesPerPixel
+                        : (w - 1) * pixelStride + bytesPerPixel;
+            }
+            if (h > 0) {
+                long planeLength = (long) (h - 1) * rowStride + rowLength;
+                assertTrue("Plane " + i + " buffer size " + buffer.limit()
+                        + " is smaller than " + planeLength, buffer.limit() >= planeLength);
+            }
+            dataLength += w * h * bytesPerPixel;
+        }
+        return dataLength;
+    }
+
+    /** JPEG-like formats, which are read as a single 1D buffer. */
+    private static boolean isCompressedOrOpaqueFormat(int format) {
+        return format == ImageFormat.JPEG || format == ImageFormat.DEPTH_POINT_CLOUD ||
+                format == ImageFormat.RAW_PRIVATE || format == ImageFormat.DEPTH_JPEG ||
+                format == ImageFormat.HEIC;
+    }
+
+    private static byte[] allocateImageData(ImageDataPool pool, int format, int width,
+            int height, int length) {
+        return pool == null ? new byte[length] : pool.acquire(format, width, height, length);
+    }
+
+    /** Scratch buffers for reading rows with a pixel stride, one per thread. */
+    private static final ThreadLocal<byte[]> sRowData = new ThreadLocal<>();
+
+    private static byte[] getRowData(int minLength) {
+        byte[] rowData = sRowData.get();
+        if (rowData == null || rowData.length < minLength) {
+            rowData = new byte[minLength];
+            sRowData.set(rowData);
+        }
+        return rowData;
+    }
+
+    /**
+     * <p>A pool of arrays for {@link #getDataFromImage(Image, ImageDataPool)}, keyed by image
+     * format and size, to avoid allocating a large array for every frame of a capture.</p>
+     *
+     * <p>The pool keeps at most {@code maxBytes} of arrays, dropping the arrays of the least
+     * recently used format and size first, until it is {@link #clear cleared}.</p>
+     *
+     * <p>This class is thread safe.</p>
+     */
+    public static class ImageDataPool {
+        private static final int MAX_ARRAYS_PER_KEY = 4;
+
+        private final long mMaxBytes;
+        // In access order, so that the least recently used key comes first
+        private final LinkedHashMap<Key, ArrayDeque<byte[]>> mArrays =
+                new LinkedHashMap<>(16, 0.75f, /*accessOrder*/ true);
+        private long mBytes = 0;
+
+        private static final class Key {
+            private final int mFormat;
+            private final int mWidth;
+            private final int mHeight;
+
+            Key(int format, int width, int height) {
+                mFormat = format;
+                mWidth = width;
+                mHeight = height;
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                if (!(o instanceof Key)) {
+                    return false;
+                }
+                Key other = (Key) o;
+                return mFormat == other.mFormat && mWidth == other.mWidth
+                        && mHeight == other.mHeight;
+            }
+
+            @Override
+            public int hashCode() {
+                return (mFormat * 31 + mWidth) * 31 + mHeight;
+            }
+        }
+
+        /**
+         * @param maxBytes The maximum total size of the arrays kept by the pool.
+         */
+        public ImageDataPool(long maxBytes) {
+            mMaxBytes = maxBytes;
+        }
+
+        /** Takes an array of the given length from the pool, or allocates a new one. */
+        public synchronized byte[] acquire(int format, int width, int height, int length) {
+            ArrayDeque<byte[]> arrays = mArrays.get(new Key(format, width, height));
+            if (arrays != null) {
+                byte[] data = arrays.poll();
+                if (data != null) {
+                    mBytes -= data.length;
+                    if (data.length == length) {
+                        return data;
+                    }
+                }
+            }
+            return new byte[length];
+        }
+
+        /** Gives back an array returned by {@link #acquire} for an image of the given format. */
+        public synchronized void release(int format, int width, int height, byte[] data) {
+            if (data.length > mMaxBytes) {
+                return;
+            }
+            ArrayDeque<byte[]> arrays = mArrays.computeIfAbsent(
+                    new Key(format, width, height), k -> new ArrayDeque<>());
+            if (arrays.size() >= MAX_ARRAYS_PER_KEY) {
+                return;
+            }
+            arrays.push(data);
+            mBytes += data.length;
+
+            // Drop the oldest arrays of the least recently used keys. The array just released is
+            // the newest one of the most recently used key, so it is kept.
+            Iterator<ArrayDeque<byte[]>> it = mArrays.values().iterator();
+            while (mBytes > mMaxBytes) {
+                ArrayDeque<byte[]> eldest = it.next();
+                while (mBytes > mMaxBytes && !eldest.isEmpty()) {
+                    mBytes -= eldest.removeLast().length;
+                }
+                if (eldest.isEmpty()) {
+                    it.remove();
+                }
+            }
+        }
+
+        /** Drops all the arrays kept by the pool. */
+        public synchronized void clear() {
+            mArrays.clear();
+            mBytes = 0;
+        }
+    }
+
     /**
      * <p>Check android image format validity for an image, only support below formats:</p>
      *
@@ -2364,9 +2574,40 @@ public class CameraTestUtils extends Assert {
          * 2. timestamps should be monotonically increasing for different requests
          */
         if(VERBOSE) Log.v(TAG, "validating Image");
-        byte[] data = getDataFromImage(image);
+        boolean dumpData = DEBUG && filePath != null;
+        if (!dumpData && (format == ImageFormat.YUV_420_888 || format == ImageFormat.YV12
+                || format == ImageFormat.YCBCR_P010)) {
+            // Only the layout of the planes is validated, so it is checked in place.
+            int dataLength = getDataLengthFromImage(image);
+            assertTrue("Invalid image data", dataLength > 0);
+            if (format == ImageFormat.YCBCR_P010) {
+                checkP010DataLength(dataLength, width, height, format);
+            } else {
+                checkYuvDataLength(dataLength, width, height, format);
+            }
+            return;
+        }
+
+        byte[] data = getDataFromImage(image, sValidationDataPool);
         assertTrue("Invalid image data", data != null && data.length > 0);
+        try {
+            validateImageData(data, width, height, format, image.getTimestamp(), filePath);
+        } finally {
+            if (!isCompressedOrOpaqueFormat(format)) {
+                sValidationDataPool.release(format, width, height, data);
+            }
+        }
+    }
+
+    /**
+     * Arrays used to validate images, which are not kept after validation. Bounded so that the
+     * frames of the sizes a run goes through are not all kept alive, e.g. one 12MP RAW16 frame.
+     */
+    private static final ImageDataPool sValidationDataPool =
+            new ImageDataPool(/*maxBytes*/ 32 * 1024 * 1024);
 
+    private static void validateImageData(byte[] data, int width, int height, int format,
+            long ts, String filePath) {
         switch (format) {
             // Clients must be able to process and handle depth jpeg images like any other
             // regular jpeg.
@@ -2375,26 +2616,26 @@ public class CameraTestUtils extends Assert {
                 validateJpegData(data, width, height, filePath);
                 break;
             case ImageFormat.YCBCR_P010:
-                validateP010Data(data, width, height, format, image.getTimestamp(), filePath);
+                validateP010Data(data, width, height, format, ts, filePath);
                 break;
             case ImageFormat.YUV_420_888:
             case ImageFormat.YV12:
-                validateYuvData(data, width, height, format, image.getTimestamp(), filePath);
+                validateYuvData(data, width, height, format, ts, filePath);
                 break;
             case ImageFormat.RAW_SENSOR:
-                validateRaw16Data(data, width, height, format, image.getTimestamp(), filePath);
+                validateRaw16Data(data, width, height, format, ts, filePath);
                 break;
             case ImageFormat.DEPTH16:
-                validateDepth16Data(data, width, height, format, image.getTimestamp(), filePath);
+                validateDepth16Data(data, width, height, format, ts, filePath);
                 break;
             case ImageFormat.DEPTH_POINT_CLOUD:
-                validateDepthPointCloudData(data, width, height, format, image.getTimestamp(), filePath);
+                validateDepthPointCloudData(data, width, height, format, ts, filePath);
                 break;
             case ImageFormat.RAW_PRIVATE:
-                validateRawPrivateData(data, width, height, image.getTimestamp(), filePath);
+                validateRawPrivateData(data, width, height, ts, filePath);
                 break;
             case ImageFormat.Y8:
-                validateY8Data(data, width, height, format, image.getTimestamp(), filePath);
+                validateY8Data(data, width, height, format, ts, filePath);
                 break;
             case ImageFormat.HEIC:
                 validateHeicData(data, width, height, filePath);
@@ -2478,10 +2719,7 @@ public class CameraTestUtils extends Assert {
 
     private static void validateYuvData(byte[] yuvData, int width, int height, int format,
             long ts, String filePath) {
-        checkYuvFormat(format);
-        if (VERBOSE) Log.v(TAG, "Validating YUV data");
-        int expectedSize = width * height * ImageFormat.getBitsPerPixel(format) / 8;
-        assertEquals("Yuv data doesn't match", expectedSize, yuvData.length);
+        checkYuvDataLength(yuvData.length, width, height, format);
 
         // TODO: Can add data validation for test pattern.
 
@@ -2492,14 +2730,16 @@ public class CameraTestUtils extends Assert {
         }
     }
 
+    private static void checkYuvDataLength(int dataLength, int width, int height, int format) {
+        checkYuvFormat(format);
+        if (VERBOSE) Log.v(TAG, "Validating YUV data");
+        int expectedSize = width * height * ImageFormat.getBitsPerPixel(format) / 8;
+        assertEquals("Yuv data doesn't match", expectedSize, dataLength);
+    }
+
     private static void validateP010Data(byte[] p010Data, int width, int height, int format,
             long ts, String filePath) {
-        if (VERBOSE) Log.v(TAG, "Validating P010 data");
-        // The P010 10 bit samples are stored in two bytes so the size needs to be adjusted
-        // accordingly.
-        int bytesPerPixelRounded = (ImageFormat.getBitsPerPixel(format) + 7) / 8;
-        int expectedSize = width * height * bytesPerPixelRounded;
-        assertEquals("P010 data doesn't match", expectedSize, p010Data.length);
+        checkP010DataLength(p010Data.length, width, height, format);
 
         if (DEBUG && filePath != null) {
             String fileName =
@@ -2507,6 +2747,15 @@ public class CameraTestUtils extends Assert {
             dumpFile(fileName, p010Data);
         }
     }
+
+    private static void checkP010DataLength(int dataLength, int width, int height, int format) {
+        if (VERBOSE) Log.v(TAG, "Validating P010 data");
+        // The P010 10 bit samples are stored in two bytes so the size needs to be adjusted
+        // accordingly.
+        int bytesPerPixelRounded = (ImageFormat.getBitsPerPixel(format) + 7) / 8;
+        int expectedSize = width * height * bytesPerPixelRounded;
+        assertEquals("P010 data doesn't match", expectedSize, dataLength);
+    }
     private static void validateRaw16Data(byte[] rawData, int width, int height, int format,
             long ts, String filePath) {
         if (VERBOSE) Log.v(TAG, "Validating raw data");
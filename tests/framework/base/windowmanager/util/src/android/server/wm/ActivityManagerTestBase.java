@@ -174,6 +174,7 @@ import androidx.test.ext.junit.rules.ActivityScenarioRule;
 import com.android.compatibility.common.util.AppOpsUtils;
 import com.android.compatibility.common.util.SystemUtil;
 
+import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.rules.ErrorCollector;
@@ -633,6 +634,12 @@ public abstract class ActivityManagerTestBase {
         });
     }
 
+    /** Reports which conditions the tests of the class have spent the most time waiting for. */
+    @AfterClass
+    public static void logConditionWaitStats() {
+        Condition.logWaitStats();
+    }
+
     /** It always executes after {@link org.junit.After}. */
     private void tearDownBase() {
         mObjectTracker.tearDown(mPostAssertionRule::addError);
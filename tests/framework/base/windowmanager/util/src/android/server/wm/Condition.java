@@ -21,6 +21,10 @@ import static android.server.wm.StateLogger.logE;
 
 import android.os.SystemClock;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
@@ -31,6 +35,12 @@ import java.util.function.Supplier;
  * The utility class to wait a condition with customized options.
  * The default retry policy is 5 times with interval 1 second.
  *
+ * <p>The retry interval and limit give the total time to wait, i.e. interval * limit. The
+ * condition is first retried after a short interval which doubles on each retry up to the
+ * configured interval, so conditions which are satisfied quickly do not wait for a whole interval.
+ * A waiting condition is also retried as soon as {@link #notifyStateChanged()} is called, e.g. when
+ * an activity reports a callback to {@link TestJournalProvider}.
+ *
  * @param <T> The type of the object to validate.
  *
  * <p>Sample:</p>
@@ -49,11 +59,22 @@ import java.util.function.Supplier;
  * </pre>
  */
 public class Condition<T> {
+    /** The first retry interval, which is doubled on each retry up to the retry interval. */
+    private static final long INITIAL_RETRY_INTERVAL_MS = 50;
+    /** The number of histogram buckets, the last one holds waits of 2^(N-2)ms and more. */
+    private static final int WAIT_HISTOGRAM_BUCKETS = 16;
+    /** The number of conditions reported by {@link #logWaitStats()}. */
+    private static final int WAIT_STATS_LOG_LIMIT = 20;
+
+    private static final Object sStateChangeLock = new Object();
+    /** Incremented by {@link #notifyStateChanged()}, guarded by {@link #sStateChangeLock}. */
+    private static long sStateChangeCount;
+    private static final Map<String, WaitStats> sWaitStats = new ConcurrentHashMap<>();
+
     private final String mMessage;
 
-    // TODO(b/112837428): Implement a incremental retry policy to reduce the unnecessary constant
-    // time, currently keep the default as 5*1s because most of the original code uses it, and some
-    // tests might be sensitive to the waiting interval.
+    // The total time to wait is kept as 5*1s by default because most of the original code uses
+    // it, only the intermediate retries happen earlier.
     private long mRetryIntervalMs = TimeUnit.SECONDS.toMillis(1);
     private int mRetryLimit = 5;
     private boolean mReturnLastResult;
@@ -168,22 +189,29 @@ public class Condition<T> {
         }
 
         final long startTime = SystemClock.elapsedRealtime();
-        for (int i = 1; i <= condition.mRetryLimit; i++) {
+        final long endTime = startTime + condition.mRetryIntervalMs * condition.mRetryLimit;
+        long intervalMs = Math.min(INITIAL_RETRY_INTERVAL_MS, condition.mRetryIntervalMs);
+        for (int i = 1; ; i++) {
+            final long stateChangeCount = getStateChangeCount();
             if (condition.mSatisfier.getAsBoolean()) {
+                recordWait(condition.mMessage, SystemClock.elapsedRealtime() - startTime, true);
                 return true;
-            } else {
-                SystemClock.sleep(condition.mRetryIntervalMs);
-                logAlways("***Waiting for " + condition.mMessage + " ... retry=" + i
-                        + " elapsed=" + (SystemClock.elapsedRealtime() - startTime) + "ms");
-                if (condition.mOnRetry != null && i < condition.mRetryLimit) {
-                    condition.mOnRetry.run();
-                }
             }
-        }
-        if (condition.mSatisfier.getAsBoolean()) {
-            return true;
+            final long now = SystemClock.elapsedRealtime();
+            if (now >= endTime) {
+                break;
+            }
+            waitForStateChange(stateChangeCount, Math.min(intervalMs, endTime - now));
+            intervalMs = Math.min(intervalMs * 2, condition.mRetryIntervalMs);
+            final long elapsed = SystemClock.elapsedRealtime() - startTime;
+            logAlways("***Waiting for " + condition.mMessage + " ... retry=" + i
+                    + " elapsed=" + elapsed + "ms");
+            if (condition.mOnRetry != null && startTime + elapsed < endTime) {
+                condition.mOnRetry.run();
+            }
         }
 
+        recordWait(condition.mMessage, SystemClock.elapsedRealtime() - startTime, false);
         if (condition.mOnFailure == null) {
             logE("Condition is not satisfied: " + condition.mMessage);
         } else {
@@ -192,6 +220,123 @@ public class Condition<T> {
         return false;
     }
 
+    /**
+     * Wakes up the conditions which are waiting so they are checked again immediately. This should
+     * be called when something which conditions may depend on has happened, e.g. an activity
+     * lifecycle callback has been received.
+     */
+    public static void notifyStateChanged() {
+        synchronized (sStateChangeLock) {
+            sStateChangeCount++;
+            sStateChangeLock.notifyAll();
+        }
+    }
+
+    private static long getStateChangeCount() {
+        synchronized (sStateChangeLock) {
+            return sStateChangeCount;
+        }
+    }
+
+    /**
+     * Waits until the timeout expires or the state has changed since {@code stateChangeCount} was
+     * read. Like {@link SystemClock#sleep}, interruptions are deferred until the wait is over.
+     */
+    private static void waitForStateChange(long stateChangeCount, long timeoutMs) {
+        final long endTime = SystemClock.elapsedRealtime() + timeoutMs;
+        boolean interrupted = false;
+        synchronized (sStateChangeLock) {
+            long remainingMs = timeoutMs;
+            while (sStateChangeCount == stateChangeCount && remainingMs > 0) {
+                try {
+                    sStateChangeLock.wait(remainingMs);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+                remainingMs = endTime - SystemClock.elapsedRealtime();
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void recordWait(String message, long elapsedMs, boolean satisfied) {
+        sWaitStats.computeIfAbsent(message, WaitStats::new).record(elapsedMs, satisfied);
+    }
+
+    /**
+     * Logs the histograms of the time spent waiting for the conditions which have waited the
+     * longest in total, and clears all the recorded waits.
+     */
+    public static void logWaitStats() {
+        final List<WaitStats> stats = new ArrayList<>(sWaitStats.values());
+        sWaitStats.clear();
+        stats.sort((a, b) -> Long.compare(b.getTotalMs(), a.getTotalMs()));
+        for (int i = 0; i < stats.size() && i < WAIT_STATS_LOG_LIMIT; i++) {
+            logAlways("***Condition wait stats: " + stats.get(i));
+        }
+    }
+
+    /** The time spent waiting for conditions with the same message. */
+    private static class WaitStats {
+        private final String mMessage;
+        /** Bucket 0 holds waits of 0ms, bucket n holds waits of [2^(n-1), 2^n) ms. */
+        private final long[] mHistogram = new long[WAIT_HISTOGRAM_BUCKETS];
+        private long mCount;
+        private long mTotalMs;
+        private long mMaxMs;
+        private long mFailures;
+
+        WaitStats(String message) {
+            mMessage = message;
+        }
+
+        synchronized void record(long elapsedMs, boolean satisfied) {
+            final int bucket = 64 - Long.numberOfLeadingZeros(Math.max(elapsedMs, 0));
+            mHistogram[Math.min(bucket, WAIT_HISTOGRAM_BUCKETS - 1)]++;
+            mCount++;
+            mTotalMs += elapsedMs;
+            mMaxMs = Math.max(mMaxMs, elapsedMs);
+            if (!satisfied) {
+                mFailures++;
+            }
+        }
+
+        synchronized long getTotalMs() {
+            return mTotalMs;
+        }
+
+        @Override
+        public synchronized String toString() {
+            final StringBuilder sb = new StringBuilder(mMessage)
+                    .append(" count=").append(mCount)
+                    .append(" failures=").append(mFailures)
+                    .append(" total=").append(mTotalMs).append("ms")
+                    .append(" max=").append(mMaxMs).append("ms")
+                    .append(" histogram={");
+            boolean first = true;
+            for (int i = 0; i < WAIT_HISTOGRAM_BUCKETS; i++) {
+                if (mHistogram[i] == 0) {
+                    continue;
+                }
+                if (!first) {
+                    sb.append(", ");
+                }
+                first = false;
+                if (i == 0) {
+                    sb.append('0');
+                } else if (i < WAIT_HISTOGRAM_BUCKETS - 1) {
+                    sb.append('<').append(1L << i);
+                } else {
+                    sb.append(">=").append(1L << (i - 1));
+                }
+                sb.append("ms:").append(mHistogram[i]);
+            }
+            return sb.append('}').toString();
+        }
+    }
+
     /** @see #waitForResult(Condition) */
     public static <T> T waitForResult(String message, Consumer<Condition<T>> setup) {
         final Condition<T> condition = new Condition<>(message);
@@ -106,6 +106,8 @@ public class TestJournalProvider extends ContentProvider {
                         extras.getString(EXTRA_KEY_OWNER), extras);
                 break;
         }
+        // Let the conditions waiting for the journal check it immediately.
+        Condition.notifyStateChanged();
         return null;
     }
 
@@ -83,7 +83,10 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -138,6 +141,16 @@ public class WindowManagerState {
     private final List<Task> mRootTasks = new ArrayList<>();
     // Windows in z-order with the top most at the front of the list.
     private final List<WindowState> mWindowStates = new ArrayList<>();
+    // Indexes of the containers above, only built when first used as most dumps are only used for
+    // a few lookups. The first container in z-order is kept when several match, like a linear
+    // search would find.
+    private Map<Integer, DisplayContent> mDisplaysById;
+    private Map<Integer, Task> mRootTasksById;
+    private Map<Integer, Task> mTasksById;
+    private Map<String, Activity> mActivitiesByName;
+    private Map<String, WindowState> mWindowsByToken;
+    private Map<String, List<WindowState>> mWindowsByName;
+    private Map<Integer, List<WindowState>> mWindowsByType;
     private KeyguardControllerState mKeyguardControllerState;
     private final List<String> mPendingActivities = new ArrayList<>();
     private int mTopFocusedTaskId = -1;
@@ -445,6 +458,13 @@ public class WindowManagerState {
         mDisplays.clear();
         mRootTasks.clear();
         mWindowStates.clear();
+        mDisplaysById = null;
+        mRootTasksById = null;
+        mTasksById = null;
+        mActivitiesByName = null;
+        mWindowsByToken = null;
+        mWindowsByName = null;
+        mWindowsByType = null;
         mTopFocusedTaskId = -1;
         mFocusedDisplayId = DEFAULT_DISPLAY;
         mFocusedWindow = null;
@@ -462,6 +482,85 @@ public class WindowManagerState {
         mWindowFramesValid = false;
     }
 
+    private Map<Integer, DisplayContent> getDisplaysById() {
+        if (mDisplaysById == null) {
+            mDisplaysById = new HashMap<>();
+            for (DisplayContent display : mDisplays) {
+                mDisplaysById.putIfAbsent(display.mId, display);
+            }
+        }
+        return mDisplaysById;
+    }
+
+    private Map<Integer, Task> getRootTasksById() {
+        if (mRootTasksById == null) {
+            mRootTasksById = new HashMap<>();
+            for (Task rootTask : mRootTasks) {
+                mRootTasksById.putIfAbsent(rootTask.mRootTaskId, rootTask);
+            }
+        }
+        return mRootTasksById;
+    }
+
+    /** Root tasks and their direct children, as searched by {@link Task#getTask(int)}. */
+    private Map<Integer, Task> getTasksById() {
+        if (mTasksById == null) {
+            mTasksById = new HashMap<>();
+            for (Task rootTask : mRootTasks) {
+                rootTask.forAllTasks(task -> mTasksById.putIfAbsent(task.mTaskId, task));
+            }
+        }
+        return mTasksById;
+    }
+
+    private Map<String, Activity> getActivitiesByName() {
+        if (mActivitiesByName == null) {
+            mActivitiesByName = new HashMap<>();
+            for (Task rootTask : mRootTasks) {
+                // Visits the activities in the same order as the lookups by predicate.
+                rootTask.getActivity(activity -> {
+                    mActivitiesByName.putIfAbsent(activity.name, activity);
+                    return false;
+                });
+            }
+        }
+        return mActivitiesByName;
+    }
+
+    private Map<String, WindowState> getWindowsByToken() {
+        if (mWindowsByToken == null) {
+            mWindowsByToken = new HashMap<>();
+            for (WindowState window : mWindowStates) {
+                mWindowsByToken.putIfAbsent(window.getToken(), window);
+            }
+        }
+        return mWindowsByToken;
+    }
+
+    /** Windows with the given name, in z-order. */
+    private List<WindowState> getWindowsByName(String windowName) {
+        if (mWindowsByName == null) {
+            mWindowsByName = new HashMap<>();
+            for (WindowState window : mWindowStates) {
+                mWindowsByName.computeIfAbsent(window.getName(), k -> new ArrayList<>())
+                        .add(window);
+            }
+        }
+        return mWindowsByName.getOrDefault(windowName, Collections.emptyList());
+    }
+
+    /** Windows with the given type, in z-order. */
+    private List<WindowState> getWindowsByType(int type) {
+        if (mWindowsByType == null) {
+            mWindowsByType = new HashMap<>();
+            for (WindowState window : mWindowStates) {
+                mWindowsByType.computeIfAbsent(window.getType(), k -> new ArrayList<>())
+                        .add(window);
+            }
+        }
+        return mWindowsByType.getOrDefault(type, Collections.emptyList());
+    }
+
     public String getFocusedApp() {
         return mFocusedApp;
     }
@@ -479,12 +578,7 @@ public class WindowManagerState {
     }
 
     DisplayContent getDisplay(int displayId) {
-        for (DisplayContent display : mDisplays) {
-            if (display.mId == displayId) {
-                return display;
-            }
-        }
-        return null;
+        return getDisplaysById().get(displayId);
     }
 
     @Nullable
@@ -615,12 +709,7 @@ public class WindowManagerState {
     }
 
     public Task getRootTask(int taskId) {
-        for (Task rootTask : mRootTasks) {
-            if (taskId == rootTask.mRootTaskId) {
-                return rootTask;
-            }
-        }
-        return null;
+        return getRootTasksById().get(taskId);
     }
 
     public Task getRootTaskByActivityType(int activityType) {
@@ -695,21 +784,22 @@ public class WindowManagerState {
     }
 
     public boolean containsActivity(ComponentName activityName) {
-        for (Task rootTask : mRootTasks) {
-            if (rootTask.containsActivity(activityName)) return true;
-        }
-        return false;
+        return findActivity(activityName) != null;
     }
 
     public boolean containsNoneOf(Iterable<ComponentName> activityNames) {
         for (ComponentName activityName : activityNames) {
-            for (Task rootTask : mRootTasks) {
-                if (rootTask.containsActivity(activityName)) return false;
-            }
+            if (containsActivity(activityName)) return false;
         }
         return true;
     }
 
+    /** Finds the first activity with the given name, in z-order. */
+    @Nullable
+    private Activity findActivity(ComponentName activityName) {
+        return getActivitiesByName().get(getActivityName(activityName));
+    }
+
     public boolean containsActivityInWindowingMode(ComponentName activityName, int windowingMode) {
         for (Task rootTask : mRootTasks) {
             final Activity activity = rootTask.getActivity(activityName);
@@ -721,19 +811,13 @@ public class WindowManagerState {
     }
 
     public boolean isActivityVisible(ComponentName activityName) {
-        for (Task rootTask : mRootTasks) {
-            final Activity activity = rootTask.getActivity(activityName);
-            if (activity != null) return activity.visible;
-        }
-        return false;
+        final Activity activity = findActivity(activityName);
+        return activity != null && activity.visible;
     }
 
     public boolean isActivityTranslucent(ComponentName activityName) {
-        for (Task rootTask : mRootTasks) {
-            final Activity activity = rootTask.getActivity(activityName);
-            if (activity != null) return activity.translucent;
-        }
-        return false;
+        final Activity activity = findActivity(activityName);
+        return activity != null && activity.translucent;
     }
 
     public boolean isBehindOpaqueActivities(ComponentName activityName) {
@@ -764,19 +848,13 @@ public class WindowManagerState {
     }
 
     boolean hasActivityState(ComponentName activityName, String activityState) {
-        for (Task rootTask : mRootTasks) {
-            final Activity activity = rootTask.getActivity(activityName);
-            if (activity != null) return activity.state.equals(activityState);
-        }
-        return false;
+        final Activity activity = findActivity(activityName);
+        return activity != null && activity.state.equals(activityState);
     }
 
     int getActivityProcId(ComponentName activityName) {
-        for (Task rootTask : mRootTasks) {
-            final Activity activity = rootTask.getActivity(activityName);
-            if (activity != null) return activity.procId;
-        }
-        return -1;
+        final Activity activity = findActivity(activityName);
+        return activity != null ? activity.procId : -1;
     }
 
     boolean isRecentsActivityVisible() {
@@ -858,6 +936,13 @@ public class WindowManagerState {
 
     private Activity getActivity(ComponentName activityName, int windowingMode,
             int[] excludeTaskIds) {
+        if (windowingMode == WINDOWING_MODE_UNDEFINED && excludeTaskIds.length == 1
+                && excludeTaskIds[0] == INVALID_TASK_ID) {
+            final Activity activity = findActivity(activityName);
+            if (activity == null || activity.getTask().mTaskId != INVALID_TASK_ID) {
+                return activity;
+            }
+        }
         for (Task rootTask : mRootTasks) {
             if (windowingMode == WINDOWING_MODE_UNDEFINED
                     || windowingMode == rootTask.getWindowingMode()) {
@@ -879,23 +964,22 @@ public class WindowManagerState {
     public int getActivityCountInTask(int taskId, @Nullable ComponentName activityName) {
         // If activityName is null, count all activities in the task.
         // Otherwise count activities that have specified name.
-        for (Task rootTask : mRootTasks) {
-            final Task task = rootTask.getTask(taskId);
-            if (task == null) continue;
+        final Task task = getTasksById().get(taskId);
+        if (task == null) {
+            return 0;
+        }
 
-            if (activityName == null) {
-                return task.mActivities.size();
-            }
-            final String fullName = getActivityName(activityName);
-            int count = 0;
-            for (Activity activity : task.mActivities) {
-                if (activity.name.equals(fullName)) {
-                    count++;
-                }
+        if (activityName == null) {
+            return task.mActivities.size();
+        }
+        final String fullName = getActivityName(activityName);
+        int count = 0;
+        for (Activity activity : task.mActivities) {
+            if (activity.name.equals(fullName)) {
+                count++;
             }
-            return count;
         }
-        return 0;
+        return count;
     }
 
     public int getRootTasksCount() {
@@ -934,7 +1018,8 @@ public class WindowManagerState {
     }
 
     public List<WindowState> getMatchingVisibleWindowState(final String windowName) {
-        return getMatchingWindows(ws -> ws.isSurfaceShown() && windowName.equals(ws.getName()))
+        return getWindowsByName(windowName).stream()
+                .filter(WindowState::isSurfaceShown)
                 .collect(Collectors.toList());
     }
 
@@ -965,18 +1050,17 @@ public class WindowManagerState {
     }
 
     List<WindowState> getMatchingWindowType(int type) {
-        return getMatchingWindows(ws -> type == ws.mType).collect(Collectors.toList());
+        return new ArrayList<>(getWindowsByType(type));
     }
 
     List<String> getMatchingWindowTokens(final String windowName) {
-        return getMatchingWindows(ws -> windowName.equals(ws.getName()))
+        return getWindowsByName(windowName).stream()
                 .map(WindowState::getToken)
                 .collect(Collectors.toList());
     }
 
     List<WindowState> getAllNavigationBarStates() {
-        return getMatchingWindows(WindowManagerState::isValidNavBarType)
-                .collect(Collectors.toList());
+        return new ArrayList<>(getWindowsByType(TYPE_NAVIGATION_BAR));
     }
 
     @Nullable
@@ -994,9 +1078,7 @@ public class WindowManagerState {
     }
 
     WindowState getWindowStateForAppToken(String appToken) {
-        return getMatchingWindows(ws -> ws.getToken().equals(appToken))
-                .findFirst()
-                .orElse(null);
+        return appToken == null ? null : getWindowsByToken().get(appToken);
     }
 
     String getFrontWindow() {
@@ -1008,21 +1090,14 @@ public class WindowManagerState {
 
     /** Check if there exists a window record with matching windowName. */
     public boolean containsWindow(String windowName) {
-        for (WindowState window : mWindowStates) {
-            if (window.getName().equals(windowName)) {
-                return true;
-            }
-        }
-        return false;
+        return !getWindowsByName(windowName).isEmpty();
     }
 
     /** Check if at least one window which matches the specified name has shown it's surface. */
     public boolean isWindowSurfaceShown(String windowName) {
-        for (WindowState window : mWindowStates) {
-            if (window.getName().equals(windowName)) {
-                if (window.isSurfaceShown()) {
-                    return true;
-                }
+        for (WindowState window : getWindowsByName(windowName)) {
+            if (window.isSurfaceShown()) {
+                return true;
             }
         }
         return false;
@@ -1030,11 +1105,9 @@ public class WindowManagerState {
 
     /** Check if at least one window which matches provided window name is visible. */
     public boolean isWindowVisible(String windowName) {
-        for (WindowState window : mWindowStates) {
-            if (window.getName().equals(windowName)) {
-                if (window.isVisible()) {
-                    return true;
-                }
+        for (WindowState window : getWindowsByName(windowName)) {
+            if (window.isVisible()) {
+                return true;
             }
         }
         return false;
@@ -1042,15 +1115,13 @@ public class WindowManagerState {
 
     public boolean allWindowSurfacesShown(String windowName) {
         boolean allShown = false;
-        for (WindowState window : mWindowStates) {
-            if (window.getName().equals(windowName)) {
-                if (!window.isSurfaceShown()) {
-                    log("[VISIBLE] not visible" + windowName);
-                    return false;
-                }
-                log("[VISIBLE] visible" + windowName);
-                allShown = true;
+        for (WindowState window : getWindowsByName(windowName)) {
+            if (!window.isSurfaceShown()) {
+                log("[VISIBLE] not visible" + windowName);
+                return false;
             }
+            log("[VISIBLE] visible" + windowName);
+            allShown = true;
         }
         return allShown;
     }
@@ -1066,12 +1137,8 @@ public class WindowManagerState {
     }
 
     WindowState findFirstWindowWithType(int type) {
-        for (WindowState window : mWindowStates) {
-            if (window.getType() == type) {
-                return window;
-            }
-        }
-        return null;
+        final List<WindowState> windows = getWindowsByType(type);
+        return windows.isEmpty() ? null : windows.get(0);
     }
 
     public int getZOrder(WindowState w) {
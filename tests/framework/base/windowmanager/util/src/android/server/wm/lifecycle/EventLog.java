@@ -27,6 +27,7 @@ import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.RemoteException;
+import android.server.wm.Condition;
 import android.util.Pair;
 
 import java.util.ArrayList;
@@ -81,6 +82,7 @@ public class EventLog extends ContentProvider {
         if (sEventTracker != null) {
             sEventTracker.onEventObserved();
         }
+        Condition.notifyStateChanged();
     }
 
     /** Get logs for all recorded transitions. */
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.location.cts.asn1.benchmark;
+
+import android.location.cts.asn1.base.Asn1Integer;
+import android.location.cts.asn1.base.PacketBuilder;
+import android.location.cts.asn1.supl2.rrlp_components.ControlHeader;
+import android.location.cts.asn1.supl2.rrlp_components.EphemerisSubframe1Reserved;
+import android.location.cts.asn1.supl2.rrlp_components.GPSTime;
+import android.location.cts.asn1.supl2.rrlp_components.IonosphericModel;
+import android.location.cts.asn1.supl2.rrlp_components.NavModelElement;
+import android.location.cts.asn1.supl2.rrlp_components.SeqOfNavModelElement;
+import android.location.cts.asn1.supl2.rrlp_components.UncompressedEphemeris;
+import android.location.cts.asn1.supl2.rrlp_messages.PDU;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Round trips an RRLP assistance data message through the unaligned PER encoder and decoder.
+ *
+ * <p>The message has the same shape as the ones a SUPL server sends to {@code SuplRrlpController}:
+ * a reference time, an ionospheric model and a navigation model with an uncompressed ephemeris
+ * for each of the maximum 16 satellites. The fields are filled with random values within their
+ * ranges so that every bit pattern is exercised.
+ *
+ * <p>Each case is run a number of times to warm up the JIT before the measured iterations, and
+ * the average time per iteration is reported.
+ *
+ * <p>Usage: {@code AssistanceDataBenchmark [iterations]}.
+ */
+public class AssistanceDataBenchmark {
+
+    private static final int SATELLITES = 16;
+
+    private static final int WARMUP_ITERATIONS = 2_000;
+
+    private static final int DEFAULT_ITERATIONS = 10_000;
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ITERATIONS;
+        PDU pdu = createAssistanceData(new Random(0));
+        byte[] encoded = encode(pdu);
+        if (!Arrays.equals(encoded, encode(PDU.fromPerUnaligned(encoded)))) {
+            throw new AssertionError("Decoded message does not encode to the same bytes");
+        }
+        System.out.printf("Encoded %d bytes, %d iterations%n", encoded.length, iterations);
+
+        run("encode", iterations, () -> encode(pdu).length);
+        run("decode", iterations, () -> PDU.fromPerUnaligned(encoded).hashCode());
+        run("round trip", iterations, () -> encode(PDU.fromPerUnaligned(encoded)).length);
+    }
+
+    private interface Case {
+        int run();
+    }
+
+    private static void run(String name, int iterations, Case benchmarkCase) {
+        // Accumulate the results so that the work can not be optimized away.
+        int sink = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink += benchmarkCase.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += benchmarkCase.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%-20s %10.3f us/op (%d)%n", name,
+                elapsed / 1_000.0 / iterations, sink);
+    }
+
+    private static byte[] encode(PDU pdu) {
+        PacketBuilder builder = new PacketBuilder();
+        builder.appendAll(pdu.encodePerUnaligned());
+        return builder.getPaddedBytes();
+    }
+
+    private static PDU createAssistanceData(Random random) {
+        PDU pdu = new PDU();
+        set(pdu.setReferenceNumberToNewInstance(), 1);
+        ControlHeader controlHeader = pdu.setComponentToNewInstance()
+                .setAssistanceDataToNewInstance()
+                .setGps_AssistDataToNewInstance()
+                .setControlHeaderToNewInstance();
+
+        GPSTime gpsTime = controlHeader.setReferenceTimeToNewInstance().setGpsTimeToNewInstance();
+        set(gpsTime.setGpsTOW23bToNewInstance(), random(random, 0, 7559999));
+        set(gpsTime.setGpsWeekToNewInstance(), random(random, 0, 1023));
+
+        IonosphericModel ionosphericModel = controlHeader.setIonosphericModelToNewInstance();
+        set(ionosphericModel.setAlfa0ToNewInstance(), random(random, -128, 127));
+        set(ionosphericModel.setAlfa1ToNewInstance(), random(random, -128, 127));
+        set(ionosphericModel.setAlfa2ToNewInstance(), random(random, -128, 127));
+        set(ionosphericModel.setAlfa3ToNewInstance(), random(random, -128, 127));
+        set(ionosphericModel.setBeta0ToNewInstance(), random(random, -128, 127));
+        set(ionosphericModel.setBeta1ToNewInstance(), random(random, -128, 127));
+        set(ionosphericModel.setBeta2ToNewInstance(), random(random, -128, 127));
+        set(ionosphericModel.setBeta3ToNewInstance(), random(random, -128, 127));
+
+        SeqOfNavModelElement navModelList =
+                controlHeader.setNavigationModelToNewInstance().setNavModelListToNewInstance();
+        for (int satellite = 0; satellite < SATELLITES; satellite++) {
+            NavModelElement element = navModelList.createAndAddValue();
+            set(element.setSatelliteIDToNewInstance(), satellite);
+            fillEphemeris(random,
+                    element.setSatStatusToNewInstance().setNewSatelliteAndModelUCToNewInstance());
+        }
+        return pdu;
+    }
+
+    private static void fillEphemeris(Random random, UncompressedEphemeris ephemeris) {
+        set(ephemeris.setEphemCodeOnL2ToNewInstance(), random(random, 0, 3));
+        set(ephemeris.setEphemURAToNewInstance(), random(random, 0, 15));
+        set(ephemeris.setEphemSVhealthToNewInstance(), random(random, 0, 63));
+        set(ephemeris.setEphemIODCToNewInstance(), random(random, 0, 1023));
+        set(ephemeris.setEphemL2PflagToNewInstance(), random(random, 0, 1));
+        EphemerisSubframe1Reserved reserved = ephemeris.setEphemSF1RsvdToNewInstance();
+        set(reserved.setReserved1ToNewInstance(), random(random, 0, 8388607));
+        set(reserved.setReserved2ToNewInstance(), random(random, 0, 16777215));
+        set(reserved.setReserved3ToNewInstance(), random(random, 0, 16777215));
+        set(reserved.setReserved4ToNewInstance(), random(random, 0, 65535));
+        set(ephemeris.setEphemTgdToNewInstance(), random(random, -128, 127));
+        set(ephemeris.setEphemTocToNewInstance(), random(random, 0, 37799));
+        set(ephemeris.setEphemAF2ToNewInstance(), random(random, -128, 127));
+        set(ephemeris.setEphemAF1ToNewInstance(), random(random, -32768, 32767));
+        set(ephemeris.setEphemAF0ToNewInstance(), random(random, -2097152, 2097151));
+        set(ephemeris.setEphemCrsToNewInstance(), random(random, -32768, 32767));
+        set(ephemeris.setEphemDeltaNToNewInstance(), random(random, -32768, 32767));
+        set(ephemeris.setEphemM0ToNewInstance(), random(random, -2147483648L, 2147483647L));
+        set(ephemeris.setEphemCucToNewInstance(), random(random, -32768, 32767));
+        set(ephemeris.setEphemEToNewInstance(), random(random, 0, 4294967295L));
+        set(ephemeris.setEphemCusToNewInstance(), random(random, -32768, 32767));
+        set(ephemeris.setEphemAPowerHalfToNewInstance(), random(random, 0, 4294967295L));
+        set(ephemeris.setEphemToeToNewInstance(), random(random, 0, 37799));
+        set(ephemeris.setEphemFitFlagToNewInstance(), random(random, 0, 1));
+        set(ephemeris.setEphemAODAToNewInstance(), random(random, 0, 31));
+        set(ephemeris.setEphemCicToNewInstance(), random(random, -32768, 32767));
+        set(ephemeris.setEphemOmegaA0ToNewInstance(), random(random, -2147483648L, 2147483647L));
+        set(ephemeris.setEphemCisToNewInstance(), random(random, -32768, 32767));
+        set(ephemeris.setEphemI0ToNewInstance(), random(random, -2147483648L, 2147483647L));
+        set(ephemeris.setEphemCrcToNewInstance(), random(random, -32768, 32767));
+        set(ephemeris.setEphemWToNewInstance(), random(random, -2147483648L, 2147483647L));
+        set(ephemeris.setEphemOmegaADotToNewInstance(), random(random, -8388608, 8388607));
+        set(ephemeris.setEphemIDotToNewInstance(), random(random, -8192, 8191));
+    }
+
+    private static long random(Random random, long minimum, long maximum) {
+        return minimum + (long) (random.nextDouble() * (maximum - minimum + 1));
+    }
+
+    private static void set(Asn1Integer field, long value) {
+        field.setInteger(BigInteger.valueOf(value));
+    }
+}
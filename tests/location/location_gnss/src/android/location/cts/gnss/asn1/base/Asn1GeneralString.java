@@ -86,9 +86,7 @@ public class Asn1GeneralString extends Asn1Object {
     }
 
     BitStream result = new BitStream();
-    for (byte b : value) {
-      result.appendByte(b);
-    }
+    result.appendBytes(value, 0, value.length);
     if (aligned && maximumSize * characterBitCount > 16) {
       result.setBeginByteAligned();
     }
@@ -140,9 +138,7 @@ public class Asn1GeneralString extends Asn1Object {
         reader.spoolToByteBoundary();
       }
       value = new byte[maximumSize];
-      for (int i = 0; i < maximumSize; i++) {
-        value[i] = reader.readByte();
-      }
+      reader.readBytes(value, 0, maximumSize);
       return;
     }
 
@@ -165,9 +161,7 @@ public class Asn1GeneralString extends Asn1Object {
     }
 
     value = new byte[count];
-    for (int i = 0; i < count; i++) {
-      value[i] = reader.readByte();
-    }
+    reader.readBytes(value, 0, count);
   }
 
   @Override public void decodePerUnaligned(BitStreamReader reader) {
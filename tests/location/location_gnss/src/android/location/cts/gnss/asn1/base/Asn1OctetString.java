@@ -94,9 +94,7 @@ public class Asn1OctetString extends Asn1Object {
       }
       if (maximumSize < SIXTYFOUR_K) {
         BitStream result = new BitStream();
-        for (int i = 0; i < maximumSize; i++) {
-          result.appendByte(value[i]);
-        }
+        result.appendBytes(value, 0, maximumSize);
         if (aligned && maximumSize > 2) {
           result.setBeginByteAligned();
         }
@@ -137,9 +135,7 @@ public class Asn1OctetString extends Asn1Object {
         if (aligned && maximumSize > 2) {
           reader.spoolToByteBoundary();
         }
-        for (int i = 0; i < maximumSize; i++) {
-          value[i] = reader.readByte();
-        }
+        reader.readBytes(value, 0, maximumSize);
         return;
       }
     }
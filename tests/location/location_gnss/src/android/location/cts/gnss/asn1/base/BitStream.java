@@ -30,13 +30,14 @@ import java.util.Arrays;
 public final class BitStream {
 
   /**
-   * The number of bytes that is initially allocated and by which the buffer
-   * gets expanded when necessary.
+   * The number of bytes that is initially allocated. The buffer is doubled in
+   * size when necessary, most streams only hold a few bits of a single field
+   * while the ones a whole message is concatenated into hold kilobytes.
    */
-  static final int BUFFER_CHUNK = 50;
+  static final int INITIAL_CAPACITY = 8;
   private static final int BITS_IN_BYTE = 8;
 
-  private byte[] buffer = new byte[BUFFER_CHUNK];
+  private byte[] buffer = new byte[INITIAL_CAPACITY];
   /**
    * The position in the buffer of the unfinished byte in progress.
    */
@@ -56,10 +57,50 @@ public final class BitStream {
     buffer[position] = (byte) (buffer[position] | (data << (BITS_IN_BYTE - setBits)) & 0xFF);
   }
 
+  /**
+   * Appends {@code length} bytes from {@code data} starting at {@code offset}.
+   */
+  public void appendBytes(byte[] data, int offset, int length) {
+    ensureCapacity(position + length + 1);
+    if (setBits == 0) {
+      System.arraycopy(data, offset, buffer, position, length);
+      position += length;
+      return;
+    }
+    int lowBits = BITS_IN_BYTE - setBits;
+    int current = buffer[position] & 0xFF;
+    for (int i = offset; i < offset + length; i++) {
+      int b = data[i] & 0xFF;
+      buffer[position++] = (byte) (current | b >>> setBits);
+      current = (b << lowBits) & 0xFF;
+    }
+    buffer[position] = (byte) current;
+  }
+
+  /**
+   * Appends all the bits of {@code other}, ignoring whether it begins byte
+   * aligned.
+   */
+  public void append(BitStream other) {
+    appendBytes(other.buffer, 0, other.position);
+    if (other.setBits != 0) {
+      appendBits(other.setBits,
+                 (other.buffer[other.position] & 0xFF) >>> (BITS_IN_BYTE - other.setBits));
+    }
+  }
+
   private void incrementPosition() {
     position++;
-    if (position >= buffer.length) {
-      buffer = Arrays.copyOf(buffer, buffer.length + BUFFER_CHUNK);
+    ensureCapacity(position + 1);
+  }
+
+  /**
+   * Makes sure the buffer has room for {@code capacity} bytes, including the
+   * unfinished byte in progress.
+   */
+  private void ensureCapacity(int capacity) {
+    if (capacity > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
     }
   }
 
@@ -84,13 +125,31 @@ public final class BitStream {
    */
   public void appendLowBits(int howManyBits, byte data) {
     Preconditions.checkArgument(howManyBits < BITS_IN_BYTE);
-    int lowMask = (1 << howManyBits) - 1;
-    int highMask = ~lowMask;
-    int maskedData = data;
-    while (highMask < -1) {
-      maskedData &= ~highMask;
-      highMask >>= 1;
-      appendBit((maskedData & highMask) != 0);
+    appendBits(howManyBits, data);
+  }
+
+  /**
+   * Appends the lowest {@code howManyBits}, up to 64, from the {@code data} in
+   * order from most significant to least significant.
+   *
+   * <p>The bits are packed into the buffer as many at a time as fit in the
+   * unfinished byte rather than one by one.
+   */
+  public void appendBits(int howManyBits, long data) {
+    Preconditions.checkArgument(howManyBits >= 0 && howManyBits <= Long.SIZE);
+    ensureCapacity(position + (setBits + howManyBits) / BITS_IN_BYTE + 1);
+    int remaining = howManyBits;
+    while (remaining > 0) {
+      int free = BITS_IN_BYTE - setBits;
+      int count = Math.min(free, remaining);
+      remaining -= count;
+      int chunk = (int) (data >>> remaining) & ((1 << count) - 1);
+      buffer[position] = (byte) (buffer[position] | chunk << (free - count));
+      setBits += count;
+      if (setBits == BITS_IN_BYTE) {
+        position++;
+        setBits = 0;
+      }
     }
   }
 
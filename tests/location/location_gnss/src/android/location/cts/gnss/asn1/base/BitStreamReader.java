@@ -76,15 +76,54 @@ public class BitStreamReader {
     return result;
   }
 
+  /**
+   * Reads {@code length} bytes (8 bits each) from the stream into
+   * {@code dest} starting at {@code offset}.
+   * @throws IndexOutOfBoundsException if there is no more data.
+   */
+  public void readBytes(byte[] dest, int offset, int length) {
+    if (bitsRead == 0 || bitsRead == BITS_IN_BYTE) {
+      // Byte aligned, so copy directly. A byte which has been fully read is
+      // only skipped by the next read.
+      System.arraycopy(buffer, bitsRead == 0 ? position : position + 1, dest, offset, length);
+      position += length;
+      return;
+    }
+    for (int i = offset; i < offset + length; i++) {
+      dest[i] = readByte();
+    }
+  }
+
   /**
    * Returns next {@code howMany} bits as the low bits in the returned byte.
    * @throws IndexOutOfBoundsException if there is no more data.
    */
   public int readLowBits(int howMany) {
-    int result = 0;
-    for (int i = 0; i < howMany; i++) {
-      result <<= 1;
-      result |= (readBit() ? 1 : 0);
+    return (int) readBits(howMany);
+  }
+
+  /**
+   * Returns next {@code howMany} bits, up to 64, as the low bits in the
+   * returned long.
+   *
+   * <p>The bits are taken from the buffer as many at a time as remain in the
+   * current byte rather than one by one.
+   * @throws IndexOutOfBoundsException if there is no more data.
+   */
+  public long readBits(int howMany) {
+    long result = 0;
+    int remaining = howMany;
+    while (remaining > 0) {
+      if (bitsRead == BITS_IN_BYTE) {
+        position++;
+        bitsRead = 0;
+      }
+      int available = BITS_IN_BYTE - bitsRead;
+      int count = Math.min(available, remaining);
+      int chunk = ((buffer[position] & 0xFF) >>> (available - count)) & ((1 << count) - 1);
+      result = (result << count) | chunk;
+      bitsRead += count;
+      remaining -= count;
     }
     return result;
   }
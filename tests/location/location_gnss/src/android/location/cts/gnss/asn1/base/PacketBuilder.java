@@ -25,17 +25,7 @@ public class PacketBuilder {
     if (appendix.beginsByteAligned()) {
       bitStream.spoolToByteBoundary();
     }
-    int bitsToAppend = appendix.getBitCount();
-    byte[] bytes = appendix.getPaddedBytes();
-    for (int i = 0; bitsToAppend >= 8; i++, bitsToAppend -= 8) {
-      bitStream.appendByte(bytes[i]);
-    }
-    if (bitsToAppend != 0) {
-      byte highBits = bytes[bytes.length - 1];
-      byte lowBits = (byte) ((highBits & 0xFF)
-                             >> (8 - bitsToAppend));
-      bitStream.appendLowBits(bitsToAppend, lowBits);
-    }
+    bitStream.append(appendix);
   }
 
   public byte[] getPaddedBytes() {
@@ -171,9 +171,7 @@ public class PerAlignedUtils {
     }
     BitStream value = new BitStream();
     value.setBeginByteAligned();
-    for (byte aByte : bytes) {
-      value.appendByte(aByte);
-    }
+    value.appendBytes(bytes, 0, bytes.length);
     return ImmutableList.of(lengthDeterminant, value);
     
   }
@@ -194,9 +192,7 @@ public class PerAlignedUtils {
     }
     byte[] result = new byte[length];
     reader.spoolToByteBoundary();
-    for (int i = 0; i < length; i++) {
-      result[i] = reader.readByte();
-    }
+    reader.readBytes(result, 0, length);
     return result;
   }
 
@@ -210,9 +206,7 @@ public class PerAlignedUtils {
     if (n < SIXTEEN_K) {
       BitStream result = encodeSemiConstrainedLength(n);
       result.setBeginByteAligned();
-      for (byte b : bytes) {
-        result.appendByte(b);
-      }
+      result.appendBytes(bytes, 0, bytes.length);
       return ImmutableList.of(result);
     }
     throw new UnsupportedOperationException("Arrays > 16K unimplemented.");
@@ -236,9 +230,7 @@ public class PerAlignedUtils {
     reader.spoolToByteBoundary();
     int length = decodeSemiConstrainedLength(reader);
     byte[] result = new byte[length];
-    for (int i = 0; i < length; i++) {
-      result[i] = reader.readByte();
-    }
+    reader.readBytes(result, 0, length);
     return result;
   }
   /**
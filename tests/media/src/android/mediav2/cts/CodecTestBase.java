@@ -51,6 +51,9 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -229,6 +232,9 @@ class OutputManager {
     private static final String LOG_TAG = OutputManager.class.getSimpleName();
     private byte[] memory;
     private int memIndex;
+    // Scratch buffer for the pixels being checksummed, reused across frames
+    private byte[] mChecksumBuffer;
+    private byte[] mChecksumLineBuffer;
     private CRC32 mCrc32UsingImage;
     private CRC32 mCrc32UsingBuffer;
     private ArrayList<Long> inpPtsList;
@@ -301,6 +307,20 @@ class OutputManager {
         return memIndex;
     }
 
+    private byte[] getChecksumBuffer(int size) {
+        if (mChecksumBuffer == null || mChecksumBuffer.length < size) {
+            mChecksumBuffer = new byte[size];
+        }
+        return mChecksumBuffer;
+    }
+
+    private byte[] getChecksumLineBuffer(int size) {
+        if (mChecksumLineBuffer == null || mChecksumLineBuffer.length < size) {
+            mChecksumLineBuffer = new byte[size];
+        }
+        return mChecksumLineBuffer;
+    }
+
     void checksum(ByteBuffer buf, int size) {
         checksum(buf, size, 0, 0, 0, 0);
     }
@@ -312,7 +332,7 @@ class OutputManager {
         if (buf.hasArray()) {
             if (width > 0 && height > 0 && stride > 0 && bytesPerSample > 0) {
                 int offset = buf.position() + buf.arrayOffset();
-                byte[] bb = new byte[width * height * bytesPerSample];
+                byte[] bb = getChecksumBuffer(width * height * bytesPerSample);
                 for (int i = 0; i < height; ++i) {
                     System.arraycopy(buf.array(), offset, bb, i * width * bytesPerSample,
                             width * bytesPerSample);
@@ -326,7 +346,7 @@ class OutputManager {
             // Checksum only the Y plane
             int pos = buf.position();
             int offset = pos;
-            byte[] bb = new byte[width * height * bytesPerSample];
+            byte[] bb = getChecksumBuffer(width * height * bytesPerSample);
             for (int i = 0; i < height; ++i) {
                 buf.position(offset);
                 buf.get(bb, i * width * bytesPerSample, width * bytesPerSample);
@@ -337,7 +357,7 @@ class OutputManager {
         } else {
             int pos = buf.position();
             final int rdsize = Math.min(4096, size);
-            byte[] bb = new byte[rdsize];
+            byte[] bb = getChecksumBuffer(rdsize);
             int chk;
             for (int i = 0; i < size; i += chk) {
                 chk = Math.min(rdsize, size - i);
@@ -380,8 +400,8 @@ class OutputManager {
                 top = imageTop / 2;
             }
             int cropOffset = (left * pixelStride) + top * rowStride;
-            // local contiguous pixel buffer
-            byte[] bb = new byte[width * height * bytesPerSample];
+            // contiguous pixel buffer
+            byte[] bb = getChecksumBuffer(width * height * bytesPerSample);
 
             if (buf.hasArray()) {
                 byte[] b = buf.array();
@@ -412,8 +432,8 @@ class OutputManager {
                         buf.get(bb, y * width * bytesPerSample, width * bytesPerSample);
                     }
                 } else {
-                    // local line buffer
-                    byte[] lb = new byte[rowStride];
+                    // line buffer
+                    byte[] lb = getChecksumLineBuffer(rowStride);
                     // do it pixel-by-pixel
                     for (y = 0; y < height; ++y) {
                         buf.position(pos + y * rowStride);
@@ -436,7 +456,8 @@ class OutputManager {
 
     void saveToMemory(ByteBuffer buf, MediaCodec.BufferInfo info) {
         if (memIndex + info.size >= memory.length) {
-            memory = Arrays.copyOf(memory, memIndex + info.size);
+            // Grow geometrically so that saving a long stream is linear in its size
+            memory = Arrays.copyOf(memory, Math.max(memIndex + info.size, memory.length * 2));
         }
         buf.position(info.offset);
         buf.get(memory, memIndex, info.size);
@@ -449,7 +470,7 @@ class OutputManager {
     }
 
     ByteBuffer getBuffer() {
-        return ByteBuffer.wrap(memory);
+        return ByteBuffer.wrap(memory, 0, memIndex);
     }
 
     void reset() {
@@ -464,49 +485,45 @@ class OutputManager {
         double totalErrorSquared = 0;
         double avgErrorSquared;
         int bytesPerSample = AudioFormat.getBytesPerSample(audioFormat);
+        // The samples are compared in place rather than copied to a typed array first
+        ByteBuffer data = ByteBuffer.wrap(memory, 0, memIndex).order(ByteOrder.LITTLE_ENDIAN);
         if (refObject instanceof float[]) {
             if (audioFormat != AudioFormat.ENCODING_PCM_FLOAT) return Float.MAX_VALUE;
             float[] refData = (float[]) refObject;
             if (refData.length != memIndex / bytesPerSample) return Float.MAX_VALUE;
-            float[] floatData = new float[refData.length];
-            ByteBuffer.wrap(memory, 0, memIndex).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer()
-                    .get(floatData);
+            FloatBuffer floatData = data.asFloatBuffer();
             for (int i = 0; i < refData.length; i++) {
-                float d = floatData[i] - refData[i];
+                float d = floatData.get(i) - refData[i];
                 totalErrorSquared += d * d;
             }
             avgErrorSquared = (totalErrorSquared / refData.length);
         } else if (refObject instanceof int[]) {
             int[] refData = (int[]) refObject;
-            int[] intData;
             if (audioFormat == AudioFormat.ENCODING_PCM_24BIT_PACKED) {
                 if (refData.length != (memIndex / bytesPerSample)) return Float.MAX_VALUE;
-                intData = new int[refData.length];
                 for (int i = 0, j = 0; i < memIndex; i += 3, j++) {
-                    intData[j] =  memory[j] | (memory[j + 1] << 8) | (memory[j + 2] << 16);
+                    int sample = memory[j] | (memory[j + 1] << 8) | (memory[j + 2] << 16);
+                    float d = sample - refData[j];
+                    totalErrorSquared += d * d;
                 }
             } else if (audioFormat == AudioFormat.ENCODING_PCM_32BIT) {
                 if (refData.length != memIndex / bytesPerSample) return Float.MAX_VALUE;
-                intData = new int[refData.length];
-                ByteBuffer.wrap(memory, 0, memIndex).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer()
-                        .get(intData);
+                IntBuffer intData = data.asIntBuffer();
+                for (int i = 0; i < refData.length; i++) {
+                    float d = intData.get(i) - refData[i];
+                    totalErrorSquared += d * d;
+                }
             } else {
                 return Float.MAX_VALUE;
             }
-            for (int i = 0; i < intData.length; i++) {
-                float d = intData[i] - refData[i];
-                totalErrorSquared += d * d;
-            }
             avgErrorSquared = (totalErrorSquared / refData.length);
         } else if (refObject instanceof short[]) {
             short[] refData = (short[]) refObject;
             if (refData.length != memIndex / bytesPerSample) return Float.MAX_VALUE;
             if (audioFormat != AudioFormat.ENCODING_PCM_16BIT) return Float.MAX_VALUE;
-            short[] shortData = new short[refData.length];
-            ByteBuffer.wrap(memory, 0, memIndex).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer()
-                    .get(shortData);
-            for (int i = 0; i < shortData.length; i++) {
-                float d = shortData[i] - refData[i];
+            ShortBuffer shortData = data.asShortBuffer();
+            for (int i = 0; i < refData.length; i++) {
+                float d = shortData.get(i) - refData[i];
                 totalErrorSquared += d * d;
             }
             avgErrorSquared = (totalErrorSquared / refData.length);
@@ -514,10 +531,8 @@ class OutputManager {
             byte[] refData = (byte[]) refObject;
             if (refData.length != memIndex / bytesPerSample) return Float.MAX_VALUE;
             if (audioFormat != AudioFormat.ENCODING_PCM_8BIT) return Float.MAX_VALUE;
-            byte[] byteData = new byte[refData.length];
-            ByteBuffer.wrap(memory, 0, memIndex).get(byteData);
-            for (int i = 0; i < byteData.length; i++) {
-                float d = byteData[i] - refData[i];
+            for (int i = 0; i < refData.length; i++) {
+                float d = memory[i] - refData[i];
                 totalErrorSquared += d * d;
             }
             avgErrorSquared = (totalErrorSquared / refData.length);
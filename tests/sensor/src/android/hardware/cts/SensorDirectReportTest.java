@@ -1461,7 +1461,7 @@ public class SensorDirectReportTest extends SensorTestCase {
                 minMax[0] <= events.size() && events.size() <= minMax[1]);
 
         // intervals
-        List<Long> intervals = new ArrayList<>(events.size() - 1);
+        long[] intervals = new long[events.size() - 1];
         long minInterval = Long.MAX_VALUE;
         long maxInterval = Long.MIN_VALUE;
         long averageInterval = 0;
@@ -1470,7 +1470,7 @@ public class SensorDirectReportTest extends SensorTestCase {
             averageInterval += d;
             minInterval = Math.min(d, minInterval);
             maxInterval = Math.max(d, maxInterval);
-            intervals.add(d);
+            intervals[i - 1] = d;
         }
         averageInterval /= (events.size() - 1);
 
@@ -1488,18 +1488,18 @@ public class SensorDirectReportTest extends SensorTestCase {
                        averageFreq <= nominalFreq * FREQ_UPPER_BOUND * (1 + MERCY_FACTOR));
 
         // jitter variance
-        List<Long> percentileValues =
+        long[] percentileValues =
                 SensorCtsHelper.getPercentileValue(intervals, 0.025f, (1 - 0.025f));
         assertTrue("Timestamp jitter of type " + type + " rateLevel " + rateLevel + " is "
-                        + (percentileValues.get(1) - percentileValues.get(0) / 1000) + " us, "
+                        + (percentileValues[1] - percentileValues[0] / 1000) + " us, "
                         + "while average interval is " + (averageInterval / 1000) + "us, over-range",
-                   (percentileValues.get(1) - percentileValues.get(0)) / averageInterval < 0.05);
+                   (percentileValues[1] - percentileValues[0]) / averageInterval < 0.05);
         Log.d(TAG, String.format(
                 "checkEventRate type %d, timestamp interval range %f - %f ms, " +
                     "span %f ms, %.2f%% of averageInterval",
-                    type, percentileValues.get(0)/1e6f, percentileValues.get(1)/1e6f,
-                    (percentileValues.get(1) - percentileValues.get(0))/1e6f,
-                    (percentileValues.get(1) - percentileValues.get(0)) / averageInterval * 100.f));
+                    type, percentileValues[0]/1e6f, percentileValues[1]/1e6f,
+                    (percentileValues[1] - percentileValues[0])/1e6f,
+                    (percentileValues[1] - percentileValues[0]) / averageInterval * 100.f));
 
     }
 
@@ -1519,7 +1519,7 @@ public class SensorDirectReportTest extends SensorTestCase {
                 minMax[0] <= events.size() && events.size() <= minMax[1]);
 
         // intervals
-        List<Long> intervals = new ArrayList<>(events.size() - 1);
+        long[] intervals = new long[events.size() - 1];
         long minInterval = Long.MAX_VALUE;
         long maxInterval = Long.MIN_VALUE;
         long averageInterval = 0;
@@ -1528,7 +1528,7 @@ public class SensorDirectReportTest extends SensorTestCase {
             averageInterval += d;
             minInterval = Math.min(d, minInterval);
             maxInterval = Math.max(d, maxInterval);
-            intervals.add(d);
+            intervals[i - 1] = d;
         }
         averageInterval /= (events.size() - 1);
 
@@ -1546,18 +1546,18 @@ public class SensorDirectReportTest extends SensorTestCase {
                        averageFreq <= nominalFreq * FREQ_UPPER_BOUND_POLL * (1 + MERCY_FACTOR));
 
         // jitter variance
-        List<Long> percentileValues =
+        long[] percentileValues =
                 SensorCtsHelper.getPercentileValue(intervals, 0.025f, (1 - 0.025f));
         assertTrue("Timestamp jitter of type " + type + " is "
-                        + (percentileValues.get(1) - percentileValues.get(0) / 1000) + " us, "
+                        + (percentileValues[1] - percentileValues[0] / 1000) + " us, "
                         + "while average interval is " + (averageInterval / 1000) + "us, over-range",
-                   (percentileValues.get(1) - percentileValues.get(0)) / averageInterval < 0.05);
+                   (percentileValues[1] - percentileValues[0]) / averageInterval < 0.05);
         Log.d(TAG, String.format(
                 "checkEventRateUs type %d, timestamp interval range %f - %f ms, " +
                     "span %f ms, %.2f%% of averageInterval",
-                    type, percentileValues.get(0)/1e6f, percentileValues.get(1)/1e6f,
-                    (percentileValues.get(1) - percentileValues.get(0)) / 1e6f,
-                    (percentileValues.get(1) - percentileValues.get(0)) / averageInterval * 100.f));
+                    type, percentileValues[0]/1e6f, percentileValues[1]/1e6f,
+                    (percentileValues[1] - percentileValues[0]) / 1e6f,
+                    (percentileValues[1] - percentileValues[0]) / averageInterval * 100.f));
     }
 
     private void allocateSharedMemory() {
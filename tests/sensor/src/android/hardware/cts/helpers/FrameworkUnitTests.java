@@ -30,6 +30,7 @@ import android.hardware.cts.helpers.sensorverification.MeanVerificationTest;
 import android.hardware.cts.helpers.sensorverification.OffsetVerificationTest;
 import android.hardware.cts.helpers.sensorverification.StandardDeviationVerificationTest;
 import android.hardware.cts.helpers.sensorverification.TimestampClockSourceVerificationTest;
+import android.hardware.cts.helpers.sensorverification.VerificationStreamTest;
 
 /**
  * Unit test suite for the CTS sensor framework.
@@ -41,7 +42,9 @@ public class FrameworkUnitTests extends TestSuite {
 
         // helpers
         addTestSuite(SensorCtsHelperTest.class);
+        addTestSuite(SensorEventBufferTest.class);
         addTestSuite(SensorStatsTest.class);
+        addTestSuite(StreamingPercentilesTest.class);
 
         // sensorverification
         addTestSuite(EventGapVerificationTest.class);
@@ -54,6 +57,7 @@ public class FrameworkUnitTests extends TestSuite {
         addTestSuite(OffsetVerificationTest.class);
         addTestSuite(StandardDeviationVerificationTest.class);
         addTestSuite(TimestampClockSourceVerificationTest.class);
+        addTestSuite(VerificationStreamTest.class);
 
 
         // sensorOperations
@@ -56,28 +56,107 @@ public class SensorCtsHelper {
     public static <TValue extends Comparable<? super TValue>> List<TValue> getPercentileValue(
             Collection<TValue> collection, float lowPecentile, float highPercentile) {
         validateCollection(collection);
-        if (lowPecentile > highPercentile || lowPecentile < 0 || highPercentile > 1) {
-            throw new IllegalStateException("percentile has to be in range [0, 1], and " +
-                    "lowPecentile has to be less than or equal to highPercentile");
-        }
+        validatePercentiles(lowPecentile, highPercentile);
 
         List<TValue> arrayCopy = new ArrayList<TValue>(collection);
         Collections.sort(arrayCopy);
 
         List<TValue> percentileValues = new ArrayList<TValue>();
+        int lowArrayIndex = getLowPercentileIndex(arrayCopy.size(), lowPecentile);
+        percentileValues.add(arrayCopy.get(lowArrayIndex));
+        int highArrayIndex =
+                getHighPercentileIndex(arrayCopy.size(), lowArrayIndex, highPercentile);
+        percentileValues.add(arrayCopy.get(highArrayIndex));
+        return percentileValues;
+    }
+
+    /**
+     * Get low and high percentiles values of an array, without boxing or sorting it.
+     *
+     * <p>The values are the same as the ones returned by
+     * {@link #getPercentileValue(Collection, float, float)}, they are found by selection in a
+     * copy of the array.
+     *
+     * @param lowPercentile Lower boundary percentile, range [0, 1]
+     * @param highPercentile Higher boundary percentile, range [0, 1]
+     * @return An array with the low percentile value followed by the high percentile value.
+     *
+     * @throws IllegalStateException if the array is null or empty, or the percentiles are not
+     * valid.
+     */
+    public static long[] getPercentileValue(
+            long[] values, float lowPercentile, float highPercentile) {
+        validateArray(values == null ? 0 : values.length);
+        validatePercentiles(lowPercentile, highPercentile);
+
+        long[] arrayCopy = values.clone();
+        int lowArrayIndex = getLowPercentileIndex(arrayCopy.length, lowPercentile);
+        select(arrayCopy, 0, arrayCopy.length, lowArrayIndex);
+        // all values after the low percentile are now larger or equal to it
+        int highArrayIndex =
+                getHighPercentileIndex(arrayCopy.length, lowArrayIndex, highPercentile);
+        select(arrayCopy, lowArrayIndex, arrayCopy.length, highArrayIndex);
+        return new long[] {arrayCopy[lowArrayIndex], arrayCopy[highArrayIndex]};
+    }
+
+    static void validatePercentiles(float lowPercentile, float highPercentile) {
+        if (lowPercentile > highPercentile || lowPercentile < 0 || highPercentile > 1) {
+            throw new IllegalStateException("percentile has to be in range [0, 1], and " +
+                    "lowPecentile has to be less than or equal to highPercentile");
+        }
+    }
+
+    private static int getLowPercentileIndex(int size, float lowPercentile) {
         // lower percentile: rounding upwards, index range 1 .. size - 1 for percentile > 0
         // for percentile == 0, index will be 0.
-        int lowArrayIndex = Math.min(arrayCopy.size() - 1,
-                arrayCopy.size() - (int)(arrayCopy.size() * (1 - lowPecentile)));
-        percentileValues.add(arrayCopy.get(lowArrayIndex));
+        return Math.min(size - 1, size - (int)(size * (1 - lowPercentile)));
+    }
 
+    private static int getHighPercentileIndex(int size, int lowIndex, float highPercentile) {
         // upper percentile: rounding downwards, index range 0 .. size - 2 for percentile < 1
         // for percentile == 1, index will be size - 1.
         // Also, lower bound by lowerArrayIndex to avoid low percentile value being higher than
         // high percentile value.
-        int highArrayIndex = Math.max(lowArrayIndex, (int)(arrayCopy.size() * highPercentile - 1));
-        percentileValues.add(arrayCopy.get(highArrayIndex));
-        return percentileValues;
+        return Math.max(lowIndex, (int)(size * highPercentile - 1));
+    }
+
+    /**
+     * Reorder {@code values[from, to)} so that {@code values[k]} is the value which would be at
+     * index {@code k} if the range was sorted, smaller or equal values are before it and larger or
+     * equal values are after it.
+     */
+    private static void select(long[] values, int from, int to, int k) {
+        while (to - from > 1) {
+            long first = values[from];
+            long middle = values[(from + to) >>> 1];
+            long last = values[to - 1];
+            // median of three, so that sorted and reversed inputs are partitioned evenly
+            long pivot = Math.max(Math.min(first, middle), Math.min(Math.max(first, middle), last));
+
+            int i = from;
+            int j = to - 1;
+            while (i <= j) {
+                while (values[i] < pivot) {
+                    i++;
+                }
+                while (values[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    long swap = values[i];
+                    values[i++] = values[j];
+                    values[j--] = swap;
+                }
+            }
+            // values[from, j] <= pivot, values(j, i) == pivot, values[i, to) >= pivot
+            if (k <= j) {
+                to = j + 1;
+            } else if (k >= i) {
+                from = i;
+            } else {
+                return;
+            }
+        }
     }
 
     /**
@@ -104,17 +183,81 @@ public class SensorCtsHelper {
         validateCollection(collection);
 
         double mean = getMean(collection);
-        ArrayList<Double> squaredDiffs = new ArrayList<Double>();
+        double sum = 0.0;
         for(TValue value : collection) {
             double difference = mean - value.doubleValue();
-            squaredDiffs.add(Math.pow(difference, 2));
+            sum += difference * difference;
+        }
+        return sum / (collection.size() - 1);
+    }
+
+    /**
+     * Calculate the mean of an array.
+     *
+     * @throws IllegalStateException if the array is null or empty
+     */
+    public static double getMean(long[] values) {
+        validateArray(values == null ? 0 : values.length);
+
+        double sum = 0.0;
+        for (long value : values) {
+            sum += value;
         }
+        return sum / values.length;
+    }
+
+    /**
+     * Calculate the mean of an array.
+     *
+     * @throws IllegalStateException if the array is null or empty
+     */
+    public static double getMean(float[] values) {
+        validateArray(values == null ? 0 : values.length);
 
         double sum = 0.0;
-        for (Double value : squaredDiffs) {
+        for (float value : values) {
             sum += value;
         }
-        return sum / (squaredDiffs.size() - 1);
+        return sum / values.length;
+    }
+
+    /**
+     * Calculate the bias-corrected sample variance of an array in a single pass, using
+     * <a href="http://en.wikipedia.org/wiki/Algorithms_for_calculating_variance#On-line_algorithm">
+     * Welford's algorithm</a>.
+     *
+     * @throws IllegalStateException if the array is null or empty
+     */
+    public static double getVariance(long[] values) {
+        validateArray(values == null ? 0 : values.length);
+
+        double mean = 0.0;
+        double m2 = 0.0;
+        for (int i = 0; i < values.length; i++) {
+            double delta = values[i] - mean;
+            mean += delta / (i + 1);
+            m2 += delta * (values[i] - mean);
+        }
+        return m2 / (values.length - 1);
+    }
+
+    /**
+     * Calculate the bias-corrected sample variance of an array in a single pass, see
+     * {@link #getVariance(long[])}.
+     *
+     * @throws IllegalStateException if the array is null or empty
+     */
+    public static double getVariance(float[] values) {
+        validateArray(values == null ? 0 : values.length);
+
+        double mean = 0.0;
+        double m2 = 0.0;
+        for (int i = 0; i < values.length; i++) {
+            double delta = values[i] - mean;
+            mean += delta / (i + 1);
+            m2 += delta * (values[i] - mean);
+        }
+        return m2 / (values.length - 1);
     }
 
     /**
@@ -318,6 +461,12 @@ public class SensorCtsHelper {
         }
     }
 
+    private static void validateArray(int length) {
+        if (length == 0) {
+            throw new IllegalStateException("Array cannot be null or empty");
+        }
+    }
+
     public static String getUnitsForSensor(Sensor sensor) {
         switch(sensor.getType()) {
             case Sensor.TYPE_ACCELEROMETER:
@@ -18,6 +18,7 @@ package android.hardware.cts.helpers;
 
 import junit.framework.TestCase;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
@@ -60,4 +61,59 @@ public class SensorCtsHelperTest extends TestCase {
         assertEquals(100, SensorCtsHelper.getPeriod(10000000, TimeUnit.NANOSECONDS), 0.001);
         assertEquals(1, SensorCtsHelper.getPeriod(1000000000, TimeUnit.NANOSECONDS), 0.001);
     }
+
+    /**
+     * Test {@link SensorCtsHelper#getPercentileValue(long[], float, float)}.
+     */
+    public void testGetPercentileValue_primitive() {
+        long[] values = new long[] {5, 3, 9, 1, 7, 3, 3, 8, 2, 6, 0, 4, 9, 1, 5, 7, 2, 8, 6, 4};
+        List<Long> collection = new ArrayList<>();
+        for (long value : values) {
+            collection.add(value);
+        }
+        float[][] percentiles = new float[][] {
+                {0f, 1f}, {0.025f, 0.975f}, {0.1f, 0.9f}, {0.5f, 0.5f}, {0.3f, 0.31f}, {1f, 1f}};
+        for (float[] percentile : percentiles) {
+            List<Long> expected =
+                    SensorCtsHelper.getPercentileValue(collection, percentile[0], percentile[1]);
+            long[] actual = SensorCtsHelper.getPercentileValue(values, percentile[0], percentile[1]);
+            assertEquals(expected.get(0).longValue(), actual[0]);
+            assertEquals(expected.get(1).longValue(), actual[1]);
+        }
+        // the input is not reordered
+        assertEquals(5, values[0]);
+        assertEquals(4, values[values.length - 1]);
+
+        try {
+            SensorCtsHelper.getPercentileValue(new long[0], 0f, 1f);
+            fail("Expected an IllegalStateException");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        try {
+            SensorCtsHelper.getPercentileValue(values, 0.6f, 0.5f);
+            fail("Expected an IllegalStateException");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+    }
+
+    /**
+     * Test {@link SensorCtsHelper#getMean(long[])} and {@link SensorCtsHelper#getVariance(long[])}.
+     */
+    public void testGetMeanAndVariance_primitive() {
+        long[] values = new long[] {2, 4, 4, 4, 5, 5, 7, 9};
+        List<Long> collection = new ArrayList<>();
+        for (long value : values) {
+            collection.add(value);
+        }
+        assertEquals(5.0, SensorCtsHelper.getMean(values), 0.0001);
+        assertEquals(SensorCtsHelper.getVariance(collection), SensorCtsHelper.getVariance(values),
+                0.0001);
+        assertEquals(32.0 / 7, SensorCtsHelper.getVariance(values), 0.0001);
+
+        float[] floatValues = new float[] {1.5f, -0.5f, 2.5f};
+        assertEquals(3.5 / 3, SensorCtsHelper.getMean(floatValues), 0.0001);
+        assertEquals(7.0 / 3, SensorCtsHelper.getVariance(floatValues), 0.0001);
+    }
 }
@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.hardware.cts.helpers;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A growable, column oriented store of sensor events.
+ *
+ * <p>Each field of the events is kept in its own primitive array, and the values are kept in one
+ * array per axis, so that long running tests do not hold an object per event and per timestamp.
+ *
+ * <p>This class is not thread safe.
+ */
+public final class SensorEventBuffer {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private Sensor[] mSensors;
+    private long[] mTimestamps;
+    private long[] mReceivedTimestamps;
+    private int[] mAccuracies;
+    private int[] mValueCounts;
+    /** Values indexed by axis, then by event. */
+    private float[][] mValues = new float[0][];
+    private int mSize;
+
+    /**
+     * Construct an empty {@link SensorEventBuffer}.
+     */
+    public SensorEventBuffer() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Construct an empty {@link SensorEventBuffer} which can hold {@code capacity} events before
+     * growing.
+     */
+    public SensorEventBuffer(int capacity) {
+        capacity = Math.max(1, capacity);
+        mSensors = new Sensor[capacity];
+        mTimestamps = new long[capacity];
+        mReceivedTimestamps = new long[capacity];
+        mAccuracies = new int[capacity];
+        mValueCounts = new int[capacity];
+    }
+
+    /**
+     * Construct a {@link SensorEventBuffer} holding a copy of {@code events}.
+     */
+    public SensorEventBuffer(Collection<TestSensorEvent> events) {
+        this(events.size());
+        for (TestSensorEvent event : events) {
+            add(event);
+        }
+    }
+
+    /**
+     * Add a {@link SensorEvent}, copying its values.
+     *
+     * @param receivedTimestamp the timestamp when the event was received, in nanoseconds.
+     */
+    public void add(SensorEvent event, long receivedTimestamp) {
+        add(event.sensor, event.timestamp, receivedTimestamp, event.accuracy, event.values);
+    }
+
+    /**
+     * Add a {@link TestSensorEvent}, copying its values.
+     */
+    public void add(TestSensorEvent event) {
+        add(event.sensor, event.timestamp, event.receivedTimestamp, event.accuracy, event.values);
+    }
+
+    private void add(Sensor sensor, long timestamp, long receivedTimestamp, int accuracy,
+            float[] values) {
+        int valueCount = values == null ? 0 : values.length;
+        if (mSize == mTimestamps.length) {
+            grow();
+        }
+        if (valueCount > mValues.length) {
+            int axisCount = mValues.length;
+            mValues = Arrays.copyOf(mValues, valueCount);
+            for (int axis = axisCount; axis < valueCount; axis++) {
+                mValues[axis] = new float[mTimestamps.length];
+            }
+        }
+
+        mSensors[mSize] = sensor;
+        mTimestamps[mSize] = timestamp;
+        mReceivedTimestamps[mSize] = receivedTimestamp;
+        mAccuracies[mSize] = accuracy;
+        mValueCounts[mSize] = valueCount;
+        for (int axis = 0; axis < valueCount; axis++) {
+            mValues[axis][mSize] = values[axis];
+        }
+        mSize++;
+    }
+
+    private void grow() {
+        int capacity = mTimestamps.length * 2;
+        mSensors = Arrays.copyOf(mSensors, capacity);
+        mTimestamps = Arrays.copyOf(mTimestamps, capacity);
+        mReceivedTimestamps = Arrays.copyOf(mReceivedTimestamps, capacity);
+        mAccuracies = Arrays.copyOf(mAccuracies, capacity);
+        mValueCounts = Arrays.copyOf(mValueCounts, capacity);
+        for (int axis = 0; axis < mValues.length; axis++) {
+            mValues[axis] = Arrays.copyOf(mValues[axis], capacity);
+        }
+    }
+
+    /**
+     * Remove all events. The memory already allocated is kept for new events.
+     */
+    public void clear() {
+        Arrays.fill(mSensors, 0, mSize, null);
+        mSize = 0;
+    }
+
+    /**
+     * @return The number of events in the buffer.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    public Sensor getSensor(int index) {
+        checkIndex(index);
+        return mSensors[index];
+    }
+
+    public long getTimestamp(int index) {
+        checkIndex(index);
+        return mTimestamps[index];
+    }
+
+    public long getReceivedTimestamp(int index) {
+        checkIndex(index);
+        return mReceivedTimestamps[index];
+    }
+
+    public int getAccuracy(int index) {
+        checkIndex(index);
+        return mAccuracies[index];
+    }
+
+    /**
+     * @return The number of values of the event at {@code index}.
+     */
+    public int getValueCount(int index) {
+        checkIndex(index);
+        return mValueCounts[index];
+    }
+
+    /**
+     * @return The value on {@code axis} of the event at {@code index}.
+     */
+    public float getValue(int index, int axis) {
+        checkIndex(index);
+        if (axis < 0 || axis >= mValueCounts[index]) {
+            throw new IndexOutOfBoundsException(
+                    "Axis " + axis + " of event with " + mValueCounts[index] + " values");
+        }
+        return mValues[axis][index];
+    }
+
+    /**
+     * @return A new {@link TestSensorEvent} with the fields of the event at {@code index}.
+     */
+    public TestSensorEvent getEvent(int index) {
+        checkIndex(index);
+        int valueCount = mValueCounts[index];
+        float[] values = new float[valueCount];
+        for (int axis = 0; axis < valueCount; axis++) {
+            values[axis] = mValues[axis][index];
+        }
+        return new TestSensorEvent(mSensors[index], mTimestamps[index],
+                mReceivedTimestamps[index], mAccuracies[index], values);
+    }
+
+    /**
+     * @return A copy of the buffer, which is not affected by events added later.
+     */
+    public SensorEventBuffer copy() {
+        SensorEventBuffer copy = new SensorEventBuffer(mSize);
+        System.arraycopy(mSensors, 0, copy.mSensors, 0, mSize);
+        System.arraycopy(mTimestamps, 0, copy.mTimestamps, 0, mSize);
+        System.arraycopy(mReceivedTimestamps, 0, copy.mReceivedTimestamps, 0, mSize);
+        System.arraycopy(mAccuracies, 0, copy.mAccuracies, 0, mSize);
+        System.arraycopy(mValueCounts, 0, copy.mValueCounts, 0, mSize);
+        copy.mValues = new float[mValues.length][];
+        for (int axis = 0; axis < mValues.length; axis++) {
+            copy.mValues[axis] = Arrays.copyOf(mValues[axis], copy.mTimestamps.length);
+        }
+        copy.mSize = mSize;
+        return copy;
+    }
+
+    /**
+     * @return An unmodifiable view of the buffer as a list of {@link TestSensorEvent}s. The
+     * events are created when they are read, see {@link #getEvent(int)}.
+     */
+    public List<TestSensorEvent> asList() {
+        return new EventList();
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + mSize);
+        }
+    }
+
+    private class EventList extends AbstractList<TestSensorEvent> implements RandomAccess {
+        @Override
+        public TestSensorEvent get(int index) {
+            return getEvent(index);
+        }
+
+        @Override
+        public int size() {
+            return mSize;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.hardware.cts.helpers;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for the {@link SensorEventBuffer} class.
+ */
+public class SensorEventBufferTest extends TestCase {
+
+    public void testAdd() {
+        SensorEventBuffer buffer = new SensorEventBuffer(1);
+        for (int i = 0; i < 100; i++) {
+            buffer.add(new TestSensorEvent(null, i * 10, i * 10 + 1, i % 4,
+                    new float[] {i, -i, i / 2f}));
+        }
+
+        assertEquals(100, buffer.size());
+        assertEquals(420, buffer.getTimestamp(42));
+        assertEquals(421, buffer.getReceivedTimestamp(42));
+        assertEquals(2, buffer.getAccuracy(42));
+        assertEquals(-42f, buffer.getValue(42, 1));
+
+        TestSensorEvent event = buffer.getEvent(99);
+        assertEquals(990, event.timestamp);
+        assertEquals(991, event.receivedTimestamp);
+        assertEquals(3, event.accuracy);
+        assertEquals(3, event.values.length);
+        assertEquals(99f, event.values[0]);
+    }
+
+    public void testDifferentValueCounts() {
+        List<TestSensorEvent> events = new ArrayList<>();
+        events.add(new TestSensorEvent(null, 0, 0, new float[] {1f}));
+        events.add(new TestSensorEvent(null, 1, 0, new float[] {2f, 3f}));
+        events.add(new TestSensorEvent(null, 2, 0, null));
+        SensorEventBuffer buffer = new SensorEventBuffer(events);
+
+        assertEquals(1, buffer.getValueCount(0));
+        assertEquals(2, buffer.getValueCount(1));
+        assertEquals(0, buffer.getValueCount(2));
+        assertEquals(3f, buffer.getValue(1, 1));
+        assertEquals(1, buffer.getEvent(0).values.length);
+        try {
+            buffer.getValue(0, 1);
+            fail("Expected an IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException e) {
+            // Expected
+        }
+    }
+
+    public void testCopyAndClear() {
+        SensorEventBuffer buffer = new SensorEventBuffer();
+        buffer.add(new TestSensorEvent(null, 1, 0, new float[] {1f}));
+        buffer.add(new TestSensorEvent(null, 2, 0, new float[] {2f}));
+
+        SensorEventBuffer copy = buffer.copy();
+        List<TestSensorEvent> list = copy.asList();
+        buffer.clear();
+        buffer.add(new TestSensorEvent(null, 3, 0, new float[] {3f}));
+
+        assertEquals(1, buffer.size());
+        assertEquals(3, buffer.getTimestamp(0));
+        assertEquals(2, copy.size());
+        assertEquals(2, list.size());
+        assertEquals(1, list.get(0).timestamp);
+        assertEquals(2f, list.get(1).values[0]);
+        try {
+            list.add(new TestSensorEvent(null, 4, 0, new float[] {4f}));
+            fail("Expected an UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.hardware.cts.helpers;
+
+import java.util.Arrays;
+
+/**
+ * Low and high percentiles of a stream of values, in bounded memory.
+ *
+ * <p>The first values are kept, and while they fit in the exact capacity the percentiles are the
+ * same as the ones returned by {@link SensorCtsHelper#getPercentileValue(long[], float, float)}.
+ * Once more values are added each percentile is estimated with the
+ * <a href="https://www.cse.wustl.edu/~jain/papers/ftp/psqr.pdf">P-square algorithm</a>, which
+ * keeps five markers per percentile, seeded from the values kept so far.
+ *
+ * <p>This class is not thread safe.
+ */
+public final class StreamingPercentiles {
+    /** Number of values kept to compute the percentiles exactly, 512KB of memory. */
+    public static final int DEFAULT_EXACT_CAPACITY = 1 << 16;
+
+    private final float mLowPercentile;
+    private final float mHighPercentile;
+    private final int mExactCapacity;
+
+    private long[] mValues = new long[16];
+    private int mCount = 0;
+    private P2Estimator mLowEstimator;
+    private P2Estimator mHighEstimator;
+
+    /**
+     * Construct a {@link StreamingPercentiles} with the {@link #DEFAULT_EXACT_CAPACITY}.
+     *
+     * @param lowPercentile Lower boundary percentile, range [0, 1]
+     * @param highPercentile Higher boundary percentile, range [0, 1]
+     */
+    public StreamingPercentiles(float lowPercentile, float highPercentile) {
+        this(lowPercentile, highPercentile, DEFAULT_EXACT_CAPACITY);
+    }
+
+    /**
+     * Construct a {@link StreamingPercentiles}.
+     *
+     * @param lowPercentile Lower boundary percentile, range [0, 1]
+     * @param highPercentile Higher boundary percentile, range [0, 1]
+     * @param exactCapacity the number of values for which the percentiles are exact, at least 5.
+     * @throws IllegalStateException if the percentiles are not valid.
+     */
+    public StreamingPercentiles(float lowPercentile, float highPercentile, int exactCapacity) {
+        SensorCtsHelper.validatePercentiles(lowPercentile, highPercentile);
+        if (exactCapacity < P2Estimator.MARKERS) {
+            throw new IllegalArgumentException("exactCapacity must be at least "
+                    + P2Estimator.MARKERS);
+        }
+        mLowPercentile = lowPercentile;
+        mHighPercentile = highPercentile;
+        mExactCapacity = exactCapacity;
+    }
+
+    /**
+     * Add a value.
+     */
+    public void add(long value) {
+        mCount++;
+        if (mValues != null) {
+            if (mCount <= mExactCapacity) {
+                if (mCount > mValues.length) {
+                    mValues = Arrays.copyOf(mValues, Math.min(mExactCapacity, mCount * 2));
+                }
+                mValues[mCount - 1] = value;
+                return;
+            }
+            long[] sorted = mValues;
+            Arrays.sort(sorted);
+            mLowEstimator = new P2Estimator(mLowPercentile, sorted);
+            mHighEstimator = new P2Estimator(mHighPercentile, sorted);
+            mValues = null;
+        }
+        mLowEstimator.add(value);
+        mHighEstimator.add(value);
+    }
+
+    /**
+     * @return The number of values added.
+     */
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * @return {@code true} if the percentiles are computed from all the values added.
+     */
+    public boolean isExact() {
+        return mValues != null;
+    }
+
+    /**
+     * @return A copy of the values added, or {@code null} if they are no longer all kept.
+     */
+    public long[] getExactValues() {
+        return mValues == null ? null : Arrays.copyOf(mValues, mCount);
+    }
+
+    /**
+     * @return An array with the low percentile value followed by the high percentile value.
+     * @throws IllegalStateException if no values were added.
+     */
+    public long[] getValues() {
+        if (mValues != null) {
+            return SensorCtsHelper.getPercentileValue(
+                    Arrays.copyOf(mValues, mCount), mLowPercentile, mHighPercentile);
+        }
+        long low = Math.round(mLowEstimator.getValue());
+        long high = Math.round(mHighEstimator.getValue());
+        return new long[] {low, Math.max(low, high)};
+    }
+
+    /**
+     * Estimates a single percentile with five markers: the minimum, the maximum, the percentile
+     * and the middles of the percentile with the minimum and the maximum. The markers are moved
+     * towards their desired positions as values are added, and their heights are adjusted with a
+     * piecewise parabolic prediction.
+     */
+    private static final class P2Estimator {
+        static final int MARKERS = 5;
+
+        private final double[] mHeights = new double[MARKERS];
+        private final long[] mPositions = new long[MARKERS];
+        private final double[] mDesiredPositions = new double[MARKERS];
+        private final double[] mIncrements;
+
+        /**
+         * Construct an estimator which already saw the {@code sorted} values.
+         */
+        P2Estimator(float percentile, long[] sorted) {
+            mIncrements = new double[] {0, percentile / 2.0, percentile, (1 + percentile) / 2.0, 1};
+            int count = sorted.length;
+            for (int i = 0; i < MARKERS; i++) {
+                mDesiredPositions[i] = 1 + (count - 1) * mIncrements[i];
+                mPositions[i] = 1 + (long) ((count - 1) * mIncrements[i]);
+            }
+            // markers must be at distinct positions
+            for (int i = 1; i < MARKERS; i++) {
+                mPositions[i] = Math.max(mPositions[i], mPositions[i - 1] + 1);
+            }
+            for (int i = MARKERS - 2; i >= 0; i--) {
+                mPositions[i] = Math.min(mPositions[i], mPositions[i + 1] - 1);
+            }
+            for (int i = 0; i < MARKERS; i++) {
+                mHeights[i] = sorted[(int) mPositions[i] - 1];
+            }
+        }
+
+        void add(long value) {
+            int cell;
+            if (value < mHeights[0]) {
+                mHeights[0] = value;
+                cell = 0;
+            } else if (value >= mHeights[MARKERS - 1]) {
+                mHeights[MARKERS - 1] = value;
+                cell = MARKERS - 2;
+            } else {
+                cell = 0;
+                while (value >= mHeights[cell + 1]) {
+                    cell++;
+                }
+            }
+
+            for (int i = cell + 1; i < MARKERS; i++) {
+                mPositions[i]++;
+            }
+            for (int i = 0; i < MARKERS; i++) {
+                mDesiredPositions[i] += mIncrements[i];
+            }
+
+            for (int i = 1; i < MARKERS - 1; i++) {
+                double offset = mDesiredPositions[i] - mPositions[i];
+                if ((offset >= 1 && mPositions[i + 1] - mPositions[i] > 1)
+                        || (offset <= -1 && mPositions[i - 1] - mPositions[i] < -1)) {
+                    int step = offset > 0 ? 1 : -1;
+                    double height = parabolic(i, step);
+                    if (mHeights[i - 1] < height && height < mHeights[i + 1]) {
+                        mHeights[i] = height;
+                    } else {
+                        mHeights[i] = linear(i, step);
+                    }
+                    mPositions[i] += step;
+                }
+            }
+        }
+
+        double getValue() {
+            return mHeights[2];
+        }
+
+        private double parabolic(int i, int step) {
+            double previous = mPositions[i] - mPositions[i - 1];
+            double next = mPositions[i + 1] - mPositions[i];
+            return mHeights[i] + step / (double) (mPositions[i + 1] - mPositions[i - 1])
+                    * ((previous + step) * (mHeights[i + 1] - mHeights[i]) / next
+                            + (next - step) * (mHeights[i] - mHeights[i - 1]) / previous);
+        }
+
+        private double linear(int i, int step) {
+            return mHeights[i] + step * (mHeights[i + step] - mHeights[i])
+                    / (mPositions[i + step] - mPositions[i]);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.hardware.cts.helpers;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ * Unit tests for the {@link StreamingPercentiles} class.
+ */
+public class StreamingPercentilesTest extends TestCase {
+
+    public void testExact() {
+        StreamingPercentiles percentiles = new StreamingPercentiles(0.025f, 0.975f, 1000);
+        long[] values = new long[1000];
+        Random random = new Random(0);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(1000);
+            percentiles.add(values[i]);
+        }
+
+        assertTrue(percentiles.isExact());
+        assertEquals(1000, percentiles.getCount());
+        long[] expected = SensorCtsHelper.getPercentileValue(values, 0.025f, 0.975f);
+        long[] actual = percentiles.getValues();
+        assertEquals(expected[0], actual[0]);
+        assertEquals(expected[1], actual[1]);
+    }
+
+    public void testEstimated() {
+        // 10ms period with +/-100us of uniform jitter, and a few outliers
+        StreamingPercentiles percentiles = new StreamingPercentiles(0.025f, 0.975f, 1000);
+        long[] values = new long[100000];
+        Random random = new Random(0);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 10000000 + random.nextInt(200000) - 100000;
+            if (i % 1000 == 0) {
+                values[i] *= 3;
+            }
+            percentiles.add(values[i]);
+        }
+
+        assertFalse(percentiles.isExact());
+        assertNull(percentiles.getExactValues());
+        assertEquals(100000, percentiles.getCount());
+        long[] expected = SensorCtsHelper.getPercentileValue(values, 0.025f, 0.975f);
+        long[] actual = percentiles.getValues();
+        // within 1% of the jitter range
+        assertEquals(expected[0], actual[0], 2000);
+        assertEquals(expected[1], actual[1], 2000);
+    }
+
+    public void testEmpty() {
+        StreamingPercentiles percentiles = new StreamingPercentiles(0.025f, 0.975f);
+        try {
+            percentiles.getValues();
+            fail("Expected an IllegalStateException");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+    }
+}
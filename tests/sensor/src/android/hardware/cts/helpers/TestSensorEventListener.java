@@ -22,6 +22,7 @@ import android.content.Context;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener2;
+import android.hardware.cts.helpers.sensorverification.VerificationStream;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.SystemClock;
@@ -35,7 +36,6 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -53,11 +53,12 @@ public class TestSensorEventListener implements SensorEventListener2 {
     private static final long EVENT_TIMEOUT_US = TimeUnit.SECONDS.toMicros(5);
     private static final long FLUSH_TIMEOUT_US = TimeUnit.SECONDS.toMicros(10);
 
-    private final ArrayList<TestSensorEvent> mCollectedEvents = new ArrayList<>();
+    private final SensorEventBuffer mCollectedEvents = new SensorEventBuffer();
     private final ArrayList<Long> mTimeStampFlushCompleteEvents = new ArrayList<>();
     private final List<CountDownLatch> mEventLatches = new ArrayList<>();
     private final List<CountDownLatch> mFlushLatches = new ArrayList<>();
     private final AtomicInteger mEventsReceivedOutsideHandler = new AtomicInteger();
+    private volatile VerificationStream mVerificationStream;
 
     private final Handler mHandler;
     private final TestSensorEnvironment mEnvironment;
@@ -100,8 +101,14 @@ public class TestSensorEventListener implements SensorEventListener2 {
     public void onSensorChanged(SensorEvent event) {
         long timestampNs = SystemClock.elapsedRealtimeNanos();
         checkHandler();
+        // the event is added to the buffer and the stream under the same lock as clearEvents(),
+        // so that an event is either cleared from both or kept in both
         synchronized (mCollectedEvents) {
-            mCollectedEvents.add(new TestSensorEvent(event, timestampNs));
+            mCollectedEvents.add(event, timestampNs);
+            VerificationStream verificationStream = mVerificationStream;
+            if (verificationStream != null) {
+                verificationStream.onSensorEvent(new TestSensorEvent(event, timestampNs));
+            }
         }
         synchronized (mEventLatches) {
             for (CountDownLatch latch : mEventLatches) {
@@ -174,20 +181,49 @@ public class TestSensorEventListener implements SensorEventListener2 {
      * @return A list of {@link TestSensorEvent}s collected by the listener.
      */
     public List<TestSensorEvent> getCollectedEvents() {
-        synchronized (mCollectedEvents){
-            return Collections.unmodifiableList((List<TestSensorEvent>) mCollectedEvents.clone());
+        return getCollectedEventBuffer().asList();
+    }
+
+    /**
+     * @return A copy of the events collected by the listener, stored column by column.
+     */
+    public SensorEventBuffer getCollectedEventBuffer() {
+        synchronized (mCollectedEvents) {
+            return mCollectedEvents.copy();
         }
     }
 
     /**
-     * Clears the internal list of collected {@link TestSensorEvent}s.
+     * @return The number of events collected by the listener.
+     */
+    public int getCollectedEventCount() {
+        synchronized (mCollectedEvents) {
+            return mCollectedEvents.size();
+        }
+    }
+
+    /**
+     * Clears the internal list of collected {@link TestSensorEvent}s, and resets the
+     * {@link VerificationStream} if any.
      */
     public void clearEvents() {
         synchronized (mCollectedEvents) {
             mCollectedEvents.clear();
+            VerificationStream verificationStream = mVerificationStream;
+            if (verificationStream != null) {
+                verificationStream.reset();
+            }
         }
     }
 
+    /**
+     * Set a {@link VerificationStream} to which events are added as they are received, from the
+     * thread receiving them.
+     */
+    public void setVerificationStream(VerificationStream verificationStream) {
+        mVerificationStream = verificationStream;
+    }
+
 
     /**
      * Utility method to log the collected events to a file.
@@ -212,9 +248,9 @@ public class TestSensorEventListener implements SensorEventListener2 {
         synchronized (mCollectedEvents) {
             int i = 0, j = 0;
             while (i < mCollectedEvents.size() && j < mTimeStampFlushCompleteEvents.size()) {
-                if (mCollectedEvents.get(i).receivedTimestamp <
+                if (mCollectedEvents.getReceivedTimestamp(i) <
                         mTimeStampFlushCompleteEvents.get(j)) {
-                    TestSensorEvent event = mCollectedEvents.get(i);
+                    TestSensorEvent event = mCollectedEvents.getEvent(i);
                     if (deviceWakeUpTimeMs != -1 && deviceWakeUpTimeMs <
                             event.receivedTimestamp/1000000) {
                         builder.append("\n");
@@ -237,7 +273,7 @@ public class TestSensorEventListener implements SensorEventListener2 {
                 }
             }
             for (;i < mCollectedEvents.size(); ++i) {
-                TestSensorEvent event = mCollectedEvents.get(i);
+                TestSensorEvent event = mCollectedEvents.getEvent(i);
                 if (deviceWakeUpTimeMs != -1 && deviceWakeUpTimeMs <
                         event.receivedTimestamp/1000000) {
                     builder.append("\n");
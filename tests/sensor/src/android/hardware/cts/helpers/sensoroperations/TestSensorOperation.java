@@ -18,7 +18,6 @@ package android.hardware.cts.helpers.sensoroperations;
 
 import java.io.IOException;
 import java.util.HashSet;
-import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -42,6 +41,7 @@ import android.hardware.cts.helpers.sensorverification.MagnitudeVerification;
 import android.hardware.cts.helpers.sensorverification.MeanVerification;
 import android.hardware.cts.helpers.sensorverification.InitialValueVerification;
 import android.hardware.cts.helpers.sensorverification.StandardDeviationVerification;
+import android.hardware.cts.helpers.sensorverification.VerificationStream;
 import android.os.Handler;
 import android.os.SystemClock;
 import android.os.PowerManager.WakeLock;
@@ -135,6 +135,9 @@ public class TestSensorOperation extends SensorOperation {
     public void execute(ISensorTestNode parent) throws Exception {
         getStats().addValue("sensor_name", mEnvironment.getSensor().getName());
         TestSensorEventListener listener = new TestSensorEventListener(mEnvironment, mHandler);
+        // events are verified as they are received, instead of once all of them are collected
+        VerificationStream verificationStream = new VerificationStream(mVerifications);
+        listener.setVerificationStream(verificationStream);
 
         mStartTimeMs = SystemClock.elapsedRealtime();
         if (mEnvironment.isDeviceSuspendTest()) {
@@ -153,11 +156,11 @@ public class TestSensorOperation extends SensorOperation {
             mStopTimeMs = SystemClock.elapsedRealtime();
         }
 
+        verificationStream.finish();
         boolean failed = false;
         StringBuilder sb = new StringBuilder();
-        List<TestSensorEvent> collectedEvents = listener.getCollectedEvents();
-        for (ISensorVerification verification : mVerifications) {
-            failed |= evaluateResults(collectedEvents, verification, sb);
+        for (int i = 0; i < verificationStream.size(); i++) {
+            failed |= evaluateResults(verificationStream, i, sb);
         }
 
         trySaveCollectedEvents(parent, listener);
@@ -185,14 +188,11 @@ public class TestSensorOperation extends SensorOperation {
      * Evaluate the results of a test, aggregate the stats, and build the error message.
      */
     private boolean evaluateResults(
-            List<TestSensorEvent> events,
-            ISensorVerification verification,
+            VerificationStream verificationStream,
+            int index,
             StringBuilder sb) {
         try {
-            // this is an intermediate state in refactoring, at some point verifications might
-            // become stateless
-            verification.addSensorEvents(events);
-            verification.verify(mEnvironment, getStats());
+            verificationStream.verify(index, mEnvironment, getStats());
         } catch (AssertionError e) {
             if (sb.length() > 0) {
                 sb.append(", ");
@@ -277,20 +277,20 @@ public class TestSensorOperation extends SensorOperation {
                 try {
                     sensorManager.registerListener(listener);
                     if (flushBeforeAfterSuspend) {
-                        int initialNumEvents1 = listener.getCollectedEvents().size();
+                        int initialNumEvents1 = listener.getCollectedEventCount();
                         SensorCtsHelper.sleep(2, TimeUnit.SECONDS);
                         CountDownLatch flushLatch1 = sensorManager.requestFlush();
                         listener.waitForFlushComplete(flushLatch1, false);
                         Assert.assertTrue("1.No sensor events collected on calling flush " +
                                 environment.toString(),
-                                listener.getCollectedEvents().size() - initialNumEvents1 > 0);
+                                listener.getCollectedEventCount() - initialNumEvents1 > 0);
                     }
                     // acknowledge waitForFlushComplete
                     listener.releaseWakeLock();
 
                     Log.i(TAG, "Collected sensor events size1=" +
-                            listener.getCollectedEvents().size());
-                    int initialNumEvents2 = listener.getCollectedEvents().size();
+                            listener.getCollectedEventCount());
+                    int initialNumEvents2 = listener.getCollectedEventCount();
 
                     // allow device to go to sleep
                     if (wakeLock.isHeld()) {
@@ -312,9 +312,9 @@ public class TestSensorOperation extends SensorOperation {
                     listener.waitForFlushComplete(flushLatch2, false);
 
                     Log.i(TAG, "Collected sensor events size2=" +
-                            listener.getCollectedEvents().size());
+                            listener.getCollectedEventCount());
 
-                    if (listener.getCollectedEvents().size() - initialNumEvents2 <= 0 &&
+                    if (listener.getCollectedEventCount() - initialNumEvents2 <= 0 &&
                             suspendMonitor.getLastWakeUpTime() > 0) {
                         // Fail
                         String str = String.format("No Sensor events collected by calling flush " +
@@ -325,16 +325,16 @@ public class TestSensorOperation extends SensorOperation {
                         Assert.fail(str);
                     }
                     if (flushBeforeAfterSuspend) {
-                        int initialNumEvents3 = listener.getCollectedEvents().size();
+                        int initialNumEvents3 = listener.getCollectedEventCount();
                         SensorCtsHelper.sleep(2, TimeUnit.SECONDS);
                         CountDownLatch flushLatch3 = sensorManager.requestFlush();
                         listener.waitForFlushComplete(flushLatch3, false);
                         Assert.assertTrue("3.No sensor events collected on calling flush " +
                                 environment.toString(),
-                                listener.getCollectedEvents().size() - initialNumEvents3 > 0);
+                                listener.getCollectedEventCount() - initialNumEvents3 > 0);
                     }
                     Log.i(TAG, "Collected sensor events size3=" +
-                            listener.getCollectedEvents().size());
+                            listener.getCollectedEventCount());
                 } finally {
                     // make sure the device can run until the test activity take over.
                     if(!wakeLock.isHeld()) {
@@ -36,6 +36,14 @@ public abstract class AbstractSensorVerification implements ISensorVerification
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addSensorEvent(TestSensorEvent event) {
+        addSensorEventInternal(event);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -40,6 +40,14 @@ public interface ISensorVerification {
     // TODO: refactor verifications to be stateless, and pass the list of events in verify()
     void addSensorEvents(Collection<TestSensorEvent> events);
 
+    /**
+     * Add a single {@link TestSensorEvent} to be evaluated, as it is received.
+     *
+     * <p>Unlike {@link #addSensorEvents(Collection)} this method is not synchronized, it must not
+     * be called from several threads at the same time. See {@link VerificationStream}.
+     */
+    void addSensorEvent(TestSensorEvent event);
+
     /**
      * Evaluate all added {@link TestSensorEvent}s and update stats.
      *
@@ -21,14 +21,13 @@ import android.content.pm.PackageManager;
 
 import android.util.Log;
 import android.hardware.Sensor;
-import android.hardware.cts.helpers.SensorCtsHelper;
 import android.hardware.cts.helpers.SensorStats;
+import android.hardware.cts.helpers.StreamingPercentiles;
 import android.hardware.cts.helpers.TestSensorEnvironment;
 import android.hardware.cts.helpers.TestSensorEvent;
 import android.util.SparseIntArray;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 import junit.framework.Assert;
 
@@ -56,7 +55,9 @@ public class JitterVerification extends AbstractSensorVerification {
     private final float     mOutlierMargin;
     private final long      mThresholdNs;
     private final long      mExpectedPeriodNs; // for error message only
-    private final List<Long> mTimestamps = new LinkedList<Long>();
+    private final StreamingPercentiles mDeltaPercentiles;
+    private long mPreviousTimestamp;
+    private int mTimestampsCount = 0;
 
     /**
      * Construct a {@link JitterVerification}
@@ -67,6 +68,7 @@ public class JitterVerification extends AbstractSensorVerification {
         mExpectedPeriodNs = expectedPeriodNs;
         mOutlierMargin = outlierMargin;
         mThresholdNs = thresholdNs;
+        mDeltaPercentiles = new StreamingPercentiles(outlierMargin, 1 - outlierMargin);
     }
 
     /**
@@ -102,22 +104,19 @@ public class JitterVerification extends AbstractSensorVerification {
      */
     @Override
     public void verify(TestSensorEnvironment environment, SensorStats stats) {
-        int timestampsCount = mTimestamps.size();
-        if (timestampsCount < 2 || environment.isSensorSamplingRateOverloaded()) {
+        if (mTimestampsCount < 2 || environment.isSensorSamplingRateOverloaded()) {
             // the verification is not reliable in environments under load
             stats.addValue(PASSED_KEY, true);
             return;
         }
 
-        List<Long> deltas = getDeltaValues();
-        List<Long> percentileValues =
-                SensorCtsHelper.getPercentileValue(deltas, mOutlierMargin, 1 - mOutlierMargin);
+        long[] percentileValues = mDeltaPercentiles.getValues();
 
         double normalizedRange =
-                (double)(percentileValues.get(1) - percentileValues.get(0)) / mThresholdNs;
+                (double)(percentileValues[1] - percentileValues[0]) / mThresholdNs;
 
         double percentageJitter =
-                (double)(percentileValues.get(1) - percentileValues.get(0)) /
+                (double)(percentileValues[1] - percentileValues[0]) /
                         mExpectedPeriodNs / 2 * 100; //one side variation comparing to sample time
 
         stats.addValue(SensorStats.JITTER_95_PERCENTILE_PERCENT_KEY, percentageJitter);
@@ -131,8 +130,8 @@ public class JitterVerification extends AbstractSensorVerification {
                     "jitter min, max, range (95th percentile) = (%dns, %dns, %dns), " +
                     "jitter expected range <= %dns",
                     mExpectedPeriodNs,
-                    percentileValues.get(0), percentileValues.get(1),
-                    percentileValues.get(1) - percentileValues.get(0),
+                    percentileValues[0], percentileValues[1],
+                    percentileValues[1] - percentileValues[0],
                     mThresholdNs);
             Assert.fail(message);
         }
@@ -148,21 +147,33 @@ public class JitterVerification extends AbstractSensorVerification {
 
     /**
      * {@inheritDoc}
+     * <p>
+     * Only the delta values are kept, see {@link StreamingPercentiles}.
+     * </p>
      */
     @Override
     protected void addSensorEventInternal(TestSensorEvent event) {
-        mTimestamps.add(event.timestamp);
+        addTimestamp(event.timestamp);
+    }
+
+    private void addTimestamp(long timestamp) {
+        if (mTimestampsCount > 0) {
+            mDeltaPercentiles.add(timestamp - mPreviousTimestamp);
+        }
+        mPreviousTimestamp = timestamp;
+        mTimestampsCount++;
     }
 
     /**
-     * Get the list of delta values. Exposed for unit testing.
+     * Get the list of delta values, while they are all kept. Exposed for unit testing.
      */
     List<Long> getDeltaValues() {
-        List<Long> deltas = new ArrayList<Long>(mTimestamps.size() - 1);
-        for (int i = 1; i < mTimestamps.size(); i++) {
-            deltas.add(mTimestamps.get(i) - mTimestamps.get(i - 1));
+        long[] deltas = mDeltaPercentiles.getExactValues();
+        List<Long> deltaValues = new ArrayList<Long>(deltas.length);
+        for (long delta : deltas) {
+            deltaValues.add(delta);
         }
-        return deltas;
+        return deltaValues;
     }
 
     @SuppressWarnings("deprecation")
@@ -43,7 +43,10 @@ public class TimestampClockSourceVerification extends AbstractSensorVerification
     private static final long DEFAULT_THRESHOLD_NS = TimeUnit.MILLISECONDS.toNanos(1000);
     private static final float ALLOWED_LATENCY_ERROR = 0.1f; //10%
 
-    private final ArrayList<TestSensorEvent> mCollectedEvents = new ArrayList<TestSensorEvent>();
+    // Events are checked as they are added, only the failures are kept.
+    private final ArrayList<IndexedEvent> mFailures = new ArrayList<IndexedEvent>();
+    private final StringBuilder mFailuresMessage = new StringBuilder();
+    private int mEventCount = 0;
 
     private long mMaximumLatencyNs;
 
@@ -122,8 +125,8 @@ public class TimestampClockSourceVerification extends AbstractSensorVerification
      */
     @Override
     public TimestampClockSourceVerification clone() {
-        return new TimestampClockSourceVerification(
-                mMaximumLatencyNs);
+        // the constructor takes the latency in us
+        return new TimestampClockSourceVerification(mMaximumLatencyNs / 1000);
     }
 
     /**
@@ -131,7 +134,24 @@ public class TimestampClockSourceVerification extends AbstractSensorVerification
      */
     @Override
     protected void addSensorEventInternal(TestSensorEvent event) {
-        mCollectedEvents.add(event);
+        long eventTimestampNs = event.timestamp;
+        long receivedTimestampNs = event.receivedTimestamp;
+        long upperThresholdNs = receivedTimestampNs;
+        long lowerThresholdNs = receivedTimestampNs - mMaximumLatencyNs;
+
+        if (eventTimestampNs < lowerThresholdNs || eventTimestampNs > upperThresholdNs) {
+            if (mFailures.size() < TRUNCATE_MESSAGE_LENGTH) {
+                mFailuresMessage.append("position=").append(mEventCount);
+                mFailuresMessage.append(", timestamp=").append(String.format("%.2fms",
+                            nanosToMillis(eventTimestampNs)));
+                mFailuresMessage.append(", expected=[").append(String.format("%.2fms",
+                            nanosToMillis(lowerThresholdNs)));
+                mFailuresMessage.append(", ").append(String.format("%.2f]ms; ",
+                            nanosToMillis(upperThresholdNs)));
+            }
+            mFailures.add(new IndexedEvent(mEventCount, event));
+        }
+        mEventCount++;
     }
 
     /**
@@ -141,36 +161,16 @@ public class TimestampClockSourceVerification extends AbstractSensorVerification
      * @return A list of events tha failed the verification.
      */
     private List<IndexedEvent> verifyTimestampClockSource(StringBuilder builder) throws Throwable {
-        int collectedEventsCount = mCollectedEvents.size();
-        ArrayList<IndexedEvent> failures = new ArrayList<IndexedEvent>();
+        ArrayList<IndexedEvent> failures = mFailures;
 
-        if (collectedEventsCount == 0) {
+        if (mEventCount == 0) {
             if (failures.size() < TRUNCATE_MESSAGE_LENGTH) {
                 builder.append("No events received !");
             }
             Assert.assertTrue("No events received !", false);
         }
 
-        for (int i = 0; i < collectedEventsCount; ++i) {
-            TestSensorEvent event = mCollectedEvents.get(i);
-            long eventTimestampNs = event.timestamp;
-            long receivedTimestampNs = event.receivedTimestamp;
-            long upperThresholdNs = receivedTimestampNs;
-            long lowerThresholdNs = receivedTimestampNs - mMaximumLatencyNs;
-
-            if (eventTimestampNs < lowerThresholdNs || eventTimestampNs > upperThresholdNs) {
-                if (failures.size() < TRUNCATE_MESSAGE_LENGTH) {
-                    builder.append("position=").append(i);
-                    builder.append(", timestamp=").append(String.format("%.2fms",
-                                nanosToMillis(eventTimestampNs)));
-                    builder.append(", expected=[").append(String.format("%.2fms",
-                                nanosToMillis(lowerThresholdNs)));
-                    builder.append(", ").append(String.format("%.2f]ms; ",
-                                nanosToMillis(upperThresholdNs)));
-                }
-                failures.add(new IndexedEvent(i, event));
-            }
-        }
+        builder.append(mFailuresMessage);
         if (failures.size() >= TRUNCATE_MESSAGE_LENGTH) {
             builder.append("more; ");
         }
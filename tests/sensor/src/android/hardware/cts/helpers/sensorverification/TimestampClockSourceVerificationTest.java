@@ -161,10 +161,27 @@ public class TimestampClockSourceVerificationTest extends TestCase {
         }
     }
 
+    /**
+     * Test that a clone keeps the same maximum latency, as verifications are cloned when the
+     * collected events are cleared.
+     */
+    public void testVerify_clone_fail() throws Throwable {
+        verifyClockDelta();
+        long ts = getInvalidTimestamp();
+        long[] timestamps = {ts-4000000, ts-3000000, ts-2000000, ts-1000000, ts};
+        ISensorVerification verification =
+                new TimestampClockSourceVerification(MIN_DELTA_BETWEEN_CLOCKS_MS*1000).clone();
+        verification.addSensorEvents(getEvents(timestamps));
+        runVerification(verification, false, new int[]{0,1,2,3,4});
+    }
+
     private void runVerification(int expectedUs, long[] timestamps, boolean pass,
             int[] indices) {
+        runVerification(getVerification(expectedUs, timestamps), pass, indices);
+    }
+
+    private void runVerification(ISensorVerification verification, boolean pass, int[] indices) {
         SensorStats stats = new SensorStats();
-        ISensorVerification verification = getVerification(expectedUs, timestamps);
         TestSensorEnvironment environment = new TestSensorEnvironment(null, null, false, 0, 0);
         if (pass) {
             verification.verify(environment, stats);
@@ -196,17 +213,18 @@ public class TimestampClockSourceVerificationTest extends TestCase {
     }
 
     private static TimestampClockSourceVerification getVerification(int expectedUs, long ... timestamps) {
+        TimestampClockSourceVerification verification = new TimestampClockSourceVerification(expectedUs);
+        verification.addSensorEvents(getEvents(timestamps));
+        return verification;
+    }
+
+    private static Collection<TestSensorEvent> getEvents(long ... timestamps) {
         Collection<TestSensorEvent> events = new ArrayList<>(timestamps.length);
-        long expectedNs = expectedUs * 1000;
-        long now = SystemClock.elapsedRealtimeNanos();
         long receiveTime;
         for (long timestamp : timestamps) {
-            //receiveTime = now - (expectedNs * count);
             receiveTime = SystemClock.elapsedRealtimeNanos();
             events.add(new TestSensorEvent(null, timestamp, receiveTime, 0, null));
         }
-        TimestampClockSourceVerification verification = new TimestampClockSourceVerification(expectedUs);
-        verification.addSensorEvents(events);
-        return verification;
+        return events;
     }
 }
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.hardware.cts.helpers.sensorverification;
+
+import android.hardware.cts.helpers.SensorStats;
+import android.hardware.cts.helpers.TestSensorEnvironment;
+import android.hardware.cts.helpers.TestSensorEvent;
+
+import java.util.Collection;
+
+/**
+ * Dispatches sensor events to a set of {@link ISensorVerification}s as they are received, so
+ * that the events are only iterated once, and verifications which do not keep the events use a
+ * constant amount of memory.
+ *
+ * <p>Events are expected to be dispatched from a single thread, usually the thread of the sensor
+ * listener, and the stream takes no lock to dispatch them. Other threads may {@link #reset()} the
+ * verifications, e.g. when the listener's collected events are cleared, and {@link #finish()}
+ * dispatching before verifying the results. Callers keeping their own copy of the events, like
+ * {@link android.hardware.cts.helpers.TestSensorEventListener}, should dispatch and reset under
+ * the lock guarding that copy, so that both hold the same events.
+ */
+public final class VerificationStream {
+    private final ISensorVerification[] mVerifications;
+    /** First error thrown by each verification while adding events. */
+    private final AssertionError[] mErrors;
+
+    /** Incremented to request a reset, which is applied by the dispatching thread. */
+    private volatile int mResetGeneration = 0;
+    private int mAppliedResetGeneration = 0;
+
+    // Set by the dispatching thread while it is dispatching, and by finish() to stop dispatching.
+    // Both are volatile, so that either finish() sees an event being dispatched and waits for it,
+    // or the dispatching thread sees that the stream is finished.
+    private volatile boolean mDispatching = false;
+    private volatile boolean mFinished = false;
+
+    /**
+     * Construct a {@link VerificationStream}.
+     *
+     * @param verifications the verifications to which events are added
+     */
+    public VerificationStream(Collection<ISensorVerification> verifications) {
+        mVerifications = verifications.toArray(new ISensorVerification[verifications.size()]);
+        mErrors = new AssertionError[mVerifications.length];
+    }
+
+    /**
+     * Add an event to all the verifications. Must be called from a single thread.
+     *
+     * <p>An {@link AssertionError} thrown by a verification is kept, and thrown again by
+     * {@link #verify(int, TestSensorEnvironment, SensorStats)}.
+     */
+    public void onSensorEvent(TestSensorEvent event) {
+        mDispatching = true;
+        try {
+            if (mFinished) {
+                return;
+            }
+            int resetGeneration = mResetGeneration;
+            if (resetGeneration != mAppliedResetGeneration) {
+                for (int i = 0; i < mVerifications.length; i++) {
+                    mVerifications[i] = mVerifications[i].clone();
+                    mErrors[i] = null;
+                }
+                mAppliedResetGeneration = resetGeneration;
+            }
+
+            for (int i = 0; i < mVerifications.length; i++) {
+                if (mErrors[i] != null) {
+                    continue;
+                }
+                try {
+                    mVerifications[i].addSensorEvent(event);
+                } catch (AssertionError e) {
+                    mErrors[i] = e;
+                }
+            }
+        } finally {
+            mDispatching = false;
+        }
+    }
+
+    /**
+     * Drop the events added so far, the verifications are replaced by clones before the next
+     * event is added.
+     */
+    public void reset() {
+        mResetGeneration++;
+    }
+
+    /**
+     * Stop adding events to the verifications, waiting for an event being dispatched if needed.
+     */
+    public void finish() {
+        mFinished = true;
+        while (mDispatching) {
+            Thread.yield();
+        }
+        if (mResetGeneration != mAppliedResetGeneration) {
+            // events were cleared after the last event
+            for (int i = 0; i < mVerifications.length; i++) {
+                mVerifications[i] = mVerifications[i].clone();
+                mErrors[i] = null;
+            }
+            mAppliedResetGeneration = mResetGeneration;
+        }
+    }
+
+    /**
+     * @return The number of verifications.
+     */
+    public int size() {
+        return mVerifications.length;
+    }
+
+    /**
+     * @return The verification at {@code index}, which may be a clone of the one passed in if the
+     * stream was {@link #reset()}.
+     */
+    public ISensorVerification get(int index) {
+        return mVerifications[index];
+    }
+
+    /**
+     * Verify the verification at {@code index}, must be called after {@link #finish()}.
+     *
+     * @throws AssertionError if the verification failed, or failed while adding events.
+     */
+    public void verify(int index, TestSensorEnvironment environment, SensorStats stats) {
+        if (!mFinished) {
+            throw new IllegalStateException("finish() must be called before verifying");
+        }
+        if (mErrors[index] != null) {
+            throw mErrors[index];
+        }
+        mVerifications[index].verify(environment, stats);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.hardware.cts.helpers.sensorverification;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import android.hardware.cts.helpers.SensorStats;
+import android.hardware.cts.helpers.TestSensorEnvironment;
+import android.hardware.cts.helpers.TestSensorEvent;
+
+import java.util.Arrays;
+
+/**
+ * Tests for {@link VerificationStream}.
+ */
+public class VerificationStreamTest extends TestCase {
+
+    public void testDispatch() {
+        CountingVerification first = new CountingVerification();
+        CountingVerification second = new CountingVerification();
+        VerificationStream stream = new VerificationStream(Arrays.asList(first, second));
+        for (int i = 0; i < 10; i++) {
+            stream.onSensorEvent(new TestSensorEvent(null, i, 0, null));
+        }
+        stream.finish();
+        // events received after finishing are dropped
+        stream.onSensorEvent(new TestSensorEvent(null, 10, 0, null));
+
+        assertEquals(2, stream.size());
+        assertSame(first, stream.get(0));
+        assertEquals(10, first.mCount);
+        assertEquals(10, second.mCount);
+        stream.verify(0, getEnvironment(), new SensorStats());
+    }
+
+    public void testReset() {
+        CountingVerification verification = new CountingVerification();
+        VerificationStream stream = new VerificationStream(Arrays.asList(verification));
+        stream.onSensorEvent(new TestSensorEvent(null, 0, 0, null));
+        stream.reset();
+        stream.onSensorEvent(new TestSensorEvent(null, 1, 0, null));
+        stream.onSensorEvent(new TestSensorEvent(null, 2, 0, null));
+        stream.finish();
+
+        assertNotSame(verification, stream.get(0));
+        assertEquals(2, ((CountingVerification) stream.get(0)).mCount);
+    }
+
+    public void testErrorWhileAddingEvents() {
+        CountingVerification verification = new CountingVerification();
+        verification.mMaxCount = 1;
+        VerificationStream stream = new VerificationStream(Arrays.asList(verification));
+        stream.onSensorEvent(new TestSensorEvent(null, 0, 0, null));
+        stream.onSensorEvent(new TestSensorEvent(null, 1, 0, null));
+        stream.onSensorEvent(new TestSensorEvent(null, 2, 0, null));
+        stream.finish();
+
+        // no more events are added after the error
+        assertEquals(2, verification.mCount);
+        try {
+            stream.verify(0, getEnvironment(), new SensorStats());
+            throw new Error("Expected an AssertionError");
+        } catch (AssertionError e) {
+            // Expected
+        }
+    }
+
+    private static TestSensorEnvironment getEnvironment() {
+        return new TestSensorEnvironment(
+                null /* context */,
+                null /* sensor */,
+                false /* sensorMightHaveMoreListeners */,
+                0 /*samplingPeriodUs */,
+                0 /* maxReportLatencyUs */);
+    }
+
+    private static class CountingVerification extends AbstractSensorVerification {
+        int mCount = 0;
+        int mMaxCount = Integer.MAX_VALUE;
+
+        @Override
+        public void verify(TestSensorEnvironment environment, SensorStats stats) {
+        }
+
+        @Override
+        public CountingVerification clone() {
+            return new CountingVerification();
+        }
+
+        @Override
+        protected void addSensorEventInternal(TestSensorEvent event) {
+            mCount++;
+            Assert.assertTrue("Too many events", mCount <= mMaxCount);
+        }
+    }
+}
@@ -17,20 +17,28 @@
 package android.signature.cts.api;
 
 import android.os.Bundle;
+import android.signature.cts.ByteBufferLineSpliterator;
 import android.signature.cts.DexApiDocumentParser;
 import android.signature.cts.DexField;
 import android.signature.cts.DexMember;
 import android.signature.cts.DexMemberChecker;
 import android.signature.cts.DexMethod;
 import android.signature.cts.FailureType;
+import android.signature.cts.ResultObserver;
 import android.signature.cts.VirtualPath;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 import org.junit.Test;
 
 /**
@@ -42,6 +50,10 @@ public class HiddenApiTest extends AbstractApiTest {
     private String[] hiddenapiTestFlags;
     private String hiddenapiFilterFile;
     private Set<String> hiddenapiFilterSet;
+    private boolean hiddenapiParallel;
+
+    // Estimate of the length of a line in a hiddenapi-flags file.
+    private static final int LINE_LENGTH_ESTIMATE = 100;
 
     @Override
     protected void initializeFromArgs(Bundle instrumentationArgs) throws Exception {
@@ -49,6 +61,8 @@ public class HiddenApiTest extends AbstractApiTest {
         hiddenapiTestFlags = getCommaSeparatedListOptional(instrumentationArgs, "hiddenapi-test-flags");
         hiddenapiFilterFile = instrumentationArgs.getString("hiddenapi-filter-file");
         hiddenapiFilterSet = new HashSet<>();
+        hiddenapiParallel =
+                Boolean.parseBoolean(instrumentationArgs.getString("hiddenapi-parallel"));
     }
 
     @Override
@@ -95,61 +109,13 @@ public class HiddenApiTest extends AbstractApiTest {
     private void doTestSignature(Predicate<DexMember> memberFilter, boolean reflection,
             boolean jni) {
         runWithTestResultObserver(resultObserver -> {
-            DexMemberChecker.Observer observer = new DexMemberChecker.Observer() {
-                @Override
-                public void classAccessible(boolean accessible, DexMember member) {
-                }
-
-                @Override
-                public void fieldAccessibleViaReflection(boolean accessible, DexField field) {
-                    if (accessible) {
-                        synchronized(resultObserver) {
-                            resultObserver.notifyFailure(
-                                    FailureType.EXTRA_FIELD,
-                                    field.toString(),
-                                    "Hidden field accessible through reflection");
-                        }
-                    }
-                }
-
-                @Override
-                public void fieldAccessibleViaJni(boolean accessible, DexField field) {
-                    if (accessible) {
-                        synchronized(resultObserver) {
-                            resultObserver.notifyFailure(
-                                    FailureType.EXTRA_FIELD,
-                                    field.toString(),
-                                    "Hidden field accessible through JNI");
-                        }
-                    }
-                }
-
-                @Override
-                public void methodAccessibleViaReflection(boolean accessible, DexMethod method) {
-                    if (accessible) {
-                        synchronized(resultObserver) {
-                            resultObserver.notifyFailure(
-                                    FailureType.EXTRA_METHOD,
-                                    method.toString(),
-                                    "Hidden method accessible through reflection");
-                        }
-                    }
-                }
-
-                @Override
-                public void methodAccessibleViaJni(boolean accessible, DexMethod method) {
-                    if (accessible) {
-                        synchronized(resultObserver) {
-                            resultObserver.notifyFailure(
-                                    FailureType.EXTRA_METHOD,
-                                    method.toString(),
-                                    "Hidden method accessible through JNI");
-                        }
-                    }
-                }
-            };
+            DexMemberChecker.Observer observer = createObserver(resultObserver);
 
             for (String apiFile : hiddenapiFiles) {
+                if (hiddenapiParallel) {
+                    checkMembersInParallel(apiFile, memberFilter, reflection, jni, resultObserver);
+                    continue;
+                }
                 VirtualPath.ResourcePath resourcePath =
                         VirtualPath.get(getClass().getClassLoader(), apiFile);
                 BufferedReader reader = new BufferedReader(
@@ -170,6 +136,121 @@ public class HiddenApiTest extends AbstractApiTest {
         });
     }
 
+    /**
+     * Checks the members listed in a single hiddenapi-flags file on multiple threads.
+     *
+     * <p>The file is memory mapped and split up into chunks of whole lines, which are parsed and
+     * checked in parallel. Failures are buffered per member and only reported to the
+     * {@code resultObserver} once all members have been checked, from the calling thread and in
+     * the order in which the members appear in the file.</p>
+     */
+    private void checkMembersInParallel(String apiFile, Predicate<DexMember> memberFilter,
+            boolean reflection, boolean jni, ResultObserver resultObserver) {
+        ByteBuffer buffer = ResourceStore.mapResource(getClass().getClassLoader(), apiFile);
+        List<PendingFailure> failures = StreamSupport.stream(
+                new ByteBufferLineSpliterator<String>(buffer, LINE_LENGTH_ESTIMATE, line -> line),
+                /* parallel= */ true)
+                .flatMap(line -> {
+                    DexMember dexMember;
+                    try {
+                        dexMember = DexApiDocumentParser.parseLine(line, /* lineNum= */ -1);
+                    } catch (ParseException e) {
+                        throw new RuntimeException(e);
+                    }
+                    List<PendingFailure> memberFailures = new ArrayList<>();
+                    if (memberFilter.test(dexMember) && shouldTestMember(dexMember)
+                            && !isFiltered(line)) {
+                        DexMemberChecker.checkSingleMember(dexMember, reflection, jni,
+                                createObserver((type, name, errorMessage, throwable) ->
+                                        memberFailures.add(new PendingFailure(
+                                                type, name, errorMessage, throwable))));
+                    }
+                    return memberFailures.stream();
+                })
+                .collect(Collectors.toList());
+
+        for (PendingFailure failure : failures) {
+            failure.report(resultObserver);
+        }
+    }
+
+    private static DexMemberChecker.Observer createObserver(ResultObserver resultObserver) {
+        return new DexMemberChecker.Observer() {
+            @Override
+            public void classAccessible(boolean accessible, DexMember member) {
+            }
+
+            @Override
+            public void fieldAccessibleViaReflection(boolean accessible, DexField field) {
+                if (accessible) {
+                    synchronized(resultObserver) {
+                        resultObserver.notifyFailure(
+                                FailureType.EXTRA_FIELD,
+                                field.toString(),
+                                "Hidden field accessible through reflection");
+                    }
+                }
+            }
+
+            @Override
+            public void fieldAccessibleViaJni(boolean accessible, DexField field) {
+                if (accessible) {
+                    synchronized(resultObserver) {
+                        resultObserver.notifyFailure(
+                                FailureType.EXTRA_FIELD,
+                                field.toString(),
+                                "Hidden field accessible through JNI");
+                    }
+                }
+            }
+
+            @Override
+            public void methodAccessibleViaReflection(boolean accessible, DexMethod method) {
+                if (accessible) {
+                    synchronized(resultObserver) {
+                        resultObserver.notifyFailure(
+                                FailureType.EXTRA_METHOD,
+                                method.toString(),
+                                "Hidden method accessible through reflection");
+                    }
+                }
+            }
+
+            @Override
+            public void methodAccessibleViaJni(boolean accessible, DexMethod method) {
+                if (accessible) {
+                    synchronized(resultObserver) {
+                        resultObserver.notifyFailure(
+                                FailureType.EXTRA_METHOD,
+                                method.toString(),
+                                "Hidden method accessible through JNI");
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * A failure that has been found on a worker thread but not yet reported.
+     */
+    private static class PendingFailure {
+        private final FailureType type;
+        private final String name;
+        private final String errorMessage;
+        private final Throwable throwable;
+
+        PendingFailure(FailureType type, String name, String errorMessage, Throwable throwable) {
+            this.type = type;
+            this.name = name;
+            this.errorMessage = errorMessage;
+            this.throwable = throwable;
+        }
+
+        void report(ResultObserver resultObserver) {
+            resultObserver.notifyFailure(type, name, errorMessage, throwable);
+        }
+    }
+
     /**
      * Determines whether to test the member.
      *
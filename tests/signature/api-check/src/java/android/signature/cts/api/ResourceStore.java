@@ -20,8 +20,11 @@ import android.util.Log;
 import com.google.common.base.Suppliers;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.function.Supplier;
@@ -53,6 +56,12 @@ public class ResourceStore {
      */
     private static final Map<VirtualPath, ZipFile> extractedZipFiles = new HashMap<>();
 
+    /**
+     * A map from a {@link VirtualPath} to the {@link Path} of a plain resource that has been
+     * extracted from the jar into the local file system so that it can be memory mapped.
+     */
+    private static final Map<VirtualPath, Path> extractedFiles = new HashMap<>();
+
     public static Stream<VirtualPath> readResource(ClassLoader classLoader, String resourceName) {
         try {
             VirtualPath resourcePath = VirtualPath.get(classLoader, resourceName);
@@ -77,6 +86,35 @@ public class ResourceStore {
         }
     }
 
+    /**
+     * Map a resource into memory.
+     *
+     * <p>The resource is extracted into the local file system, unless that has already been done
+     * before, and the resulting file is mapped read only. The returned buffer remains valid after
+     * {@link #close()} is called.</p>
+     *
+     * @param classLoader the {@link ClassLoader} from which the resource will be loaded.
+     * @param resourceName the name of the resource.
+     * @return a read only {@link ByteBuffer} containing the contents of the resource.
+     */
+    public static ByteBuffer mapResource(ClassLoader classLoader, String resourceName) {
+        try {
+            VirtualPath resourcePath = VirtualPath.get(classLoader, resourceName);
+            Path path = extractedFiles.computeIfAbsent(resourcePath, virtualPath -> {
+                try {
+                    return extractResourceToFile(resourceName, resourcePath);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * Close any previously opened {@link ZipFile} instances.
      */
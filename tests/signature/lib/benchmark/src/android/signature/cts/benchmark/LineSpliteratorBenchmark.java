@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.signature.cts.benchmark;
+
+import android.signature.cts.ByteBufferCharSequenceLineSpliterator;
+import android.signature.cts.ByteBufferLineSpliterator;
+import android.signature.cts.DexApiDocumentParser;
+import android.signature.cts.DexMember;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.text.ParseException;
+import java.util.Spliterator;
+import java.util.function.Supplier;
+import java.util.stream.StreamSupport;
+
+/**
+ * Compares {@link ByteBufferLineSpliterator} against {@link ByteBufferCharSequenceLineSpliterator}
+ * on a hiddenapi-flags.csv file.
+ *
+ * <p>Each case is run a number of times to warm up the JIT before the measured iterations. The
+ * average time per iteration is reported for splitting alone and for splitting and parsing each
+ * line into a {@link DexMember}, both sequentially and in parallel.
+ *
+ * <p>Usage: {@code LineSpliteratorBenchmark [hiddenapi-flags.csv] [iterations]}. If no file is
+ * given then the copy of hiddenapi-flags.csv bundled into the jar is used.
+ */
+public class LineSpliteratorBenchmark {
+
+    private static final String HIDDENAPI_FLAGS = "hiddenapi-flags.csv";
+
+    private static final int LINE_LENGTH_ESTIMATE = 100;
+
+    private static final int WARMUP_ITERATIONS = 5;
+
+    private static final int DEFAULT_ITERATIONS = 20;
+
+    public static void main(String[] args) throws IOException {
+        ByteBuffer buffer = load(args.length > 0 ? args[0] : null);
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ITERATIONS;
+        System.out.printf("Read %d bytes, %d iterations%n", buffer.remaining(), iterations);
+
+        run("ByteBufferLineSpliterator (split)", iterations, false,
+                () -> new ByteBufferLineSpliterator<Integer>(buffer.duplicate(),
+                        LINE_LENGTH_ESTIMATE, String::length));
+        run("ByteBufferCharSequenceLineSpliterator (split)", iterations, false,
+                () -> new ByteBufferCharSequenceLineSpliterator<Integer>(buffer.duplicate(),
+                        LINE_LENGTH_ESTIMATE, CharSequence::length));
+
+        for (boolean parallel : new boolean[] {false, true}) {
+            String mode = parallel ? "parallel" : "sequential";
+            run("ByteBufferLineSpliterator (parse, " + mode + ")", iterations, parallel,
+                    () -> new ByteBufferLineSpliterator<DexMember>(buffer.duplicate(),
+                            LINE_LENGTH_ESTIMATE, LineSpliteratorBenchmark::parse));
+            run("ByteBufferCharSequenceLineSpliterator (parse, " + mode + ")", iterations,
+                    parallel,
+                    () -> new ByteBufferCharSequenceLineSpliterator<DexMember>(buffer.duplicate(),
+                            LINE_LENGTH_ESTIMATE, LineSpliteratorBenchmark::parse));
+        }
+    }
+
+    private static <T> void run(String name, int iterations, boolean parallel,
+            Supplier<Spliterator<T>> factory) {
+        long count = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            count = StreamSupport.stream(factory.get(), parallel).count();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            count = StreamSupport.stream(factory.get(), parallel).count();
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%-60s %10.3f ms/op (%d lines)%n", name,
+                elapsed / 1_000_000.0 / iterations, count);
+    }
+
+    private static DexMember parse(CharSequence line) {
+        try {
+            return DexApiDocumentParser.parseLine(line, /* lineNum= */ -1);
+        } catch (ParseException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static ByteBuffer load(String path) throws IOException {
+        try (InputStream in = path != null
+                ? new FileInputStream(path)
+                : LineSpliteratorBenchmark.class.getClassLoader()
+                        .getResourceAsStream(HIDDENAPI_FLAGS)) {
+            if (in == null) {
+                throw new IOException("Could not find resource '" + HIDDENAPI_FLAGS + "'");
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                out.write(chunk, 0, read);
+            }
+            byte[] bytes = out.toByteArray();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+            buffer.put(bytes).flip();
+            return buffer;
+        }
+    }
+}
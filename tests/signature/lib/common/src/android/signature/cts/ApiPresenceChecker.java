@@ -18,8 +18,6 @@ package android.signature.cts;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -111,7 +109,8 @@ public class ApiPresenceChecker {
     private void checkFieldsCompliance(JDiffClassDescription classDescription,
             Class<?> runtimeClass) {
         // A map of field name to field of the fields contained in runtimeClass.
-        Map<String, Field> classFieldMap = buildFieldMap(runtimeClass);
+        Map<String, Field> classFieldMap =
+                classProvider.getReflectionIndex().getFieldMap(runtimeClass);
         for (JDiffClassDescription.JDiffField field : classDescription.getFields()) {
             try {
                 Field f = classFieldMap.get(field.mName);
@@ -133,40 +132,6 @@ public class ApiPresenceChecker {
         }
     }
 
-    /**
-     * Scan a class (an its entire inheritance chain) for fields.
-     *
-     * @return a {@link Map} of fieldName to {@link Field}
-     */
-    private static Map<String, Field> buildFieldMap(Class<?> testClass) {
-        try {
-            return buildFieldMapImpl(testClass);
-        } catch (NoClassDefFoundError e) {
-            LogHelper.loge("AbstractApiChecker: Could not retrieve fields of " + testClass, e);
-            return Collections.emptyMap();
-        }
-    }
-
-    private static Map<String, Field> buildFieldMapImpl(Class<?> testClass) {
-        Map<String, Field> fieldMap = new HashMap<>();
-        // Scan the superclass
-        if (testClass.getSuperclass() != null) {
-            fieldMap.putAll(buildFieldMapImpl(testClass.getSuperclass()));
-        }
-
-        // Scan the interfaces
-        for (Class<?> interfaceClass : testClass.getInterfaces()) {
-            fieldMap.putAll(buildFieldMapImpl(interfaceClass));
-        }
-
-        // Check the fields in the test class
-        for (Field field : testClass.getDeclaredFields()) {
-            fieldMap.put(field.getName(), field);
-        }
-
-        return fieldMap;
-    }
-
     protected void checkField(JDiffClassDescription classDescription,
             Class<?> runtimeClass,
             JDiffClassDescription.JDiffField fieldDescription, Field field) {
@@ -185,8 +150,8 @@ public class ApiPresenceChecker {
         Map<Constructor, String> mismatchReasons = new LinkedHashMap<>();
         for (JDiffClassDescription.JDiffConstructor con : classDescription.getConstructors()) {
             try {
-                Constructor<?> c = ReflectionHelper.findMatchingConstructor(runtimeClass, con,
-                        mismatchReasons);
+                Constructor<?> c = classProvider.getReflectionIndex()
+                        .findMatchingConstructor(runtimeClass, con, mismatchReasons);
                 if (c == null) {
                     resultObserver.notifyFailure(FailureType.MISSING_CONSTRUCTOR,
                             con.toReadableString(classDescription.getAbsoluteClassName()),
@@ -228,7 +193,7 @@ public class ApiPresenceChecker {
         Map<Method, String> mismatchReasons = new LinkedHashMap<>();
         for (JDiffClassDescription.JDiffMethod method : classDescription.getMethods()) {
             try {
-                Method m = ReflectionHelper.findMatchingMethod(
+                Method m = classProvider.getReflectionIndex().findMatchingMethod(
                         runtimeClass, method, mismatchReasons);
                 if (m == null) {
                     resultObserver.notifyFailure(FailureType.MISSING_METHOD,
@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.signature.cts;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A spliterator breaking up a ByteBuffer into lines of text without decoding them. A converter
+ * will translate a line to an arbitrary type. This spliterator allows splitting.
+ *
+ * <p>Unlike {@link ByteBufferLineSpliterator} each line is not decoded into a new String, instead
+ * the converter is passed a {@link CharSequence} view onto the bytes of the line. The view is
+ * reused for every line so the converter must not retain a reference to it, or to anything
+ * returned by its {@link CharSequence#subSequence(int, int)} method, after it returns.
+ *
+ * <p>This class assumes that the buffer only contains ASCII characters, i.e. each byte is a single
+ * character. That is true of the hiddenapi-flags files but not for all of unicode and must be
+ * guaranteed by the caller.
+ */
+public class ByteBufferCharSequenceLineSpliterator<T> implements Spliterator<T> {
+    private static final long NEW_LINES = 0x0a0a0a0a0a0a0a0aL;
+    private static final long LOW_BITS = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    private final ByteBuffer mBuffer;
+    private final int mLineLengthEstimate;
+    private final Function<CharSequence, T> mConverter;
+    private final ByteSequence mLine;
+
+    private int mPosition;
+    private int mLimit;
+
+    public ByteBufferCharSequenceLineSpliterator(ByteBuffer buffer, int lineLengthEstimate,
+            Function<CharSequence, T> converter) {
+        this(buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN), buffer.position(), buffer.limit(),
+                lineLengthEstimate, converter);
+    }
+
+    private ByteBufferCharSequenceLineSpliterator(ByteBuffer buffer, int position, int limit,
+            int lineLengthEstimate, Function<CharSequence, T> converter) {
+        mBuffer = buffer;
+        mPosition = position;
+        mLimit = limit;
+        mLineLengthEstimate = lineLengthEstimate;
+        mConverter = converter;
+        mLine = new ByteSequence(buffer);
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        // Same approach as ByteBufferLineSpliterator: jump into the middle of the remaining
+        // segment and look for the next line break. As this spliterator is ORDERED the part
+        // before the line break is returned and this spliterator keeps the part after it.
+
+        // Only attempt if there's enough "work" left.
+        int remaining = mLimit - mPosition;
+        if (remaining < 10 * mLineLengthEstimate) {
+            return null;
+        }
+
+        int nextNewLine = findNextNewLine(mPosition + remaining / 2);
+        if (nextNewLine == -1 || nextNewLine + 1 >= mLimit) {
+            return null;
+        }
+
+        Spliterator<T> retValue = new ByteBufferCharSequenceLineSpliterator<T>(mBuffer,
+                mPosition, nextNewLine, mLineLengthEstimate, mConverter);
+        mPosition = nextNewLine + 1;
+        return retValue;
+    }
+
+    @Override
+    public long estimateSize() {
+        return (mLimit - mPosition) / mLineLengthEstimate;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL | IMMUTABLE;
+    }
+
+    /**
+     * Find the absolute index of the next '\n' at or after {@code from}, or -1 if there is none.
+     *
+     * <p>Eight bytes are checked at a time by loading them as a single long and using the usual
+     * "has zero byte" trick on the result of xor-ing them with a word full of '\n'. As the buffer
+     * is little endian the lowest flagged byte is the first match.
+     */
+    private int findNextNewLine(int from) {
+        int index = from;
+        int wordLimit = mLimit - Long.BYTES;
+        while (index <= wordLimit) {
+            long word = mBuffer.getLong(index) ^ NEW_LINES;
+            long found = (word - LOW_BITS) & ~word & HIGH_BITS;
+            if (found != 0) {
+                return index + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+            index += Long.BYTES;
+        }
+        while (index < mLimit) {
+            if (mBuffer.get(index) == '\n') {
+                return index;
+            }
+            index++;
+        }
+        return -1;
+    }
+
+    /**
+     * Advance to the next line and return a view onto it, or null if there are no more lines.
+     */
+    protected CharSequence nextLine() {
+        if (mPosition >= mLimit) {
+            return null;
+        }
+
+        int nextLineBreak = findNextNewLine(mPosition);
+        if (nextLineBreak == mPosition) {
+            throw new IllegalStateException("Empty line.");
+        }
+        int end = nextLineBreak == -1 ? mLimit : nextLineBreak;
+        mLine.set(mPosition, end - mPosition);
+        mPosition = end + 1;
+        return mLine;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        CharSequence nextLine = nextLine();
+        if (nextLine == null) {
+            return false;
+        }
+        action.accept(mConverter.apply(nextLine));
+        return true;
+    }
+
+    /**
+     * A {@link CharSequence} view onto a range of ASCII bytes in a {@link ByteBuffer}.
+     */
+    private static class ByteSequence implements CharSequence {
+        private final ByteBuffer mBuffer;
+        private int mOffset;
+        private int mLength;
+
+        ByteSequence(ByteBuffer buffer) {
+            mBuffer = buffer;
+        }
+
+        ByteSequence(ByteBuffer buffer, int offset, int length) {
+            mBuffer = buffer;
+            set(offset, length);
+        }
+
+        void set(int offset, int length) {
+            mOffset = offset;
+            mLength = length;
+        }
+
+        @Override
+        public int length() {
+            return mLength;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= mLength) {
+                throw new IndexOutOfBoundsException("index " + index + ", length " + mLength);
+            }
+            return (char) (mBuffer.get(mOffset + index) & 0xff);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > mLength || start > end) {
+                throw new IndexOutOfBoundsException(
+                        "start " + start + ", end " + end + ", length " + mLength);
+            }
+            return new ByteSequence(mBuffer, mOffset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            byte[] bytes = new byte[mLength];
+            ByteBuffer duplicate = mBuffer.duplicate();
+            duplicate.position(mOffset);
+            duplicate.get(bytes);
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
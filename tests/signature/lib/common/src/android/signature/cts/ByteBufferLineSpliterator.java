@@ -31,8 +31,9 @@ public class ByteBufferLineSpliterator<T> implements Spliterator<T> {
     public Spliterator<T> trySplit() {
         // Approach: jump into the middle of the remaining segment and look
         // for the next line break. If there is none, return null. Otherwise
-        // initialize a return value with a subsequence, and limit the
-        // current buffer.
+        // initialize a return value with the subsequence up to and including
+        // the line break, and advance the current buffer past it. As this
+        // spliterator is ORDERED the returned one must cover the prefix.
         //
         // This relies heavily on lines not having outliers (wrt/ length).
 
@@ -42,18 +43,21 @@ public class ByteBufferLineSpliterator<T> implements Spliterator<T> {
         }
 
         int curPos = mBuffer.position();
+        int curLimit = mBuffer.limit();
         mBuffer.position(curPos + mBuffer.remaining() / 2);
         int nextNewLine = findNextNewLine();
         if (nextNewLine == -1) {
+            mBuffer.position(curPos);
             return null;
         }
+        int splitPos = mBuffer.position() + nextNewLine + 1;
 
-        mBuffer.position(mBuffer.position() + nextNewLine + 1);
+        mBuffer.position(curPos).limit(splitPos);
         Spliterator<T> retValue = new ByteBufferLineSpliterator<T>(mBuffer.slice(),
                 mLineLengthEstimate, mConverter);
 
-        // Reset this buffer and set limit.
-        mBuffer.position(curPos).limit(curPos + mBuffer.remaining() / 2 + nextNewLine);
+        // Continue this buffer after the line break.
+        mBuffer.limit(curLimit).position(splitPos);
 
         return retValue;
     }
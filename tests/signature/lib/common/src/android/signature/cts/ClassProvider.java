@@ -23,6 +23,8 @@ import java.util.stream.Stream;
  * when it needs runtime classes.
  */
 public abstract class ClassProvider {
+    private volatile ReflectionIndex reflectionIndex;
+
     /**
      * Get a specific class with the given name.
      *
@@ -41,4 +43,21 @@ public abstract class ClassProvider {
      * Gets all class members available for the given class.
      */
     public abstract Stream<DexMember> getAllMembers(Class<?> klass);
+
+    /**
+     * Gets the index of the classes and members found through reflection from this provider.
+     */
+    ReflectionIndex getReflectionIndex() {
+        ReflectionIndex index = reflectionIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = reflectionIndex;
+                if (index == null) {
+                    index = new ReflectionIndex();
+                    reflectionIndex = index;
+                }
+            }
+        }
+        return index;
+    }
 }
@@ -47,8 +47,14 @@ public class DexApiDocumentParser {
     // Estimate of the length of a line.
     private static final int LINE_LENGTH_ESTIMATE = 100;
 
+    // Maximum number of distinct flags shared between members, see getFlag().
+    private static final int MAX_SHARED_FLAGS = 64;
+
+    // The flags seen so far, only ever replaced by a longer copy.
+    private static volatile String[] sFlags = new String[0];
+
     // Converter from String to DexMember. Cached here.
-    private static final Function<String, DexMember> DEX_MEMBER_CONVERTER = str -> {
+    private static final Function<CharSequence, DexMember> DEX_MEMBER_CONVERTER = str -> {
         try {
             return parseLine(str, /* lineNum= */ -1); // No line info available.
         } catch (ParseException e) {
@@ -83,23 +89,48 @@ public class DexApiDocumentParser {
         return parseAsStream(buffer, LINE_LENGTH_ESTIMATE);
     }
     public Stream<DexMember> parseAsStream(ByteBuffer buffer, int lineLengthEstimate) {
-        // TODO: Ensurance that the input conforms to ByteBufferLineSpliterator requirements.
-        return StreamSupport.stream(new ByteBufferLineSpliterator<DexMember>(buffer,
+        // TODO: Ensurance that the input conforms to ByteBufferCharSequenceLineSpliterator
+        // requirements.
+        return StreamSupport.stream(new ByteBufferCharSequenceLineSpliterator<DexMember>(buffer,
                 lineLengthEstimate, DEX_MEMBER_CONVERTER), true);
     }
 
-    public static DexMember parseLine(String line, int lineNum) throws ParseException {
-        // Split the CSV line.
-        String[] splitLine = line.split(",");
-        String signature = splitLine[0];
-        String[] flags = Arrays.copyOfRange(splitLine, 1, splitLine.length);
+    /**
+     * Parse a single line.
+     *
+     * <p>The line may be a reused view onto a buffer, e.g. one provided by
+     * {@link ByteBufferCharSequenceLineSpliterator}, so no reference to it is retained.
+     */
+    public static DexMember parseLine(CharSequence line, int lineNum) throws ParseException {
+        // Split the CSV line. Like String.split(), trailing empty fields are dropped.
+        int end = line.length();
+        while (end > 0 && line.charAt(end - 1) == ',') {
+            end--;
+        }
+        int signatureEnd = indexOfComma(line, 0, end);
+        String signature = line.subSequence(0, signatureEnd).toString();
+
+        int flagCount = 0;
+        for (int i = signatureEnd; i < end; i = indexOfComma(line, i + 1, end)) {
+            flagCount++;
+        }
+        String[] flags = new String[flagCount];
+        int flagStart = signatureEnd + 1;
+        for (int i = 0; i < flagCount; i++) {
+            int flagEnd = indexOfComma(line, flagStart, end);
+            flags[i] = getFlag(line, flagStart, flagEnd);
+            flagStart = flagEnd + 1;
+        }
 
         // Match line against regex patterns.
         Matcher matchField = REGEX_FIELD.matcher(signature);
         Matcher matchMethod = REGEX_METHOD.matcher(signature);
 
+        boolean isField = matchField.matches();
+        boolean isMethod = matchMethod.matches();
+
         // Check that *exactly* one pattern matches.
-        int matchCount = (matchField.matches() ? 1 : 0) + (matchMethod.matches() ? 1 : 0);
+        int matchCount = (isField ? 1 : 0) + (isMethod ? 1 : 0);
         if (matchCount == 0) {
             throw new ParseException("Could not parse: \"" + line + "\"", lineNum);
         } else if (matchCount > 1) {
@@ -107,13 +138,64 @@ public class DexApiDocumentParser {
         }
 
         // Extract information from the signature.
-        if (matchField.matches()) {
+        if (isField) {
             return new DexField(
                     matchField.group(1), matchField.group(2), matchField.group(3), flags);
-        } else if (matchMethod.matches()) {
+        } else if (isMethod) {
             return new DexMethod(
                     matchMethod.group(1),matchMethod.group(2), matchMethod.group(3), flags);
         }
         throw new IllegalStateException();
     }
+
+    /** Returns the index of the first ',' in [{@code from}, {@code end}), or {@code end}. */
+    private static int indexOfComma(CharSequence line, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (line.charAt(i) == ',') {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Returns the flag in [{@code start}, {@code end}) of the line.
+     *
+     * <p>There are only a handful of distinct hiddenapi flags, so the Strings for the ones seen
+     * so far are shared by all the members instead of creating new ones for every line.
+     */
+    private static String getFlag(CharSequence line, int start, int end) {
+        for (String flag : sFlags) {
+            if (regionEquals(flag, line, start, end)) {
+                return flag;
+            }
+        }
+        synchronized (DexApiDocumentParser.class) {
+            String[] flags = sFlags;
+            for (String flag : flags) {
+                if (regionEquals(flag, line, start, end)) {
+                    return flag;
+                }
+            }
+            String flag = line.subSequence(start, end).toString();
+            if (flags.length < MAX_SHARED_FLAGS) {
+                String[] newFlags = Arrays.copyOf(flags, flags.length + 1);
+                newFlags[flags.length] = flag;
+                sFlags = newFlags;
+            }
+            return flag;
+        }
+    }
+
+    private static boolean regionEquals(String string, CharSequence line, int start, int end) {
+        if (string.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < string.length(); i++) {
+            if (string.charAt(i) != line.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
@@ -45,6 +45,8 @@ import java.util.regex.Pattern;
 public class ReflectionHelper {
     private static final String TAG = "ReflectionHelper";
 
+    private static final Pattern DOT = Pattern.compile("\\.");
+
     /**
      * Finds the reflected class for the class under test.
      *
@@ -53,15 +55,21 @@ public class ReflectionHelper {
      */
     public static Class<?> findMatchingClass(JDiffClassDescription classDescription,
             ClassProvider classProvider) throws ClassNotFoundException {
+        String absoluteClassName = classDescription.getAbsoluteClassName();
+        Class<?> clz = classProvider.getReflectionIndex().getClass(absoluteClassName);
+        if (clz != null) {
+            return clz;
+        }
+
         // even if there are no . in the string, split will return an
         // array of length 1
         String shortClassName = classDescription.getShortClassName();
-        String[] classNameParts = shortClassName.split("\\.");
+        String[] classNameParts = DOT.split(shortClassName);
         String packageName = classDescription.getPackageName();
         String outermostClassName = packageName + "." + classNameParts[0];
         int firstInnerClassNameIndex = 0;
 
-        return searchForClass(classProvider, classDescription.getAbsoluteClassName(),
+        return searchForClass(classProvider, absoluteClassName,
                 outermostClassName, classNameParts,
                 firstInnerClassNameIndex);
     }
@@ -72,18 +80,24 @@ public class ReflectionHelper {
             String outermostClassName, String[] classNameParts,
             int outerClassNameIndex) throws ClassNotFoundException {
 
-        Class<?> clz = classProvider.getClass(outermostClassName);
+        ReflectionIndex index = classProvider.getReflectionIndex();
+        Class<?> clz = index.getClass(outermostClassName);
+        if (clz == null) {
+            clz = classProvider.getClass(outermostClassName);
+            index.putClass(clz.getCanonicalName(), clz);
+        }
         if (clz.getCanonicalName().equals(absoluteClassName)) {
             return clz;
         }
 
         // Then it must be an inner class.
         for (int x = outerClassNameIndex + 1; x < classNameParts.length; x++) {
-            clz = findInnerClassByName(clz, classNameParts[x]);
+            clz = index.findInnerClassByName(clz, classNameParts[x]);
             if (clz == null) {
                 return null;
             }
             if (clz.getCanonicalName().equals(absoluteClassName)) {
+                index.putClass(absoluteClassName, clz);
                 return clz;
             }
         }
@@ -93,7 +107,12 @@ public class ReflectionHelper {
     static Class<?> findMatchingClass(String absoluteClassName, ClassProvider classProvider)
             throws ClassNotFoundException {
 
-        String[] classNameParts = absoluteClassName.split("\\.");
+        Class<?> clz = classProvider.getReflectionIndex().getClass(absoluteClassName);
+        if (clz != null) {
+            return clz;
+        }
+
+        String[] classNameParts = DOT.split(absoluteClassName);
         StringBuilder builder = new StringBuilder();
         String separator = "";
         int start;
@@ -111,22 +130,6 @@ public class ReflectionHelper {
                 start);
     }
 
-    /**
-     * Searches the class for the specified inner class.
-     *
-     * @param clz the class to search in.
-     * @param simpleName the simpleName of the class to find
-     * @return the class being searched for, or null if it can't be found.
-     */
-    private static Class<?> findInnerClassByName(Class<?> clz, String simpleName) {
-        for (Class<?> c : clz.getDeclaredClasses()) {
-            if (c.getSimpleName().equals(simpleName)) {
-                return c;
-            }
-        }
-        return null;
-    }
-
     /**
      * Searches available constructor.
      *
@@ -149,52 +152,74 @@ public class ReflectionHelper {
     static Constructor<?> findMatchingConstructorImpl(Class<?> runtimeClass,
             JDiffConstructor jdiffDes, Map<Constructor, String> mismatchReasons) {
         for (Constructor<?> c : runtimeClass.getDeclaredConstructors()) {
-            Type[] params = c.getGenericParameterTypes();
-            boolean isStaticClass = ((runtimeClass.getModifiers() & Modifier.STATIC) != 0);
-
-            int startParamOffset = 0;
-            int numberOfParams = params.length;
-
-            // non-static inner class -> skip implicit parent pointer
-            // as first arg
-            if (runtimeClass.isMemberClass() && !isStaticClass && params.length >= 1) {
-                startParamOffset = 1;
-                --numberOfParams;
+            if (matchesConstructor(runtimeClass, c, jdiffDes, mismatchReasons)) {
+                return c;
             }
+        }
+        return null;
+    }
 
-            ArrayList<String> jdiffParamList = jdiffDes.mParamList;
-            if (jdiffParamList.size() == numberOfParams) {
-                boolean isFound = true;
-                // i counts jdiff params, j counts reflected params
-                int i = 0;
-                int j = startParamOffset;
-                while (i < jdiffParamList.size()) {
-                    String expectedParameter = jdiffParamList.get(i);
-                    Type actualParameter = params[j];
-                    if (!compareParam(expectedParameter, actualParameter,
-                            DefaultTypeComparator.INSTANCE)) {
-                        mismatchReasons.put(c,
-                                String.format("parameter %d mismatch: expected (%s), found (%s)",
-                                        i,
-                                        expectedParameter,
-                                        actualParameter));
-                        isFound = false;
-                        break;
-                    }
-                    ++i;
-                    ++j;
-                }
-                if (isFound) {
-                    return c;
-                }
-            } else {
+    /**
+     * Checks if the reflected constructor matches the constructor description.
+     *
+     * @param runtimeClass the class that declares the constructor.
+     * @param c the reflected constructor to compare.
+     * @param jdiffDes constructor description to compare.
+     * @param mismatchReasons a map from rejected constructor to the reason it was rejected.
+     * @return true, if the constructor matches.
+     */
+    static boolean matchesConstructor(Class<?> runtimeClass, Constructor<?> c,
+            JDiffConstructor jdiffDes, Map<Constructor, String> mismatchReasons) {
+        Type[] params = c.getGenericParameterTypes();
+        int startParamOffset = params.length - explicitParameterCount(runtimeClass, params.length);
+        int numberOfParams = params.length - startParamOffset;
+
+        ArrayList<String> jdiffParamList = jdiffDes.mParamList;
+        if (jdiffParamList.size() != numberOfParams) {
+            mismatchReasons.put(c,
+                    String.format("parameter list length mismatch: expected %d, found %d",
+                            jdiffParamList.size(),
+                            params.length));
+            return false;
+        }
+
+        // i counts jdiff params, j counts reflected params
+        int i = 0;
+        int j = startParamOffset;
+        while (i < jdiffParamList.size()) {
+            String expectedParameter = jdiffParamList.get(i);
+            Type actualParameter = params[j];
+            if (!compareParam(expectedParameter, actualParameter,
+                    DefaultTypeComparator.INSTANCE)) {
                 mismatchReasons.put(c,
-                        String.format("parameter list length mismatch: expected %d, found %d",
-                                jdiffParamList.size(),
-                                params.length));
+                        String.format("parameter %d mismatch: expected (%s), found (%s)",
+                                i,
+                                expectedParameter,
+                                actualParameter));
+                return false;
             }
+            ++i;
+            ++j;
         }
-        return null;
+        return true;
+    }
+
+    /**
+     * Get the number of parameters of a constructor as they appear in the API, i.e. excluding the
+     * implicit parent pointer of a non-static inner class.
+     *
+     * @param runtimeClass the class that declares the constructor.
+     * @param numberOfParams the number of generic parameter types of the constructor.
+     */
+    static int explicitParameterCount(Class<?> runtimeClass, int numberOfParams) {
+        boolean isStaticClass = ((runtimeClass.getModifiers() & Modifier.STATIC) != 0);
+
+        // non-static inner class -> skip implicit parent pointer
+        // as first arg
+        if (runtimeClass.isMemberClass() && !isStaticClass && numberOfParams >= 1) {
+            --numberOfParams;
+        }
+        return numberOfParams;
     }
 
     /**
@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.signature.cts;
+
+import android.signature.cts.JDiffClassDescription.JDiffConstructor;
+import android.signature.cts.JDiffClassDescription.JDiffMethod;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An index of the classes and members that have been found through reflection from a
+ * {@link ClassProvider}.
+ *
+ * <p>Checking an API involves looking up tens of thousands of classes and members. Without an
+ * index every lookup scans all the reflected members of the class. Instead, the members of each
+ * class are retrieved once and grouped by name and number of parameters so that a lookup only
+ * needs to compare the signature of a handful of candidates.
+ *
+ * <p>Lookups that fail fall back to the original linear scan in {@link ReflectionHelper} so that
+ * the reasons why each member was rejected are the same as they would have been without the
+ * index.
+ *
+ * <p>This is thread safe.
+ */
+class ReflectionIndex {
+    private static final String TAG = "ReflectionIndex";
+
+    /**
+     * Map from canonical class name to class.
+     */
+    private final Map<String, Class<?>> classesByName = new ConcurrentHashMap<>();
+
+    /**
+     * Map from class to a map from the simple name of each of its declared classes to the class.
+     */
+    private final Map<Class<?>, Map<String, Class<?>>> declaredClasses = new ConcurrentHashMap<>();
+
+    /**
+     * Map from class to a map from name and number of parameters (see {@link #methodKey}) to the
+     * methods declared in the class and its superclasses, in search order.
+     */
+    private final Map<Class<?>, Map<String, List<Method>>> methods = new ConcurrentHashMap<>();
+
+    /**
+     * Map from class to a map from number of explicit parameters to constructors.
+     */
+    private final Map<Class<?>, Map<Integer, List<Constructor<?>>>> constructors =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Map from class to a map from name to the fields in the class and its inheritance chain.
+     */
+    private final Map<Class<?>, Map<String, Field>> fields = new ConcurrentHashMap<>();
+
+    /**
+     * Get a previously found class by its canonical name.
+     *
+     * @return the class, or null if it has not been found before.
+     */
+    Class<?> getClass(String canonicalName) {
+        return classesByName.get(canonicalName);
+    }
+
+    /**
+     * Record that a class has been found with the given canonical name.
+     */
+    void putClass(String canonicalName, Class<?> clazz) {
+        classesByName.putIfAbsent(canonicalName, clazz);
+    }
+
+    /**
+     * Searches the class for the specified inner class.
+     *
+     * @param clz the class to search in.
+     * @param simpleName the simpleName of the class to find
+     * @return the class being searched for, or null if it can't be found.
+     */
+    Class<?> findInnerClassByName(Class<?> clz, String simpleName) {
+        Map<String, Class<?>> byName = declaredClasses.get(clz);
+        if (byName == null) {
+            byName = new HashMap<>();
+            for (Class<?> c : clz.getDeclaredClasses()) {
+                // Keep the first in case of duplicates to match a linear search.
+                byName.putIfAbsent(c.getSimpleName(), c);
+            }
+            declaredClasses.putIfAbsent(clz, byName);
+        }
+        return byName.get(simpleName);
+    }
+
+    /**
+     * Searches available constructor.
+     *
+     * @see ReflectionHelper#findMatchingConstructor(Class, JDiffConstructor, Map)
+     */
+    Constructor<?> findMatchingConstructor(Class<?> runtimeClass,
+            JDiffConstructor jdiffDes, Map<Constructor, String> mismatchReasons) {
+        try {
+            List<Constructor<?>> candidates =
+                    getConstructors(runtimeClass).get(jdiffDes.mParamList.size());
+            if (candidates != null) {
+                for (Constructor<?> c : candidates) {
+                    if (ReflectionHelper.matchesConstructor(runtimeClass, c, jdiffDes,
+                            mismatchReasons)) {
+                        return c;
+                    }
+                }
+            }
+        } catch (NoClassDefFoundError e) {
+            LogHelper.loge(TAG + ": Could not retrieve constructors of " + runtimeClass, e);
+            return null;
+        }
+
+        // Not found, scan them all to collect the reasons why each one was rejected.
+        return ReflectionHelper.findMatchingConstructor(runtimeClass, jdiffDes, mismatchReasons);
+    }
+
+    /**
+     * Finds the reflected method specified by the method description.
+     *
+     * @see ReflectionHelper#findMatchingMethod(Class, JDiffMethod, Map)
+     */
+    Method findMatchingMethod(
+            Class<?> runtimeClass, JDiffMethod method, Map<Method, String> mismatchReasons) {
+        try {
+            List<Method> candidates = getMethods(runtimeClass)
+                    .get(methodKey(method.mName, method.mParamList.size()));
+            if (candidates != null) {
+                for (Method reflectedMethod : candidates) {
+                    if (ReflectionHelper.matchesSignature(method, reflectedMethod,
+                            mismatchReasons)) {
+                        return reflectedMethod;
+                    }
+                }
+            }
+        } catch (NoClassDefFoundError e) {
+            LogHelper.loge(TAG + ": Could not retrieve methods of " + runtimeClass, e);
+            return null;
+        }
+
+        // Not found, scan them all to collect the reasons why each one was rejected.
+        return ReflectionHelper.findMatchingMethod(runtimeClass, method, mismatchReasons);
+    }
+
+    /**
+     * Scan a class (and its entire inheritance chain) for fields.
+     *
+     * @return a {@link Map} of fieldName to {@link Field}
+     */
+    Map<String, Field> getFieldMap(Class<?> testClass) {
+        try {
+            return getFieldMapImpl(testClass);
+        } catch (NoClassDefFoundError e) {
+            LogHelper.loge(TAG + ": Could not retrieve fields of " + testClass, e);
+            return Collections.emptyMap();
+        }
+    }
+
+    private Map<String, Field> getFieldMapImpl(Class<?> testClass) {
+        Map<String, Field> fieldMap = fields.get(testClass);
+        if (fieldMap != null) {
+            return fieldMap;
+        }
+
+        fieldMap = new HashMap<>();
+        // Scan the superclass
+        if (testClass.getSuperclass() != null) {
+            fieldMap.putAll(getFieldMapImpl(testClass.getSuperclass()));
+        }
+
+        // Scan the interfaces
+        for (Class<?> interfaceClass : testClass.getInterfaces()) {
+            fieldMap.putAll(getFieldMapImpl(interfaceClass));
+        }
+
+        // Check the fields in the test class
+        for (Field field : testClass.getDeclaredFields()) {
+            fieldMap.put(field.getName(), field);
+        }
+
+        fields.putIfAbsent(testClass, fieldMap);
+        return fieldMap;
+    }
+
+    private Map<String, List<Method>> getMethods(Class<?> runtimeClass) {
+        Map<String, List<Method>> byKey = methods.get(runtimeClass);
+        if (byKey == null) {
+            byKey = new HashMap<>();
+            // Include the superclasses for the same reason as
+            // ReflectionHelper.findMatchingMethodImpl(), adding them after the methods declared
+            // in the subclass so that candidates are in the same order as a linear search.
+            for (Class<?> c = runtimeClass; c != null; c = c.getSuperclass()) {
+                for (Method m : c.getDeclaredMethods()) {
+                    byKey.computeIfAbsent(methodKey(m.getName(), m.getParameterCount()),
+                            k -> new ArrayList<>()).add(m);
+                }
+            }
+            methods.putIfAbsent(runtimeClass, byKey);
+        }
+        return byKey;
+    }
+
+    private Map<Integer, List<Constructor<?>>> getConstructors(Class<?> runtimeClass) {
+        Map<Integer, List<Constructor<?>>> byCount = constructors.get(runtimeClass);
+        if (byCount == null) {
+            byCount = new HashMap<>();
+            for (Constructor<?> c : runtimeClass.getDeclaredConstructors()) {
+                int count = ReflectionHelper.explicitParameterCount(runtimeClass,
+                        c.getGenericParameterTypes().length);
+                byCount.computeIfAbsent(count, k -> new ArrayList<>()).add(c);
+            }
+            constructors.putIfAbsent(runtimeClass, byCount);
+        }
+        return byCount;
+    }
+
+    private static String methodKey(String name, int parameterCount) {
+        return name + "/" + parameterCount;
+    }
+}
@@ -28,6 +28,8 @@ import java.util.Random;
 import java.util.Spliterator;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 import org.junit.Test;
 
@@ -89,9 +91,10 @@ public abstract class LineSpliteratorTestBase {
                 assertTrue(!queue.isEmpty());
                 boolean doSplit = r.nextBoolean();
                 if (doSplit && splitsInSequence < maxSplitsInSequence) {
+                    // The split off part precedes the rest as the spliterators are ORDERED.
                     Spliterator<Integer> split = queue.get(0).trySplit();
                     if (split != null) {
-                        queue.add(1, split);
+                        queue.add(0, split);
                     }
                     i--;
                     splitsInSequence++;
@@ -111,4 +114,22 @@ public abstract class LineSpliteratorTestBase {
             throw new RuntimeException("Error, seed=" + seed, t);
         }
     }
+
+    @Test
+    public void testParallelStreamKeepsOrder() {
+        // Several megabytes, so that the stream is split across many workers.
+        final int count = 500000;
+        List<Integer> sequential = StreamSupport.stream(
+                createSpliterator(getRepetitions(count), CONVERTER), false)
+                .collect(Collectors.toList());
+        List<Integer> parallel = StreamSupport.stream(
+                createSpliterator(getRepetitions(count), CONVERTER), true)
+                .collect(Collectors.toList());
+        assertEquals(count, sequential.size());
+        assertEquals(count, parallel.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, (int) sequential.get(i));
+            assertEquals("line " + i, sequential.get(i), parallel.get(i));
+        }
+    }
 }
@@ -18,6 +18,8 @@ package android.uirendering.cts.bitmapcomparers;
 import android.graphics.Color;
 import android.util.Log;
 
+import java.util.stream.IntStream;
+
 /**
  * Image comparison using Structural Similarity Index, developed by Wang, Bovik, Sheikh, and
  * Simoncelli. Details can be read in their paper :
@@ -54,30 +56,31 @@ public class MSSIMComparer extends BitmapComparer {
     @Override
     public boolean verifySame(int[] ideal, int[] given, int offset, int stride, int width,
             int height) {
-        double SSIMTotal = 0;
-        int windows = 0;
-
-        for (int currentWindowY = 0 ; currentWindowY < height ; currentWindowY += WINDOW_SIZE) {
+        // Each row of windows is independent, so they are processed in parallel. The totals of
+        // the rows are added up in order so that the result does not depend on scheduling.
+        int windowRows = (height + WINDOW_SIZE - 1) / WINDOW_SIZE;
+        double[] rowSSIMTotals = new double[windowRows];
+        int[] rowWindows = new int[windowRows];
+        IntStream.range(0, windowRows).parallel().forEach(row -> {
+            WindowIntensities window = new WindowIntensities();
+            int currentWindowY = row * WINDOW_SIZE;
             int windowHeight = computeWindowSize(currentWindowY, height);
             for (int currentWindowX = 0 ; currentWindowX < width ; currentWindowX += WINDOW_SIZE) {
                 int windowWidth = computeWindowSize(currentWindowX, width);
                 int start = indexFromXAndY(currentWindowX, currentWindowY, stride, offset);
-                if (isWindowWhite(ideal, start, stride, windowWidth, windowHeight)
-                        && isWindowWhite(given, start, stride, windowWidth, windowHeight)) {
+                if (!window.load(ideal, given, start, stride, windowWidth, windowHeight)) {
                     continue;
                 }
-                windows++;
-                double[] means = getMeans(ideal, given, start, stride, windowWidth, windowHeight);
-                double meanX = means[0];
-                double meanY = means[1];
-                double[] variances = getVariances(ideal, given, meanX, meanY, start, stride,
-                        windowWidth, windowHeight);
-                double varX = variances[0];
-                double varY = variances[1];
-                double stdBoth = variances[2];
-                double SSIM = SSIM(meanX, meanY, varX, varY, stdBoth);
-                SSIMTotal += SSIM;
+                rowWindows[row]++;
+                rowSSIMTotals[row] += window.computeSSIM();
             }
+        });
+
+        double SSIMTotal = 0;
+        int windows = 0;
+        for (int row = 0; row < windowRows; row++) {
+            SSIMTotal += rowSSIMTotals[row];
+            windows += rowWindows[row];
         }
 
         if (windows == 0) {
@@ -91,19 +94,7 @@ public class MSSIMComparer extends BitmapComparer {
         return (SSIMTotal >= mThreshold);
     }
 
-    private boolean isWindowWhite(int[] colors, int start, int stride,
-            int windowWidth, int windowHeight) {
-        for (int y = 0; y < windowHeight; y++) {
-            for (int x = 0; x < windowWidth; x++) {
-                if (colors[indexFromXAndY(x, y, stride, start)] != Color.WHITE) {
-                    return false;
-                }
-            }
-        }
-        return true;
-    }
-
-    private double SSIM(double muX, double muY, double sigX, double sigY, double sigXY) {
+    private static double SSIM(double muX, double muY, double sigX, double sigY, double sigXY) {
         double SSIM = (((2 * muX * muY) + CONSTANT_C1) * ((2 * sigXY) + CONSTANT_C2));
         double denom = ((muX * muX) + (muY * muY) + CONSTANT_C1)
                 * (sigX + sigY + CONSTANT_C2);
@@ -111,52 +102,85 @@ public class MSSIMComparer extends BitmapComparer {
         return SSIM;
     }
 
-
     /**
-     * This method will find the mean of a window in both sets of pixels. The return is an array
-     * where the first double is the mean of the first set and the second double is the mean of the
-     * second set.
+     * The intensities of the pixels of a window in both sets of pixels. The buffers are reused
+     * for every window so that each pixel is only read and converted once.
      */
-    private double[] getMeans(int[] pixels0, int[] pixels1, int start, int stride,
-            int windowWidth, int windowHeight) {
-        double avg0 = 0;
-        double avg1 = 0;
-        for (int y = 0; y < windowHeight; y++) {
-            for (int x = 0; x < windowWidth; x++) {
-                int index = indexFromXAndY(x, y, stride, start);
-                avg0 += getIntensity(pixels0[index]);
-                avg1 += getIntensity(pixels1[index]);
+    private static class WindowIntensities {
+        private final double[] mIntensities0 = new double[WINDOW_SIZE * WINDOW_SIZE];
+        private final double[] mIntensities1 = new double[WINDOW_SIZE * WINDOW_SIZE];
+        private int mCount;
+
+        /**
+         * Reads the intensities of a window.
+         *
+         * @return false if the window is white in both sets of pixels, in which case it is not
+         * compared.
+         */
+        boolean load(int[] pixels0, int[] pixels1, int start, int stride,
+                int windowWidth, int windowHeight) {
+            boolean white0 = true;
+            boolean white1 = true;
+            int i = 0;
+            for (int y = 0; y < windowHeight; y++) {
+                for (int x = 0; x < windowWidth; x++) {
+                    int index = indexFromXAndY(x, y, stride, start);
+                    int pixel0 = pixels0[index];
+                    int pixel1 = pixels1[index];
+                    white0 &= pixel0 == Color.WHITE;
+                    white1 &= pixel1 == Color.WHITE;
+                    mIntensities0[i] = getIntensity(pixel0);
+                    mIntensities1[i] = getIntensity(pixel1);
+                    i++;
+                }
             }
+            mCount = i;
+            return !(white0 && white1);
         }
-        avg0 /= windowWidth * windowHeight;
-        avg1 /= windowWidth * windowHeight;
-        return new double[] {avg0, avg1};
-    }
 
-    /**
-     * Finds the variance of the two sets of pixels, as well as the covariance of the windows. The
-     * return value is an array of doubles, the first is the variance of the first set of pixels,
-     * the second is the variance of the second set of pixels, and the third is the covariance.
-     */
-    private double[] getVariances(int[] pixels0, int[] pixels1, double mean0, double mean1,
-            int start, int stride, int windowWidth, int windowHeight) {
-        double var0 = 0;
-        double var1 = 0;
-        double varBoth = 0;
-        for (int y = 0; y < windowHeight; y++) {
-            for (int x = 0; x < windowWidth; x++) {
-                int index = indexFromXAndY(x, y, stride, start);
-                double v0 = getIntensity(pixels0[index]) - mean0;
-                double v1 = getIntensity(pixels1[index]) - mean1;
+        /**
+         * Finds the means and variances of the two sets of pixels, as well as the covariance of
+         * the window, and combines them into the SSIM of the window.
+         */
+        double computeSSIM() {
+            double mean0 = 0;
+            double mean1 = 0;
+            for (int i = 0; i < mCount; i++) {
+                mean0 += mIntensities0[i];
+                mean1 += mIntensities1[i];
+            }
+            mean0 /= mCount;
+            mean1 /= mCount;
+
+            double var0 = 0;
+            double var1 = 0;
+            double varBoth = 0;
+            for (int i = 0; i < mCount; i++) {
+                double v0 = mIntensities0[i] - mean0;
+                double v1 = mIntensities1[i] - mean1;
                 var0 += v0 * v0;
                 var1 += v1 * v1;
                 varBoth += v0 * v1;
             }
+            var0 /= mCount - 1;
+            var1 /= mCount - 1;
+            varBoth /= mCount - 1;
+            return SSIM(mean0, mean1, var0, var1, varBoth);
+        }
+    }
+
+    // Weighted channel values, see getIntensity
+    private static final double[] RED_INTENSITIES = new double[256];
+    private static final double[] GREEN_INTENSITIES = new double[256];
+    private static final double[] BLUE_INTENSITIES = new double[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            // Same arithmetic as the formula with a gamma of 1, pow(x, 1) is exactly x
+            RED_INTENSITIES[i] = 0.21f * (double) (i / 255f);
+            GREEN_INTENSITIES[i] = 0.72f * (double) (i / 255f);
+            BLUE_INTENSITIES[i] = 0.07f * (double) (i / 255f);
         }
-        var0 /= (windowWidth * windowHeight) - 1;
-        var1 /= (windowWidth * windowHeight) - 1;
-        varBoth /= (windowWidth * windowHeight) - 1;
-        return new double[] {var0, var1, varBoth};
     }
 
     /**
@@ -166,12 +190,11 @@ public class MSSIMComparer extends BitmapComparer {
      *
      * The prime symbols dictate a gamma correction of 1.
      */
-    private double getIntensity(int pixel) {
-        final double gamma = 1;
+    private static double getIntensity(int pixel) {
         double l = 0;
-        l += (0.21f * Math.pow(Color.red(pixel) / 255f, gamma));
-        l += (0.72f * Math.pow(Color.green(pixel) / 255f, gamma));
-        l += (0.07f * Math.pow(Color.blue(pixel) / 255f, gamma));
+        l += RED_INTENSITIES[Color.red(pixel)];
+        l += GREEN_INTENSITIES[Color.green(pixel)];
+        l += BLUE_INTENSITIES[Color.blue(pixel)];
         return l;
     }
 }
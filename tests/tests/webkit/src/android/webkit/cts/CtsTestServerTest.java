@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.webkit.cts;
+
+import android.net.Uri;
+import android.test.AndroidTestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tests for the connection handling of {@link CtsTestServer}, which keeps connections open
+ * between requests.
+ */
+public class CtsTestServerTest extends AndroidTestCase {
+    private static final int CONTENT_LENGTH = 10;
+    private static final int SOCKET_TIMEOUT_MS = 10000;
+
+    private CtsTestServer mServer;
+    private Uri mBinaryUri;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mServer = new CtsTestServer(getContext());
+        mBinaryUri = Uri.parse(mServer.getBinaryUrl("text/plain", CONTENT_LENGTH));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mServer.shutdown();
+        super.tearDown();
+    }
+
+    /**
+     * Test that two requests sent at once on the same connection both get their response.
+     */
+    public void testPipelinedRequests() throws Exception {
+        try (Socket socket = connect()) {
+            OutputStream out = socket.getOutputStream();
+            out.write((request("GET") + request("GET")).getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            InputStream in = socket.getInputStream();
+            Response first = readResponse(in, true);
+            assertEquals(200, first.status);
+            assertEquals(CONTENT_LENGTH, first.body.length);
+            Response second = readResponse(in, true);
+            assertEquals(200, second.status);
+            assertEquals(CONTENT_LENGTH, second.body.length);
+        }
+    }
+
+    /**
+     * Test that the response to a HEAD request has no body, so that the next response on the
+     * connection is read correctly.
+     */
+    public void testHeadRequestThenGetRequest() throws Exception {
+        try (Socket socket = connect()) {
+            OutputStream out = socket.getOutputStream();
+            out.write((request("HEAD") + request("GET")).getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            InputStream in = socket.getInputStream();
+            Response head = readResponse(in, false);
+            assertEquals(200, head.status);
+            assertEquals(CONTENT_LENGTH, head.contentLength);
+            Response get = readResponse(in, true);
+            assertEquals(200, get.status);
+            assertEquals(CONTENT_LENGTH, get.body.length);
+        }
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket(mBinaryUri.getHost(), mBinaryUri.getPort());
+        socket.setSoTimeout(SOCKET_TIMEOUT_MS);
+        return socket;
+    }
+
+    private String request(String method) {
+        return method + " " + mBinaryUri.getEncodedPath() + "?" + mBinaryUri.getEncodedQuery()
+                + " HTTP/1.1\r\n"
+                + "Host: " + mBinaryUri.getHost() + ":" + mBinaryUri.getPort() + "\r\n"
+                + "\r\n";
+    }
+
+    private static final class Response {
+        int status;
+        int contentLength = -1;
+        byte[] body;
+    }
+
+    /**
+     * Read a response, whose body is delimited by its Content-Length header if {@code hasBody}.
+     */
+    private static Response readResponse(InputStream in, boolean hasBody) throws IOException {
+        Response response = new Response();
+        String statusLine = readLine(in);
+        assertTrue("Unexpected status line: " + statusLine, statusLine.startsWith("HTTP/1.1 "));
+        response.status = Integer.parseInt(statusLine.split(" ")[1]);
+        for (String line = readLine(in); !line.isEmpty(); line = readLine(in)) {
+            int colon = line.indexOf(':');
+            if (line.substring(0, colon).trim().equalsIgnoreCase("Content-Length")) {
+                response.contentLength = Integer.parseInt(line.substring(colon + 1).trim());
+            }
+        }
+        if (hasBody) {
+            assertTrue("No Content-Length on a kept-alive connection",
+                    response.contentLength >= 0);
+            response.body = new byte[response.contentLength];
+            int offset = 0;
+            while (offset < response.body.length) {
+                int n = in.read(response.body, offset, response.body.length - offset);
+                assertTrue("Connection closed while reading the body", n > 0);
+                offset += n;
+            }
+        }
+        return response;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        for (int c = in.read(); c != '\n'; c = in.read()) {
+            if (c == -1) {
+                throw new IOException("Connection closed while reading a line");
+            }
+            if (c != '\r') {
+                line.write(c);
+            }
+        }
+        return new String(line.toByteArray(), StandardCharsets.US_ASCII);
+    }
+}
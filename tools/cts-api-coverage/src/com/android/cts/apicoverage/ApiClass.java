@@ -20,10 +20,11 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
+import java.util.function.Function;
 
 /** Representation of a class in the API with constructors and methods. */
 class ApiClass implements Comparable<ApiClass>, HasCoverage {
@@ -46,6 +47,19 @@ class ApiClass implements Comparable<ApiClass>, HasCoverage {
 
     private Map<String, ApiClass> mInterfaceMap = new HashMap<String, ApiClass>();
 
+    /**
+     * Index of the methods of this class, its super classes and its interfaces, keyed by name and
+     * number of parameters (see {@link #methodKey}). Built on first use, so the class hierarchy
+     * must not change once coverage is being marked.
+     */
+    private volatile Map<String, List<MemberBucket<ApiMethod>>> mInheritedMethods;
+
+    /**
+     * Index of the constructors of this class and its super classes, keyed by number of
+     * parameters. Built on first use like {@link #mInheritedMethods}.
+     */
+    private volatile Map<Integer, List<MemberBucket<ApiConstructor>>> mInheritedConstructors;
+
     /**
      * @param name The name of the class
      * @param deprecated true iff the class is marked as deprecated
@@ -85,7 +99,10 @@ class ApiClass implements Comparable<ApiClass>, HasCoverage {
         return mAbstract;
     }
 
-    public void setSuperClass(ApiClass superClass) { mSuperClass = superClass; }
+    public void setSuperClass(ApiClass superClass) {
+        mSuperClass = superClass;
+        invalidateIndex();
+    }
 
     public void addInterface(String interfaceName) {
         mInterfaceMap.put(interfaceName, null);
@@ -93,6 +110,7 @@ class ApiClass implements Comparable<ApiClass>, HasCoverage {
 
     public void resolveInterface(String interfaceName, ApiClass apiInterface) {
         mInterfaceMap.replace(interfaceName, apiInterface);
+        invalidateIndex();
     }
 
     public Set<String> getInterfaceNames() {
@@ -101,6 +119,7 @@ class ApiClass implements Comparable<ApiClass>, HasCoverage {
 
     public void addConstructor(ApiConstructor constructor) {
         mApiConstructors.add(constructor);
+        invalidateIndex();
     }
 
     public Collection<ApiConstructor> getConstructors() {
@@ -109,34 +128,41 @@ class ApiClass implements Comparable<ApiClass>, HasCoverage {
 
     public void addMethod(ApiMethod method) {
         mApiMethods.add(method);
+        invalidateIndex();
     }
 
-    /** Look for a matching constructor and mark it as covered */
+    /**
+     * Look for a matching constructor in this class and its super classes and mark them as
+     * covered
+     */
     public void markConstructorCovered(List<String> parameterTypes, String coveredbyApk) {
-        if (mSuperClass != null) {
-            // Mark matching constructors in the superclass
-            mSuperClass.markConstructorCovered(parameterTypes, coveredbyApk);
+        List<MemberBucket<ApiConstructor>> buckets =
+                getInheritedConstructors().get(parameterTypes.size());
+        if (buckets != null) {
+            for (MemberBucket<ApiConstructor> bucket : buckets) {
+                ApiConstructor constructor = bucket.find(parameterTypes);
+                if (constructor != null) {
+                    constructor.setCovered(coveredbyApk);
+                }
+            }
         }
-        Optional<ApiConstructor> apiConstructor = getConstructor(parameterTypes);
-        apiConstructor.ifPresent(constructor -> constructor.setCovered(coveredbyApk));
     }
 
-    /** Look for a matching method and if found and mark it as covered */
+    /**
+     * Look for a matching method in this class, its super classes and its interfaces and if
+     * found mark them as covered
+     */
     public void markMethodCovered(String name, List<String> parameterTypes, String coveredbyApk) {
-        if (mSuperClass != null) {
-            // Mark matching methods in the super class
-            mSuperClass.markMethodCovered(name, parameterTypes, coveredbyApk);
-        }
-        if (!mInterfaceMap.isEmpty()) {
-            // Mark matching methods in the interfaces
-            for (ApiClass mInterface : mInterfaceMap.values()) {
-                if (mInterface != null) {
-                    mInterface.markMethodCovered(name, parameterTypes, coveredbyApk);
+        List<MemberBucket<ApiMethod>> buckets =
+                getInheritedMethods().get(methodKey(name, parameterTypes.size()));
+        if (buckets != null) {
+            for (MemberBucket<ApiMethod> bucket : buckets) {
+                ApiMethod method = bucket.find(parameterTypes);
+                if (method != null) {
+                    method.setCovered(coveredbyApk);
                 }
             }
         }
-        Optional<ApiMethod> apiMethod = getMethod(name, parameterTypes);
-        apiMethod.ifPresent(method -> method.setCovered(coveredbyApk));
     }
 
     public Collection<ApiMethod> getMethods() {
@@ -176,16 +202,97 @@ class ApiClass implements Comparable<ApiClass>, HasCoverage {
         return getTotalMethods();
     }
 
-    private Optional<ApiMethod> getMethod(String name, List<String> parameterTypes) {
-        for (ApiMethod method : mApiMethods) {
-            boolean methodNameMatch = name.equals(method.getName());
-            boolean parameterTypeMatch =
-                    compareParameterTypes(method.getParameterTypes(), parameterTypes);
-            if (methodNameMatch && parameterTypeMatch) {
-                return Optional.of(method);
+    private void invalidateIndex() {
+        mInheritedMethods = null;
+        mInheritedConstructors = null;
+    }
+
+    private Map<String, List<MemberBucket<ApiMethod>>> getInheritedMethods() {
+        Map<String, List<MemberBucket<ApiMethod>>> inherited = mInheritedMethods;
+        if (inherited == null) {
+            synchronized (this) {
+                inherited = mInheritedMethods;
+                if (inherited == null) {
+                    inherited = new HashMap<>();
+                    for (ApiClass apiClass : collectHierarchy(new LinkedHashSet<>(), true)) {
+                        Map<String, MemberBucket<ApiMethod>> declared = new HashMap<>();
+                        synchronized (apiClass.mApiMethods) {
+                            for (ApiMethod method : apiClass.mApiMethods) {
+                                declared.computeIfAbsent(
+                                        methodKey(method.getName(),
+                                                method.getParameterTypes().size()),
+                                        k -> new MemberBucket<>(ApiMethod::getParameterTypes))
+                                        .add(method);
+                            }
+                        }
+                        for (Map.Entry<String, MemberBucket<ApiMethod>> entry
+                                : declared.entrySet()) {
+                            inherited.computeIfAbsent(entry.getKey(), k -> new ArrayList<>())
+                                    .add(entry.getValue());
+                        }
+                    }
+                    mInheritedMethods = inherited;
+                }
             }
         }
-        return Optional.empty();
+        return inherited;
+    }
+
+    private Map<Integer, List<MemberBucket<ApiConstructor>>> getInheritedConstructors() {
+        Map<Integer, List<MemberBucket<ApiConstructor>>> inherited = mInheritedConstructors;
+        if (inherited == null) {
+            synchronized (this) {
+                inherited = mInheritedConstructors;
+                if (inherited == null) {
+                    inherited = new HashMap<>();
+                    for (ApiClass apiClass : collectHierarchy(new LinkedHashSet<>(), false)) {
+                        Map<Integer, MemberBucket<ApiConstructor>> declared = new HashMap<>();
+                        synchronized (apiClass.mApiConstructors) {
+                            for (ApiConstructor constructor : apiClass.mApiConstructors) {
+                                declared.computeIfAbsent(
+                                        constructor.getParameterTypes().size(),
+                                        k -> new MemberBucket<>(
+                                                ApiConstructor::getParameterTypes))
+                                        .add(constructor);
+                            }
+                        }
+                        for (Map.Entry<Integer, MemberBucket<ApiConstructor>> entry
+                                : declared.entrySet()) {
+                            inherited.computeIfAbsent(entry.getKey(), k -> new ArrayList<>())
+                                    .add(entry.getValue());
+                        }
+                    }
+                    mInheritedConstructors = inherited;
+                }
+            }
+        }
+        return inherited;
+    }
+
+    /**
+     * Adds this class and the classes it inherits from to {@code hierarchy}. Each class is only
+     * added once, even when it is reachable through several paths.
+     *
+     * @param includeInterfaces true to include the interfaces as well as the super classes
+     */
+    private Set<ApiClass> collectHierarchy(Set<ApiClass> hierarchy, boolean includeInterfaces) {
+        if (hierarchy.add(this)) {
+            if (mSuperClass != null) {
+                mSuperClass.collectHierarchy(hierarchy, includeInterfaces);
+            }
+            if (includeInterfaces) {
+                for (ApiClass apiInterface : mInterfaceMap.values()) {
+                    if (apiInterface != null) {
+                        apiInterface.collectHierarchy(hierarchy, includeInterfaces);
+                    }
+                }
+            }
+        }
+        return hierarchy;
+    }
+
+    private static String methodKey(String name, int parameterCount) {
+        return name + "/" + parameterCount;
     }
 
     /**
@@ -260,12 +367,58 @@ class ApiClass implements Comparable<ApiClass>, HasCoverage {
         return type.length() == 3 && isGenericType(type.substring(0, 1)) && isArrayType(type);
     }
 
-    private Optional<ApiConstructor> getConstructor(List<String> parameterTypes) {
-        for (ApiConstructor constructor : mApiConstructors) {
-            if (compareParameterTypes(constructor.getParameterTypes(), parameterTypes)) {
-                return Optional.of(constructor);
+    /**
+     * @return true iff a test parameter type other than {@code apiType} can match it, see
+     * {@link #compareType}.
+     */
+    private static boolean isFlexibleType(String apiType) {
+        return isGenericType(apiType) || isGenericArrayType(apiType) || isVarArg(apiType);
+    }
+
+    /**
+     * The constructors or methods of a single class that have the same name and number of
+     * parameters, in the order in which they were added.
+     */
+    private static class MemberBucket<T> {
+
+        private final Function<T, List<String>> mParameterTypes;
+
+        private final List<T> mMembers = new ArrayList<>();
+
+        /**
+         * Map from parameter types to the first member with these types, or null if a member has
+         * a generic or var arg parameter. In that case the members must be compared one by one
+         * with {@link #compareParameterTypes}.
+         */
+        private Map<List<String>, T> mExactMatches = new HashMap<>();
+
+        MemberBucket(Function<T, List<String>> parameterTypes) {
+            mParameterTypes = parameterTypes;
+        }
+
+        void add(T member) {
+            mMembers.add(member);
+            if (mExactMatches != null) {
+                List<String> parameterTypes = mParameterTypes.apply(member);
+                if (parameterTypes.stream().anyMatch(ApiClass::isFlexibleType)) {
+                    mExactMatches = null;
+                } else {
+                    mExactMatches.putIfAbsent(parameterTypes, member);
+                }
+            }
+        }
+
+        /** @return the first member matching the test parameter types, or null if none match. */
+        T find(List<String> parameterTypes) {
+            if (mExactMatches != null) {
+                return mExactMatches.get(parameterTypes);
+            }
+            for (T member : mMembers) {
+                if (compareParameterTypes(mParameterTypes.apply(member), parameterTypes)) {
+                    return member;
+                }
             }
+            return null;
         }
-        return Optional.empty();
     }
 }
@@ -91,6 +91,7 @@ public class CtsApiCoverage {
         System.out.println("  -o FILE                output file or standard out if not given");
         System.out.println("  -f [txt|xml|html]      format of output");
         System.out.println("  -d PATH                path to dexdeps or expected to be in $PATH");
+        System.out.println("  -i                     scan APKs in-process instead of running dexdeps");
         System.out.println("  -a PATH                path to the API XML file");
         System.out.println(
                 "  -n PATH                path to the NDK API XML file, which can be updated via ndk-api-report with the ndk target");
@@ -107,6 +108,7 @@ public class CtsApiCoverage {
         File outputFile = null;
         int format = FORMAT_TXT;
         String dexDeps = "dexDeps";
+        boolean inProcess = false;
         String apiXmlPath = "";
         String napiXmlPath = "";
         PackageFilter packageFilter = new PackageFilter();
@@ -134,6 +136,8 @@ public class CtsApiCoverage {
                     }
                 } else if ("-d".equals(args[i])) {
                     dexDeps = getExpectedArg(args, ++i);
+                } else if ("-i".equals(args[i])) {
+                    inProcess = true;
                 } else if ("-a".equals(args[i])) {
                     apiXmlPath = getExpectedArg(args, ++i);
                 } else if ("-n".equals(args[i])) {
@@ -199,11 +203,16 @@ public class CtsApiCoverage {
         // Add superclass information into api coverage.
         apiCoverage.resolveSuperClasses();
 
+        long startTime = System.currentTimeMillis();
         ExecutorService service =
             Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
         List<Future> tasks = new ArrayList<>();
         for (File testApk : testApks) {
-            tasks.add(addApiCoverage(service, apiCoverage, testApk, dexDeps));
+            if (inProcess) {
+                tasks.add(addApiCoverageInProcess(service, apiCoverage, testApk, apiLevel));
+            } else {
+                tasks.add(addApiCoverage(service, apiCoverage, testApk, dexDeps));
+            }
             tasks.add(addCddCoverage(service, cddCoverage, testApk, apiLevel));
         }
         // Wait until all tasks finish.
@@ -211,6 +220,13 @@ public class CtsApiCoverage {
             task.get();
         }
         service.shutdown();
+        // Printed to stderr as the report may be written to stdout.
+        System.err.println(
+                String.format(
+                        "Scanned %d test APKs %s in %d ms",
+                        testApks.size(),
+                        inProcess ? "in-process" : "with dexdeps",
+                        System.currentTimeMillis() - startTime));
 
         // The below two coverage methods assume all classes and methods have been already
         // registered, which is why we don't run them parallelly with others.
@@ -302,6 +318,30 @@ public class CtsApiCoverage {
         });
     }
 
+    /**
+     * Adds coverage information gleamed from scanning the dex files of the APK in-process to the
+     * {@link ApiCoverage} object. This is equivalent to {@link #addApiCoverage} without starting
+     * a dexdeps process for each APK.
+     *
+     * @param apiCoverage object to which the coverage statistics will be added to
+     * @param testApk containing the tests that will be scanned
+     * @param api the Android API Level used to read the dex files
+     */
+    private static Future addApiCoverageInProcess(
+        ExecutorService service, ApiCoverage apiCoverage, File testApk, int api) {
+        return service.submit(() -> {
+            try {
+                DexDepsScanner scanner = new DexDepsScanner(apiCoverage, testApk.getName());
+                if (!scanner.scan(testApk, Opcodes.forApi(api))) {
+                    // Same as dexdeps failing on an apk that does not contain a classes.dex.
+                    System.err.println("warning: no dex file found in: " + testApk.getPath());
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
     /**
      * Adds coverage information from native code symbol array to the {@link ApiCoverage} object.
      *
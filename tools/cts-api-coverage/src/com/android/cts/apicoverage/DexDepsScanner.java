@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cts.apicoverage;
+
+import org.jf.dexlib2.Opcodes;
+import org.jf.dexlib2.ReferenceType;
+import org.jf.dexlib2.dexbacked.DexBackedClassDef;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+import org.jf.dexlib2.iface.reference.MethodReference;
+import org.jf.dexlib2.iface.reference.Reference;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * In-process replacement for running dexdeps on an APK and parsing its output with
+ * {@link DexDepsXmlHandler}.
+ *
+ * <p>The method references of every classes*.dex file in the APK are read with dexlib2. As with
+ * dexdeps, only references to classes that are not defined in the APK are reported, and they are
+ * added to the {@link ApiCoverage} object directly.
+ */
+class DexDepsScanner {
+
+    private static final Pattern DEX_ENTRY_NAME = Pattern.compile("classes\\d*\\.dex");
+
+    private static final String CONSTRUCTOR_NAME = "<init>";
+
+    private final ApiCoverage mPackageMap;
+
+    private final String mTestApkName;
+
+    DexDepsScanner(ApiCoverage packageMap, String testApkName) {
+        this.mPackageMap = packageMap;
+        this.mTestApkName = testApkName;
+    }
+
+    /**
+     * Scans the dex files of an APK and adds the coverage information to the {@link ApiCoverage}
+     * object.
+     *
+     * @return false if the APK does not contain any dex file
+     */
+    boolean scan(File testApk, Opcodes opcodes) throws IOException {
+        List<DexBackedDexFile> dexFiles = new ArrayList<DexBackedDexFile>();
+        try (ZipFile zipFile = new ZipFile(testApk)) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (DEX_ENTRY_NAME.matcher(entry.getName()).matches()) {
+                    try (InputStream in =
+                            new BufferedInputStream(zipFile.getInputStream(entry))) {
+                        dexFiles.add(DexBackedDexFile.fromInputStream(opcodes, in));
+                    }
+                }
+            }
+        }
+        if (dexFiles.isEmpty()) {
+            return false;
+        }
+
+        // References between the dex files of a multidex APK are internal.
+        Set<String> internalClasses = new HashSet<String>();
+        for (DexBackedDexFile dexFile : dexFiles) {
+            for (DexBackedClassDef classDef : dexFile.getClasses()) {
+                internalClasses.add(classDef.getType());
+            }
+        }
+
+        for (DexBackedDexFile dexFile : dexFiles) {
+            for (Reference reference : dexFile.getReferences(ReferenceType.METHOD)) {
+                MethodReference method = (MethodReference) reference;
+                if (!internalClasses.contains(method.getDefiningClass())) {
+                    addMethod(method);
+                }
+            }
+        }
+        return true;
+    }
+
+    private void addMethod(MethodReference method) {
+        String definingClass = method.getDefiningClass();
+        // Skip array types, e.g. calls to clone() on an array.
+        if (!definingClass.startsWith("L")) {
+            return;
+        }
+        // The package is everything up to the last '/', nested classes stay in the class name
+        // like in the API XML file, e.g. "Landroid/app/Notification$Action;" is in the class
+        // "Notification.Action" of the package "android.app".
+        String dottedName = descriptorToDot(definingClass);
+        // The dotted name has no leading 'L', so its last '.' before the class name is one
+        // character before the last '/' of the descriptor.
+        int packageEnd = definingClass.lastIndexOf('/') - 1;
+        String packageName = packageEnd < 0 ? "" : dottedName.substring(0, packageEnd);
+        String className = packageEnd < 0 ? dottedName : dottedName.substring(packageEnd + 1);
+
+        ApiPackage apiPackage = mPackageMap.getPackage(packageName);
+        if (apiPackage == null) {
+            return;
+        }
+        ApiClass apiClass = apiPackage.getClass(className);
+        if (apiClass == null) {
+            return;
+        }
+
+        List<String> parameterTypes = new ArrayList<String>();
+        for (CharSequence parameterType : method.getParameterTypes()) {
+            parameterTypes.add(descriptorToDot(parameterType.toString()));
+        }
+        if (CONSTRUCTOR_NAME.equals(method.getName())) {
+            apiClass.markConstructorCovered(parameterTypes, mTestApkName);
+        } else {
+            apiClass.markMethodCovered(method.getName(), parameterTypes, mTestApkName);
+        }
+    }
+
+    /**
+     * Converts a type descriptor to the form used in the API XML file, e.g.
+     * "[Landroid/app/Notification$Action;" becomes "android.app.Notification.Action[]".
+     */
+    static String descriptorToDot(String descriptor) {
+        int arrayDepth = 0;
+        while (descriptor.charAt(arrayDepth) == '[') {
+            arrayDepth++;
+        }
+
+        StringBuilder builder = new StringBuilder(descriptor.length() + arrayDepth);
+        char type = descriptor.charAt(arrayDepth);
+        if (type == 'L') {
+            for (int i = arrayDepth + 1; i < descriptor.length() - 1; i++) {
+                char c = descriptor.charAt(i);
+                builder.append(c == '/' || c == '$' ? '.' : c);
+            }
+        } else {
+            builder.append(primitiveTypeName(type));
+        }
+        for (int i = 0; i < arrayDepth; i++) {
+            builder.append("[]");
+        }
+        return builder.toString();
+    }
+
+    private static String primitiveTypeName(char type) {
+        switch (type) {
+            case 'Z': return "boolean";
+            case 'B': return "byte";
+            case 'S': return "short";
+            case 'C': return "char";
+            case 'I': return "int";
+            case 'J': return "long";
+            case 'F': return "float";
+            case 'D': return "double";
+            case 'V': return "void";
+            default:
+                throw new IllegalArgumentException("Unknown primitive type: " + type);
+        }
+    }
+}
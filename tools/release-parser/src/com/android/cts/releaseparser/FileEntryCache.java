@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cts.releaseparser;
+
+import com.android.cts.releaseparser.ReleaseProto.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * On-disk cache of file entries keyed by absolute path, size and last modified time.
+ *
+ * <p>Re-parsing a mostly unchanged release only needs to parse the files that have changed since
+ * the cache was written. Only the entries looked up or added during a run are written back, so
+ * entries of deleted files are dropped.
+ */
+class FileEntryCache {
+    private final String mCacheFile;
+    private final Map<String, CachedEntry> mPrevious;
+    private final Map<String, CachedEntry> mCurrent;
+
+    FileEntryCache(String cacheFile) {
+        mCacheFile = cacheFile;
+        mPrevious = load(cacheFile);
+        mCurrent = new ConcurrentHashMap<String, CachedEntry>();
+    }
+
+    /**
+     * Gets the cached entry of a file
+     *
+     * @return the entry or null if the file is not cached or has changed since it was cached
+     */
+    public Entry get(File file) {
+        String key = file.getAbsolutePath();
+        CachedEntry cached = mPrevious.get(key);
+        if (cached == null
+                || cached.getSize() != file.length()
+                || cached.getLastModified() != file.lastModified()) {
+            return null;
+        }
+        mCurrent.put(key, cached);
+        return cached.getEntry();
+    }
+
+    /** Adds the entry of a file that has just been parsed. */
+    public void put(File file, Entry entry) {
+        mCurrent.put(
+                file.getAbsolutePath(),
+                CachedEntry.newBuilder()
+                        .setSize(file.length())
+                        .setLastModified(file.lastModified())
+                        .setEntry(entry)
+                        .build());
+    }
+
+    /** Writes the cache to disk. */
+    public void write() {
+        try (FileOutputStream output = new FileOutputStream(mCacheFile)) {
+            EntryCache.newBuilder().putAllEntries(mCurrent).build().writeTo(output);
+        } catch (IOException e) {
+            System.err.println("IOException:" + e.getMessage());
+        }
+    }
+
+    private static Map<String, CachedEntry> load(String cacheFile) {
+        File file = new File(cacheFile);
+        if (!file.isFile()) {
+            return new ConcurrentHashMap<String, CachedEntry>();
+        }
+        try (FileInputStream input = new FileInputStream(file)) {
+            return EntryCache.parseFrom(input).getEntriesMap();
+        } catch (IOException e) {
+            System.err.println("Ignoring cache " + cacheFile + ", IOException:" + e.getMessage());
+            return new ConcurrentHashMap<String, CachedEntry>();
+        }
+    }
+}
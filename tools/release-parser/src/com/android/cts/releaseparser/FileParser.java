@@ -33,6 +33,10 @@ import java.util.List;
 public class FileParser {
     private static final String NO_ID = "";
     protected static final int READ_BLOCK_SIZE = 1024;
+    // Files are hashed in large reads, one buffer per parsing thread
+    private static final int HASH_BLOCK_SIZE = 1024 * 1024;
+    private static final ThreadLocal<byte[]> HASH_BUFFER =
+            ThreadLocal.withInitial(() -> new byte[HASH_BLOCK_SIZE]);
 
     // Target File Extensions
     public static final String APK_EXT_TAG = ".apk";
@@ -128,10 +132,9 @@ public class FileParser {
 
     public String getFileContentId() {
         if (NO_ID.equals(mContentId)) {
-            try {
+            try (FileInputStream fis = new FileInputStream(mFile)) {
                 MessageDigest md = MessageDigest.getInstance("SHA-256");
-                FileInputStream fis = new FileInputStream(mFile);
-                byte[] dataBytes = new byte[READ_BLOCK_SIZE];
+                byte[] dataBytes = HASH_BUFFER.get();
                 int nread = 0;
                 while ((nread = fis.read(dataBytes)) != -1) {
                     md.update(dataBytes, 0, nread);
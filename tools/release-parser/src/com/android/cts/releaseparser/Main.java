@@ -33,16 +33,18 @@ public class Main {
                     + "\tto prase a release, such as device build, test suite or app distribution package\n"
                     + "Options:\n"
                     + "\t-i PATH\t path to a release folder\n"
-                    + "\t-o PATH\t path to output files\n";
+                    + "\t-o PATH\t path to output files\n"
+                    + "\t-c PATH\t path to a file entry cache to speed up re-parsing, optional\n";
 
     public static void main(final String[] args) {
         try {
             ArgumentParser argParser = new ArgumentParser(args);
             String relFolder = argParser.getParameterElement("i", 0);
             String outputPath = argParser.getParameterElement("o", 0);
+            String cacheFile = argParser.getParameterElement("c", 0);
 
             // parse a release folder
-            ReleaseParser relParser = new ReleaseParser(relFolder);
+            ReleaseParser relParser = new ReleaseParser(relFolder, cacheFile);
             String relNameVer = relParser.getReleaseId();
             relParser.writeRelesaeContentCsvFile(
                     relNameVer, getPathString(outputPath, "%s-ReleaseContent.csv", relNameVer));
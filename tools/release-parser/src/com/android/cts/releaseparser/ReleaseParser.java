@@ -33,6 +33,9 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 
 class ReleaseParser {
     private static final String ROOT_FOLDER_TAG = "/";
@@ -67,12 +70,22 @@ class ReleaseParser {
     private Path mRootPath;
     private ReleaseContent.Builder mRelContentBuilder;
     private Map<String, Entry> mEntries;
+    private final FileEntryCache mEntryCache;
 
     ReleaseParser(String folder) {
+        this(folder, null);
+    }
+
+    /**
+     * @param folder path to a release folder
+     * @param cacheFile path to a file entry cache to reuse and update, or null for no cache
+     */
+    ReleaseParser(String folder, String cacheFile) {
         mFolderPath = folder;
         File fFile = new File(mFolderPath);
         mRootPath = Paths.get(fFile.getAbsolutePath());
         mEntries = new HashMap<String, Entry>();
+        mEntryCache = cacheFile == null ? null : new FileEntryCache(cacheFile);
     }
 
     public String getReleaseId() {
@@ -107,99 +120,96 @@ class ReleaseParser {
             Entry fEntry = fBuilder.build();
             mEntries.put(fEntry.getRelativePath(), fEntry);
             mRelContentBuilder.putAllEntries(mEntries);
+            if (mEntryCache != null) {
+                mEntryCache.write();
+            }
         }
         return mRelContentBuilder.build();
     }
 
     // Parse all files in a folder and return the foler entry builder
     private Entry.Builder parseFolder(String fPath) {
+        // Files are parsed in parallel, the entries are then assembled in the same order as if
+        // they had been parsed one by one so the output does not depend on the scheduling.
+        FolderNode root = ForkJoinPool.commonPool().invoke(new FolderTask(new File(fPath)));
+        return buildFolderEntry(root);
+    }
+
+    private Entry.Builder buildFolderEntry(FolderNode node) {
         Entry.Builder folderEntry = Entry.newBuilder();
-        File folder = new File(fPath);
-        Path folderPath = Paths.get(folder.getAbsolutePath());
-        String folderRelativePath = mRootPath.relativize(folderPath).toString();
-        File[] fileList = folder.listFiles();
+        String folderRelativePath = node.mRelativePath;
         Long folderSize = 0L;
         List<Entry> entryList = new ArrayList<Entry>();
 
-        // walks through all files
-        System.out.println("Parsing: " + folderRelativePath);
-        // skip if it's a symbolic link to a folder
-        if (fileList != null) {
-            for (File file : fileList) {
-                if (file.isFile()) {
-                    String fileRelativePath =
-                            mRootPath.relativize(Paths.get(file.getAbsolutePath())).toString();
-                    FileParser fParser = FileParser.getParser(file);
-                    Entry.Builder fileEntryBuilder = fParser.getFileEntryBuilder();
-                    fileEntryBuilder.setRelativePath(fileRelativePath);
-
-                    if (folderRelativePath.isEmpty()) {
-                        fileEntryBuilder.setParentFolder(ROOT_FOLDER_TAG);
-                    } else {
-                        fileEntryBuilder.setParentFolder(folderRelativePath);
-                    }
+        for (Object child : node.mChildren) {
+            if (child instanceof FileNode) {
+                FileNode fileNode = (FileNode) child;
+                File file = fileNode.mFile;
+                String fileRelativePath =
+                        mRootPath.relativize(Paths.get(file.getAbsolutePath())).toString();
+                Entry.Builder fileEntryBuilder = fileNode.mEntryBuilder;
+                fileEntryBuilder.setRelativePath(fileRelativePath);
 
-                    Entry.EntryType eType = fParser.getType();
-                    switch (eType) {
-                        case TEST_SUITE_TRADEFED:
-                            mRelContentBuilder.setTestSuiteTradefed(fileRelativePath);
-                            TestSuiteTradefedParser tstParser = (TestSuiteTradefedParser) fParser;
-                            // get [cts]-known-failures.xml
-                            mRelContentBuilder.addAllKnownFailures(tstParser.getKnownFailureList());
-                            mRelContentBuilder.setName(tstParser.getName());
-                            mRelContentBuilder.setFullname(tstParser.getFullName());
-                            mRelContentBuilder.setBuildNumber(tstParser.getBuildNumber());
-                            mRelContentBuilder.setTargetArch(tstParser.getTargetArch());
-                            mRelContentBuilder.setVersion(tstParser.getVersion());
-                            mRelContentBuilder.setReleaseType(ReleaseType.TEST_SUITE);
-                            break;
-                        case BUILD_PROP:
-                            BuildPropParser bpParser = (BuildPropParser) fParser;
-                            try {
-                                mRelContentBuilder.setReleaseType(ReleaseType.DEVICE_BUILD);
-                                mRelContentBuilder.setName(bpParser.getName());
-                                mRelContentBuilder.setFullname(bpParser.getFullName());
-                                mRelContentBuilder.setBuildNumber(bpParser.getBuildNumber());
-                                mRelContentBuilder.setVersion(bpParser.getVersion());
-                                mRelContentBuilder.putAllProperties(bpParser.getProperties());
-                            } catch (Exception e) {
-                                System.err.println(
-                                        "No product name, version & etc. in "
-                                                + file.getAbsoluteFile()
-                                                + ", err:"
-                                                + e.getMessage());
-                            }
-                            break;
-                        default:
-                    }
-                    // System.err.println("File:" + file.getAbsoluteFile());
-                    if (fParser.getDependencies() != null) {
-                        fileEntryBuilder.addAllDependencies(fParser.getDependencies());
-                    }
-                    if (fParser.getDynamicLoadingDependencies() != null) {
-                        fileEntryBuilder.addAllDynamicLoadingDependencies(
-                                fParser.getDynamicLoadingDependencies());
-                    }
-                    fileEntryBuilder.setAbiBits(fParser.getAbiBits());
-                    fileEntryBuilder.setAbiArchitecture(fParser.getAbiArchitecture());
-
-                    Entry fEntry = fileEntryBuilder.build();
-                    entryList.add(fEntry);
-                    mEntries.put(fEntry.getRelativePath(), fEntry);
-                    folderSize += file.length();
-                } else if (file.isDirectory()) {
-                    // Checks subfolders
-                    Entry.Builder subFolderEntry = parseFolder(file.getAbsolutePath());
-                    if (folderRelativePath.isEmpty()) {
-                        subFolderEntry.setParentFolder(ROOT_FOLDER_TAG);
-                    } else {
-                        subFolderEntry.setParentFolder(folderRelativePath);
-                    }
-                    Entry sfEntry = subFolderEntry.build();
-                    entryList.add(sfEntry);
-                    mEntries.put(sfEntry.getRelativePath(), sfEntry);
-                    folderSize += sfEntry.getSize();
+                if (folderRelativePath.isEmpty()) {
+                    fileEntryBuilder.setParentFolder(ROOT_FOLDER_TAG);
+                } else {
+                    fileEntryBuilder.setParentFolder(folderRelativePath);
+                }
+
+                FileParser fParser = fileNode.mParser;
+                Entry.EntryType eType = fileNode.mType;
+                switch (eType) {
+                    case TEST_SUITE_TRADEFED:
+                        mRelContentBuilder.setTestSuiteTradefed(fileRelativePath);
+                        TestSuiteTradefedParser tstParser = (TestSuiteTradefedParser) fParser;
+                        // get [cts]-known-failures.xml
+                        mRelContentBuilder.addAllKnownFailures(tstParser.getKnownFailureList());
+                        mRelContentBuilder.setName(tstParser.getName());
+                        mRelContentBuilder.setFullname(tstParser.getFullName());
+                        mRelContentBuilder.setBuildNumber(tstParser.getBuildNumber());
+                        mRelContentBuilder.setTargetArch(tstParser.getTargetArch());
+                        mRelContentBuilder.setVersion(tstParser.getVersion());
+                        mRelContentBuilder.setReleaseType(ReleaseType.TEST_SUITE);
+                        break;
+                    case BUILD_PROP:
+                        BuildPropParser bpParser = (BuildPropParser) fParser;
+                        try {
+                            mRelContentBuilder.setReleaseType(ReleaseType.DEVICE_BUILD);
+                            mRelContentBuilder.setName(bpParser.getName());
+                            mRelContentBuilder.setFullname(bpParser.getFullName());
+                            mRelContentBuilder.setBuildNumber(bpParser.getBuildNumber());
+                            mRelContentBuilder.setVersion(bpParser.getVersion());
+                            mRelContentBuilder.putAllProperties(bpParser.getProperties());
+                        } catch (Exception e) {
+                            System.err.println(
+                                    "No product name, version & etc. in "
+                                            + file.getAbsoluteFile()
+                                            + ", err:"
+                                            + e.getMessage());
+                        }
+                        break;
+                    default:
                 }
+
+                Entry fEntry = fileEntryBuilder.build();
+                entryList.add(fEntry);
+                mEntries.put(fEntry.getRelativePath(), fEntry);
+                folderSize += file.length();
+                if (mEntryCache != null && !fileNode.mFromCache && isCacheable(eType)) {
+                    mEntryCache.put(file, fEntry);
+                }
+            } else {
+                // Checks subfolders
+                Entry.Builder subFolderEntry = buildFolderEntry((FolderNode) child);
+                if (folderRelativePath.isEmpty()) {
+                    subFolderEntry.setParentFolder(ROOT_FOLDER_TAG);
+                } else {
+                    subFolderEntry.setParentFolder(folderRelativePath);
+                }
+                Entry sfEntry = subFolderEntry.build();
+                entryList.add(sfEntry);
+                mEntries.put(sfEntry.getRelativePath(), sfEntry);
+                folderSize += sfEntry.getSize();
             }
         }
         folderEntry.setName(folderRelativePath);
@@ -210,6 +220,113 @@ class ReleaseParser {
         return folderEntry;
     }
 
+    // The parsers of these types also update the release content so they are always parsed
+    private static boolean isCacheable(Entry.EntryType eType) {
+        return eType != Entry.EntryType.TEST_SUITE_TRADEFED
+                && eType != Entry.EntryType.BUILD_PROP;
+    }
+
+    // A folder and its files & subfolders, in listFiles() order
+    private static class FolderNode {
+        final String mRelativePath;
+        final List<Object> mChildren = new ArrayList<Object>();
+
+        FolderNode(String relativePath) {
+            mRelativePath = relativePath;
+        }
+    }
+
+    // A parsed file. The parser is only kept for the types which update the release content,
+    // which are never cached, so that the parsers of the other files can be freed while the rest
+    // of the folder is parsed.
+    private static class FileNode {
+        final File mFile;
+        final Entry.EntryType mType;
+        final FileParser mParser;
+        final Entry.Builder mEntryBuilder;
+        final boolean mFromCache;
+
+        FileNode(File file, Entry.EntryType type, FileParser parser, Entry.Builder entryBuilder,
+                boolean fromCache) {
+            mFile = file;
+            mType = type;
+            mParser = parser;
+            mEntryBuilder = entryBuilder;
+            mFromCache = fromCache;
+        }
+    }
+
+    // Walks a folder, forking a task for each file and subfolder
+    private class FolderTask extends RecursiveTask<FolderNode> {
+        private final File mFolder;
+
+        FolderTask(File folder) {
+            mFolder = folder;
+        }
+
+        @Override
+        protected FolderNode compute() {
+            Path folderPath = Paths.get(mFolder.getAbsolutePath());
+            String folderRelativePath = mRootPath.relativize(folderPath).toString();
+            FolderNode node = new FolderNode(folderRelativePath);
+            File[] fileList = mFolder.listFiles();
+
+            // walks through all files
+            System.out.println("Parsing: " + folderRelativePath);
+            // skip if it's a symbolic link to a folder
+            if (fileList != null) {
+                List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+                for (File file : fileList) {
+                    if (file.isFile()) {
+                        tasks.add(new FileTask(file).fork());
+                    } else if (file.isDirectory()) {
+                        tasks.add(new FolderTask(file).fork());
+                    }
+                }
+                for (ForkJoinTask<?> task : tasks) {
+                    node.mChildren.add(task.join());
+                }
+            }
+            return node;
+        }
+    }
+
+    // Parses a single file or gets its entry from the cache
+    private class FileTask extends RecursiveTask<FileNode> {
+        private final File mFile;
+
+        FileTask(File file) {
+            mFile = file;
+        }
+
+        @Override
+        protected FileNode compute() {
+            if (mEntryCache != null) {
+                Entry cached = mEntryCache.get(mFile);
+                if (cached != null) {
+                    return new FileNode(mFile, cached.getType(), null, cached.toBuilder(),
+                            /* fromCache= */ true);
+                }
+            }
+
+            FileParser fParser = FileParser.getParser(mFile);
+            Entry.Builder fileEntryBuilder = fParser.getFileEntryBuilder();
+            // System.err.println("File:" + file.getAbsoluteFile());
+            if (fParser.getDependencies() != null) {
+                fileEntryBuilder.addAllDependencies(fParser.getDependencies());
+            }
+            if (fParser.getDynamicLoadingDependencies() != null) {
+                fileEntryBuilder.addAllDynamicLoadingDependencies(
+                        fParser.getDynamicLoadingDependencies());
+            }
+            fileEntryBuilder.setAbiBits(fParser.getAbiBits());
+            fileEntryBuilder.setAbiArchitecture(fParser.getAbiArchitecture());
+            Entry.EntryType eType = fParser.getType();
+            return new FileNode(mFile, eType, isCacheable(eType) ? null : fParser,
+                    fileEntryBuilder, /* fromCache= */ false);
+        }
+    }
+
     private static String getFolderContentId(Entry.Builder folderEntry, List<Entry> entryList) {
         String id = null;
         try {
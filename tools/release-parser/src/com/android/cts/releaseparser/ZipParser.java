@@ -31,6 +31,11 @@ import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 public class ZipParser extends FileParser {
+    // Nested entries are copied with large reads, one buffer per parsing thread
+    private static final int COPY_BLOCK_SIZE = 64 * 1024;
+    private static final ThreadLocal<byte[]> COPY_BUFFER =
+            ThreadLocal.withInitial(() -> new byte[COPY_BLOCK_SIZE]);
+
     private PackageFileContent.Builder mPackageFileContentBuilder;
     private HashMap<String, Entry> mFileMap;
     private List<String> mDependencies;
@@ -92,20 +97,17 @@ public class ZipParser extends FileParser {
         mParseInternalApi = parseInternalApi;
     }
 
-    public static File getFilefromZip(ZipFile zipFile, ZipEntry zipEntry) throws IOException {
-        String fileName = zipEntry.getName();
-        File tmpFile = File.createTempFile("RPZ", "");
-        tmpFile.deleteOnExit();
-        InputStream iStream = zipFile.getInputStream(zipEntry);
-        FileOutputStream fOutputStream = new FileOutputStream(tmpFile);
-        byte[] buffer = new byte[READ_BLOCK_SIZE];
-        int length;
-        while ((length = iStream.read(buffer)) >= 0) {
-            fOutputStream.write(buffer, 0, length);
+    /** Extracts a zip entry to a file, overwriting the existing content of the file. */
+    public static void extractToFile(ZipFile zipFile, ZipEntry zipEntry, File file)
+            throws IOException {
+        try (InputStream iStream = zipFile.getInputStream(zipEntry);
+                FileOutputStream fOutputStream = new FileOutputStream(file)) {
+            byte[] buffer = COPY_BUFFER.get();
+            int length;
+            while ((length = iStream.read(buffer)) >= 0) {
+                fOutputStream.write(buffer, 0, length);
+            }
         }
-        iStream.close();
-        fOutputStream.close();
-        return tmpFile;
     }
 
     public PackageFileContent getPackageFileContent() {
@@ -117,6 +119,8 @@ public class ZipParser extends FileParser {
 
     private void parseFileContent() {
         ZipFile zFile = null;
+        // SoParser needs a file, so all SOs in the zip are extracted in turn to the same file
+        File soFile = null;
         mPackageFileContentBuilder = PackageFileContent.newBuilder();
         mFileMap = new HashMap<String, Entry>();
         mDependencies = new ArrayList<String>();
@@ -144,7 +148,11 @@ public class ZipParser extends FileParser {
                         // ToDo: to be optimized if taking too long
                         if (name.endsWith(SO_EXT_TAG)) {
                             try {
-                                final File soFile = getFilefromZip(zFile, entry);
+                                if (soFile == null) {
+                                    soFile = File.createTempFile("RPZ", SO_EXT_TAG);
+                                    soFile.deleteOnExit();
+                                }
+                                extractToFile(zFile, entry, soFile);
                                 SoParser fParser = new SoParser(soFile);
                                 fParser.setPackageName(name);
                                 fParser.setParseInternalApi(mParseInternalApi);
@@ -171,6 +179,9 @@ public class ZipParser extends FileParser {
             System.err.println("Failed to parse: " + getFileName() + "\n" + e.getMessage());
             // error while opening a ZIP file
         } finally {
+            if (soFile != null) {
+                soFile.delete();
+            }
             if (zFile != null) {
                 try {
                     zFile.close();
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cts.releaseparser;
+
+import com.android.cts.releaseparser.ReleaseProto.*;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/** Unit tests for {@link FileEntryCache} */
+@RunWith(JUnit4.class)
+public class FileEntryCacheTest {
+    // A fixed time, in whole seconds as some file systems do not keep milliseconds
+    private static final long LAST_MODIFIED = 1_500_000_000_000L;
+
+    @Rule public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private String mCacheFile;
+    private File mFile;
+    private Entry mEntry;
+
+    @Before
+    public void setUp() throws Exception {
+        mCacheFile = new File(mTemporaryFolder.getRoot(), "cache.pb").getAbsolutePath();
+        mFile = createFile("file.txt", "content");
+        mEntry = createEntry(mFile);
+    }
+
+    /**
+     * Test that an entry written to the cache is returned while the file is unchanged
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testGet_unchangedFile_returnsEntry() throws Exception {
+        writeCache(mFile, mEntry);
+
+        FileEntryCache cache = new FileEntryCache(mCacheFile);
+        assertEquals(mEntry, cache.get(mFile));
+    }
+
+    /**
+     * Test that the cache misses when the size of the file changes, even with the same
+     * modification time
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testGet_sizeChanged_returnsNull() throws Exception {
+        writeCache(mFile, mEntry);
+
+        writeContent(mFile, "longer content");
+        assertTrue(mFile.setLastModified(LAST_MODIFIED));
+
+        FileEntryCache cache = new FileEntryCache(mCacheFile);
+        assertNull(cache.get(mFile));
+    }
+
+    /**
+     * Test that the cache misses when the modification time of the file changes, even with the
+     * same size
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testGet_lastModifiedChanged_returnsNull() throws Exception {
+        writeCache(mFile, mEntry);
+
+        assertTrue(mFile.setLastModified(LAST_MODIFIED + 2000));
+
+        FileEntryCache cache = new FileEntryCache(mCacheFile);
+        assertNull(cache.get(mFile));
+    }
+
+    /**
+     * Test that the cache misses for a file which was not cached, or without a cache file
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testGet_notCached_returnsNull() throws Exception {
+        File otherFile = createFile("other.txt", "other");
+
+        assertNull(new FileEntryCache(mCacheFile).get(mFile));
+
+        writeCache(mFile, mEntry);
+        assertNull(new FileEntryCache(mCacheFile).get(otherFile));
+    }
+
+    /**
+     * Test that the entries which are neither looked up nor added, e.g. of deleted files, are
+     * dropped when the cache is written
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testWrite_dropsEntriesNotUsed() throws Exception {
+        File deletedFile = createFile("deleted.txt", "deleted");
+        FileEntryCache cache = new FileEntryCache(mCacheFile);
+        cache.put(mFile, mEntry);
+        cache.put(deletedFile, createEntry(deletedFile));
+        cache.write();
+
+        // The next run only finds the remaining file
+        assertTrue(deletedFile.delete());
+        cache = new FileEntryCache(mCacheFile);
+        assertEquals(mEntry, cache.get(mFile));
+        cache.write();
+
+        // Even if the file is created again, its entry was dropped
+        deletedFile = createFile("deleted.txt", "deleted");
+        cache = new FileEntryCache(mCacheFile);
+        assertNull(cache.get(deletedFile));
+        assertEquals(mEntry, cache.get(mFile));
+    }
+
+    private void writeCache(File file, Entry entry) {
+        FileEntryCache cache = new FileEntryCache(mCacheFile);
+        cache.put(file, entry);
+        cache.write();
+    }
+
+    private File createFile(String name, String content) throws IOException {
+        File file = new File(mTemporaryFolder.getRoot(), name);
+        writeContent(file, content);
+        assertTrue(file.setLastModified(LAST_MODIFIED));
+        return file;
+    }
+
+    private static void writeContent(File file, String content) throws IOException {
+        try (FileOutputStream output = new FileOutputStream(file)) {
+            output.write(content.getBytes("UTF-8"));
+        }
+    }
+
+    private static Entry createEntry(File file) {
+        return Entry.newBuilder()
+                .setName(file.getName())
+                .setSize(file.length())
+                .setType(Entry.EntryType.FILE)
+                .build();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.cts.releaseparser;
+
+import com.android.cts.releaseparser.ReleaseProto.*;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import static org.junit.Assert.*;
+
+/** Unit tests for {@link ReleaseParser} */
+@RunWith(JUnit4.class)
+public class ReleaseParserTest {
+    // Files copied from the resources to build a small release
+    private static final String[] RELEASE_FILES = {
+        "build.prop",
+        "libEGL.so",
+        "HelloActivity.apk",
+        "etc/platform.xml",
+        "etc/permissions/android.hardware.vulkan.version.xml",
+    };
+
+    @Rule public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private File mReleaseFolder;
+    private String mCacheFile;
+
+    @Before
+    public void setUp() throws Exception {
+        mReleaseFolder = mTemporaryFolder.newFolder("release");
+        for (String path : RELEASE_FILES) {
+            File file = new File(mReleaseFolder, path);
+            file.getParentFile().mkdirs();
+            File resource = ClassUtils.getResrouceFile(getClass(), file.getName());
+            Files.copy(resource.toPath(), file.toPath());
+        }
+        mCacheFile = new File(mTemporaryFolder.getRoot(), "cache.pb").getAbsolutePath();
+    }
+
+    /**
+     * Test that the release content is the same with and without a cache, both when the cache is
+     * filled and when the entries are read from it
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testGetReleaseContent_withCache_sameAsWithoutCache() throws Exception {
+        ReleaseContent expected = new ReleaseParser(mReleaseFolder.getPath()).getReleaseContent();
+        assertEquals(ReleaseType.DEVICE_BUILD, expected.getReleaseType());
+        assertEquals(RELEASE_FILES.length + 3, expected.getEntriesCount());
+
+        // Fills the cache
+        assertEquals(expected, parseWithCache());
+        assertTrue(new File(mCacheFile).length() > 0);
+        // Reads the entries from the cache
+        assertEquals(expected, parseWithCache());
+    }
+
+    /**
+     * Test that the CSV output is the same with and without a cache
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testWriteReleaseContentCsvFile_withCache_sameAsWithoutCache() throws Exception {
+        File expected = mTemporaryFolder.newFile("expected.csv");
+        new ReleaseParser(mReleaseFolder.getPath())
+                .writeRelesaeContentCsvFile("release", expected.getPath());
+
+        new ReleaseParser(mReleaseFolder.getPath(), mCacheFile)
+                .writeRelesaeContentCsvFile("release", mTemporaryFolder.newFile().getPath());
+        File cached = mTemporaryFolder.newFile("cached.csv");
+        new ReleaseParser(mReleaseFolder.getPath(), mCacheFile)
+                .writeRelesaeContentCsvFile("release", cached.getPath());
+
+        assertArrayEquals(
+                Files.readAllBytes(expected.toPath()), Files.readAllBytes(cached.toPath()));
+    }
+
+    /**
+     * Test that a file changed since the cache was written is parsed again
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testGetReleaseContent_fileChanged_parsedAgain() throws Exception {
+        parseWithCache();
+
+        File changed = new File(mReleaseFolder, "etc/platform.xml");
+        File other = ClassUtils.getResrouceFile(getClass(), "android.hardware.vulkan.version.xml");
+        Files.copy(other.toPath(), changed.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        ReleaseContent expected = new ReleaseParser(mReleaseFolder.getPath()).getReleaseContent();
+        assertEquals(expected, parseWithCache());
+    }
+
+    private ReleaseContent parseWithCache() {
+        return new ReleaseParser(mReleaseFolder.getPath(), mCacheFile).getReleaseContent();
+    }
+}
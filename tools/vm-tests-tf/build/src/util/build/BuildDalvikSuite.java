@@ -44,6 +44,9 @@ public class BuildDalvikSuite extends BuildUtilBase {
 
     private String JAVASRC_FOLDER;
 
+    // optional file keeping the input hashes of the build steps, to skip the unchanged ones
+    private File BUILD_CACHE_FILE;
+
     /**
      * @param args
      *            args 0 must be the project root folder (where src, lib etc.
@@ -65,10 +68,13 @@ public class BuildDalvikSuite extends BuildUtilBase {
     }
 
     private boolean parseArgs(String[] args) {
-      if (args.length == 3) {
+      if (args.length == 3 || args.length == 4) {
           JAVASRC_FOLDER = args[0];
           OUTPUT_FOLDER = args[1];
           COMPILED_CLASSES_FOLDER = args[2];
+          if (args.length == 4) {
+              BUILD_CACHE_FILE = new File(args[3]);
+          }
           return true;
       } else {
           return false;
@@ -77,7 +83,10 @@ public class BuildDalvikSuite extends BuildUtilBase {
 
     private static void printUsage() {
         System.out.println("usage: $(JAVA) -cp $(CLASSPATH) util.build.BuildDalvikSuite" +
-                " JAVASRC_FOLDER OUTPUT_FOLDER COMPILED_CLASSES_FOLDER");
+                " JAVASRC_FOLDER OUTPUT_FOLDER COMPILED_CLASSES_FOLDER [BUILD_CACHE_FILE]");
+        System.out.println("  BUILD_CACHE_FILE keeps the input hashes of the built files, files" +
+                " whose inputs did not change are not built again. It must not be in" +
+                " OUTPUT_FOLDER.");
     }
 
     class MyTestHandler implements TestHandler {
@@ -215,12 +224,18 @@ public class BuildDalvikSuite extends BuildUtilBase {
         scriptDataDir.mkdirs();
         writeToFile(new File(scriptDataDir, "scriptdata"), handler.datafileContent);
 
-        for (BuildStep buildStep : handler.targets) {
-            if (!buildStep.build()) {
-                System.out.println("building failed. buildStep: " +
-                        buildStep.getClass().getName() + ", " + buildStep);
-                System.exit(1);
-            }
+        List<BuildStep> failed;
+        try {
+            failed = new BuildExecutor(BUILD_CACHE_FILE).build(handler.targets);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        for (BuildStep buildStep : failed) {
+            System.out.println("building failed. buildStep: " +
+                    buildStep.getClass().getName() + ", " + buildStep);
+        }
+        if (!failed.isEmpty()) {
+            System.exit(1);
         }
     }
 
@@ -264,6 +279,9 @@ public class BuildDalvikSuite extends BuildUtilBase {
                 for (File f: smalisDir.listFiles()) {
                     inputFiles.add(f.getAbsolutePath());
                 }
+                // listFiles() has no defined order, sort them so that the step is the same from one
+                // build to the next, as it is part of the fingerprint of the cached output
+                Collections.sort(inputFiles);
                 dexFile = new File(OUTPUT_FOLDER, fileName + ".dex");
                 buildStep = new SmaliBuildStep(inputFiles, dexFile);
             }
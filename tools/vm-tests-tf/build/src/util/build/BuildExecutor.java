@@ -0,0 +1,316 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package util.build;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Builds {@link BuildStep} trees on a work-stealing pool.
+ *
+ * <p>A step is built once all its children are built, steps which do not depend on each other are
+ * built concurrently, and equal steps shared by several trees are built once. Targets which are
+ * {@link D8BuildStep}s of a single class file are dexed together in a few D8 invocations, see
+ * {@link D8BuildStep#buildBatch}.
+ *
+ * <p>If a cache file is given, it keeps a hash of the inputs of each target tree, i.e. of the
+ * files read by its steps which are not produced by another step of the tree. Targets whose
+ * output exists and whose inputs did not change since they were last built are skipped.
+ */
+class BuildExecutor {
+
+    /** Maximum number of class files dexed by a single D8 invocation. */
+    private static final int MAX_D8_BATCH_SIZE = 256;
+
+    private final File cacheFile;
+    private final ForkJoinPool pool;
+    private final Properties cache = new Properties();
+    private final Map<BuildStep, ForkJoinTask<Boolean>> tasks = new ConcurrentHashMap<>();
+
+    /**
+     * @param cacheFile the file keeping the input hashes of the targets, or null to build all
+     *            the targets.
+     */
+    BuildExecutor(File cacheFile) {
+        this(cacheFile, Runtime.getRuntime().availableProcessors());
+    }
+
+    BuildExecutor(File cacheFile, int parallelism) {
+        this.cacheFile = cacheFile;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Builds the targets which are not up to date. The executor cannot be used afterwards.
+     *
+     * @return the targets which failed to build, empty if all of them were built.
+     */
+    List<BuildStep> build(Collection<? extends BuildStep> targets) throws IOException {
+        loadCache();
+        List<BuildStep> failed;
+        try {
+            failed = pool.invoke(new BuildTask(new ArrayList<BuildStep>(targets)));
+        } finally {
+            pool.shutdown();
+        }
+        saveCache();
+        return failed;
+    }
+
+    /**
+     * Forks the task building {@code step}, or returns the task already building an equal step.
+     */
+    private ForkJoinTask<Boolean> forkStep(BuildStep step) {
+        StepTask task = new StepTask(step);
+        ForkJoinTask<Boolean> existing = tasks.putIfAbsent(step, task);
+        return existing != null ? existing : task.fork();
+    }
+
+    @SuppressWarnings("serial") // never serialized
+    private final class BuildTask extends RecursiveTask<List<BuildStep>> {
+        private final List<BuildStep> targets;
+
+        BuildTask(List<BuildStep> targets) {
+            this.targets = targets;
+        }
+
+        @Override
+        protected List<BuildStep> compute() {
+            Map<BuildStep, ForkJoinTask<String>> fingerprintTasks = new HashMap<>();
+            if (cacheFile != null) {
+                for (BuildStep target : targets) {
+                    fingerprintTasks.put(target,
+                            ForkJoinTask.adapt(() -> fingerprint(target)).fork());
+                }
+            }
+
+            Map<BuildStep, String> fingerprints = new HashMap<>();
+            List<BuildStep> staleTargets = new ArrayList<>();
+            for (BuildStep target : targets) {
+                ForkJoinTask<String> fingerprintTask = fingerprintTasks.get(target);
+                String fingerprint = fingerprintTask != null ? fingerprintTask.join() : null;
+                if (fingerprint != null && target.outputFile.fileName.exists()
+                        && fingerprint.equals(cache.getProperty(target.outputFile.getPath()))) {
+                    continue;
+                }
+                fingerprints.put(target, fingerprint);
+                staleTargets.add(target);
+            }
+            System.out.println("building " + staleTargets.size() + " of " + targets.size()
+                    + " targets, " + (targets.size() - staleTargets.size()) + " up to date");
+
+            Map<BuildStep, ForkJoinTask<Boolean>> stepTasks = new HashMap<>();
+            List<D8BuildStep> classFileSteps = new ArrayList<>();
+            for (BuildStep target : staleTargets) {
+                if (target instanceof D8BuildStep
+                        && ((D8BuildStep) target).getClassFileStep() != null) {
+                    classFileSteps.add((D8BuildStep) target);
+                } else {
+                    stepTasks.put(target, forkStep(target));
+                }
+            }
+
+            // Spread the class files over the workers, in batches of at most MAX_D8_BATCH_SIZE.
+            int batchSize = (classFileSteps.size() + getPool().getParallelism() - 1)
+                    / getPool().getParallelism();
+            batchSize = Math.max(1, Math.min(MAX_D8_BATCH_SIZE, batchSize));
+            List<ForkJoinTask<List<BuildStep>>> batchTasks = new ArrayList<>();
+            for (int i = 0; i < classFileSteps.size(); i += batchSize) {
+                List<D8BuildStep> batch = classFileSteps.subList(
+                        i, Math.min(classFileSteps.size(), i + batchSize));
+                batchTasks.add(new BatchTask(batch).fork());
+            }
+
+            List<BuildStep> failed = new ArrayList<>();
+            for (Map.Entry<BuildStep, ForkJoinTask<Boolean>> entry : stepTasks.entrySet()) {
+                if (!entry.getValue().join()) {
+                    failed.add(entry.getKey());
+                }
+            }
+            for (ForkJoinTask<List<BuildStep>> batchTask : batchTasks) {
+                failed.addAll(batchTask.join());
+            }
+            Collections.sort(failed);
+
+            Set<BuildStep> failedSet = new HashSet<>(failed);
+            for (BuildStep target : staleTargets) {
+                String key = target.outputFile.getPath();
+                String fingerprint = fingerprints.get(target);
+                if (fingerprint == null || failedSet.contains(target)) {
+                    cache.remove(key);
+                } else {
+                    cache.setProperty(key, fingerprint);
+                }
+            }
+            return failed;
+        }
+    }
+
+    /**
+     * Builds a step once its children are built.
+     */
+    @SuppressWarnings("serial") // never serialized
+    private final class StepTask extends RecursiveTask<Boolean> {
+        private final BuildStep step;
+
+        StepTask(BuildStep step) {
+            this.step = step;
+        }
+
+        @Override
+        protected Boolean compute() {
+            List<ForkJoinTask<Boolean>> childTasks = new ArrayList<>();
+            for (BuildStep child : step.getChildren()) {
+                childTasks.add(forkStep(child));
+            }
+            boolean childrenBuilt = true;
+            for (ForkJoinTask<Boolean> childTask : childTasks) {
+                // join all of them, so that no child is still building when this one fails
+                childrenBuilt &= childTask.join();
+            }
+            if (!childrenBuilt) {
+                return false;
+            }
+            try {
+                return step.buildSelf();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Builds D8 steps of a single class file with one D8 invocation, or one by one if it fails to
+     * find out which of them failed.
+     */
+    @SuppressWarnings("serial") // never serialized
+    private final class BatchTask extends RecursiveTask<List<BuildStep>> {
+        private final List<D8BuildStep> steps;
+
+        BatchTask(List<D8BuildStep> steps) {
+            this.steps = steps;
+        }
+
+        @Override
+        protected List<BuildStep> compute() {
+            if (D8BuildStep.buildBatch(steps)) {
+                return Collections.emptyList();
+            }
+            System.err.println("building a batch of " + steps.size()
+                    + " class files failed, building them one by one");
+            List<ForkJoinTask<Boolean>> stepTasks = new ArrayList<>();
+            for (D8BuildStep step : steps) {
+                stepTasks.add(forkStep(step));
+            }
+            List<BuildStep> failed = new ArrayList<>();
+            for (int i = 0; i < steps.size(); i++) {
+                if (!stepTasks.get(i).join()) {
+                    failed.add(steps.get(i));
+                }
+            }
+            return failed;
+        }
+    }
+
+    /**
+     * Returns the hash of the inputs of the tree of {@code target}, or null if some of them cannot
+     * be read.
+     */
+    private static String fingerprint(BuildStep target) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            updateDigest(digest, target);
+            return new BigInteger(1, digest.digest()).toString(16);
+        } catch (IOException | NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    private static void updateDigest(MessageDigest digest, BuildStep step) throws IOException {
+        // The hash code covers the configuration of the step, e.g. its jar entry name.
+        updateDigest(digest, step.getClass().getName() + ":" + step.outputFile.getPath() + ":"
+                + step.hashCode());
+
+        List<BuildStep> children = new ArrayList<>(step.getChildren());
+        Collections.sort(children);
+        Set<File> childOutputs = new HashSet<>();
+        for (BuildStep child : children) {
+            updateDigest(digest, child);
+            childOutputs.add(child.outputFile.fileName);
+        }
+
+        List<File> inputFiles = new ArrayList<>(step.getInputFiles());
+        Collections.sort(inputFiles);
+        for (File inputFile : inputFiles) {
+            if (!childOutputs.contains(inputFile)) {
+                updateDigest(digest, inputFile.getAbsolutePath());
+                digest.update(Files.readAllBytes(inputFile.toPath()));
+            }
+        }
+    }
+
+    private static void updateDigest(MessageDigest digest, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        digest.update(ByteBuffer.allocate(4).putInt(bytes.length).array());
+        digest.update(bytes);
+    }
+
+    private void loadCache() throws IOException {
+        if (cacheFile != null && cacheFile.exists()) {
+            try (InputStream in = new FileInputStream(cacheFile)) {
+                cache.load(in);
+            }
+        }
+    }
+
+    private void saveCache() throws IOException {
+        if (cacheFile == null) {
+            return;
+        }
+        File tmpFile = new File(cacheFile.getAbsolutePath() + ".tmp");
+        tmpFile.getParentFile().mkdirs();
+        try (OutputStream out = new FileOutputStream(tmpFile)) {
+            cache.store(out, "input hashes of the BuildDalvikSuite targets");
+        }
+        Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
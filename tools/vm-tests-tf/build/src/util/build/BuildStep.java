@@ -21,6 +21,8 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -88,7 +90,25 @@ abstract class BuildStep implements Comparable<BuildStep> {
                 }
             }
         }
-        return true;
+        return buildSelf();
+    }
+
+    /**
+     * Builds this step only, its children must have been built already. Steps which do not
+     * depend on each other may be built concurrently, see {@link BuildExecutor}.
+     */
+    abstract boolean buildSelf();
+
+    Set<BuildStep> getChildren() {
+        return children == null ? Collections.<BuildStep>emptySet() : children;
+    }
+
+    /**
+     * Returns the files read by this step, including the outputs of its children.
+     */
+    Collection<File> getInputFiles() {
+        return inputFile == null ? Collections.<File>emptySet()
+                : Collections.singleton(inputFile.fileName);
     }
 
     @Override
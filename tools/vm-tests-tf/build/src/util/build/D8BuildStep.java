@@ -20,10 +20,16 @@ import com.android.tools.r8.CompilationMode;
 import com.android.tools.r8.D8;
 import com.android.tools.r8.D8Command;
 import com.android.tools.r8.OutputMode;
+import java.io.File;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
 
 public class D8BuildStep extends BuildStep {
 
@@ -33,42 +39,112 @@ public class D8BuildStep extends BuildStep {
   D8BuildStep(BuildFile inputFile, BuildFile outputFile, boolean deleteInputFileAfterBuild) {
     super(inputFile, outputFile);
     this.deleteInputFileAfterBuild = deleteInputFileAfterBuild;
-    this.builder =
-        D8Command.builder()
-            .setMode(CompilationMode.DEBUG)
-            .setMinApiLevel(1000)
-            .setDisableDesugaring(true);
+    this.builder = newBuilder();
+  }
+
+  private static D8Command.Builder newBuilder() {
+    return D8Command.builder()
+        .setMode(CompilationMode.DEBUG)
+        .setMinApiLevel(1000)
+        .setDisableDesugaring(true);
   }
 
   @Override
-  boolean build() {
+  boolean buildSelf() {
+    try {
+      builder.setOutput(Paths.get(outputFile.fileName.getAbsolutePath()), OutputMode.DexIndexed);
+      Files.find(
+              Paths.get(inputFile.fileName.getAbsolutePath()),
+              1000,
+              D8BuildStep::isJarOrClassFile)
+          .forEach(
+              p -> {
+                try {
+                  builder.addProgramFiles(p);
+                } catch (Throwable e) {
+                  e.printStackTrace();
+                }
+              });
+      D8.run(builder.build());
+    } catch (Throwable e) {
+      e.printStackTrace();
+      return false;
+    }
+    if (deleteInputFileAfterBuild) {
+      inputFile.fileName.delete();
+    }
+    return true;
+  }
+
+  /**
+   * Returns the jar step wrapping the single class file dexed by this step, or null if this step
+   * has other inputs. Such steps can be built together with {@link #buildBatch}.
+   */
+  JarBuildStep getClassFileStep() {
+    Set<BuildStep> children = getChildren();
+    if (children.size() != 1) {
+      return null;
+    }
+    BuildStep child = children.iterator().next();
+    if (!(child instanceof JarBuildStep) || !child.outputFile.equals(inputFile)) {
+      return null;
+    }
+    JarBuildStep jarStep = (JarBuildStep) child;
+    if (!jarStep.inputFile.getPath().endsWith(".class")
+        || !jarStep.outputJarEntryName.endsWith(".class")) {
+      return null;
+    }
+    return jarStep;
+  }
 
-    if (super.build()) {
-      try {
-        builder.setOutput(Paths.get(outputFile.fileName.getAbsolutePath()), OutputMode.DexIndexed);
-        Files.find(
-                Paths.get(inputFile.fileName.getAbsolutePath()),
-                1000,
-                D8BuildStep::isJarOrClassFile)
-            .forEach(
-                p -> {
-                  try {
-                    builder.addProgramFiles(p);
-                  } catch (Throwable e) {
-                    e.printStackTrace();
-                  }
-                });
-        D8.run(builder.build());
-      } catch (Throwable e) {
-        e.printStackTrace();
-        return false;
+  /**
+   * Dexes the class files of steps returned by {@link #getClassFileStep} with a single D8
+   * invocation writing one dex file per class file, instead of one invocation per step on a
+   * temporary jar. Each dex file is then stored as the classes.dex of the step output.
+   *
+   * @return false if any of the steps failed, the outputs of the other steps may be missing.
+   */
+  static boolean buildBatch(List<D8BuildStep> steps) {
+    Path tmpDir = null;
+    try {
+      tmpDir = Files.createTempDirectory("d8batch");
+      D8Command.Builder batchBuilder = newBuilder();
+      batchBuilder.setOutput(tmpDir, OutputMode.DexFilePerClassFile);
+      for (D8BuildStep step : steps) {
+        batchBuilder.addProgramFiles(
+            Paths.get(step.getClassFileStep().inputFile.fileName.getAbsolutePath()));
       }
-      if (deleteInputFileAfterBuild) {
-        inputFile.fileName.delete();
+      D8.run(batchBuilder.build());
+
+      for (D8BuildStep step : steps) {
+        // The dex file of a class file is named after the class, like its jar entry.
+        String entryName = step.getClassFileStep().outputJarEntryName;
+        File dexFile =
+            tmpDir.resolve(entryName.substring(0, entryName.length() - ".class".length()) + ".dex")
+                .toFile();
+        JarBuildStep jarStep =
+            new JarBuildStep(new BuildFile(dexFile), "classes.dex", step.outputFile, true);
+        if (!jarStep.buildSelf()) {
+          return false;
+        }
+      }
+    } catch (Throwable e) {
+      e.printStackTrace();
+      return false;
+    } finally {
+      if (tmpDir != null) {
+        deleteRecursively(tmpDir);
       }
-      return true;
     }
-    return false;
+    return true;
+  }
+
+  private static void deleteRecursively(Path dir) {
+    try (Stream<Path> paths = Files.walk(dir)) {
+      paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
   }
 
   @Override
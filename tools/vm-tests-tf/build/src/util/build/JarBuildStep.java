@@ -16,14 +16,9 @@
 
 package util.build;
 
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.IOException;
 import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.jar.JarEntry;
 import java.util.jar.JarOutputStream;
 
@@ -43,76 +38,56 @@ public class JarBuildStep extends BuildStep {
     }
 
     @Override
-    boolean build() {
-        if (super.build()) {
-            File tempFile = new File(inputFile.folder, outputJarEntryName);
-            try {
-                if (!inputFile.fileName.equals(tempFile)) {
-                    copyFile(inputFile.fileName, tempFile);
-                } else {
-                    tempFile = null;
-                }
-            } catch (IOException e) {
-                System.err.println("io exception:"+e.getMessage());
-                e.printStackTrace();
-                return false;
-            }
-
-            File outDir = outputFile.fileName.getParentFile();
-            if (!outDir.exists() && !outDir.mkdirs()) {
-                System.err.println("failed to create output dir: "
-                        + outDir.getAbsolutePath());
-                return false;
-            }
-
-            // Find the input. We'll need to look into the input folder, but check with the
-            // (relative) destination filename (this is effectively removing the inputFile folder
-            // from the entry path in the jar file).
-            Path absoluteInputPath = Paths.get(inputFile.folder.getAbsolutePath())
-                    .resolve(outputJarEntryName);
-            File absoluteInputFile = absoluteInputPath.toFile();
-            if (!absoluteInputFile.exists()) {
-                // Something went wrong.
-                throw new IllegalArgumentException(absoluteInputFile.getAbsolutePath());
-            }
-
-            // Use a JarOutputStream to create the output jar file.
-            File jarOutFile = outputFile.fileName;
-            try (JarOutputStream jarOut = new JarOutputStream(new FileOutputStream(jarOutFile))) {
-                // Create the JAR entry for the file. Use destFileName, and copy the timestamp
-                // from the input.
-                JarEntry entry = new JarEntry(outputJarEntryName);
-                entry.setTime(absoluteInputFile.lastModified());
-
-                // Push the entry. The stream will then be ready to accept content.
-                jarOut.putNextEntry(entry);
-
-                // Copy absoluteInputFile into the jar file.
-                Files.copy(absoluteInputPath, jarOut);
-
-                // Finish the entry.
-                jarOut.closeEntry();
-
-                // (Implicitly close the stream, finishing the jar file.)
-            } catch (Exception e) {
-                System.err.println("exception in JarBuildStep for " +
-                        outputFile.fileName.getAbsolutePath() + ", " + outputJarEntryName);
-                e.printStackTrace(System.err);
-                jarOutFile.delete();
-                return false;
-            }
-
-            // Clean up.
-            if (tempFile != null) {
-                tempFile.delete();
-            }
-            if (deleteInputFileAfterBuild) {
-                inputFile.fileName.delete();
-            }
-
-            return true;
+    boolean buildSelf() {
+        File outDir = outputFile.fileName.getParentFile();
+        // Another step may be creating the same dir concurrently.
+        if (!outDir.mkdirs() && !outDir.isDirectory()) {
+            System.err.println("failed to create output dir: "
+                    + outDir.getAbsolutePath());
+            return false;
         }
-        return false;
+
+        // The input is read in place and stored under the (relative) entry name, rather than
+        // copied to the entry name next to it first: steps building concurrently may share an
+        // input folder, e.g. two smali tests of the same package both storing a classes.dex.
+        File inputPath = inputFile.fileName;
+        if (!inputPath.exists()) {
+            // Something went wrong.
+            throw new IllegalArgumentException(inputPath.getAbsolutePath());
+        }
+
+        // Use a JarOutputStream to create the output jar file.
+        File jarOutFile = outputFile.fileName;
+        try (JarOutputStream jarOut = new JarOutputStream(new FileOutputStream(jarOutFile))) {
+            // Create the JAR entry for the file. Use destFileName, and copy the timestamp
+            // from the input.
+            JarEntry entry = new JarEntry(outputJarEntryName);
+            entry.setTime(inputPath.lastModified());
+
+            // Push the entry. The stream will then be ready to accept content.
+            jarOut.putNextEntry(entry);
+
+            // Copy the input into the jar file.
+            Files.copy(inputPath.toPath(), jarOut);
+
+            // Finish the entry.
+            jarOut.closeEntry();
+
+            // (Implicitly close the stream, finishing the jar file.)
+        } catch (Exception e) {
+            System.err.println("exception in JarBuildStep for " +
+                    outputFile.fileName.getAbsolutePath() + ", " + outputJarEntryName);
+            e.printStackTrace(System.err);
+            jarOutFile.delete();
+            return false;
+        }
+
+        // Clean up.
+        if (deleteInputFileAfterBuild) {
+            inputFile.fileName.delete();
+        }
+
+        return true;
     }
 
     @Override
@@ -19,7 +19,9 @@ package util.build;
 import java.io.File;
 import java.lang.Iterable;
 import java.util.stream.Collectors;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -47,53 +49,58 @@ public class JavacBuildStep extends SourceBuildStep {
     }
 
     @Override
-    boolean build() {
-        if (super.build())
+    boolean buildSelf() {
+        if (sourceFiles.isEmpty())
         {
-            if (sourceFiles.isEmpty())
-            {
-                return true;
-            }
+            return true;
+        }
 
-            File destFile = new File(destPath);
-            if (!destFile.exists() && !destFile.mkdirs())
-            {
-                System.err.println("failed to create destination dir");
-                return false;
-            }
+        File destFile = new File(destPath);
+        if (!destFile.exists() && !destFile.mkdirs())
+        {
+            System.err.println("failed to create destination dir");
+            return false;
+        }
 
-            Iterable<File> classPathFiles = Arrays.asList(classPath.split(":"))
-                    .stream()
-                    .map(File::new)
-                    .collect(Collectors.toList());
+        Iterable<File> classPathFiles = Arrays.asList(classPath.split(":"))
+                .stream()
+                .map(File::new)
+                .collect(Collectors.toList());
 
-            JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
-            try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(
-                    null,     // diagnosticListener: we don't care about the details.
-                    null,     // locale: use default locale.
-                    null)) {  // charset: use platform default.
-                fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Arrays.asList(
-                        new File(destPath)));
-                fileManager.setLocation(StandardLocation.CLASS_PATH, classPathFiles);
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(
+                null,     // diagnosticListener: we don't care about the details.
+                null,     // locale: use default locale.
+                null)) {  // charset: use platform default.
+            fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Arrays.asList(
+                    new File(destPath)));
+            fileManager.setLocation(StandardLocation.CLASS_PATH, classPathFiles);
 
-                Iterable<? extends JavaFileObject> compilationUnits =
-                        fileManager.getJavaFileObjectsFromStrings(sourceFiles);
+            Iterable<? extends JavaFileObject> compilationUnits =
+                    fileManager.getJavaFileObjectsFromStrings(sourceFiles);
 
-                List<String> options = Arrays.asList("-source", "1.7", "-target", "1.7");
+            List<String> options = Arrays.asList("-source", "1.7", "-target", "1.7");
 
-                return compiler.getTask(
-                        null,  // out: write errors to System.err.
-                        fileManager,
-                        null,  // diagnosticListener: we don't care about the details.
-                        options,
-                        null,  // classes: classes for annotation processing = none.
-                        compilationUnits).call();
-            } catch (Exception e) {
-                e.printStackTrace();
-                return false;
-            }
+            return compiler.getTask(
+                    null,  // out: write errors to System.err.
+                    fileManager,
+                    null,  // diagnosticListener: we don't care about the details.
+                    options,
+                    null,  // classes: classes for annotation processing = none.
+                    compilationUnits).call();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
         }
-        return false;
+    }
+
+    @Override
+    Collection<File> getInputFiles() {
+        List<File> files = new ArrayList<>(sourceFiles.size());
+        for (String sourceFile : sourceFiles) {
+            files.add(new File(sourceFile));
+        }
+        return files;
     }
 
     @Override
@@ -20,6 +20,8 @@ import org.jf.smali.Smali;
 import org.jf.smali.SmaliOptions;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -36,7 +38,7 @@ class SmaliBuildStep extends BuildStep {
     }
 
     @Override
-    boolean build() {
+    boolean buildSelf() {
         SmaliOptions options = new SmaliOptions();
         options.verboseErrors = true;
         options.outputDexFile = outputFile.fileName.getAbsolutePath();
@@ -54,6 +56,15 @@ class SmaliBuildStep extends BuildStep {
         }
     }
 
+    @Override
+    Collection<File> getInputFiles() {
+        List<File> files = new ArrayList<>(inputFiles.size());
+        for (String inputFile : inputFiles) {
+            files.add(new File(inputFile));
+        }
+        return files;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (super.equals(obj)) {